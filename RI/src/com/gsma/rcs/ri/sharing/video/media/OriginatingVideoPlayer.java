@@ -33,6 +33,7 @@ import com.orangelabs.rcs.core.ims.protocol.rtp.codec.video.h264.JavaPacketizer;
 import com.orangelabs.rcs.core.ims.protocol.rtp.codec.video.h264.encoder.NativeH264Encoder;
 import com.orangelabs.rcs.core.ims.protocol.rtp.codec.video.h264.encoder.NativeH264EncoderParams;
 import com.orangelabs.rcs.core.ims.protocol.rtp.codec.video.h264.profiles.H264Profile1b;
+import com.orangelabs.rcs.core.ims.protocol.rtp.core.BitrateListener;
 import com.orangelabs.rcs.core.ims.protocol.rtp.format.video.CameraOptions;
 import com.orangelabs.rcs.core.ims.protocol.rtp.format.video.H264VideoFormat;
 import com.orangelabs.rcs.core.ims.protocol.rtp.format.video.Orientation;
@@ -52,7 +53,7 @@ import java.io.IOException;
  * Live RTP video player based on H264 QCIF format
  */
 public class OriginatingVideoPlayer extends VideoPlayer implements Camera.PreviewCallback,
-        RtpStreamListener {
+        RtpStreamListener, BitrateListener {
     /**
      * Default video codec
      */
@@ -122,6 +123,26 @@ public class OriginatingVideoPlayer extends VideoPlayer implements Camera.Previe
      */
     private static final int NALREPEATMAX = 20;
 
+    /**
+     * Relative bitrate change above which the encoder is reinitialized
+     */
+    private static final float ENCODER_RESET_THRESHOLD = 0.2f;
+
+    /**
+     * Encoder parameters
+     */
+    private NativeH264EncoderParams mEncoderParams;
+
+    /**
+     * Target bitrate of the RTP sender
+     */
+    private volatile int mTargetBitrate;
+
+    /**
+     * Target frame rate of the RTP sender
+     */
+    private volatile float mTargetFrameRate;
+
     /**
      * Scaling factor for encoding
      */
@@ -236,6 +257,9 @@ public class OriginatingVideoPlayer extends VideoPlayer implements Camera.Previe
         try {
             mTimestampInc = (int) (90000 / mDefaultVideoCodec.getFrameRate());
             NativeH264EncoderParams nativeH264EncoderParams = new NativeH264EncoderParams();
+            mEncoderParams = nativeH264EncoderParams;
+            mTargetBitrate = mDefaultVideoCodec.getBitRate();
+            mTargetFrameRate = mDefaultVideoCodec.getFrameRate();
 
             // Codec dimensions
             nativeH264EncoderParams.setFrameWidth(mDefaultVideoCodec.getWidth());
@@ -267,6 +291,8 @@ public class OriginatingVideoPlayer extends VideoPlayer implements Camera.Previe
         try {
             releasePort();
             mRtpSender = new VideoRtpSender(new H264VideoFormat(), mLocalRtpPort);
+            mRtpSender.setBitrateAdaptation(mDefaultVideoCodec.getBitRate(),
+                    mDefaultVideoCodec.getFrameRate(), this);
             mRtpInput = new MediaRtpInput();
             mRtpInput.open();
             mRtpSender.prepareSession(mRtpInput, mRemoteHost, mRemotePort, this);
@@ -520,6 +546,45 @@ public class OriginatingVideoPlayer extends VideoPlayer implements Camera.Previe
         mFrameBuffer.setData(data);
     };
 
+    @Override
+    public void onTargetBitrateChanged(int bitrate, float frameRate) {
+        // Applied by the frame process between two frames
+        mTargetBitrate = bitrate;
+        mTargetFrameRate = frameRate;
+    }
+
+    /**
+     * Reinitialize the encoder if the target bitrate has significantly changed. The native encoder
+     * has no API to change the bitrate of an initialized encoder.
+     * 
+     * @return false if the encoder can not be reinitialized
+     */
+    private boolean updateEncoderBitrate() {
+        int bitrate = mTargetBitrate;
+        int encoderBitrate = mEncoderParams.getBitRate();
+        if (Math.abs(bitrate - encoderBitrate) <= encoderBitrate * ENCODER_RESET_THRESHOLD) {
+            return true;
+        }
+        if (LogUtils.isActive) {
+            Log.d(LOGTAG, "Encoder bitrate " + encoderBitrate + " -> " + bitrate);
+        }
+        mEncoderParams.setBitRate(bitrate);
+        mEncoderParams.setFrameRate(mTargetFrameRate);
+        try {
+            NativeH264Encoder.DeinitEncoder();
+            if (NativeH264Encoder.InitEncoder(mEncoderParams) != 0 || !initNAL()) {
+                return false;
+            }
+        } catch (UnsatisfiedLinkError e) {
+            Log.d(LOGTAG, ExceptionUtil.getFullStackTrace(e));
+            return false;
+        }
+        // The new SPS/PPS are sent before the next frame
+        mNalInit = false;
+        mNalRepeat = 0;
+        return true;
+    }
+
     /**
      * encode a buffer and add in RTP input
      * 
@@ -586,9 +651,21 @@ public class OriginatingVideoPlayer extends VideoPlayer implements Camera.Previe
         @Override
         public void run() {
             byte[] frameData = null;
+            float frameRate = 0;
             while (mStarted) {
                 long time = System.currentTimeMillis();
 
+                // Apply the target of the RTP sender, frames being dropped at lower frame rates
+                if (frameRate != mTargetFrameRate) {
+                    frameRate = mTargetFrameRate;
+                    interframe = (int) (1000 / frameRate);
+                    mTimestampInc = (int) (90000 / frameRate);
+                }
+                if (!updateEncoderBitrate()) {
+                    mEventListener.onPlayerError();
+                    break;
+                }
+
                 // Encode
                 frameData = mFrameBuffer.getData();
                 if (frameData != null) {
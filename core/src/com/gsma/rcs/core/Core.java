@@ -85,6 +85,8 @@ public class Core {
 
     private final LocaleManager mLocaleManager;
 
+    private final ContactManager mContactManager;
+
     /**
      * Returns the singleton instance
      * 
@@ -169,6 +171,7 @@ public class Core {
             sLogger.info("My device UUID is ".concat(String.valueOf(DeviceUtils.getDeviceUUID(ctx))));
         }
         PhoneUtils.initialize(rcsSettings);
+        mContactManager = contactManager;
         mAddressBookManager = new AddressBookManager(contentResolver, contactManager);
         mLocaleManager = new LocaleManager(ctx, this, rcsSettings, contactManager);
 
@@ -265,6 +268,8 @@ public class Core {
         mLocaleManager.stop();
         mAddressBookManager.stop();
         mImsModule.stop();
+        /* Persist the capability updates not yet written to the contact provider */
+        mContactManager.flushPendingWrites();
 
         mStopping = false;
         mStarted = false;
@@ -32,6 +32,8 @@ import com.gsma.rcs.core.ims.network.gsm.CallManager;
 import com.gsma.rcs.core.ims.network.sip.SipManager;
 import com.gsma.rcs.core.ims.protocol.PayloadException;
 import com.gsma.rcs.core.ims.protocol.msrp.MsrpConnection;
+import com.gsma.rcs.core.ims.protocol.msrp.MsrpConnectionPool;
+import com.gsma.rcs.core.ims.protocol.msrp.MsrpSelector;
 import com.gsma.rcs.core.ims.protocol.sip.SipEventListener;
 import com.gsma.rcs.core.ims.protocol.sip.SipRequest;
 import com.gsma.rcs.core.ims.service.ImsService;
@@ -146,6 +148,7 @@ public class ImsModule implements SipEventListener {
     public void initialize() {
         SipManager.setTimeout(mRcsSettings.getSipTransactionTimeout());
         MsrpConnection.setMsrpTraceEnabled(mRcsSettings.isMediaTraceActivated());
+        MsrpConnection.setNioTransportEnabled(mRcsSettings.isMsrpNioTransportActivated());
         HttpTransferManager.setHttpTraceEnabled(mRcsSettings.isMediaTraceActivated());
 
         mCnxManager.initialize();
@@ -235,6 +238,8 @@ public class ImsModule implements SipEventListener {
         mCnxManager.terminate();
         mServiceDispatcher.terminate();
         mExtensionManager.stop();
+        MsrpConnectionPool.terminateInstance();
+        MsrpSelector.terminateInstance();
         if (sLogger.isActivated()) {
             sLogger.info("IMS module has been stopped");
         }
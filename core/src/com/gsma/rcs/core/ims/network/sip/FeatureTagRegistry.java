@@ -0,0 +1,211 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.core.ims.network.sip;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Registry of the known feature tags, each mapped to a bit so that the feature tags of a SIP
+ * message are parsed once into a mask and then matched with mask operations.
+ * <p>
+ * A feature tag is matched either as a whole (+g.oma.sip-im) or, for a tag with a quoted value
+ * (+g.3gpp.iari-ref="urn%3A..."), by its value.
+ */
+public final class FeatureTagRegistry {
+
+    /**
+     * No known feature tag
+     */
+    public static final long NONE = 0L;
+
+    /**
+     * Bit of {@link FeatureTags#FEATURE_OMA_IM}
+     */
+    public static final long OMA_IM = 1L;
+
+    /**
+     * Bit of {@link FeatureTags#FEATURE_3GPP_VIDEO_SHARE}
+     */
+    public static final long VIDEO_SHARE = 1L << 1;
+
+    /**
+     * Bit of {@link FeatureTags#FEATURE_3GPP_IMAGE_SHARE}
+     */
+    public static final long IMAGE_SHARE_3GPP = 1L << 2;
+
+    /**
+     * Bit of {@link FeatureTags#FEATURE_3GPP_IMAGE_SHARE_RCS2}
+     */
+    public static final long IMAGE_SHARE_3GPP_RCS2 = 1L << 3;
+
+    /**
+     * Bit of {@link FeatureTags#FEATURE_3GPP_LOCATION_SHARE}
+     */
+    public static final long LOCATION_SHARE_3GPP = 1L << 4;
+
+    /**
+     * Bit of {@link FeatureTags#FEATURE_RCSE_IMAGE_SHARE}
+     */
+    public static final long IMAGE_SHARE = 1L << 5;
+
+    /**
+     * Bit of {@link FeatureTags#FEATURE_RCSE_CHAT}
+     */
+    public static final long CHAT = 1L << 6;
+
+    /**
+     * Bit of {@link FeatureTags#FEATURE_RCSE_FT}
+     */
+    public static final long FT = 1L << 7;
+
+    /**
+     * Bit of {@link FeatureTags#FEATURE_RCSE_FT_HTTP}
+     */
+    public static final long FT_HTTP = 1L << 8;
+
+    /**
+     * Bit of {@link FeatureTags#FEATURE_RCSE_PRESENCE_DISCOVERY}
+     */
+    public static final long PRESENCE_DISCOVERY = 1L << 9;
+
+    /**
+     * Bit of {@link FeatureTags#FEATURE_RCSE_SOCIAL_PRESENCE}
+     */
+    public static final long SOCIAL_PRESENCE = 1L << 10;
+
+    /**
+     * Bit of {@link FeatureTags#FEATURE_RCSE_GEOLOCATION_PUSH}
+     */
+    public static final long GEOLOCATION_PUSH = 1L << 11;
+
+    /**
+     * Bit of {@link FeatureTags#FEATURE_RCSE_FT_THUMBNAIL}
+     */
+    public static final long FT_THUMBNAIL = 1L << 12;
+
+    /**
+     * Bit of {@link FeatureTags#FEATURE_RCSE_FT_SF}
+     */
+    public static final long FT_SF = 1L << 13;
+
+    /**
+     * Bit of {@link FeatureTags#FEATURE_RCSE_GC_SF}
+     */
+    public static final long GC_SF = 1L << 14;
+
+    /**
+     * Bit of {@link FeatureTags#FEATURE_3GPP_IP_VOICE_CALL}
+     */
+    public static final long IP_VOICE_CALL_3GPP = 1L << 15;
+
+    /**
+     * Bit of {@link FeatureTags#FEATURE_RCSE_IP_VOICE_CALL}
+     */
+    public static final long IP_VOICE_CALL = 1L << 16;
+
+    /**
+     * Bit of {@link FeatureTags#FEATURE_RCSE_IP_VIDEO_CALL}
+     */
+    public static final long IP_VIDEO_CALL = 1L << 17;
+
+    /**
+     * Bit of {@link FeatureTags#FEATURE_SIP_AUTOMATA}
+     */
+    public static final long SIP_AUTOMATA = 1L << 18;
+
+    /**
+     * Bit of {@link FeatureTags#FEATURE_3GPP_EXTENSION}
+     */
+    public static final long EXTENSION_3GPP = 1L << 19;
+
+    private static final String VALUE_START = "=\"";
+
+    private static final char VALUE_END = '"';
+
+    private static final Map<String, Long> sBits = new HashMap<>();
+
+    static {
+        sBits.put(FeatureTags.FEATURE_OMA_IM, OMA_IM);
+        sBits.put(FeatureTags.FEATURE_3GPP_VIDEO_SHARE, VIDEO_SHARE);
+        sBits.put(FeatureTags.FEATURE_3GPP_IMAGE_SHARE, IMAGE_SHARE_3GPP);
+        sBits.put(FeatureTags.FEATURE_3GPP_IMAGE_SHARE_RCS2, IMAGE_SHARE_3GPP_RCS2);
+        sBits.put(FeatureTags.FEATURE_3GPP_LOCATION_SHARE, LOCATION_SHARE_3GPP);
+        sBits.put(FeatureTags.FEATURE_RCSE_IMAGE_SHARE, IMAGE_SHARE);
+        sBits.put(FeatureTags.FEATURE_RCSE_CHAT, CHAT);
+        sBits.put(FeatureTags.FEATURE_RCSE_FT, FT);
+        sBits.put(FeatureTags.FEATURE_RCSE_FT_HTTP, FT_HTTP);
+        sBits.put(FeatureTags.FEATURE_RCSE_PRESENCE_DISCOVERY, PRESENCE_DISCOVERY);
+        sBits.put(FeatureTags.FEATURE_RCSE_SOCIAL_PRESENCE, SOCIAL_PRESENCE);
+        sBits.put(FeatureTags.FEATURE_RCSE_GEOLOCATION_PUSH, GEOLOCATION_PUSH);
+        sBits.put(FeatureTags.FEATURE_RCSE_FT_THUMBNAIL, FT_THUMBNAIL);
+        sBits.put(FeatureTags.FEATURE_RCSE_FT_SF, FT_SF);
+        sBits.put(FeatureTags.FEATURE_RCSE_GC_SF, GC_SF);
+        sBits.put(FeatureTags.FEATURE_3GPP_IP_VOICE_CALL, IP_VOICE_CALL_3GPP);
+        sBits.put(FeatureTags.FEATURE_RCSE_IP_VOICE_CALL, IP_VOICE_CALL);
+        sBits.put(FeatureTags.FEATURE_RCSE_IP_VIDEO_CALL, IP_VIDEO_CALL);
+        sBits.put(FeatureTags.FEATURE_SIP_AUTOMATA, SIP_AUTOMATA);
+        sBits.put(FeatureTags.FEATURE_3GPP_EXTENSION, EXTENSION_3GPP);
+    }
+
+    private FeatureTagRegistry() {
+    }
+
+    /**
+     * Get the bit of a known feature tag, as defined in {@link FeatureTags}
+     * 
+     * @param featureTag Feature tag
+     * @return Bit of the feature tag or NONE if the feature tag is unknown
+     */
+    public static long getBit(String featureTag) {
+        Long bit = sBits.get(featureTag);
+        return bit == null ? NONE : bit;
+    }
+
+    /**
+     * Get the bits of the known feature tags matching a feature tag of a SIP message
+     * 
+     * @param tag Feature tag as returned by SipMessage.getFeatureTags
+     * @return Mask of the matching feature tags
+     */
+    public static long getBits(String tag) {
+        long bits = getBit(tag);
+        int valueStart = tag.indexOf(VALUE_START);
+        int valueEnd = tag.length() - 1;
+        if (valueStart > 0 && valueEnd > valueStart + 1 && tag.charAt(valueEnd) == VALUE_END) {
+            bits |= getBit(tag.substring(valueStart + VALUE_START.length(), valueEnd));
+        }
+        return bits;
+    }
+
+    /**
+     * Get the mask of the known feature tags matching a set of feature tags
+     * 
+     * @param tags Feature tags as returned by SipMessage.getFeatureTags
+     * @return Mask of the matching feature tags
+     */
+    public static long getMask(Set<String> tags) {
+        long mask = NONE;
+        for (String tag : tags) {
+            mask |= getBits(tag);
+        }
+        return mask;
+    }
+}
@@ -200,14 +200,48 @@ public class SipManager {
             PayloadException {
         SipTransactionContext ctx = mSipInterface.sendSipMessageAndWait(message, callback);
         ctx.waitResponse(timeout);
+        analyzeSipResponse(message, ctx);
+        return ctx;
+    }
+
+    /**
+     * Send a SIP message without waiting a response: the callback is notified of the response, or
+     * of the timeout of the transaction, from the SIP stack thread and must not block.
+     * 
+     * @param message the SIP message
+     * @param callback callback to handle the final response
+     * @return SIP transaction context
+     * @throws PayloadException
+     * @throws NetworkException
+     */
+    public SipTransactionContext sendSipMessageAsync(final SipMessage message,
+            final SipTransactionContext.INotifySipResponse callback) throws NetworkException,
+            PayloadException {
+        return mSipInterface.sendSipMessageAsync(message,
+                new SipTransactionContext.INotifySipResponse() {
+
+                    @Override
+                    public void handleSipResponse(SipTransactionContext ctx) {
+                        analyzeSipResponse(message, ctx);
+                        callback.handleSipResponse(ctx);
+                    }
+                });
+    }
 
+    /**
+     * Analyze the response received to a SIP request
+     * 
+     * @param message the SIP message
+     * @param ctx SIP transaction context
+     */
+    private void analyzeSipResponse(SipMessage message, SipTransactionContext ctx) {
         if (!(message instanceof SipRequest) || !ctx.isSipResponse()) {
-            return ctx;
+            return;
         }
         String method = ((SipRequest) message).getMethod();
         SipResponse response = ctx.getSipResponse();
         if (response == null) {
-            return ctx;
+            return;
         }
         /* Analyze the received response */
         if (!Request.REGISTER.equals(method)) {
@@ -219,24 +253,24 @@ public class SipManager {
             }
         }
         if (!Request.INVITE.equals(method) && !Request.REGISTER.equals(method)) {
-            return ctx;
+            return;
         }
         KeepAliveManager keepAliveManager = mNetworkInterface.getSipManager().getSipStack()
                 .getKeepAliveManager();
         if (keepAliveManager == null) {
-            return ctx;
+            return;
         }
         /* Message is a response to INVITE or REGISTER: analyze "keep" flag of "Via" header */
         ListIterator<ViaHeader> iterator = response.getViaHeaders();
         if (!iterator.hasNext()) {
             keepAliveManager.setPeriod(mRcsSettings.getSipKeepAlivePeriod());
-            return ctx;
+            return;
         }
         ViaHeader respViaHeader = iterator.next();
         String keepStr = respViaHeader.getParameter("keep");
         if (keepStr == null) {
             keepAliveManager.setPeriod(mRcsSettings.getSipKeepAlivePeriod());
-            return ctx;
+            return;
         }
         try {
             long viaKeep = Integer.parseInt(keepStr) * SECONDS_TO_MILLISECONDS_CONVERSION_RATE;
@@ -253,7 +287,6 @@ public class SipManager {
              */
             keepAliveManager.setPeriod(mRcsSettings.getSipKeepAlivePeriod());
         }
-        return ctx;
     }
 
     /**
@@ -29,7 +29,10 @@ import com.gsma.rcs.core.ims.protocol.sip.SipRequest;
 import com.gsma.rcs.utils.PhoneUtils;
 
 import java.text.ParseException;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.ListIterator;
+import java.util.Set;
 import java.util.Vector;
 
 import javax2.sip.InvalidArgumentException;
@@ -427,6 +430,11 @@ public class SipUtils {
      * @return Boolean
      */
     public static boolean isFeatureTagPresent(SipMessage msg, String featureTag) {
+        /* Known feature tags are matched as a whole through the mask of the message */
+        long bit = FeatureTagRegistry.getBit(featureTag);
+        if (bit != FeatureTagRegistry.NONE) {
+            return (msg.getFeatureTagMask() & bit) != 0;
+        }
         for (String tag : msg.getFeatureTags()) {
             // TODO comparison should be done on the whole feature tag
             if (tag.contains(featureTag)) {
@@ -472,8 +480,11 @@ public class SipUtils {
      * @param tags List of tags
      * @throws ParseException
      */
-    private static void setAcceptContactFeatureTags(Message message, String[] tags)
+    private static void setAcceptContactFeatureTags(Message message, String[] featureTags)
             throws ParseException {
+        /* A feature tag is only sent once */
+        Set<String> uniqueTags = new LinkedHashSet<>(Arrays.asList(featureTags));
+        String[] tags = uniqueTags.toArray(new String[uniqueTags.size()]);
         if (tags.length > 1 && SipUtils.EXPLICIT_REQUIRE.equals(tags[tags.length - 1])) {
             /*
              * According to RFC 3841, there MUST NOT be more than one req-param or explicit-param in
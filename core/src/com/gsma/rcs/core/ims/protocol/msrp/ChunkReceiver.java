@@ -22,8 +22,6 @@
 
 package com.gsma.rcs.core.ims.protocol.msrp;
 
-import static com.gsma.rcs.utils.StringUtils.UTF8;
-
 import com.gsma.rcs.core.FileAccessException;
 import com.gsma.rcs.core.ims.network.NetworkException;
 import com.gsma.rcs.core.ims.protocol.PayloadException;
@@ -33,7 +31,7 @@ import com.gsma.rcs.utils.logger.Logger;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Hashtable;
+import java.nio.ByteBuffer;
 
 /**
  * Chunks receiver
@@ -57,9 +55,9 @@ public class ChunkReceiver extends Thread {
     private boolean mTerminated;
 
     /**
-     * Maximum length of MSRP chunk buffer
+     * MSRP frame decoder
      */
-    private int mBufferLength = MsrpConstants.CHUNK_MAX_SIZE;
+    private final MsrpFrameDecoder mDecoder = new MsrpFrameDecoder();
 
     /**
      * The logger
@@ -98,210 +96,84 @@ public class ChunkReceiver extends Thread {
      * Background processing
      */
     public void run() {
+        ByteBuffer buffer = MsrpBufferPool.acquire();
+        /*
+         * Set when the connection stops receiving while the receiver is still in use: the remote
+         * end has closed it, sent something else than MSRP or a transport error has occurred.
+         */
+        boolean failed = false;
         try {
             boolean msrpTraceEnabled = MsrpConnection.isMsrpTraceEnabled();
+            MsrpFrame frame = new MsrpFrame();
+            /*
+             * Buffer is kept in read mode: received bytes which are not decoded yet are between its
+             * position and its limit.
+             */
+            buffer.flip();
             // Background processing
             while (!mTerminated) {
-                StringBuilder trace = new StringBuilder();
-
-                // Read first line of a new data chunk
-                StringBuilder line = readLine();
-
-                if (line.length() == 0) {
-                    if (msrpTraceEnabled) {
-                        System.out.println("<<< End of stream");
-                    }
-                    return;
-                }
-
-                if (msrpTraceEnabled) {
-                    trace.append(line);
-                    trace.append(MsrpConstants.NEW_LINE);
+                if (buffer.limit() == buffer.capacity()) {
+                    /* The pending frame is larger than the buffer */
+                    ByteBuffer largerBuffer = ByteBuffer.allocate(buffer.capacity() * 2);
+                    largerBuffer.put(buffer);
+                    largerBuffer.flip();
+                    MsrpBufferPool.release(buffer);
+                    buffer = largerBuffer;
                 }
-                // Check the MSRP tag
-                String[] firstLineTags = line.toString().split(" ");
-                if ((firstLineTags.length < 3)
-                        || !firstLineTags[0].equals(MsrpConstants.MSRP_HEADER)) {
+                int nbRead = read(buffer);
+                if (nbRead == -1) {
                     if (msrpTraceEnabled) {
-                        System.out.println("<<< Not a MSRP message");
+                        System.out.println("<<< End of stream");
                     }
+                    failed = !mTerminated;
                     return;
                 }
-
-                // Get the transaction ID from the first line
-                String txId = firstLineTags[1];
-                String end = MsrpConstants.END_MSRP_MSG + txId;
-
-                // Get response code or method name from the first line
-                int responseCode = -1;
-                String method = null;
-                try {
-                    responseCode = Integer.parseInt(firstLineTags[2]);
-                } catch (NumberFormatException e) {
-                    method = firstLineTags[2];
-                }
-
-                // Data chunk
-                byte[] data = null;
-
-                // Read next lines
-                Hashtable<String, String> headers = new Hashtable<String, String>();
-                char continuationFlag = '\0';
-                int totalSize = 0;
-                while (continuationFlag == '\0' && !mTerminated) {
-                    line = readLine();
-                    if (msrpTraceEnabled) {
-                        trace.append(line);
-                        trace.append(MsrpConstants.NEW_LINE);
-                    }
-
-                    // Test if there is a new line separating headers from the data
-                    if (line.length() == 0) {
-                        // Read data
-                        String byteRange = headers.get(MsrpConstants.HEADER_BYTE_RANGE);
-                        int chunkSize = -1;
-                        if (byteRange != null) {
-                            chunkSize = MsrpUtils.getChunkSize(byteRange);
-                            totalSize = MsrpUtils.getTotalSize(byteRange);
-
-                            // Changed by Deutsche Telekom
-                            if (chunkSize == 0) {
-                                mBufferLength = totalSize;
-                            }
-                        }
-
-                        if (chunkSize >= 0) {
-                            // Use Byte-Range value to read directly the block of data
-                            byte[] buffer = readChunkedData(chunkSize, end);
-
-                            if (chunkSize > 0) {
-                                data = buffer;
-                                // TODO: we could harden the code by checking whether the chunk was
-                                // shorter than expected
-                            } else {
-                                // Cut off continuation flag
-                                data = new byte[buffer.length - 1];
-                                System.arraycopy(buffer, 0, data, 0, buffer.length - 1);
-                                continuationFlag = (char) buffer[buffer.length - 1];
-                            }
-
-                            if (msrpTraceEnabled) {
-                                trace.append(new String(data, UTF8));
-                                trace.append(MsrpConstants.NEW_LINE);
-                            }
-                        } else {
-                            // Read until terminating header is found
-                            StringBuilder buffer = new StringBuilder();
-                            StringBuilder dataline;
-                            boolean endchunk = false;
-                            while ((!endchunk) && (buffer.length() < MsrpConstants.CHUNK_MAX_SIZE)) {
-                                dataline = readLine();
-                                if ((dataline.length() - 1 == end.length())
-                                        && (dataline.toString().startsWith(end))) {
-                                    continuationFlag = dataline.charAt(dataline.length() - 1);
-                                    endchunk = true;
-                                } else {
-                                    if (buffer.length() > 0) {
-                                        buffer.append(MsrpConstants.NEW_LINE);
-                                    }
-                                    buffer.append(dataline);
-                                }
-                            }
-                            data = buffer.toString().getBytes(UTF8);
-                            totalSize = data.length;
-
-                            if (msrpTraceEnabled) {
-                                trace.append(new String(data, UTF8));
-                                trace.append(MsrpConstants.NEW_LINE);
-                                trace.append(end);
-                                trace.append(continuationFlag);
-                            }
-                        }
-                    } else if (line.toString().startsWith(end)) {
-                        continuationFlag = line.charAt(line.length() - 1);
-                    } else {
-                        // It's an header
-                        int index = line.indexOf(":");
-                        String headerName = line.substring(0, index).trim();
-                        String headerValue = line.substring(index + 1).trim();
-
-                        // Add the header in the list
-                        headers.put(headerName, headerValue);
-                    }
-                }
-
-                final MsrpSession session = mConnection.getSession();
-                // Process the received MSRP message
-                if (responseCode != -1) {
-                    // Process MSRP response
-                    if (msrpTraceEnabled) {
-                        System.out.println("<<< Receive MSRP response:\n" + trace);
-                    }
-                    session.receiveMsrpResponse(responseCode, txId, headers);
-                } else {
-                    // Process MSRP request
-                    if (MsrpConstants.METHOD_SEND.equals(method)) {
-                        // Process a SEND request
-                        if (msrpTraceEnabled) {
-                            System.out.println("<<< Receive MSRP SEND request:\n" + trace);
-                        }
-                        session.receiveMsrpSend(txId, headers, continuationFlag, data, totalSize);
-                    } else if (MsrpConstants.METHOD_REPORT.equals(method)) {
-                        // Process a REPORT request
-                        if (msrpTraceEnabled) {
-                            System.out.println("<<< Receive MSRP REPORT request:\n" + trace);
+                while (!mTerminated) {
+                    try {
+                        if (!mDecoder.decode(buffer, frame)) {
+                            break;
                         }
-                        session.receiveMsrpReport(txId, headers);
-                    } else {
-                        // Unknown request
+                    } catch (PayloadException e) {
                         if (msrpTraceEnabled) {
-                            System.out.println("<<< Unknown request received:\n" + trace);
+                            System.out.println("<<< Not a MSRP message");
                         }
-                        // Remove transaction info from list
-                        // Changed by Deutsche Telekom
-                        session.removeMsrpTransactionInfo(txId);
+                        failed = !mTerminated;
+                        return;
+                    }
+                    // Process the received MSRP message
+                    MsrpSession session = mConnection.getSession(frame);
+                    if (session != null) {
+                        session.receiveMsrpFrame(frame);
+                    } else if (msrpTraceEnabled) {
+                        System.out.println("<<< No MSRP session for this message");
                     }
                 }
-
-                // Check transaction info data
-                // Changed by Deutsche Telekom
-                session.checkMsrpTransactionInfo();
+                buffer.compact();
+                buffer.flip();
             }
         } catch (FileAccessException e) {
             sLogger.error("Unable to receive chunks!", e);
             if (!mTerminated) {
                 /* Notify the session listener that an error has occured */
-                final MsrpSession session = mConnection.getSession();
-                session.getMsrpEventListener().msrpTransferError(null, e.getMessage(),
-                        TypeMsrpChunk.Unknown);
-
-                /* Check transaction info data */
-                session.checkMsrpTransactionInfo();
+                notifyTransferError(e.getMessage());
                 mTerminated = true;
+                failed = true;
             }
         } catch (ContactManagerException e) {
             sLogger.error("Unable to receive chunks!", e);
             if (!mTerminated) {
                 /* Notify the session listener that an error has occured */
-                final MsrpSession session = mConnection.getSession();
-                session.getMsrpEventListener().msrpTransferError(null, e.getMessage(),
-                        TypeMsrpChunk.Unknown);
-
-                /* Check transaction info data */
-                session.checkMsrpTransactionInfo();
+                notifyTransferError(e.getMessage());
                 mTerminated = true;
+                failed = true;
             }
         } catch (PayloadException e) {
             sLogger.error("Unable to receive chunks!", e);
             if (!mTerminated) {
                 /* Notify the session listener that an error has occured */
-                final MsrpSession session = mConnection.getSession();
-                session.getMsrpEventListener().msrpTransferError(null, e.getMessage(),
-                        TypeMsrpChunk.Unknown);
-
-                /* Check transaction info data */
-                session.checkMsrpTransactionInfo();
+                notifyTransferError(e.getMessage());
                 mTerminated = true;
+                failed = true;
             }
         } catch (NetworkException e) {
             if (sLogger.isActivated()) {
@@ -309,15 +181,9 @@ public class ChunkReceiver extends Thread {
             }
             if (!mTerminated) {
                 /* Notify the session listener that an error has occured */
-                /* Changed by Deutsche Telekom */
-                final MsrpSession session = mConnection.getSession();
-                session.getMsrpEventListener().msrpTransferError(null, e.getMessage(),
-                        TypeMsrpChunk.Unknown);
-
-                /* Check transaction info data */
-                /* Changed by Deutsche Telekom */
-                session.checkMsrpTransactionInfo();
+                notifyTransferError(e.getMessage());
                 mTerminated = true;
+                failed = true;
             }
         } catch (RuntimeException e) {
             /*
@@ -327,110 +193,42 @@ public class ChunkReceiver extends Thread {
             sLogger.error("Unable to receive chunks!", e);
             if (!mTerminated) {
                 /* Notify the session listener that an error has occured */
-                final MsrpSession session = mConnection.getSession();
-                session.getMsrpEventListener().msrpTransferError(null, e.getMessage(),
-                        TypeMsrpChunk.Unknown);
-
-                /* Check transaction info data */
-                session.checkMsrpTransactionInfo();
+                notifyTransferError(e.getMessage());
                 mTerminated = true;
+                failed = true;
+            }
+        } finally {
+            MsrpBufferPool.release(buffer);
+            if (failed) {
+                mConnection.onTransportFailure();
             }
         }
     }
 
-    /**
-     * Read line
-     * 
-     * @return String
-     * @throws NetworkException
-     */
-    private StringBuilder readLine() throws NetworkException {
-        try {
-            StringBuilder line = new StringBuilder();
-            int previous = -1;
-            int current = -1;
-            while ((current = mStream.read()) != -1) {
-                line.append((char) current);
-                if ((previous == MsrpConstants.CHAR_LF) && (current == MsrpConstants.CHAR_CR)) {
-                    return line.delete(line.length() - 2, line.length());
-                }
-                previous = current;
-            }
-            return line;
-        } catch (IOException e) {
-            throw new NetworkException("Failed to read line!", e);
+    private void notifyTransferError(String error) {
+        for (MsrpSession session : mConnection.getSessions()) {
+            session.getMsrpEventListener().msrpTransferError(null, error, TypeMsrpChunk.Unknown);
+            /* Check transaction info data */
+            session.checkMsrpTransactionInfo();
         }
     }
 
     /**
-     * Read chunked data
+     * Read available data at the end of the buffer
      * 
-     * @param chunkSize Chunk size
-     * @return Data
+     * @param buffer Buffer in read mode backed by an array
+     * @return Number of bytes read or -1 at the end of stream
      * @throws NetworkException
      */
-    private byte[] readChunkedData(int chunkSize, String endTag) throws NetworkException {
+    private int read(ByteBuffer buffer) throws NetworkException {
         try {
-            // Read data until chunk size is reached
-            byte[] result = null;
-            if (chunkSize != 0) {
-                result = new byte[chunkSize];
-                int nbRead = 0;
-                int nbData = -1;
-                while ((nbRead < chunkSize)
-                        && ((nbData = mStream.read(result, nbRead, chunkSize - nbRead)) != -1)) {
-                    nbRead += nbData;
-                }
-            } else {
-                int b;
-                int tagLength = endTag.length();
-                int[] tail = new int[tagLength];
-                byte[] buffer = new byte[mBufferLength + tagLength + 2];
-
-                // MSRP end tag in reverse order
-                int[] match = new int[tagLength];
-                for (int i = 0; i < tagLength; i++) {
-                    match[i] = endTag.charAt(tagLength - i - 1);
-                }
-
-                // Read stream byte by byte
-                for (int j = 0; (b = mStream.read()) != -1; j++) {
-                    // Sliding window over last received bytes
-                    System.arraycopy(tail, 0, tail, 1, tagLength - 1);
-                    tail[0] = b;
-
-                    if (b != match[0]) {
-                        buffer[j] = (byte) b;
-                    } else {
-                        // First char matches; let's check for the others
-                        boolean tagFound = true;
-                        for (int k = 1; k < tagLength - 1; k++) {
-                            if (tail[k] != match[k]) {
-                                buffer[j] = (byte) b;
-                                tagFound = false;
-                                break;
-                            }
-                        }
-                        if (tagFound) {
-                            // Strip off MSRP end tag
-                            // j+1 characters read; remove tagLength characters and CR/LF plus one
-                            // extra
-                            // character for continuation flag
-                            result = new byte[j - tagLength];
-                            System.arraycopy(buffer, 0, result, 0, j - tagLength - 1); // remove tag
-                                                                                       // and
-                                                                                       // CR/LF
-
-                            // read continuation flag
-                            result[j - tagLength - 1] = (byte) mStream.read();
-                            break;
-                        }
-                    }
-                }
+            int limit = buffer.limit();
+            int nbRead = mStream.read(buffer.array(), buffer.arrayOffset() + limit,
+                    buffer.capacity() - limit);
+            if (nbRead > 0) {
+                buffer.limit(limit + nbRead);
             }
-            mStream.read(); // Read LF
-            mStream.read(); // Read CR
-            return result;
+            return nbRead;
         } catch (IOException e) {
             throw new NetworkException("Failed to read chunk data!", e);
         }
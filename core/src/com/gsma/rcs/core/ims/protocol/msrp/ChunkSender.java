@@ -26,6 +26,7 @@ import static com.gsma.rcs.utils.StringUtils.UTF8;
 
 import com.gsma.rcs.core.ims.network.NetworkException;
 import com.gsma.rcs.core.ims.protocol.msrp.MsrpSession.TypeMsrpChunk;
+import com.gsma.rcs.utils.FifoBuffer;
 import com.gsma.rcs.utils.logger.Logger;
 
 import java.io.IOException;
@@ -48,7 +49,8 @@ public class ChunkSender extends Thread {
     private OutputStream mStream;
 
     /**
-     * Buffer of chunks
+     * Buffer of chunks, unbounded: it is also filled from the receiving thread which must not wait,
+     * while the chunks of the sent content are limited by the send window of the session
      */
     private FifoBuffer mBuffer = new FifoBuffer();
 
@@ -87,7 +89,7 @@ public class ChunkSender extends Thread {
      */
     public void terminate() {
         mTerminated = true;
-        mBuffer.unblockRead();
+        mBuffer.close();
         interrupt();
     }
 
@@ -98,7 +100,7 @@ public class ChunkSender extends Thread {
         try {
             // Read chunk to be sent
             byte chunk[] = null;
-            while ((chunk = (byte[]) mBuffer.getMessage()) != null) {
+            while ((chunk = (byte[]) mBuffer.getObject()) != null) {
                 // Write chunk to the output stream
                 if (MsrpConnection.isMsrpTraceEnabled()) {
                     System.out.println(">>> Send MSRP message:\n" + new String(chunk, UTF8));
@@ -112,8 +114,7 @@ public class ChunkSender extends Thread {
                 }
                 /* Notify the msrp session listener that an error has occured */
                 /* Changed by Deutsche Telekom */
-                mConnection.getSession().getMsrpEventListener()
-                        .msrpTransferError(null, e.getMessage(), TypeMsrpChunk.Unknown);
+                notifyTransferError(e.getMessage());
             }
         } catch (RuntimeException e) {
             /*
@@ -124,12 +125,17 @@ public class ChunkSender extends Thread {
             if (!mTerminated) {
                 /* Notify the msrp session listener that an error has occured */
                 /* Changed by Deutsche Telekom */
-                mConnection.getSession().getMsrpEventListener()
-                        .msrpTransferError(null, e.getMessage(), TypeMsrpChunk.Unknown);
+                notifyTransferError(e.getMessage());
             }
         }
     }
 
+    private void notifyTransferError(String error) {
+        for (MsrpSession session : mConnection.getSessions()) {
+            session.getMsrpEventListener().msrpTransferError(null, error, TypeMsrpChunk.Unknown);
+        }
+    }
+
     /**
      * Send a chunk
      * 
@@ -137,8 +143,10 @@ public class ChunkSender extends Thread {
      * @throws NetworkException
      */
     public void sendChunk(byte chunk[]) throws NetworkException {
-        if (mConnection.getSession().isFailureReportRequested()) {
-            mBuffer.putMessage(chunk);
+        /* Chunks of a connection shared by several sessions are always queued */
+        MsrpSession session = mConnection.getSession();
+        if (session == null || session.isFailureReportRequested()) {
+            mBuffer.addObject(chunk);
         } else {
             sendChunkImmediately(chunk);
         }
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.core.ims.protocol.msrp;
+
+/**
+ * Adaptive size of the data chunks sent in MSRP SEND requests. The chunk size is doubled while the
+ * responses come back with a latency close to the lowest one observed on the session and halved as
+ * soon as they are delayed, which happens when the chunks are queued on a congested link.
+ */
+public class ChunkSizeController {
+
+    /**
+     * Smoothed latency, relative to the lowest latency, under which the chunk size grows
+     */
+    private static final int GROW_LATENCY_RATIO = 2;
+
+    /**
+     * Smoothed latency, relative to the lowest latency, above which the chunk size shrinks
+     */
+    private static final int SHRINK_LATENCY_RATIO = 4;
+
+    /**
+     * Lowest reference latency in milliseconds, avoids oscillations on very fast links
+     */
+    private static final long MIN_REFERENCE_LATENCY = 50;
+
+    private final int mMinChunkSize;
+
+    private final int mMaxChunkSize;
+
+    private volatile int mChunkSize;
+
+    private long mMinLatency = Long.MAX_VALUE;
+
+    private long mSmoothedLatency = -1;
+
+    /**
+     * Constructor
+     *
+     * @param minChunkSize Initial and minimum chunk size in bytes
+     * @param maxChunkSize Maximum chunk size in bytes
+     */
+    public ChunkSizeController(int minChunkSize, int maxChunkSize) {
+        mMinChunkSize = minChunkSize;
+        mMaxChunkSize = Math.max(minChunkSize, maxChunkSize);
+        mChunkSize = minChunkSize;
+    }
+
+    /**
+     * Returns the size of the next chunk to be sent
+     *
+     * @return Size in bytes
+     */
+    public int getChunkSize() {
+        return mChunkSize;
+    }
+
+    /**
+     * Returns the maximum chunk size
+     *
+     * @return Size in bytes
+     */
+    public int getMaxChunkSize() {
+        return mMaxChunkSize;
+    }
+
+    /**
+     * Update the chunk size with the latency of a SEND request response
+     *
+     * @param latency Time elapsed between the request and its response in milliseconds
+     */
+    public synchronized void onResponse(long latency) {
+        if (latency < mMinLatency) {
+            mMinLatency = latency;
+        }
+        if (mSmoothedLatency < 0) {
+            mSmoothedLatency = latency;
+        } else {
+            /* Same smoothing as the TCP round-trip time estimator */
+            mSmoothedLatency = (7 * mSmoothedLatency + latency) / 8;
+        }
+        long referenceLatency = Math.max(mMinLatency, MIN_REFERENCE_LATENCY);
+        if (mSmoothedLatency <= GROW_LATENCY_RATIO * referenceLatency) {
+            mChunkSize = Math.min(mChunkSize * 2, mMaxChunkSize);
+        } else if (mSmoothedLatency > SHRINK_LATENCY_RATIO * referenceLatency) {
+            mChunkSize = Math.max(mChunkSize / 2, mMinChunkSize);
+        }
+    }
+}
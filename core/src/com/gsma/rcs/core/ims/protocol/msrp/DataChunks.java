@@ -52,6 +52,18 @@ public class DataChunks {
         currentSize += data.length;
     }
 
+    /**
+     * Add a new chunk
+     * 
+     * @param data Array holding the data chunk
+     * @param offset Offset of the data chunk in the array
+     * @param length Length of the data chunk
+     */
+    public void addChunk(byte[] data, int offset, int length) {
+        cache.write(data, offset, length);
+        currentSize += length;
+    }
+
     /**
      * Get received data
      * 
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.core.ims.protocol.msrp;
+
+import com.gsma.rcs.core.FileAccessException;
+import com.gsma.rcs.utils.CloseableUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Receive sink writing each data chunk directly at its position in a file. Chunks may be received
+ * out of order, overlap or be duplicated: the received byte ranges are merged to know when the
+ * content is contiguous.
+ */
+public class FileReceiveSink implements MsrpReceiveSink {
+
+    private final File mFile;
+
+    private RandomAccessFile mRandomAccessFile;
+
+    private FileChannel mChannel;
+
+    private boolean mClosed = false;
+
+    /**
+     * Received ranges (start position to end position excluded), adjacent ranges are merged
+     */
+    private final TreeMap<Long, Long> mRanges = new TreeMap<>();
+
+    /**
+     * Constructor
+     * 
+     * @param file Destination file, it is created or truncated on first write
+     */
+    public FileReceiveSink(File file) {
+        mFile = file;
+    }
+
+    @Override
+    public synchronized void write(long position, byte[] data, int offset, int length)
+            throws FileAccessException {
+        if (mClosed) {
+            if (isReceived(position, position + length)) {
+                /* Duplicated chunk of a content already complete */
+                return;
+            }
+            throw new FileAccessException("Receive sink is already closed!");
+        }
+        try {
+            if (mChannel == null) {
+                mRandomAccessFile = new RandomAccessFile(mFile, "rw");
+                mRandomAccessFile.setLength(0);
+                mChannel = mRandomAccessFile.getChannel();
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+            long filePosition = position;
+            while (buffer.hasRemaining()) {
+                filePosition += mChannel.write(buffer, filePosition);
+            }
+        } catch (IOException e) {
+            throw new FileAccessException("Failed to write data chunk to file!", e);
+        }
+        addRange(position, position + length);
+    }
+
+    private void addRange(long start, long end) {
+        Map.Entry<Long, Long> previous = mRanges.floorEntry(start);
+        if (previous != null && previous.getValue() >= start) {
+            start = previous.getKey();
+            end = Math.max(end, previous.getValue());
+        }
+        Map.Entry<Long, Long> next = mRanges.ceilingEntry(start);
+        while (next != null && next.getKey() <= end) {
+            end = Math.max(end, next.getValue());
+            mRanges.remove(next.getKey());
+            next = mRanges.ceilingEntry(start);
+        }
+        mRanges.put(start, end);
+    }
+
+    private boolean isReceived(long start, long end) {
+        Map.Entry<Long, Long> range = mRanges.floorEntry(start);
+        return range != null && range.getValue() >= end;
+    }
+
+    @Override
+    public synchronized long getContiguousSize() {
+        if (mRanges.isEmpty() || mRanges.firstKey() != 0) {
+            return 0;
+        }
+        return mRanges.firstEntry().getValue();
+    }
+
+    @Override
+    public synchronized void flush() throws FileAccessException {
+        if (mChannel == null) {
+            return;
+        }
+        try {
+            mChannel.force(false);
+        } catch (IOException e) {
+            throw new FileAccessException("Failed to flush received data to file!", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        mClosed = true;
+        CloseableUtils.tryToClose(mRandomAccessFile);
+        mRandomAccessFile = null;
+        mChannel = null;
+    }
+}
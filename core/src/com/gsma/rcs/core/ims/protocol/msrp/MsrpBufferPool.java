@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.core.ims.protocol.msrp;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of the read buffers used to decode the received MSRP frames, shared by all the MSRP
+ * connections.
+ */
+public final class MsrpBufferPool {
+
+    /**
+     * Size of a pooled buffer
+     */
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Maximum number of buffers kept in the pool
+     */
+    private static final int MAX_POOLED_BUFFERS = 16;
+
+    private static final ConcurrentLinkedQueue<ByteBuffer> sBuffers = new ConcurrentLinkedQueue<>();
+
+    private static final AtomicInteger sPooledBuffers = new AtomicInteger();
+
+    private MsrpBufferPool() {
+    }
+
+    /**
+     * Acquire a buffer from the pool, a new one is allocated if the pool is empty
+     *
+     * @return Cleared buffer backed by an array
+     */
+    public static ByteBuffer acquire() {
+        ByteBuffer buffer = sBuffers.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocate(BUFFER_SIZE);
+        }
+        sPooledBuffers.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Release a buffer to the pool. Buffers which have been enlarged to hold a bigger frame are
+     * not kept.
+     *
+     * @param buffer Buffer which must not be used anymore by the caller
+     */
+    public static void release(ByteBuffer buffer) {
+        if (buffer.capacity() != BUFFER_SIZE) {
+            return;
+        }
+        if (sPooledBuffers.incrementAndGet() > MAX_POOLED_BUFFERS) {
+            sPooledBuffers.decrementAndGet();
+            return;
+        }
+        sBuffers.add(buffer);
+    }
+}
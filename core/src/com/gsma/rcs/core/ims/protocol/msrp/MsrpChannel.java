@@ -0,0 +1,535 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.core.ims.protocol.msrp;
+
+import static com.gsma.rcs.utils.StringUtils.UTF8;
+
+import com.gsma.rcs.core.FileAccessException;
+import com.gsma.rcs.core.ims.network.NetworkException;
+import com.gsma.rcs.core.ims.protocol.PayloadException;
+import com.gsma.rcs.core.ims.protocol.msrp.MsrpSession.TypeMsrpChunk;
+import com.gsma.rcs.provider.contact.ContactManagerException;
+import com.gsma.rcs.utils.CloseableUtils;
+import com.gsma.rcs.utils.logger.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.LinkedList;
+import java.util.Queue;
+
+/**
+ * Non-blocking MSRP channel: replaces the {@link ChunkReceiver} and {@link ChunkSender} threads of
+ * a MSRP connection when the NIO transport mode is activated. Socket I/O is driven by the
+ * {@link MsrpSelector} thread while received frames are delivered in order to the MSRP session
+ * from the selector dispatching pool.
+ */
+public class MsrpChannel {
+
+    /**
+     * Maximum number of bytes queued for sending before the sender is blocked
+     */
+    private static final int MAX_QUEUED_BYTES = MsrpConstants.CHUNK_MAX_SIZE * 32;
+
+    /**
+     * Maximum number of received frames waiting to be delivered before reading is suspended
+     */
+    private static final int MAX_PENDING_FRAMES = 8;
+
+    private final MsrpConnection mConnection;
+
+    private final SocketChannel mChannel;
+
+    private final MsrpSelector mSelector;
+
+    private final MsrpFrameDecoder mDecoder = new MsrpFrameDecoder();
+
+    /**
+     * Selection key, only accessed from the selector thread
+     */
+    private SelectionKey mKey;
+
+    /**
+     * Read buffer taken from the {@link MsrpBufferPool}, only accessed from the selector thread.
+     * Once frames have been decoded from it, the buffer is handed over to the dispatched frames and
+     * released after the last one has been processed.
+     */
+    private ByteBuffer mReadBuffer;
+
+    private boolean mReadSuspended = false;
+
+    private long mReadTimeout = 0;
+
+    private long mLastReadTimestamp = System.currentTimeMillis();
+
+    /**
+     * Chunks to be sent, guarded by itself
+     */
+    private final LinkedList<ByteBuffer> mWriteQueue = new LinkedList<>();
+
+    private int mQueuedBytes = 0;
+
+    /**
+     * Frames waiting to be delivered to the session, guarded by itself
+     */
+    private final Queue<Runnable> mDispatchQueue = new ArrayDeque<>();
+
+    private boolean mDispatching = false;
+
+    /**
+     * Frame tasks ready to be reused, guarded by itself
+     */
+    private final Queue<FrameTask> mFreeFrameTasks = new ArrayDeque<>();
+
+    private volatile boolean mTerminated = false;
+
+    /**
+     * Set once an error has been notified to the session: no more frames are then delivered
+     */
+    private volatile boolean mReceiveFailed = false;
+
+    private final Runnable mEnableWriteTask = new Runnable() {
+        @Override
+        public void run() {
+            setInterest(SelectionKey.OP_WRITE, true);
+        }
+    };
+
+    private final Runnable mResumeReadTask = new Runnable() {
+        @Override
+        public void run() {
+            if (mReadSuspended && getPendingFrames() < MAX_PENDING_FRAMES) {
+                mReadSuspended = false;
+                setInterest(SelectionKey.OP_READ, true);
+            }
+        }
+    };
+
+    private static final Logger sLogger = Logger.getLogger(MsrpChannel.class.getSimpleName());
+
+    /**
+     * Constructor
+     *
+     * @param connection MSRP connection
+     * @param channel Connected socket channel
+     * @param selector MSRP selector
+     */
+    public MsrpChannel(MsrpConnection connection, SocketChannel channel, MsrpSelector selector) {
+        mConnection = connection;
+        mChannel = channel;
+        mSelector = selector;
+    }
+
+    /**
+     * Start the I/O processing of the channel
+     *
+     * @throws NetworkException
+     */
+    public void open() throws NetworkException {
+        try {
+            mChannel.configureBlocking(false);
+        } catch (IOException e) {
+            throw new NetworkException("Failed to configure MSRP channel!", e);
+        }
+        mSelector.register(this);
+    }
+
+    /**
+     * Set the timeout during which the channel may stay without receiving data before an error is
+     * notified to the session
+     *
+     * @param timeout Timeout in milliseconds or 0 for no timeout
+     */
+    public void setReadTimeout(long timeout) {
+        mReadTimeout = timeout;
+    }
+
+    /**
+     * Close the channel
+     */
+    public void close() {
+        mTerminated = true;
+        synchronized (mWriteQueue) {
+            mWriteQueue.clear();
+            mQueuedBytes = 0;
+            mWriteQueue.notifyAll();
+        }
+        CloseableUtils.tryToClose(mChannel);
+        mSelector.unregister(this);
+    }
+
+    /**
+     * Send a chunk, the caller is blocked while too many bytes are waiting to be written
+     *
+     * @param chunk Data chunk
+     * @throws NetworkException
+     */
+    public void sendChunk(byte chunk[]) throws NetworkException {
+        synchronized (mWriteQueue) {
+            try {
+                while (mQueuedBytes >= MAX_QUEUED_BYTES && !mTerminated) {
+                    mWriteQueue.wait();
+                }
+            } catch (InterruptedException e) {
+                throw new NetworkException("Interrupted while sending chunk!", e);
+            }
+            if (mTerminated) {
+                throw new NetworkException("MSRP channel is already closed!");
+            }
+            mWriteQueue.add(ByteBuffer.wrap(chunk));
+            mQueuedBytes += chunk.length;
+        }
+        if (MsrpConnection.isMsrpTraceEnabled()) {
+            System.out.println(">>> Send MSRP message:\n" + new String(chunk, UTF8));
+        }
+        mSelector.execute(mEnableWriteTask);
+    }
+
+    /**
+     * Register the channel to a selector, called from the selector thread
+     *
+     * @param selector Selector
+     * @throws IOException
+     */
+    /* package private */void register(Selector selector) throws IOException {
+        if (mTerminated) {
+            return;
+        }
+        int ops = SelectionKey.OP_READ;
+        synchronized (mWriteQueue) {
+            if (!mWriteQueue.isEmpty()) {
+                ops |= SelectionKey.OP_WRITE;
+            }
+        }
+        mKey = mChannel.register(selector, ops, this);
+        mLastReadTimestamp = System.currentTimeMillis();
+    }
+
+    /**
+     * Read available data, called from the selector thread
+     */
+    /* package private */void onReadable() {
+        try {
+            if (mReadBuffer == null) {
+                mReadBuffer = MsrpBufferPool.acquire();
+            }
+            int nbRead = mChannel.read(mReadBuffer);
+            if (nbRead == -1) {
+                if (MsrpConnection.isMsrpTraceEnabled()) {
+                    System.out.println("<<< End of stream");
+                }
+                setInterest(SelectionKey.OP_READ, false);
+                mConnection.onTransportFailure();
+                return;
+            }
+            mLastReadTimestamp = System.currentTimeMillis();
+            mReadBuffer.flip();
+            FrameTask lastTask = null;
+            FrameTask task = obtainFrameTask();
+            while (mDecoder.decode(mReadBuffer, task.mFrame)) {
+                if (lastTask != null) {
+                    enqueue(lastTask);
+                }
+                lastTask = task;
+                task = obtainFrameTask();
+            }
+            recycleFrameTask(task);
+            if (lastTask != null) {
+                /*
+                 * The decoded frames reference the read buffer: the bytes of the next frame are
+                 * moved to another buffer and the current one is released with the last frame.
+                 */
+                lastTask.mReleasedBuffer = mReadBuffer;
+                mReadBuffer = switchReadBuffer(mReadBuffer);
+                enqueue(lastTask);
+            } else {
+                mReadBuffer.compact();
+                if (!mReadBuffer.hasRemaining()) {
+                    /* The pending frame is larger than the buffer */
+                    ByteBuffer buffer = ByteBuffer.allocate(mReadBuffer.capacity() * 2);
+                    mReadBuffer.flip();
+                    buffer.put(mReadBuffer);
+                    MsrpBufferPool.release(mReadBuffer);
+                    mReadBuffer = buffer;
+                }
+            }
+            if (getPendingFrames() >= MAX_PENDING_FRAMES) {
+                mReadSuspended = true;
+                setInterest(SelectionKey.OP_READ, false);
+            }
+        } catch (PayloadException e) {
+            if (MsrpConnection.isMsrpTraceEnabled()) {
+                System.out.println("<<< Not a MSRP message");
+            }
+            sLogger.error("Unable to receive chunks!", e);
+            setInterest(SelectionKey.OP_READ, false);
+
+        } catch (IOException e) {
+            setInterest(SelectionKey.OP_READ, false);
+            onError(new NetworkException("Failed to read chunk data!", e));
+        }
+    }
+
+    /**
+     * Write queued chunks, called from the selector thread
+     */
+    /* package private */void onWritable() {
+        try {
+            synchronized (mWriteQueue) {
+                while (!mWriteQueue.isEmpty()) {
+                    ByteBuffer buffer = mWriteQueue.getFirst();
+                    mChannel.write(buffer);
+                    if (buffer.hasRemaining()) {
+                        return;
+                    }
+                    mWriteQueue.removeFirst();
+                    mQueuedBytes -= buffer.capacity();
+                    mWriteQueue.notifyAll();
+                }
+                setInterest(SelectionKey.OP_WRITE, false);
+            }
+        } catch (IOException e) {
+            setInterest(SelectionKey.OP_WRITE, false);
+            if (!mTerminated) {
+                NetworkException error = new NetworkException("Failed to write data!", e);
+                if (sLogger.isActivated()) {
+                    sLogger.debug(error.getMessage());
+                }
+                /* Notify the msrp session listener that an error has occured */
+                enqueue(new ErrorTask(error, false));
+            }
+        }
+    }
+
+    /**
+     * Check if the read timeout has expired, called from the selector thread
+     *
+     * @param now Current time in milliseconds
+     */
+    /* package private */void checkReadTimeout(long now) {
+        if (mReadTimeout > 0 && !mReadSuspended && !mReceiveFailed && mKey != null
+                && mKey.isValid() && (mKey.interestOps() & SelectionKey.OP_READ) != 0
+                && (now - mLastReadTimestamp) > mReadTimeout) {
+            setInterest(SelectionKey.OP_READ, false);
+            onError(new NetworkException("Read timed out after " + mReadTimeout + "ms!"));
+        }
+    }
+
+    /**
+     * Notify a receiving error to the session
+     *
+     * @param error Exception
+     */
+    /* package private */void onError(NetworkException error) {
+        if (sLogger.isActivated()) {
+            sLogger.debug(error.getMessage());
+        }
+        mConnection.onTransportFailure();
+        enqueue(new ErrorTask(error, true));
+    }
+
+    private void setInterest(int op, boolean enabled) {
+        if (mKey == null || !mKey.isValid()) {
+            return;
+        }
+        int ops = mKey.interestOps();
+        mKey.interestOps(enabled ? (ops | op) : (ops & ~op));
+    }
+
+    private int getPendingFrames() {
+        synchronized (mDispatchQueue) {
+            return mDispatchQueue.size();
+        }
+    }
+
+    /**
+     * Move the bytes remaining in the read buffer to a new one
+     *
+     * @param buffer Read buffer in read mode
+     * @return New read buffer in write mode or null if there is no remaining byte
+     */
+    private static ByteBuffer switchReadBuffer(ByteBuffer buffer) {
+        int remaining = buffer.remaining();
+        if (remaining == 0) {
+            /* Next read buffer is only acquired when data are available */
+            return null;
+        }
+        ByteBuffer newBuffer = (remaining > MsrpBufferPool.BUFFER_SIZE / 2) ? ByteBuffer
+                .allocate(Math.max(buffer.capacity(), MsrpBufferPool.BUFFER_SIZE)) : MsrpBufferPool
+                .acquire();
+        newBuffer.put(buffer);
+        return newBuffer;
+    }
+
+    private FrameTask obtainFrameTask() {
+        FrameTask task;
+        synchronized (mFreeFrameTasks) {
+            task = mFreeFrameTasks.poll();
+        }
+        return (task != null) ? task : new FrameTask();
+    }
+
+    private void recycleFrameTask(FrameTask task) {
+        task.mFrame.clear();
+        task.mReleasedBuffer = null;
+        synchronized (mFreeFrameTasks) {
+            mFreeFrameTasks.add(task);
+        }
+    }
+
+    /**
+     * Queue a task to be delivered to the session, tasks of a channel are executed one at a time
+     * and in order.
+     */
+    private void enqueue(Runnable task) {
+        synchronized (mDispatchQueue) {
+            mDispatchQueue.add(task);
+            if (mDispatching) {
+                return;
+            }
+            mDispatching = true;
+        }
+        mSelector.dispatch(new Runnable() {
+            @Override
+            public void run() {
+                drainDispatchQueue();
+            }
+        });
+    }
+
+    private void drainDispatchQueue() {
+        while (true) {
+            Runnable task;
+            synchronized (mDispatchQueue) {
+                task = mDispatchQueue.peek();
+                if (task == null) {
+                    mDispatching = false;
+                    return;
+                }
+            }
+            try {
+                task.run();
+            } finally {
+                synchronized (mDispatchQueue) {
+                    mDispatchQueue.poll();
+                }
+                if (mReadSuspended) {
+                    mSelector.execute(mResumeReadTask);
+                }
+            }
+        }
+    }
+
+    private void processFrame(MsrpFrame frame) {
+        if (mReceiveFailed || mTerminated) {
+            return;
+        }
+        try {
+            MsrpSession session = mConnection.getSession(frame);
+            if (session == null) {
+                if (MsrpConnection.isMsrpTraceEnabled()) {
+                    System.out.println("<<< No MSRP session for this message");
+                }
+                return;
+            }
+            session.receiveMsrpFrame(frame);
+
+        } catch (FileAccessException | ContactManagerException | PayloadException
+                | RuntimeException e) {
+            /*
+             * Intentionally catch runtime exceptions as else it will abruptly end the dispatching
+             * thread.
+             */
+            sLogger.error("Unable to receive chunks!", e);
+            notifyError(e.getMessage(), true);
+
+        } catch (NetworkException e) {
+            if (sLogger.isActivated()) {
+                sLogger.debug(e.getMessage());
+            }
+            notifyError(e.getMessage(), true);
+        }
+    }
+
+    private void notifyError(String error, boolean receiving) {
+        if (mTerminated || mReceiveFailed) {
+            return;
+        }
+        for (MsrpSession session : mConnection.getSessions()) {
+            /* Notify the session listener that an error has occured */
+            session.getMsrpEventListener().msrpTransferError(null, error, TypeMsrpChunk.Unknown);
+            if (receiving) {
+                /* Check transaction info data */
+                session.checkMsrpTransactionInfo();
+            }
+        }
+        if (receiving) {
+            mReceiveFailed = true;
+        }
+    }
+
+    /**
+     * Task delivering a decoded frame to the session, recycled once the frame has been processed
+     */
+    private class FrameTask implements Runnable {
+
+        private final MsrpFrame mFrame = new MsrpFrame();
+
+        /**
+         * Read buffer to be released to the pool once the frame has been processed
+         */
+        private ByteBuffer mReleasedBuffer;
+
+        @Override
+        public void run() {
+            ByteBuffer releasedBuffer = mReleasedBuffer;
+            try {
+                processFrame(mFrame);
+            } finally {
+                recycleFrameTask(this);
+                if (releasedBuffer != null) {
+                    MsrpBufferPool.release(releasedBuffer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Task notifying an I/O error to the session
+     */
+    private class ErrorTask implements Runnable {
+
+        private final NetworkException mError;
+
+        private final boolean mReceiving;
+
+        public ErrorTask(NetworkException error, boolean receiving) {
+            mError = error;
+            mReceiving = receiving;
+        }
+
+        @Override
+        public void run() {
+            notifyError(mError.getMessage(), mReceiving);
+        }
+    }
+}
@@ -26,8 +26,13 @@ import com.gsma.rcs.core.ims.network.NetworkException;
 import com.gsma.rcs.core.ims.protocol.PayloadException;
 import com.gsma.rcs.platform.network.NetworkFactory;
 import com.gsma.rcs.platform.network.SocketConnection;
+import com.gsma.rcs.utils.CloseableUtils;
 import com.gsma.rcs.utils.logger.Logger;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+
 /**
  * MSRP client connection
  * 
@@ -147,4 +152,35 @@ public class MsrpClientConnection extends MsrpConnection {
         }
         return socket;
     }
+
+    /**
+     * Returns a connected socket channel to be used in NIO transport mode
+     * 
+     * @return Socket channel or null for a secured connection as TLS is only supported by the
+     *         blocking socket connection
+     * @throws NetworkException
+     */
+    @Override
+    public SocketChannel getSocketChannel() throws NetworkException {
+        if (secured) {
+            return null;
+        }
+        if (logger.isActivated()) {
+            logger.debug("Open client socket channel to " + remoteAddress + ":" + remotePort);
+        }
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            channel.connect(new InetSocketAddress(remoteAddress, remotePort));
+        } catch (IOException e) {
+            CloseableUtils.tryToClose(channel);
+            throw new NetworkException(new StringBuilder(
+                    "Failed to open socket channel for address : ").append(remoteAddress)
+                    .append(" and port : ").append(remotePort).toString(), e);
+        }
+        if (logger.isActivated()) {
+            logger.debug("Socket channel connected to " + remoteAddress + ":" + remotePort);
+        }
+        return channel;
+    }
 }
@@ -30,6 +30,9 @@ import com.gsma.rcs.utils.logger.Logger;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.SocketChannel;
+import java.util.Collection;
+import java.util.Collections;
 
 /**
  * Abstract MSRP connection between two end points
@@ -40,6 +43,8 @@ public abstract class MsrpConnection {
 
     private static boolean sMsrpTraceEnabled = false;
 
+    private static boolean sNioTransportEnabled = false;
+
     private MsrpSession mSession;
 
     private SocketConnection mSocket;
@@ -58,6 +63,11 @@ public abstract class MsrpConnection {
      */
     private ChunkSender mSender;
 
+    /**
+     * Non-blocking channel used instead of the chunk receiver and sender in NIO transport mode
+     */
+    private MsrpChannel mChannel;
+
     private static final Logger sLogger = Logger.getLogger(MsrpConnection.class.getName());
 
     /**
@@ -78,6 +88,35 @@ public abstract class MsrpConnection {
         return mSession;
     }
 
+    /**
+     * Returns the MSRP session to which a received frame is delivered
+     * 
+     * @param frame Received frame
+     * @return MSRP session or null if the frame does not belong to any session of the connection
+     */
+    /* package private */MsrpSession getSession(MsrpFrame frame) {
+        return mSession;
+    }
+
+    /**
+     * Returns the MSRP sessions notified of the transport errors of the connection
+     * 
+     * @return MSRP sessions
+     */
+    /* package private */Collection<MsrpSession> getSessions() {
+        if (mSession == null) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(mSession);
+    }
+
+    /**
+     * Called when the connection stops receiving data because the remote end has closed it or a
+     * transport error has occurred
+     */
+    /* package private */void onTransportFailure() {
+    }
+
     /**
      * Open the connection
      * 
@@ -85,6 +124,9 @@ public abstract class MsrpConnection {
      * @throws PayloadException
      */
     public void open() throws NetworkException, PayloadException {
+        if (openChannel(0)) {
+            return;
+        }
         // Open socket connection
         mSocket = getSocketConnection();
         // Open I/O stream
@@ -109,6 +151,9 @@ public abstract class MsrpConnection {
      * @throws PayloadException
      */
     public void open(long timeout) throws NetworkException, PayloadException {
+        if (openChannel(timeout)) {
+            return;
+        }
         // Open socket connection
         mSocket = getSocketConnection();
         // Set SoTimeout
@@ -127,10 +172,38 @@ public abstract class MsrpConnection {
         }
     }
 
+    /**
+     * Open the connection as a non-blocking channel handled by the MSRP selector if the NIO
+     * transport mode is activated and supported by the connection
+     * 
+     * @param timeout Read timeout value (in milliseconds) or 0 for no timeout
+     * @return True if the channel has been opened
+     * @throws NetworkException
+     */
+    private boolean openChannel(long timeout) throws NetworkException {
+        if (!sNioTransportEnabled) {
+            return false;
+        }
+        SocketChannel socketChannel = getSocketChannel();
+        if (socketChannel == null) {
+            return false;
+        }
+        mChannel = new MsrpChannel(this, socketChannel, MsrpSelector.getInstance());
+        mChannel.setReadTimeout(timeout);
+        mChannel.open();
+        if (sLogger.isActivated()) {
+            sLogger.debug("Channel has been opened");
+        }
+        return true;
+    }
+
     /**
      * Close the connection
      */
     public void close() {
+        if (mChannel != null) {
+            mChannel.close();
+        }
         if (mSender != null) {
             mSender.terminate();
         }
@@ -155,6 +228,10 @@ public abstract class MsrpConnection {
      * @throws NetworkException
      */
     public void sendChunk(byte chunk[]) throws NetworkException {
+        if (mChannel != null) {
+            mChannel.sendChunk(chunk);
+            return;
+        }
         if (mSender == null) {
             throw new NetworkException("ChunkSender is already closed!");
         }
@@ -168,6 +245,10 @@ public abstract class MsrpConnection {
      * @throws NetworkException
      */
     public void sendChunkImmediately(byte chunk[]) throws NetworkException {
+        if (mChannel != null) {
+            mChannel.sendChunk(chunk);
+            return;
+        }
         mSender.sendChunkImmediately(chunk);
     }
 
@@ -181,6 +262,16 @@ public abstract class MsrpConnection {
     public abstract SocketConnection getSocketConnection() throws PayloadException,
             NetworkException;
 
+    /**
+     * Returns a connected socket channel to be used in NIO transport mode
+     * 
+     * @return Socket channel or null if the connection does not support the NIO transport mode
+     * @throws NetworkException
+     */
+    public SocketChannel getSocketChannel() throws NetworkException {
+        return null;
+    }
+
     /**
      * Checks if MSRP trace is enabled
      * 
@@ -198,4 +289,23 @@ public abstract class MsrpConnection {
     public static void setMsrpTraceEnabled(boolean enable) {
         sMsrpTraceEnabled = enable;
     }
+
+    /**
+     * Checks if the NIO transport mode is enabled
+     * 
+     * @return True if the MSRP connections are handled by the MSRP selector
+     */
+    public static boolean isNioTransportEnabled() {
+        return sNioTransportEnabled;
+    }
+
+    /**
+     * Sets the NIO transport mode enabled: new connections are then multiplexed on the MSRP
+     * selector thread instead of using a receiver and a sender thread per connection
+     * 
+     * @param enable True if the NIO transport mode is enabled
+     */
+    public static void setNioTransportEnabled(boolean enable) {
+        sNioTransportEnabled = enable;
+    }
 }
@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.core.ims.protocol.msrp;
+
+import com.gsma.rcs.core.ims.network.NetworkException;
+import com.gsma.rcs.core.ims.protocol.PayloadException;
+import com.gsma.rcs.utils.logger.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Pool of the MSRP client connections shared by the sessions established through the same remote
+ * end point. A connection is closed once no session has used it for {@link #IDLE_TIMEOUT}.
+ */
+public class MsrpConnectionPool {
+
+    /**
+     * Time in milliseconds after which a connection without any session is closed
+     */
+    private static final long IDLE_TIMEOUT = 30000;
+
+    private static MsrpConnectionPool sInstance;
+
+    private final Map<String, SharedMsrpConnection> mConnections = new HashMap<>();
+
+    private final Timer mTimer = new Timer(MsrpConnectionPool.class.getSimpleName(), true);
+
+    private static final Logger sLogger = Logger.getLogger(MsrpConnectionPool.class
+            .getSimpleName());
+
+    private MsrpConnectionPool() {
+    }
+
+    /**
+     * Returns the pool instance
+     * 
+     * @return Pool
+     */
+    public static synchronized MsrpConnectionPool getInstance() {
+        if (sInstance == null) {
+            sInstance = new MsrpConnectionPool();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Terminate the pool instance if any and close all its connections
+     */
+    public static synchronized void terminateInstance() {
+        if (sInstance != null) {
+            sInstance.terminate();
+            sInstance = null;
+        }
+    }
+
+    /**
+     * Acquire a connection to a remote end point for a session, the connection is opened if there
+     * is no usable one in the pool
+     * 
+     * @param session MSRP session
+     * @param remoteAddress Remote IP address
+     * @param remotePort Remote port number
+     * @param secured Secured media flag
+     * @param fingerprint fingerprint announced in SDP
+     * @return Opened connection
+     * @throws NetworkException
+     * @throws PayloadException
+     */
+    public SharedMsrpConnection acquire(MsrpSession session, String remoteAddress,
+            int remotePort, boolean secured, String fingerprint) throws NetworkException,
+            PayloadException {
+        String sessionId = MsrpUtils.getSessionId(session.getFrom());
+        if (sessionId == null) {
+            throw new PayloadException("No session-id in local MSRP path : " + session.getFrom());
+        }
+        String key = new StringBuilder(remoteAddress).append(':').append(remotePort).append(':')
+                .append(secured).append(':').append(fingerprint).toString();
+        SharedMsrpConnection connection = addSession(key, sessionId, session);
+        if (connection != null) {
+            if (sLogger.isActivated()) {
+                sLogger.debug("Reuse MSRP connection to " + key);
+            }
+            return connection;
+        }
+        /* The connection is opened outside of the pool lock as it may take a while */
+        SharedMsrpConnection newConnection = new SharedMsrpConnection(this, key, remoteAddress,
+                remotePort, secured, fingerprint);
+        newConnection.open();
+        synchronized (this) {
+            connection = addSession(key, sessionId, session);
+            if (connection == null) {
+                mConnections.put(key, newConnection);
+                newConnection.addSession(sessionId, session);
+                return newConnection;
+            }
+        }
+        /* Another session has opened a connection meanwhile */
+        newConnection.close();
+        return connection;
+    }
+
+    private synchronized SharedMsrpConnection addSession(String key, String sessionId,
+            MsrpSession session) {
+        SharedMsrpConnection connection = mConnections.get(key);
+        if (connection == null || connection.isFailed()) {
+            return null;
+        }
+        connection.addSession(sessionId, session);
+        connection.setIdleTimestamp(0);
+        return connection;
+    }
+
+    /**
+     * Release a connection acquired for a session
+     * 
+     * @param connection Connection
+     * @param session MSRP session
+     */
+    public void release(SharedMsrpConnection connection, MsrpSession session) {
+        String sessionId = MsrpUtils.getSessionId(session.getFrom());
+        synchronized (this) {
+            if (!connection.removeSession(sessionId)) {
+                return;
+            }
+            if (mConnections.get(connection.getKey()) == connection) {
+                connection.setIdleTimestamp(System.currentTimeMillis());
+                mTimer.schedule(new TimerTask() {
+                    @Override
+                    public void run() {
+                        closeIdleConnections();
+                    }
+                }, IDLE_TIMEOUT);
+                return;
+            }
+        }
+        /* The connection has already been removed from the pool */
+        connection.close();
+    }
+
+    /**
+     * Remove a connection from the pool after a transport failure
+     * 
+     * @param connection Connection
+     */
+    /* package private */void remove(SharedMsrpConnection connection) {
+        synchronized (this) {
+            if (mConnections.get(connection.getKey()) != connection) {
+                return;
+            }
+            mConnections.remove(connection.getKey());
+            if (!connection.getSessions().isEmpty()) {
+                /* Closed once released by its last session */
+                return;
+            }
+        }
+        connection.close();
+    }
+
+    private void closeIdleConnections() {
+        List<SharedMsrpConnection> idleConnections = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Iterator<SharedMsrpConnection> iterator = mConnections.values().iterator();
+            while (iterator.hasNext()) {
+                SharedMsrpConnection connection = iterator.next();
+                long idleTimestamp = connection.getIdleTimestamp();
+                if (idleTimestamp > 0 && now - idleTimestamp >= IDLE_TIMEOUT) {
+                    iterator.remove();
+                    idleConnections.add(connection);
+                }
+            }
+        }
+        for (SharedMsrpConnection connection : idleConnections) {
+            if (sLogger.isActivated()) {
+                sLogger.debug("Close idle MSRP connection to " + connection.getKey());
+            }
+            connection.close();
+        }
+    }
+
+    private void terminate() {
+        mTimer.cancel();
+        List<SharedMsrpConnection> connections;
+        synchronized (this) {
+            connections = new ArrayList<>(mConnections.values());
+            mConnections.clear();
+        }
+        for (SharedMsrpConnection connection : connections) {
+            connection.close();
+        }
+    }
+}
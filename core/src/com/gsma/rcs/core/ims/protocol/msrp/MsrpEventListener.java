@@ -45,7 +45,7 @@ public interface MsrpEventListener {
      * Data has been received
      * 
      * @param msgId Message ID
-     * @param data Received data
+     * @param data Received data or null if it has been written to the receive sink of the session
      * @param mimeType Data mime-type
      * @throws PayloadException
      * @throws NetworkException
@@ -67,7 +67,8 @@ public interface MsrpEventListener {
      * 
      * @param currentSize Current transfered size in bytes
      * @param totalSize Total size in bytes
-     * @param data received data chunk
+     * @param data received data chunk or null if it has been written to the receive sink of the
+     *            session
      * @return true if data are processed and can be delete in cache. If false, so data were stored
      *         in MsrpSession cache until msrpDataReceived is called.
      */
@@ -0,0 +1,429 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.core.ims.protocol.msrp;
+
+import static com.gsma.rcs.utils.StringUtils.UTF8;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Hashtable;
+
+/**
+ * MSRP frame (request or response) decoded by the {@link MsrpFrameDecoder}. The frame is a
+ * reusable view over the buffer it has been decoded from: header values and data chunk are kept as
+ * offsets in this buffer and are only converted into strings when requested. A frame is therefore
+ * only valid until its buffer is reused. The data chunk of a large request is delivered by pieces,
+ * see {@link #isPartial()}.
+ */
+public class MsrpFrame {
+
+    /**
+     * Number of offsets stored per header: name start, name end, value start and value end
+     */
+    private static final int HEADER_OFFSETS = 4;
+
+    private static final int DEFAULT_MAX_HEADERS = 16;
+
+    private ByteBuffer mBuffer;
+
+    private byte[] mArray;
+
+    private int mFrameStart;
+
+    private int mFrameEnd;
+
+    private int mTxIdStart;
+
+    private int mTxIdEnd;
+
+    private String mTxId;
+
+    private int mMethodStart;
+
+    private int mMethodEnd;
+
+    private int mResponseCode;
+
+    private int[] mHeaderOffsets = new int[DEFAULT_MAX_HEADERS * HEADER_OFFSETS];
+
+    private int mHeaderCount;
+
+    private byte[] mDataArray;
+
+    private int mDataOffset;
+
+    private int mDataLength;
+
+    private int mContinuationFlag;
+
+    private boolean mPartial;
+
+    private long mFirstByte;
+
+    private long mLastByte;
+
+    private long mTotalSize;
+
+    /**
+     * Reset the frame before decoding a new one
+     *
+     * @param buffer Buffer the frame is decoded from
+     * @param frameStart Offset of the frame in the buffer array
+     */
+    /* package private */void reset(ByteBuffer buffer, int frameStart) {
+        mBuffer = buffer;
+        mArray = buffer.array();
+        mFrameStart = frameStart;
+        mFrameEnd = frameStart;
+        mTxId = null;
+        mMethodStart = mMethodEnd = 0;
+        mResponseCode = -1;
+        mHeaderCount = 0;
+        mDataArray = mArray;
+        mDataOffset = 0;
+        mDataLength = -1;
+        mContinuationFlag = '\0';
+        mPartial = false;
+        mFirstByte = mLastByte = mTotalSize = -1;
+    }
+
+    /**
+     * Release the reference to the buffer
+     */
+    /* package private */void clear() {
+        mBuffer = null;
+        mArray = null;
+        mDataArray = null;
+        mTxId = null;
+    }
+
+    /* package private */void setTransactionId(int start, int end) {
+        mTxIdStart = start;
+        mTxIdEnd = end;
+    }
+
+    /* package private */void setMethod(int start, int end) {
+        mMethodStart = start;
+        mMethodEnd = end;
+    }
+
+    /* package private */void setResponseCode(int code) {
+        mResponseCode = code;
+    }
+
+    /* package private */void addHeader(int nameStart, int nameEnd, int valueStart, int valueEnd) {
+        int index = mHeaderCount * HEADER_OFFSETS;
+        if (index + HEADER_OFFSETS > mHeaderOffsets.length) {
+            int[] offsets = new int[mHeaderOffsets.length * 2];
+            System.arraycopy(mHeaderOffsets, 0, offsets, 0, mHeaderOffsets.length);
+            mHeaderOffsets = offsets;
+        }
+        mHeaderOffsets[index] = nameStart;
+        mHeaderOffsets[index + 1] = nameEnd;
+        mHeaderOffsets[index + 2] = valueStart;
+        mHeaderOffsets[index + 3] = valueEnd;
+        mHeaderCount++;
+    }
+
+    /* package private */void setByteRange(long firstByte, long lastByte, long totalSize) {
+        mFirstByte = firstByte;
+        mLastByte = lastByte;
+        mTotalSize = totalSize;
+    }
+
+    /* package private */void setData(int offset, int length) {
+        setData(mArray, offset, length);
+    }
+
+    /* package private */void setData(byte[] array, int offset, int length) {
+        mDataArray = array;
+        mDataOffset = offset;
+        mDataLength = length;
+    }
+
+    /* package private */void setEnd(int continuationFlag, int frameEnd) {
+        mContinuationFlag = continuationFlag;
+        mFrameEnd = frameEnd;
+    }
+
+    /* package private */void setPartial(int frameEnd) {
+        mPartial = true;
+        mFrameEnd = frameEnd;
+    }
+
+    /**
+     * Returns the buffer the frame has been decoded from
+     *
+     * @return Buffer
+     */
+    public ByteBuffer getBuffer() {
+        return mBuffer;
+    }
+
+    /**
+     * Returns the transaction ID
+     *
+     * @return Transaction ID
+     */
+    public String getTransactionId() {
+        if (mTxId == null) {
+            mTxId = new String(mArray, mTxIdStart, mTxIdEnd - mTxIdStart, UTF8);
+        }
+        return mTxId;
+    }
+
+    /**
+     * Returns the method name
+     *
+     * @return Method or null if the frame is a response
+     */
+    public String getMethod() {
+        if (isResponse()) {
+            return null;
+        }
+        return new String(mArray, mMethodStart, mMethodEnd - mMethodStart, UTF8);
+    }
+
+    /**
+     * Checks the method of a request
+     *
+     * @param method Method name
+     * @return True if the frame is a request of this method
+     */
+    public boolean isMethod(String method) {
+        return !isResponse() && regionEquals(mMethodStart, mMethodEnd, method, false);
+    }
+
+    /**
+     * Returns the response code
+     *
+     * @return Response code or -1 if the frame is a request
+     */
+    public int getResponseCode() {
+        return mResponseCode;
+    }
+
+    /**
+     * Is a response
+     *
+     * @return True if the frame is a response
+     */
+    public boolean isResponse() {
+        return mResponseCode != -1;
+    }
+
+    private int indexOfHeader(String name) {
+        for (int i = 0; i < mHeaderCount; i++) {
+            int index = i * HEADER_OFFSETS;
+            if (regionEquals(mHeaderOffsets[index], mHeaderOffsets[index + 1], name, true)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the value of a header
+     *
+     * @param name Header name
+     * @return Value or null if the header is not present
+     */
+    public String getHeader(String name) {
+        int index = indexOfHeader(name);
+        if (index == -1) {
+            return null;
+        }
+        int start = mHeaderOffsets[index + 2];
+        return new String(mArray, start, mHeaderOffsets[index + 3] - start, UTF8);
+    }
+
+    /**
+     * Checks the value of a header without creating any string
+     *
+     * @param name Header name
+     * @param value Expected value, compared ignoring case
+     * @return True if the header is present with this value
+     */
+    public boolean isHeaderValue(String name, String value) {
+        int index = indexOfHeader(name);
+        return index != -1
+                && regionEquals(mHeaderOffsets[index + 2], mHeaderOffsets[index + 3], value, true);
+    }
+
+    /**
+     * Write the value of a header
+     *
+     * @param name Header name
+     * @param out Output stream
+     * @return False if the header is not present
+     */
+    public boolean writeHeader(String name, ByteArrayOutputStream out) {
+        int index = indexOfHeader(name);
+        if (index == -1) {
+            return false;
+        }
+        int start = mHeaderOffsets[index + 2];
+        out.write(mArray, start, mHeaderOffsets[index + 3] - start);
+        return true;
+    }
+
+    /**
+     * Returns all the headers
+     *
+     * @return Headers
+     */
+    public Hashtable<String, String> getHeaders() {
+        Hashtable<String, String> headers = new Hashtable<String, String>();
+        for (int i = 0; i < mHeaderCount; i++) {
+            int index = i * HEADER_OFFSETS;
+            int nameStart = mHeaderOffsets[index];
+            int valueStart = mHeaderOffsets[index + 2];
+            headers.put(new String(mArray, nameStart, mHeaderOffsets[index + 1] - nameStart, UTF8),
+                    new String(mArray, valueStart, mHeaderOffsets[index + 3] - valueStart, UTF8));
+        }
+        return headers;
+    }
+
+    /**
+     * Returns the first byte of the Byte-Range header
+     *
+     * @return First byte or -1 if unknown
+     */
+    public long getFirstByte() {
+        return mFirstByte;
+    }
+
+    /**
+     * Returns the last byte of the Byte-Range header
+     *
+     * @return Last byte or -1 if unknown
+     */
+    public long getLastByte() {
+        return mLastByte;
+    }
+
+    /**
+     * Returns the total size of the content
+     *
+     * @return Size in bytes or -1 if unknown
+     */
+    public long getTotalSize() {
+        return mTotalSize;
+    }
+
+    /**
+     * Returns the continuation flag
+     *
+     * @return Flag or '\0' if the frame is partial
+     */
+    public int getContinuationFlag() {
+        return mContinuationFlag;
+    }
+
+    /**
+     * Is a piece of a data chunk still being received. The Byte-Range of the frame is the one of
+     * the piece and the next frames decoded carry the rest of the data chunk with the same headers,
+     * the last one being terminated by the end-line.
+     *
+     * @return True if the frame is partial
+     */
+    public boolean isPartial() {
+        return mPartial;
+    }
+
+    /**
+     * Has a data chunk
+     *
+     * @return True if the frame has a body
+     */
+    public boolean hasData() {
+        return mDataLength != -1;
+    }
+
+    /**
+     * Returns the array holding the data chunk
+     *
+     * @return Array
+     */
+    public byte[] getDataArray() {
+        return mDataArray;
+    }
+
+    /**
+     * Returns the offset of the data chunk in the array
+     *
+     * @return Offset
+     */
+    public int getDataOffset() {
+        return mDataOffset;
+    }
+
+    /**
+     * Returns the length of the data chunk
+     *
+     * @return Length or -1 if the frame has no body
+     */
+    public int getDataLength() {
+        return mDataLength;
+    }
+
+    /**
+     * Returns a copy of the data chunk
+     *
+     * @return Data or null if the frame has no body
+     */
+    public byte[] getData() {
+        if (!hasData()) {
+            return null;
+        }
+        byte[] data = new byte[mDataLength];
+        System.arraycopy(mDataArray, mDataOffset, data, 0, mDataLength);
+        return data;
+    }
+
+    /**
+     * Returns the raw frame for MSRP trace
+     *
+     * @return Trace
+     */
+    public String getTrace() {
+        return new String(mArray, mFrameStart, mFrameEnd - mFrameStart, UTF8);
+    }
+
+    private boolean regionEquals(int start, int end, String value, boolean ignoreCase) {
+        int length = value.length();
+        if (end - start != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            int c1 = mArray[start + i];
+            int c2 = value.charAt(i);
+            if (c1 != c2) {
+                if (!ignoreCase || toLowerCase(c1) != toLowerCase(c2)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static int toLowerCase(int c) {
+        return (c >= 'A' && c <= 'Z') ? c + ('a' - 'A') : c;
+    }
+}
@@ -0,0 +1,539 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.core.ims.protocol.msrp;
+
+import com.gsma.rcs.core.ims.protocol.PayloadException;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Incremental MSRP frame decoder. Headers are scanned directly over the bytes accumulated in the
+ * buffer and the decoded {@link MsrpFrame} only references them by offset, so decoding a frame does
+ * not allocate any object. A frame is only consumed from the buffer once it has been completely
+ * received, except a large data chunk which is streamed by partial frames as it is received
+ * instead of being buffered entirely.
+ */
+public class MsrpFrameDecoder {
+
+    /**
+     * Maximum size of the first line and the headers of a frame
+     */
+    public static final int MAX_HEADERS_SIZE = 16 * 1024;
+
+    /**
+     * Number of received data bytes of a frame from which they are delivered in a partial frame
+     */
+    /* package private */static final int STREAMING_THRESHOLD = MsrpBufferPool.BUFFER_SIZE / 2;
+
+    private static final int CRLF_LENGTH = 2;
+
+    /**
+     * Continuation flag followed by CRLF
+     */
+    private static final int END_LINE_TAIL_LENGTH = 3;
+
+    private static final int END_TAG_PREFIX_LENGTH = MsrpConstants.END_MSRP_MSG.length();
+
+    private static final int STATUS_CODE_LENGTH = 3;
+
+    private static final long INVALID_VALUE = -1;
+
+    /**
+     * Marker of a "*" value in the Byte-Range header
+     */
+    private static final long UNKNOWN_VALUE = -2;
+
+    /**
+     * Returned by decodeHead if more data are needed
+     */
+    private static final int MORE_DATA_NEEDED = -1;
+
+    /**
+     * Returned by decodeHead if the frame has been completed without data chunk
+     */
+    private static final int FRAME_COMPLETED = -2;
+
+    /**
+     * Offset (relative to the frame start) from which the search of the end-line has to be
+     * resumed, or -1 if no frame is pending
+     */
+    private int mResumeScanOffset = -1;
+
+    /**
+     * Transaction ID offset, transaction ID length and chunk size of the last decoded head
+     */
+    private int mTxIdStart;
+
+    private int mTxIdLength;
+
+    private long mChunkSize;
+
+    /**
+     * Copy of the first line and the headers of the frame whose data chunk is being streamed, or
+     * null if no data chunk is being streamed
+     */
+    private byte[] mStreamedHead;
+
+    private ByteBuffer mStreamedHeadBuffer;
+
+    private int mStreamedTxIdStart;
+
+    private int mStreamedTxIdLength;
+
+    private long mStreamedChunkSize;
+
+    /**
+     * Position in the content of the first byte of the streamed data chunk (starting at 1)
+     */
+    private long mStreamedFirstByte;
+
+    /**
+     * Number of bytes of the streamed data chunk already delivered
+     */
+    private long mStreamedLength;
+
+    /**
+     * Decode the next MSRP frame
+     *
+     * @param buffer Buffer in read mode backed by an array, the position is moved after the frame
+     *            if a complete frame is found, or after the data delivered if a partial frame is
+     *            returned
+     * @param frame Frame to be filled
+     * @return False if more data are needed
+     * @throws PayloadException
+     */
+    public boolean decode(ByteBuffer buffer, MsrpFrame frame) throws PayloadException {
+        if (mStreamedHead != null) {
+            return decodeStreamedData(buffer, frame);
+        }
+        byte[] array = buffer.array();
+        int offset = buffer.arrayOffset();
+        int start = offset + buffer.position();
+        int limit = offset + buffer.limit();
+        frame.reset(buffer, start);
+
+        int bodyStart = decodeHead(buffer, array, start, limit, frame);
+        if (bodyStart == MORE_DATA_NEEDED) {
+            if (limit - start > MAX_HEADERS_SIZE) {
+                throw new PayloadException("MSRP headers exceed maximum size of "
+                        + MAX_HEADERS_SIZE + " bytes!");
+            }
+            return false;
+        }
+        if (bodyStart == FRAME_COMPLETED) {
+            return true;
+        }
+        int txIdStart = mTxIdStart;
+        int txIdLength = mTxIdLength;
+        long chunkSize = mChunkSize;
+        int endLineLength = CRLF_LENGTH + END_TAG_PREFIX_LENGTH + txIdLength;
+        int bodyEnd = -1;
+        if (chunkSize > 0) {
+            /* Use Byte-Range value to jump directly to the end-line */
+            long expectedEnd = bodyStart + chunkSize;
+            if (expectedEnd + endLineLength + END_LINE_TAIL_LENGTH <= limit) {
+                if (isEndLine(array, (int) expectedEnd, array, txIdStart, txIdLength)) {
+                    bodyEnd = (int) expectedEnd;
+                }
+            } else if (limit - bodyStart < STREAMING_THRESHOLD) {
+                return false;
+            }
+        }
+        if (bodyEnd == -1) {
+            /* Read until terminating end-line is found */
+            bodyEnd = findEndLine(array, start, bodyStart, limit, array, txIdStart, txIdLength);
+            if (bodyEnd == -1) {
+                int scanEnd = getScanEnd(bodyStart, limit, endLineLength);
+                if (scanEnd - bodyStart >= STREAMING_THRESHOLD) {
+                    /* Deliver the data received so far and stream the rest of the data chunk */
+                    startStreaming(array, start, bodyStart, frame);
+                    deliverPartialData(buffer, frame, array, bodyStart, scanEnd - bodyStart,
+                            bodyStart);
+                    return true;
+                }
+                mResumeScanOffset = scanEnd - start;
+                return false;
+            }
+        }
+        int flagPos = bodyEnd + endLineLength;
+        if (flagPos + END_LINE_TAIL_LENGTH > limit) {
+            return false;
+        }
+        frame.setData(bodyStart, bodyEnd - bodyStart);
+        if (chunkSize < 0) {
+            frame.setByteRange(frame.getFirstByte(), frame.getLastByte(), bodyEnd - bodyStart);
+        }
+        complete(buffer, frame, array[flagPos], flagPos + END_LINE_TAIL_LENGTH);
+        return true;
+    }
+
+    /**
+     * Decode the first line and the headers of a frame
+     *
+     * @return Offset of the data chunk in the array, MORE_DATA_NEEDED or FRAME_COMPLETED if the
+     *         frame has no data chunk
+     * @throws PayloadException
+     */
+    private int decodeHead(ByteBuffer buffer, byte[] array, int start, int limit, MsrpFrame frame)
+            throws PayloadException {
+        /* First line: MSRP SP transact-id SP method or status-code [SP comment] */
+        int lineEnd = indexOfCrlf(array, start, limit);
+        if (lineEnd == -1) {
+            return MORE_DATA_NEEDED;
+        }
+        int txIdStart = start + MsrpConstants.MSRP_HEADER.length() + 1;
+        if (txIdStart >= lineEnd || !isMsrpHeader(array, start)) {
+            throw new PayloadException("Not a MSRP message!");
+        }
+        int txIdEnd = indexOf(array, txIdStart, lineEnd, MsrpConstants.CHAR_SP);
+        if (txIdEnd == -1 || txIdEnd == txIdStart) {
+            throw new PayloadException("Not a MSRP message!");
+        }
+        frame.setTransactionId(txIdStart, txIdEnd);
+        int methodStart = txIdEnd + 1;
+        int methodEnd = indexOf(array, methodStart, lineEnd, MsrpConstants.CHAR_SP);
+        if (methodEnd == -1) {
+            methodEnd = lineEnd;
+        }
+        if (methodEnd == methodStart) {
+            throw new PayloadException("Not a MSRP message!");
+        }
+        long code = (methodEnd - methodStart == STATUS_CODE_LENGTH) ? parseLong(array,
+                methodStart, methodEnd) : INVALID_VALUE;
+        if (code >= 0) {
+            frame.setResponseCode((int) code);
+        } else {
+            frame.setMethod(methodStart, methodEnd);
+        }
+        int txIdLength = txIdEnd - txIdStart;
+
+        /* Headers until the empty line or the end-line */
+        long chunkSize = INVALID_VALUE;
+        int pos = lineEnd + CRLF_LENGTH;
+        while (true) {
+            lineEnd = indexOfCrlf(array, pos, limit);
+            if (lineEnd == -1) {
+                return MORE_DATA_NEEDED;
+            }
+            if (lineEnd == pos) {
+                /* Empty line separating headers from the data */
+                break;
+            }
+            if (isEndTag(array, pos, lineEnd, array, txIdStart, txIdLength)) {
+                /* End-line without body */
+                int flagPos = pos + END_TAG_PREFIX_LENGTH + txIdLength;
+                int flag = (lineEnd > flagPos) ? array[flagPos] : '\0';
+                complete(buffer, frame, flag, lineEnd + CRLF_LENGTH);
+                return FRAME_COMPLETED;
+            }
+            int colon = indexOf(array, pos, lineEnd, MsrpConstants.CHAR_DOUBLE_POINT);
+            if (colon != -1) {
+                int nameStart = skipSpaces(array, pos, colon);
+                int nameEnd = trimSpaces(array, nameStart, colon);
+                int valueStart = skipSpaces(array, colon + 1, lineEnd);
+                int valueEnd = trimSpaces(array, valueStart, lineEnd);
+                frame.addHeader(nameStart, nameEnd, valueStart, valueEnd);
+                if (regionEquals(array, nameStart, nameEnd, MsrpConstants.HEADER_BYTE_RANGE)) {
+                    chunkSize = parseByteRange(array, valueStart, valueEnd, frame);
+                }
+            }
+            pos = lineEnd + CRLF_LENGTH;
+        }
+        mTxIdStart = txIdStart;
+        mTxIdLength = txIdLength;
+        mChunkSize = chunkSize;
+        return lineEnd + CRLF_LENGTH;
+    }
+
+    /**
+     * Decode the next piece of the data chunk being streamed
+     *
+     * @param buffer Buffer in read mode starting with the data
+     * @param frame Frame to be filled
+     * @return False if more data are needed
+     * @throws PayloadException
+     */
+    private boolean decodeStreamedData(ByteBuffer buffer, MsrpFrame frame)
+            throws PayloadException {
+        byte[] array = buffer.array();
+        int offset = buffer.arrayOffset();
+        int start = offset + buffer.position();
+        int limit = offset + buffer.limit();
+        byte[] head = mStreamedHead;
+        int endLineLength = CRLF_LENGTH + END_TAG_PREFIX_LENGTH + mStreamedTxIdLength;
+        int dataEnd = -1;
+        if (mStreamedChunkSize > 0) {
+            /* Use Byte-Range value to jump directly to the end-line */
+            long expectedEnd = start + mStreamedChunkSize - mStreamedLength;
+            if (expectedEnd >= start && expectedEnd + endLineLength + END_LINE_TAIL_LENGTH <= limit
+                    && isEndLine(array, (int) expectedEnd, head, mStreamedTxIdStart,
+                            mStreamedTxIdLength)) {
+                dataEnd = (int) expectedEnd;
+            }
+        }
+        if (dataEnd == -1) {
+            dataEnd = findEndLine(array, start, start, limit, head, mStreamedTxIdStart,
+                    mStreamedTxIdLength);
+            if (dataEnd == -1) {
+                int scanEnd = getScanEnd(start, limit, endLineLength);
+                if (scanEnd - start < STREAMING_THRESHOLD) {
+                    mResumeScanOffset = scanEnd - start;
+                    return false;
+                }
+                decodeStreamedHead(frame);
+                deliverPartialData(buffer, frame, array, start, scanEnd - start, head.length);
+                return true;
+            }
+        }
+        int flagPos = dataEnd + endLineLength;
+        decodeStreamedHead(frame);
+        int length = dataEnd - start;
+        long firstByte = mStreamedFirstByte + mStreamedLength;
+        long totalSize = (mStreamedChunkSize < 0) ? mStreamedLength + length : frame
+                .getTotalSize();
+        frame.setData(array, start, length);
+        frame.setByteRange(firstByte, frame.getLastByte(), totalSize);
+        frame.setEnd(array[flagPos], head.length);
+        buffer.position(flagPos + END_LINE_TAIL_LENGTH - offset);
+        mResumeScanOffset = -1;
+        mStreamedHead = null;
+        mStreamedHeadBuffer = null;
+        return true;
+    }
+
+    /**
+     * Keep a copy of the head of the frame whose data chunk is going to be streamed
+     */
+    private void startStreaming(byte[] array, int start, int bodyStart, MsrpFrame frame) {
+        mStreamedHead = Arrays.copyOfRange(array, start, bodyStart);
+        mStreamedHeadBuffer = ByteBuffer.wrap(mStreamedHead);
+        mStreamedTxIdStart = mTxIdStart - start;
+        mStreamedTxIdLength = mTxIdLength;
+        mStreamedChunkSize = mChunkSize;
+        /* Without Byte-Range the data chunk is the whole content */
+        mStreamedFirstByte = (frame.getFirstByte() > 0) ? frame.getFirstByte() : 1;
+        mStreamedLength = 0;
+    }
+
+    /**
+     * Decode again the head of the streamed frame into the frame
+     */
+    private void decodeStreamedHead(MsrpFrame frame) throws PayloadException {
+        frame.reset(mStreamedHeadBuffer, 0);
+        decodeHead(mStreamedHeadBuffer, mStreamedHead, 0, mStreamedHead.length, frame);
+    }
+
+    /**
+     * Deliver a piece of the streamed data chunk in a partial frame
+     */
+    private void deliverPartialData(ByteBuffer buffer, MsrpFrame frame, byte[] array,
+            int dataStart, int length, int frameEnd) {
+        long firstByte = mStreamedFirstByte + mStreamedLength;
+        frame.setData(array, dataStart, length);
+        frame.setByteRange(firstByte, firstByte + length - 1, frame.getTotalSize());
+        frame.setPartial(frameEnd);
+        mStreamedLength += length;
+        buffer.position(dataStart + length - buffer.arrayOffset());
+        mResumeScanOffset = -1;
+    }
+
+    /**
+     * Search the end-line of the data chunk
+     *
+     * @return Offset of the end-line or -1 if not received yet
+     */
+    private int findEndLine(byte[] array, int start, int bodyStart, int limit, byte[] txIdArray,
+            int txIdStart, int txIdLength) {
+        int scanFrom = bodyStart;
+        if (mResumeScanOffset != -1 && start + mResumeScanOffset > scanFrom) {
+            scanFrom = start + mResumeScanOffset;
+        }
+        int last = limit - CRLF_LENGTH - END_TAG_PREFIX_LENGTH - txIdLength
+                - END_LINE_TAIL_LENGTH;
+        for (int i = scanFrom; i <= last; i++) {
+            if (array[i] == MsrpConstants.CHAR_LF
+                    && isEndLine(array, i, txIdArray, txIdStart, txIdLength)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the offset up to which the data are known not to contain the end-line
+     */
+    private static int getScanEnd(int bodyStart, int limit, int endLineLength) {
+        return Math.max(bodyStart, limit - endLineLength - END_LINE_TAIL_LENGTH + 1);
+    }
+
+    private void complete(ByteBuffer buffer, MsrpFrame frame, int flag, int end) {
+        frame.setEnd(flag, end);
+        buffer.position(end - buffer.arrayOffset());
+        mResumeScanOffset = -1;
+    }
+
+    /**
+     * Parse the Byte-Range header value (range-start "-" range-end "/" total)
+     *
+     * @return Chunk size, 0 if the range end is unknown or -1 if the value is invalid
+     */
+    private static long parseByteRange(byte[] array, int start, int end, MsrpFrame frame) {
+        int dash = indexOf(array, start, end, MsrpConstants.CHAR_MIN);
+        int slash = indexOf(array, start, end, (byte) '/');
+        if (dash == -1 || slash == -1 || slash < dash) {
+            return INVALID_VALUE;
+        }
+        long firstByte = parseLong(array, start, dash);
+        long lastByte = parseLong(array, dash + 1, slash);
+        long totalSize = parseLong(array, slash + 1, end);
+        frame.setByteRange(Math.max(firstByte, INVALID_VALUE), Math.max(lastByte, INVALID_VALUE),
+                Math.max(totalSize, INVALID_VALUE));
+        if (firstByte < 0) {
+            return INVALID_VALUE;
+        }
+        if (lastByte == UNKNOWN_VALUE) {
+            return 0;
+        }
+        if (lastByte < 0) {
+            return INVALID_VALUE;
+        }
+        return lastByte - firstByte + 1;
+    }
+
+    /**
+     * Parse a positive decimal value
+     *
+     * @return Value, -2 for "*" or -1 if invalid
+     */
+    private static long parseLong(byte[] array, int start, int end) {
+        if (end - start == 1 && array[start] == '*') {
+            return UNKNOWN_VALUE;
+        }
+        if (start >= end) {
+            return INVALID_VALUE;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = array[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return INVALID_VALUE;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static boolean isMsrpHeader(byte[] array, int start) {
+        String header = MsrpConstants.MSRP_HEADER;
+        for (int i = 0; i < header.length(); i++) {
+            if (array[start + i] != header.charAt(i)) {
+                return false;
+            }
+        }
+        return array[start + header.length()] == MsrpConstants.CHAR_SP;
+    }
+
+    private static int indexOfCrlf(byte[] array, int from, int limit) {
+        for (int i = from; i < limit - 1; i++) {
+            if (array[i] == MsrpConstants.CHAR_LF && array[i + 1] == MsrpConstants.CHAR_CR) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(byte[] array, int from, int to, byte value) {
+        for (int i = from; i < to; i++) {
+            if (array[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipSpaces(byte[] array, int from, int to) {
+        while (from < to && (array[from] == ' ' || array[from] == '\t')) {
+            from++;
+        }
+        return from;
+    }
+
+    private static int trimSpaces(byte[] array, int from, int to) {
+        while (to > from && (array[to - 1] == ' ' || array[to - 1] == '\t')) {
+            to--;
+        }
+        return to;
+    }
+
+    private static boolean regionEquals(byte[] array, int start, int end, String value) {
+        int length = value.length();
+        if (end - start != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            int c = array[start + i];
+            int expected = value.charAt(i);
+            if (c != expected && Character.toLowerCase(c) != Character.toLowerCase(expected)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the line starting at the given position is the end tag of the transaction
+     */
+    private static boolean isEndTag(byte[] array, int pos, int lineEnd, byte[] txIdArray,
+            int txIdStart, int txIdLength) {
+        if (lineEnd - pos < END_TAG_PREFIX_LENGTH + txIdLength) {
+            return false;
+        }
+        for (int i = 0; i < END_TAG_PREFIX_LENGTH; i++) {
+            if (array[pos + i] != MsrpConstants.CHAR_MIN) {
+                return false;
+            }
+        }
+        pos += END_TAG_PREFIX_LENGTH;
+        for (int i = 0; i < txIdLength; i++) {
+            if (array[pos + i] != txIdArray[txIdStart + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the end-line (CRLF, end tag and continuation flag) starts at the given position
+     */
+    private static boolean isEndLine(byte[] array, int pos, byte[] txIdArray, int txIdStart,
+            int txIdLength) {
+        if (array[pos] != MsrpConstants.CHAR_LF || array[pos + 1] != MsrpConstants.CHAR_CR) {
+            return false;
+        }
+        int tagPos = pos + CRLF_LENGTH;
+        int flagPos = tagPos + END_TAG_PREFIX_LENGTH + txIdLength;
+        if (!isEndTag(array, tagPos, flagPos, txIdArray, txIdStart, txIdLength)) {
+            return false;
+        }
+        int flag = array[flagPos];
+        return flag == MsrpConstants.FLAG_LAST_CHUNK || flag == MsrpConstants.FLAG_MORE_CHUNK
+                || flag == MsrpConstants.FLAG_ABORT_CHUNK;
+    }
+}
@@ -37,6 +37,7 @@ import com.gsma.rcs.utils.logger.Logger;
 
 import java.io.InputStream;
 import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * MSRP manager
@@ -45,6 +46,12 @@ import java.util.Vector;
  */
 public class MsrpManager {
 
+    /**
+     * Session-ids must be unique as they identify the sessions sharing a MSRP connection
+     */
+    private static final AtomicLong sSessionIdGenerator = new AtomicLong(
+            System.currentTimeMillis());
+
     private String mLocalMsrpAddress;
 
     private int mLocalMsrpPort;
@@ -69,7 +76,7 @@ public class MsrpManager {
     public MsrpManager(String localMsrpAddress, int localMsrpPort, RcsSettings rcsSettings) {
         mLocalMsrpAddress = localMsrpAddress;
         mLocalMsrpPort = localMsrpPort;
-        mSessionId = System.currentTimeMillis();
+        mSessionId = sSessionIdGenerator.incrementAndGet();
         mRcsSettings = rcsSettings;
     }
 
@@ -256,8 +263,14 @@ public class MsrpManager {
         mMsrpSession.setTo(remoteMsrpPath);
 
         /* Create a MSRP client connection */
-        MsrpConnection connection = new MsrpClientConnection(mMsrpSession, remoteHost, remotePort,
-                mSecured, fingerprint);
+        MsrpConnection connection;
+        if (mRcsSettings.isMsrpConnectionSharingActivated()) {
+            connection = new PooledMsrpConnection(mMsrpSession, remoteHost, remotePort, mSecured,
+                    fingerprint);
+        } else {
+            connection = new MsrpClientConnection(mMsrpSession, remoteHost, remotePort, mSecured,
+                    fingerprint);
+        }
         mMsrpSession.setConnection(connection);
         mMsrpSession.addMsrpEventListener(listener);
 
@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.core.ims.protocol.msrp;
+
+import com.gsma.rcs.core.FileAccessException;
+
+/**
+ * Destination of the data chunks received in a MSRP session. When a sink is set on the session,
+ * the received chunks are written to it at their byte range position instead of being accumulated
+ * in memory.
+ */
+public interface MsrpReceiveSink {
+
+    /**
+     * Write a received data chunk
+     * 
+     * @param position Position of the chunk in the content (byte range start minus one)
+     * @param data Array holding the data chunk
+     * @param offset Offset of the data chunk in the array
+     * @param length Length of the data chunk
+     * @throws FileAccessException
+     */
+    void write(long position, byte[] data, int offset, int length) throws FileAccessException;
+
+    /**
+     * Returns the size of the content received without gap from its start
+     * 
+     * @return Size in bytes
+     */
+    long getContiguousSize();
+
+    /**
+     * Force the data written so far to the storage
+     * 
+     * @throws FileAccessException
+     */
+    void flush() throws FileAccessException;
+
+    /**
+     * Release the resources of the sink, called once the content is complete or the session is
+     * closed
+     */
+    void close();
+}
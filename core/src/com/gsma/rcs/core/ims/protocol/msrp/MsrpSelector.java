@@ -0,0 +1,228 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.core.ims.protocol.msrp;
+
+import com.gsma.rcs.core.ims.network.NetworkException;
+import com.gsma.rcs.utils.logger.Logger;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Single selector loop multiplexing the socket channels of all the MSRP connections opened in NIO
+ * transport mode. Received frames are dispatched to the MSRP sessions on a fixed pool of threads so
+ * that the thread count does not depend on the number of sessions.
+ */
+public class MsrpSelector extends Thread {
+
+    /**
+     * Maximum time the selector blocks before checking the read timeouts (in milliseconds)
+     */
+    private static final long SELECT_TIMEOUT = 1000;
+
+    /**
+     * Number of threads used to deliver the received frames to the MSRP sessions
+     */
+    private static final int MAX_DISPATCHING_THREADS = 2;
+
+    private static MsrpSelector sInstance;
+
+    private final Selector mSelector;
+
+    /**
+     * Tasks to be executed by the selector thread (registration and interest changes)
+     */
+    private final ConcurrentLinkedQueue<Runnable> mPendingTasks = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Registered channels, only accessed from the selector thread
+     */
+    private final Set<MsrpChannel> mChannels = new HashSet<>();
+
+    private final ExecutorService mDispatcher;
+
+    private volatile boolean mTerminated = false;
+
+    private static final Logger sLogger = Logger.getLogger(MsrpSelector.class.getSimpleName());
+
+    private MsrpSelector(Selector selector) {
+        super("MsrpSelector");
+        mSelector = selector;
+        mDispatcher = Executors.newFixedThreadPool(MAX_DISPATCHING_THREADS);
+    }
+
+    /**
+     * Returns the selector instance, it is started on first use
+     *
+     * @return Selector
+     * @throws NetworkException
+     */
+    public static synchronized MsrpSelector getInstance() throws NetworkException {
+        if (sInstance == null) {
+            try {
+                sInstance = new MsrpSelector(Selector.open());
+            } catch (IOException e) {
+                throw new NetworkException("Failed to open MSRP selector!", e);
+            }
+            sInstance.start();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Terminate the selector instance if any and close all its channels
+     */
+    public static synchronized void terminateInstance() {
+        if (sInstance != null) {
+            sInstance.terminate();
+            sInstance = null;
+        }
+    }
+
+    /**
+     * Terminate the selector
+     */
+    private void terminate() {
+        mTerminated = true;
+        mSelector.wakeup();
+        mDispatcher.shutdown();
+    }
+
+    /**
+     * Register a channel to the selector
+     *
+     * @param channel MSRP channel
+     */
+    /* package private */void register(final MsrpChannel channel) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    channel.register(mSelector);
+                    mChannels.add(channel);
+                } catch (IOException e) {
+                    channel.onError(new NetworkException("Failed to register MSRP channel!", e));
+                }
+            }
+        });
+    }
+
+    /**
+     * Unregister a channel from the selector
+     *
+     * @param channel MSRP channel
+     */
+    /* package private */void unregister(final MsrpChannel channel) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                mChannels.remove(channel);
+            }
+        });
+    }
+
+    /**
+     * Execute a task from the selector thread
+     *
+     * @param task Task
+     */
+    /* package private */void execute(Runnable task) {
+        mPendingTasks.add(task);
+        mSelector.wakeup();
+    }
+
+    /**
+     * Dispatch a task to the thread pool delivering events to the MSRP sessions
+     *
+     * @param task Task
+     */
+    /* package private */void dispatch(Runnable task) {
+        mDispatcher.execute(task);
+    }
+
+    /**
+     * Background processing
+     */
+    public void run() {
+        if (sLogger.isActivated()) {
+            sLogger.debug("MSRP selector is started");
+        }
+        try {
+            while (!mTerminated) {
+                mSelector.select(SELECT_TIMEOUT);
+                Runnable task;
+                while ((task = mPendingTasks.poll()) != null) {
+                    task.run();
+                }
+                Iterator<SelectionKey> keys = mSelector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    MsrpChannel channel = (MsrpChannel) key.attachment();
+                    if (key.isValid() && key.isReadable()) {
+                        channel.onReadable();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        channel.onWritable();
+                    }
+                }
+                long now = System.currentTimeMillis();
+                for (MsrpChannel channel : mChannels) {
+                    channel.checkReadTimeout(now);
+                }
+            }
+        } catch (IOException e) {
+            sLogger.error("MSRP selector failure!", e);
+
+        } catch (RuntimeException e) {
+            /*
+             * Intentionally catch runtime exceptions as else it will abruptly end the thread and
+             * eventually bring the whole system down, which is not intended.
+             */
+            sLogger.error("MSRP selector failure!", e);
+        } finally {
+            for (MsrpChannel channel : mChannels) {
+                channel.close();
+            }
+            mChannels.clear();
+            try {
+                mSelector.close();
+            } catch (IOException e) {
+                if (sLogger.isActivated()) {
+                    sLogger.debug("Failed to close MSRP selector: " + e.getMessage());
+                }
+            }
+            synchronized (MsrpSelector.class) {
+                if (sInstance == this) {
+                    sInstance = null;
+                }
+            }
+            if (sLogger.isActivated()) {
+                sLogger.debug("MSRP selector is terminated");
+            }
+        }
+    }
+}
@@ -23,6 +23,9 @@
 package com.gsma.rcs.core.ims.protocol.msrp;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 
 import com.gsma.rcs.core.ims.network.NetworkException;
 import com.gsma.rcs.platform.network.NetworkFactory;
@@ -47,6 +50,11 @@ public class MsrpServerConnection extends MsrpConnection {
      */
     private SocketServerConnection mSocketServer;
 
+    /**
+     * Server socket channel used in NIO transport mode
+     */
+    private ServerSocketChannel mServerChannel;
+
     /**
      * The logger
      */
@@ -93,11 +101,45 @@ public class MsrpServerConnection extends MsrpConnection {
         }
     }
 
+    /**
+     * Returns a socket channel accepted from the remote end point to be used in NIO transport mode
+     * 
+     * @return Socket channel
+     * @throws NetworkException
+     */
+    @Override
+    public SocketChannel getSocketChannel() throws NetworkException {
+        try {
+            if (sLogger.isActivated()) {
+                sLogger.debug("Open server socket channel at " + mLocalPort);
+            }
+            mServerChannel = ServerSocketChannel.open();
+            mServerChannel.socket().setReuseAddress(true);
+            mServerChannel.socket().bind(new InetSocketAddress(mLocalPort));
+
+            if (sLogger.isActivated()) {
+                sLogger.debug("Wait client connection");
+            }
+
+            SocketChannel channel = mServerChannel.accept();
+            if (sLogger.isActivated()) {
+                sLogger.debug("Socket channel connected to "
+                        + channel.socket().getInetAddress().getHostAddress() + ":"
+                        + channel.socket().getPort());
+            }
+            return channel;
+
+        } catch (IOException e) {
+            throw new NetworkException("Failed to get socket channel!", e);
+        }
+    }
+
     /**
      * Close the connection
      */
     public void close() {
         super.close();
         CloseableUtils.tryToClose(mSocketServer);
+        CloseableUtils.tryToClose(mServerChannel);
     }
 }
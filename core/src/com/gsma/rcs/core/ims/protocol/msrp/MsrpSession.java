@@ -37,7 +37,6 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Hashtable;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.ConcurrentHashMap;
@@ -122,6 +121,22 @@ public class MsrpSession {
 
     private DataChunks mReceivedChunks = new DataChunks();
 
+    /**
+     * Sink of the received data chunks, if null they are accumulated in memory
+     */
+    private MsrpReceiveSink mReceiveSink;
+
+    /**
+     * End of the content written to the receive sink when its total size is unknown, known once
+     * the last chunk is received, or -1
+     */
+    private long mReceiveEnd = -1;
+
+    /**
+     * Set once the content written to the receive sink is complete
+     */
+    private boolean mReceiveComplete = false;
+
     private MsrpEventListener mMsrpEventListener;
 
     /**
@@ -133,13 +148,6 @@ public class MsrpSession {
 
     private MsrpTransaction mMsrpTransaction;
 
-    /**
-     * File transfer progress
-     */
-    private List<Long> mProgress = new ArrayList<>();
-
-    private long mTotalSize;
-
     private static final Logger sLogger = Logger.getLogger(MsrpSession.class.getSimpleName());
 
     /**
@@ -252,6 +260,18 @@ public class MsrpSession {
         return mConnection;
     }
 
+    /**
+     * Set the sink to which the received data chunks are written instead of being accumulated in
+     * memory. The event listener is then notified with null data.
+     * 
+     * @param sink Receive sink or null to accumulate the data chunks in memory
+     */
+    public void setReceiveSink(MsrpReceiveSink sink) {
+        mReceiveSink = sink;
+        mReceiveEnd = -1;
+        mReceiveComplete = false;
+    }
+
     /**
      * Get the MSRP event listener
      * 
@@ -336,6 +356,11 @@ public class MsrpSession {
         if (mMsrpTransaction != null) {
             mMsrpTransaction.terminate();
         }
+
+        // Release receive sink
+        if (mReceiveSink != null) {
+            mReceiveSink.close();
+        }
     }
 
     /**
@@ -349,14 +374,12 @@ public class MsrpSession {
      * @throws NetworkException
      */
     public void sendChunks(InputStream inputStream, String msgId, String contentType,
-            final long totalSize, TypeMsrpChunk typeMsrpChunk) throws NetworkException {
+            long totalSize, TypeMsrpChunk typeMsrpChunk) throws NetworkException {
         if (sLogger.isActivated()) {
             sLogger.info("Send content (" + contentType + " - MSRP chunk type: " + typeMsrpChunk
                     + ")");
         }
-        mTotalSize = totalSize;
         try {
-            byte data[] = new byte[MsrpConstants.CHUNK_MAX_SIZE];
             long firstByte = 1;
             long lastByte = 0;
             mCancelTransfer = false;
@@ -365,37 +388,29 @@ public class MsrpSession {
             } else {
                 mReportTransaction = null;
             }
+            /*
+             * Pipelining window and chunk size adaptation rely on the responses which are only
+             * tracked when failure reports are requested.
+             */
+            ProgressNotifier progressNotifier = new ProgressNotifier(mMsrpEventListener, totalSize,
+                    mRcsSettings.getMsrpProgressCoalescingSize(),
+                    mRcsSettings.getMsrpProgressCoalescingPeriod());
+            int sendWindow = 0;
+            ChunkSizeController chunkSizeController = null;
             if (mFailureReportOption) {
-                mMsrpTransaction = new MsrpTransaction();
+                sendWindow = mRcsSettings.getMsrpSendWindow();
+                int maxChunkSize = mRcsSettings.getMsrpMaxChunkSize();
+                if (maxChunkSize > MsrpConstants.CHUNK_MAX_SIZE) {
+                    chunkSizeController = new ChunkSizeController(MsrpConstants.CHUNK_MAX_SIZE,
+                            maxChunkSize);
+                }
+                /* Progress is notified when the responses are received */
+                mMsrpTransaction = new MsrpTransaction(chunkSizeController, progressNotifier);
             } else {
                 mMsrpTransaction = null;
             }
-
-            // Calculate number of needed chunks
-            final int totalChunks = (int) Math.ceil(totalSize
-                    / (double) MsrpConstants.CHUNK_MAX_SIZE);
-
-            new Thread(new Runnable() {
-
-                @Override
-                public void run() {
-                    if (mMsrpTransaction != null) {
-                        while ((totalChunks - mMsrpTransaction.getNumberReceivedOk()) > 0
-                                && !mCancelTransfer) {
-                            mMsrpEventListener.msrpTransferProgress(
-                                    mMsrpTransaction.getNumberReceivedOk()
-                                            * MsrpConstants.CHUNK_MAX_SIZE, totalSize);
-                            try {
-                                Thread.sleep(500);
-                            } catch (InterruptedException e) {
-                                /* Nothing to be done here */
-                            }
-                        }
-                    }
-
-                }
-
-            }).start();
+            byte data[] = new byte[chunkSizeController != null ? chunkSizeController
+                    .getMaxChunkSize() : MsrpConstants.CHUNK_MAX_SIZE];
 
             String newTransactionId;
 
@@ -407,8 +422,8 @@ public class MsrpSession {
             String msrpMsgId = IdGenerator.generateMessageID();
 
             // Send data chunk by chunk
-            for (int i = inputStream.read(data); (!mCancelTransfer) & (i > -1); i = inputStream
-                    .read(data)) {
+            for (int i = readChunk(inputStream, data, chunkSizeController); (!mCancelTransfer)
+                    & (i > -1); i = readChunk(inputStream, data, chunkSizeController)) {
                 // Update upper byte range
                 lastByte += i;
 
@@ -422,15 +437,19 @@ public class MsrpSession {
                 // Update lower byte range
                 firstByte += i;
 
+                // Back-pressure: do not read the next chunk while the window is full
+                if (sendWindow > 0 && !mMsrpTransaction.waitWindow(sendWindow)) {
+                    if (!mCancelTransfer && !mMsrpTransaction.isTerminated()) {
+                        mMsrpEventListener.msrpTransferError(msgId, "response timeout 408",
+                                typeMsrpChunk);
+                    }
+                    return;
+                }
+
                 // Progress management
-                if (mFailureReportOption) {
-                    // Add value in progress vector
-                    mProgress.add(lastByte);
-                } else {
+                if (!mFailureReportOption && !mCancelTransfer) {
                     // Direct notification
-                    if (!mCancelTransfer) {
-                        mMsrpEventListener.msrpTransferProgress(lastByte, totalSize);
-                    }
+                    progressNotifier.notifyProgress(lastByte);
                 }
             }
 
@@ -480,6 +499,11 @@ public class MsrpSession {
                 // Notify event listener
                 mMsrpEventListener.msrpDataTransferred(msgId);
             }
+            if (sLogger.isActivated()) {
+                sLogger.debug("Progress notifications (emitted="
+                        + ProgressNotifier.getEmittedEvents() + ", suppressed="
+                        + ProgressNotifier.getSuppressedEvents() + ")");
+            }
         } catch (IOException e) {
             throw new NetworkException("Send chunk failed for msgId : " + msgId, e);
 
@@ -488,6 +512,23 @@ public class MsrpSession {
         }
     }
 
+    /**
+     * Read the next data chunk
+     * 
+     * @param inputStream Input stream
+     * @param data Buffer large enough for the maximum chunk size
+     * @param chunkSizeController Chunk size controller or null for fixed size chunks
+     * @return Number of bytes read or -1 at the end of stream
+     * @throws IOException
+     */
+    private static int readChunk(InputStream inputStream, byte[] data,
+            ChunkSizeController chunkSizeController) throws IOException {
+        if (chunkSizeController == null) {
+            return inputStream.read(data);
+        }
+        return inputStream.read(data, 0, chunkSizeController.getChunkSize());
+    }
+
     /**
      * Send empty chunk
      * 
@@ -525,7 +566,7 @@ public class MsrpSession {
         try {
             boolean isLastChunk = (lastByte == totalSize);
             // Create request
-            buffer = new ByteArrayOutputStream(4000);
+            buffer = new ByteArrayOutputStream(4000 + dataSize);
             buffer.reset();
             buffer.write(MsrpConstants.MSRP_HEADER.getBytes(UTF8));
             buffer.write(MsrpConstants.CHAR_SP);
@@ -589,7 +630,7 @@ public class MsrpSession {
             // Send chunk
             if (mFailureReportOption) {
                 if (mMsrpTransaction != null) {
-                    mMsrpTransaction.handleRequest();
+                    mMsrpTransaction.handleRequest(lastByte);
                     mRequestTransaction = null;
                 } else {
                     mRequestTransaction = new RequestTransaction(mRcsSettings);
@@ -606,7 +647,7 @@ public class MsrpSession {
                 mConnection.sendChunk(buffer.toByteArray());
                 buffer.close();
                 if (mMsrpTransaction != null) {
-                    mMsrpTransaction.handleRequest();
+                    mMsrpTransaction.handleRequest(lastByte);
                 }
             }
         } catch (IOException e) {
@@ -674,10 +715,10 @@ public class MsrpSession {
      * 
      * @param code Response code
      * @param txId Transaction ID
-     * @param headers MSRP headers
+     * @param request MSRP request
      * @throws NetworkException
      */
-    private void sendMsrpResponse(String code, String txId, Hashtable<String, String> headers)
+    private void sendMsrpResponse(String code, String txId, MsrpFrame request)
             throws NetworkException {
         ByteArrayOutputStream buffer = null;
         try {
@@ -692,13 +733,13 @@ public class MsrpSession {
             buffer.write(MsrpConstants.HEADER_TO_PATH.getBytes(UTF8));
             buffer.write(MsrpConstants.CHAR_DOUBLE_POINT);
             buffer.write(MsrpConstants.CHAR_SP);
-            buffer.write((headers.get(MsrpConstants.HEADER_FROM_PATH)).getBytes(UTF8));
+            request.writeHeader(MsrpConstants.HEADER_FROM_PATH, buffer);
             buffer.write(NEW_LINE);
 
             buffer.write(MsrpConstants.HEADER_FROM_PATH.getBytes(UTF8));
             buffer.write(MsrpConstants.CHAR_DOUBLE_POINT);
             buffer.write(MsrpConstants.CHAR_SP);
-            buffer.write((headers.get(MsrpConstants.HEADER_TO_PATH)).getBytes(UTF8));
+            request.writeHeader(MsrpConstants.HEADER_TO_PATH, buffer);
             buffer.write(NEW_LINE);
 
             buffer.write(MsrpConstants.END_MSRP_MSG.getBytes(UTF8));
@@ -719,10 +760,10 @@ public class MsrpSession {
      * Send MSRP REPORT request
      * 
      * @param txId Transaction ID
-     * @param headers MSRP headers
+     * @param request MSRP request
      * @throws NetworkException
      */
-    private void sendMsrpReportRequest(String txId, Hashtable<String, String> headers,
+    private void sendMsrpReportRequest(String txId, MsrpFrame request,
             long lastByte, long totalSize) throws NetworkException {
         ByteArrayOutputStream buffer = null;
         try {
@@ -738,19 +779,19 @@ public class MsrpSession {
             buffer.write(MsrpConstants.HEADER_TO_PATH.getBytes(UTF8));
             buffer.write(MsrpConstants.CHAR_DOUBLE_POINT);
             buffer.write(MsrpConstants.CHAR_SP);
-            buffer.write(headers.get(MsrpConstants.HEADER_FROM_PATH).getBytes(UTF8));
+            request.writeHeader(MsrpConstants.HEADER_FROM_PATH, buffer);
             buffer.write(NEW_LINE);
 
             buffer.write(MsrpConstants.HEADER_FROM_PATH.getBytes(UTF8));
             buffer.write(MsrpConstants.CHAR_DOUBLE_POINT);
             buffer.write(MsrpConstants.CHAR_SP);
-            buffer.write((headers.get(MsrpConstants.HEADER_TO_PATH)).getBytes(UTF8));
+            request.writeHeader(MsrpConstants.HEADER_TO_PATH, buffer);
             buffer.write(NEW_LINE);
 
             buffer.write(MsrpConstants.HEADER_MESSAGE_ID.getBytes(UTF8));
             buffer.write(MsrpConstants.CHAR_DOUBLE_POINT);
             buffer.write(MsrpConstants.CHAR_SP);
-            buffer.write((headers.get(MsrpConstants.HEADER_MESSAGE_ID)).getBytes(UTF8));
+            request.writeHeader(MsrpConstants.HEADER_MESSAGE_ID, buffer);
             buffer.write(NEW_LINE);
 
             buffer.write(MsrpConstants.HEADER_BYTE_RANGE.getBytes(UTF8));
@@ -783,43 +824,91 @@ public class MsrpSession {
         }
     }
 
+    /**
+     * Receive a decoded MSRP frame
+     * 
+     * @param frame MSRP frame, only valid during the call
+     * @throws NetworkException
+     * @throws PayloadException
+     * @throws ContactManagerException
+     * @throws FileAccessException
+     */
+    /* package private */void receiveMsrpFrame(MsrpFrame frame) throws PayloadException,
+            NetworkException, ContactManagerException, FileAccessException {
+        boolean msrpTraceEnabled = MsrpConnection.isMsrpTraceEnabled();
+        if (frame.isPartial() && !frame.isMethod(MsrpConstants.METHOD_SEND)) {
+            /* Only the data chunk of a SEND request is consumed while it is received */
+            return;
+        }
+        if (frame.isResponse()) {
+            // Process MSRP response
+            if (msrpTraceEnabled) {
+                System.out.println("<<< Receive MSRP response:\n" + frame.getTrace());
+            }
+            receiveMsrpResponse(frame);
+        } else if (frame.isMethod(MsrpConstants.METHOD_SEND)) {
+            // Process a SEND request
+            if (msrpTraceEnabled) {
+                System.out.println("<<< Receive MSRP SEND request:\n" + frame.getTrace());
+            }
+            receiveMsrpSend(frame);
+        } else if (frame.isMethod(MsrpConstants.METHOD_REPORT)) {
+            // Process a REPORT request
+            if (msrpTraceEnabled) {
+                System.out.println("<<< Receive MSRP REPORT request:\n" + frame.getTrace());
+            }
+            receiveMsrpReport(frame);
+        } else {
+            // Unknown request
+            if (msrpTraceEnabled) {
+                System.out.println("<<< Unknown request received:\n" + frame.getTrace());
+            }
+            // Remove transaction info from list
+            removeMsrpTransactionInfo(frame.getTransactionId());
+        }
+        // Check transaction info data
+        checkMsrpTransactionInfo();
+    }
+
     /**
      * Receive MSRP SEND request
      * 
-     * @param txId Transaction ID
-     * @param headers Request headers
-     * @param flag Continuation flag
-     * @param data Received data
-     * @param totalSize Total size of the content
+     * @param request MSRP request, only valid during the call
      * @throws NetworkException
      * @throws PayloadException
      * @throws ContactManagerException
+     * @throws FileAccessException
      */
-    public void receiveMsrpSend(String txId, Hashtable<String, String> headers, int flag,
-            byte[] data, long totalSize) throws PayloadException, NetworkException,
-            ContactManagerException {
+    public void receiveMsrpSend(MsrpFrame request) throws PayloadException, NetworkException,
+            ContactManagerException, FileAccessException {
         mIsEstablished = true;
+        String txId = request.getTransactionId();
+        /* A partial frame is handled as a chunk to be continued, without response */
+        boolean partial = request.isPartial();
+        int flag = partial ? MsrpConstants.FLAG_MORE_CHUNK : request.getContinuationFlag();
+        long totalSize = request.getTotalSize();
         if (sLogger.isActivated()) {
             sLogger.debug("SEND request received (flag=" + flag + ", transaction=" + txId
                     + ", totalSize=" + totalSize + ")");
         }
 
-        String msgId = headers.get(MsrpConstants.HEADER_MESSAGE_ID);
-        boolean failureReportNeeded = true;
-        String failureHeader = headers.get(MsrpConstants.HEADER_FAILURE_REPORT);
-        if ((failureHeader != null) && failureHeader.equalsIgnoreCase("no")) {
-            failureReportNeeded = false;
+        boolean failureReportNeeded = !request.isHeaderValue(MsrpConstants.HEADER_FAILURE_REPORT,
+                "no");
+        if (failureReportNeeded && !partial) {
+            sendMsrpResponse(MsrpConstants.STATUS_200_OK, txId, request);
         }
-        if (failureReportNeeded) {
-            sendMsrpResponse(MsrpConstants.STATUS_200_OK, txId, headers);
-        }
-        if (data == null) {
+        if (!request.hasData()) {
             if (sLogger.isActivated()) {
                 sLogger.debug("Empty chunk");
             }
             return;
         }
-        mReceivedChunks.addChunk(data);
+        if (mReceiveSink != null) {
+            receiveMsrpSendToSink(request, txId, flag, totalSize);
+            return;
+        }
+        mReceivedChunks.addChunk(request.getDataArray(), request.getDataOffset(),
+                request.getDataLength());
 
         if (flag == MsrpConstants.FLAG_LAST_CHUNK) {
             if (sLogger.isActivated()) {
@@ -828,16 +917,14 @@ public class MsrpSession {
             byte[] dataContent = mReceivedChunks.getReceivedData();
             mReceivedChunks.resetCache();
 
-            String contentTypeHeader = headers.get(MsrpConstants.HEADER_CONTENT_TYPE);
+            String msgId = request.getHeader(MsrpConstants.HEADER_MESSAGE_ID);
+            String contentTypeHeader = request.getHeader(MsrpConstants.HEADER_CONTENT_TYPE);
             mMsrpEventListener.receiveMsrpData(msgId, dataContent, contentTypeHeader);
 
-            boolean successReportNeeded = false;
-            String reportHeader = headers.get(MsrpConstants.HEADER_SUCCESS_REPORT);
-            if ((reportHeader != null) && reportHeader.equalsIgnoreCase("yes")) {
-                successReportNeeded = true;
-            }
+            boolean successReportNeeded = request.isHeaderValue(
+                    MsrpConstants.HEADER_SUCCESS_REPORT, "yes");
             if (successReportNeeded) {
-                sendMsrpReportRequest(txId, headers, dataContent.length, totalSize);
+                sendMsrpReportRequest(txId, request, dataContent.length, totalSize);
             }
         } else if (flag == MsrpConstants.FLAG_ABORT_CHUNK) {
             if (sLogger.isActivated()) {
@@ -863,31 +950,87 @@ public class MsrpSession {
     }
 
     /**
-     * Receive MSRP response
+     * Write the data chunk of a MSRP SEND request to the receive sink
      * 
-     * @param code Response code
+     * @param request MSRP request, only valid during the call
      * @param txId Transaction ID
-     * @param headers MSRP headers
+     * @param flag Continuation flag
+     * @param totalSize Total size of the content or -1 if unknown
+     * @throws NetworkException
+     * @throws PayloadException
+     * @throws ContactManagerException
+     * @throws FileAccessException
      */
-    public void receiveMsrpResponse(int code, String txId, Hashtable<String, String> headers) {
+    private void receiveMsrpSendToSink(MsrpFrame request, String txId, int flag, long totalSize)
+            throws PayloadException, NetworkException, ContactManagerException,
+            FileAccessException {
+        if (mReceiveComplete) {
+            if (sLogger.isActivated()) {
+                sLogger.debug("Duplicated chunk of a complete transfer");
+            }
+            return;
+        }
+        long position = request.getFirstByte() > 0 ? request.getFirstByte() - 1 : mReceiveSink
+                .getContiguousSize();
+        mReceiveSink.write(position, request.getDataArray(), request.getDataOffset(),
+                request.getDataLength());
+        if (flag == MsrpConstants.FLAG_ABORT_CHUNK) {
+            if (sLogger.isActivated()) {
+                sLogger.info("Transfer aborted");
+            }
+            mReceiveSink.close();
+            mMsrpEventListener.msrpTransferAborted();
+            return;
+        }
+        if (totalSize <= 0 && flag == MsrpConstants.FLAG_LAST_CHUNK) {
+            mReceiveEnd = position + request.getDataLength();
+        }
+        long expectedSize = (totalSize > 0) ? totalSize : mReceiveEnd;
+        long receivedSize = mReceiveSink.getContiguousSize();
+        /* Chunks may be received out of order: wait until a single range covers the content */
+        boolean complete = expectedSize >= 0 && receivedSize >= expectedSize;
+        if (!complete || request.isPartial()) {
+            if (sLogger.isActivated()) {
+                sLogger.debug("Transfer in progress...");
+            }
+            mMsrpEventListener.msrpTransferProgress(receivedSize, totalSize, null);
+            return;
+        }
+        if (sLogger.isActivated()) {
+            sLogger.info("Transfer terminated");
+        }
+        mReceiveComplete = true;
+        mReceiveSink.flush();
+        mReceiveSink.close();
+        String msgId = request.getHeader(MsrpConstants.HEADER_MESSAGE_ID);
+        String contentTypeHeader = request.getHeader(MsrpConstants.HEADER_CONTENT_TYPE);
+        mMsrpEventListener.receiveMsrpData(msgId, null, contentTypeHeader);
+
+        boolean successReportNeeded = request.isHeaderValue(MsrpConstants.HEADER_SUCCESS_REPORT,
+                "yes");
+        if (successReportNeeded) {
+            sendMsrpReportRequest(txId, request, receivedSize, totalSize);
+        }
+    }
+
+    /**
+     * Receive MSRP response
+     * 
+     * @param response MSRP response, only valid during the call
+     */
+    public void receiveMsrpResponse(MsrpFrame response) {
         // Consider media is established when we received something
         mIsEstablished = true;
+        int code = response.getResponseCode();
+        String txId = response.getTransactionId();
 
         if (sLogger.isActivated()) {
             sLogger.info("Response received (code=" + code + ", transaction=" + txId + ")");
         }
 
-        if (mFailureReportOption) {
-            // Notify progress
-            if (!mCancelTransfer && mProgress.size() > 0) {
-                mMsrpEventListener.msrpTransferProgress(mProgress.get(0), mTotalSize);
-                mProgress.remove(0);
-            }
-        }
-
         // Notify request transaction
         if (mRequestTransaction != null) {
-            mRequestTransaction.notifyResponse(code, headers);
+            mRequestTransaction.notifyResponse(code);
         }
 
         // Notify MSRP transaction
@@ -918,13 +1061,12 @@ public class MsrpSession {
     /**
      * Receive MSRP REPORT request
      * 
-     * @param txId Transaction ID
-     * @param headers MSRP headers
+     * @param request MSRP request, only valid during the call
      * @throws NetworkException
      * @throws FileAccessException
      */
-    public void receiveMsrpReport(String txId, Hashtable<String, String> headers)
-            throws FileAccessException, NetworkException {
+    public void receiveMsrpReport(MsrpFrame request) throws FileAccessException,
+            NetworkException {
         // Example of an MSRP REPORT request:
         // MSRP b276bb5b0adb22f6 SEND
         // To-Path: msrp://10.108.25.89:19494/n02s00i2t0+519;tcp
@@ -959,11 +1101,12 @@ public class MsrpSession {
         // Byte-Range: 1-305/305
         // -------n02s00i2t0+1937$
 
+        String txId = request.getTransactionId();
         if (sLogger.isActivated()) {
             sLogger.info("REPORT request received (transaction=" + txId + ")");
         }
 
-        String msrpMsgId = headers.get(MsrpConstants.HEADER_MESSAGE_ID);
+        String msrpMsgId = request.getHeader(MsrpConstants.HEADER_MESSAGE_ID);
         String cpimMsgId = null;
 
         String originalTransactionId = null;
@@ -981,19 +1124,17 @@ public class MsrpSession {
         }
 
         // Test if a failure report is needed
-        boolean failureReportNeeded = true;
-        String failureHeader = headers.get(MsrpConstants.HEADER_FAILURE_REPORT);
-        if ((failureHeader != null) && failureHeader.equalsIgnoreCase("no")) {
-            failureReportNeeded = false;
-        }
+        boolean failureReportNeeded = !request.isHeaderValue(MsrpConstants.HEADER_FAILURE_REPORT,
+                "no");
 
         // Send MSRP response if requested
         if (failureReportNeeded) {
-            sendMsrpResponse(MsrpConstants.STATUS_200_OK, txId, headers);
+            sendMsrpResponse(MsrpConstants.STATUS_200_OK, txId, request);
         }
 
         // Check status code
-        int statusCode = ReportTransaction.parseStatusCode(headers);
+        int statusCode = ReportTransaction.parseStatusCode(request
+                .getHeader(MsrpConstants.HEADER_STATUS));
         if (statusCode != 200) {
             mMsrpEventListener.msrpTransferError(cpimMsgId, "error report " + statusCode,
                     typeMsrpChunk);
@@ -1001,7 +1142,8 @@ public class MsrpSession {
 
         // Notify report transaction
         if (mReportTransaction != null) {
-            mReportTransaction.notifyReport(statusCode, headers);
+            mReportTransaction.notifyReport(statusCode,
+                    request.getHeader(MsrpConstants.HEADER_BYTE_RANGE));
         }
 
         // Remove transaction info from list as transaction has reached a final state
@@ -22,6 +22,8 @@
 
 package com.gsma.rcs.core.ims.protocol.msrp;
 
+import java.util.ArrayDeque;
+import java.util.Queue;
 import java.util.Timer;
 import java.util.TimerTask;
 
@@ -61,10 +63,49 @@ public class MsrpTransaction extends Object {
      */
     private Timer timer = new Timer();
 
+    /**
+     * Sending timestamps of the requests without response, in sending order
+     */
+    private final Queue<Long> pendingRequestTimestamps = new ArrayDeque<>();
+
+    /**
+     * Last byte acknowledged by a response
+     */
+    private long acknowledgedBytes = 0;
+
+    /**
+     * Last byte of the requests without response, in sending order
+     */
+    private final Queue<Long> pendingRequestLastBytes = new ArrayDeque<>();
+
+    /**
+     * Chunk size controller updated with the response latencies, may be null
+     */
+    private final ChunkSizeController chunkSizeController;
+
+    /**
+     * Progress notifier updated with the acknowledged bytes, may be null
+     */
+    private final ProgressNotifier progressNotifier;
+
     /**
      * Constructor
      */
     public MsrpTransaction() {
+        this(null, null);
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param chunkSizeController Chunk size controller to be updated with the response latencies
+     *            or null
+     * @param progressNotifier Progress notifier to be updated with the acknowledged bytes or null
+     */
+    public MsrpTransaction(ChunkSizeController chunkSizeController,
+            ProgressNotifier progressNotifier) {
+        this.chunkSizeController = chunkSizeController;
+        this.progressNotifier = progressNotifier;
     }
 
     /**
@@ -85,38 +126,84 @@ public class MsrpTransaction extends Object {
         }
     }
 
+    /**
+     * Wait until the number of requests without response is below the window size
+     * 
+     * @param windowSize Maximum number of requests without response
+     * @return False if no response has been received before the timeout or if the transaction is
+     *         terminated
+     */
+    public synchronized boolean waitWindow(int windowSize) {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        try {
+            while (waitingCount >= windowSize && !isTerminated) {
+                long delay = deadline - System.currentTimeMillis();
+                if (delay <= 0) {
+                    return false;
+                }
+                super.wait(delay);
+            }
+        } catch (InterruptedException e) {
+            return false;
+        }
+        return !isTerminated;
+    }
+
     /**
      * Handle new request
+     * 
+     * @param lastByte Last byte of the data chunk sent in the request
      */
-    public void handleRequest() {
+    public void handleRequest(long lastByte) {
         // Changed by Deutsche Telekom
         // requests and responses are handled in different threads which need to be synchronized
         synchronized (this) {
             waitingCount++;
+            pendingRequestTimestamps.add(System.currentTimeMillis());
+            pendingRequestLastBytes.add(lastByte);
         }
     }
 
     /**
      * Handle new response
      */
-    public synchronized void handleResponse() {
+    public void handleResponse() {
+        long acknowledged;
+        boolean terminated;
         // Changed by Deutsche Telekom
         // requests and responses are handled in different threads which need to be synchronized
         synchronized (this) {
             waitingCount--;
-        }
-        // Changed by Deutsche Telekom
-        totalReceivedResponses++;
-        if (isWaiting) {
-            if (waitingCount == 0) {
-                // Unblock semaphore
-                super.notify();
+            // Changed by Deutsche Telekom
+            totalReceivedResponses++;
+            Long timestamp = pendingRequestTimestamps.poll();
+            if (timestamp != null && chunkSizeController != null) {
+                chunkSizeController.onResponse(System.currentTimeMillis() - timestamp);
+            }
+            Long lastByte = pendingRequestLastBytes.poll();
+            if (lastByte != null) {
+                acknowledgedBytes = lastByte;
+            }
+            acknowledged = acknowledgedBytes;
+            terminated = isTerminated;
+            if (!isWaiting) {
+                // Unblock sender waiting for the window
+                super.notifyAll();
             } else {
-                // ReInit timeout
-                stopTimer();
-                startTimer();
+                if (waitingCount == 0) {
+                    // Unblock semaphore
+                    super.notify();
+                } else {
+                    // ReInit timeout
+                    stopTimer();
+                    startTimer();
+                }
             }
         }
+        // Notify progress out of the lock as the listener may take time
+        if (progressNotifier != null && !terminated) {
+            progressNotifier.notifyProgress(acknowledged);
+        }
     }
 
     /**
@@ -134,7 +221,7 @@ public class MsrpTransaction extends Object {
     public synchronized void terminate() {
         isTerminated = true;
         // Unblock semaphore
-        super.notify();
+        super.notifyAll();
         // Stop timer
         stopTimer();
     }
@@ -184,4 +271,13 @@ public class MsrpTransaction extends Object {
     public int getNumberReceivedOk() {
         return totalReceivedResponses;
     }
+
+    /**
+     * Returns the number of bytes acknowledged by the received responses
+     * 
+     * @return Size in bytes
+     */
+    public synchronized long getAcknowledgedBytes() {
+        return acknowledgedBytes;
+    }
 }
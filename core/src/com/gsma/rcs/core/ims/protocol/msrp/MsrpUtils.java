@@ -72,4 +72,30 @@ public class MsrpUtils {
         }
         return -1;
     }
+
+    /**
+     * Get the session-id of the last MSRP URI of a path (RFC 4975 section 6)
+     * 
+     * @param path MSRP path, i.e. a list of MSRP URIs separated by spaces
+     * @return Session-id or null if the last URI has no session-id
+     */
+    public static String getSessionId(String path) {
+        if (path == null) {
+            return null;
+        }
+        String uri = path.trim();
+        int index = uri.lastIndexOf(' ');
+        if (index != -1) {
+            uri = uri.substring(index + 1);
+        }
+        int end = uri.indexOf(';');
+        if (end == -1) {
+            end = uri.length();
+        }
+        int start = uri.lastIndexOf('/', end - 1);
+        if (start < 1 || start + 1 >= end || uri.charAt(start - 1) == '/') {
+            return null;
+        }
+        return uri.substring(start + 1, end);
+    }
 }
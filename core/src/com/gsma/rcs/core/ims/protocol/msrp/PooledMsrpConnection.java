@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.core.ims.protocol.msrp;
+
+import com.gsma.rcs.core.ims.network.NetworkException;
+import com.gsma.rcs.core.ims.protocol.PayloadException;
+import com.gsma.rcs.platform.network.SocketConnection;
+
+/**
+ * MSRP client connection of a session which shares the transport connection of the other sessions
+ * established through the same remote end point. Opening and closing it acquires and releases a
+ * {@link SharedMsrpConnection} from the {@link MsrpConnectionPool}.
+ */
+public class PooledMsrpConnection extends MsrpConnection {
+
+    private final String mRemoteAddress;
+
+    private final int mRemotePort;
+
+    private final boolean mSecured;
+
+    private final String mFingerprint;
+
+    private volatile SharedMsrpConnection mConnection;
+
+    /**
+     * Constructor
+     * 
+     * @param session MSRP session
+     * @param remoteAddress Remote IP address
+     * @param remotePort Remote port number
+     * @param secured Secured media flag
+     * @param fingerprint fingerprint announced in SDP
+     */
+    public PooledMsrpConnection(MsrpSession session, String remoteAddress, int remotePort,
+            boolean secured, String fingerprint) {
+        super(session);
+        mRemoteAddress = remoteAddress;
+        mRemotePort = remotePort;
+        mSecured = secured;
+        mFingerprint = fingerprint;
+    }
+
+    @Override
+    public void open() throws NetworkException, PayloadException {
+        mConnection = MsrpConnectionPool.getInstance().acquire(getSession(), mRemoteAddress,
+                mRemotePort, mSecured, mFingerprint);
+    }
+
+    /**
+     * Open the connection, the timeout is not applied as the transport connection outlives the
+     * session
+     * 
+     * @param timeout Timeout value (in milliseconds)
+     * @throws NetworkException
+     * @throws PayloadException
+     */
+    @Override
+    public void open(long timeout) throws NetworkException, PayloadException {
+        open();
+    }
+
+    @Override
+    public void close() {
+        SharedMsrpConnection connection = mConnection;
+        if (connection != null) {
+            mConnection = null;
+            MsrpConnectionPool.getInstance().release(connection, getSession());
+        }
+    }
+
+    @Override
+    public void sendChunk(byte chunk[]) throws NetworkException {
+        getSharedConnection().sendChunk(chunk);
+    }
+
+    /**
+     * Send a chunk on the calling thread, ahead of the chunks queued by the other sessions. The
+     * writes of the shared connection are serialized chunk by chunk, so the chunk is not
+     * interleaved with them.
+     * 
+     * @param chunk Data chunk
+     * @throws NetworkException
+     */
+    @Override
+    public void sendChunkImmediately(byte chunk[]) throws NetworkException {
+        getSharedConnection().sendChunkImmediately(chunk);
+    }
+
+    /**
+     * Returns the socket connection
+     * 
+     * @return Socket
+     * @throws NetworkException
+     */
+    @Override
+    public SocketConnection getSocketConnection() throws NetworkException {
+        throw new NetworkException("Pooled MSRP connection has no socket of its own!");
+    }
+
+    private SharedMsrpConnection getSharedConnection() throws NetworkException {
+        SharedMsrpConnection connection = mConnection;
+        if (connection == null) {
+            throw new NetworkException("Pooled MSRP connection is not opened!");
+        }
+        return connection;
+    }
+}
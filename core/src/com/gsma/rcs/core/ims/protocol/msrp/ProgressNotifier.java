@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.core.ims.protocol.msrp;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces the progress notifications of an outgoing MSRP transfer: the listener is only notified
+ * once enough bytes have been transferred or enough time has elapsed since the previous
+ * notification, and always at the end of the transfer.
+ */
+public class ProgressNotifier {
+
+    private static final AtomicLong sEmittedEvents = new AtomicLong();
+
+    private static final AtomicLong sSuppressedEvents = new AtomicLong();
+
+    private final MsrpEventListener mListener;
+
+    private final long mTotalSize;
+
+    private final long mMinSize;
+
+    private final long mMinPeriod;
+
+    private long mNotifiedSize = 0;
+
+    private long mNotificationTimestamp;
+
+    /**
+     * Constructor
+     *
+     * @param listener MSRP event listener
+     * @param totalSize Total size of the transfer
+     * @param minSize Minimum number of bytes transferred between two notifications, 0 to only
+     *            rely on the period
+     * @param minPeriod Minimum period between two notifications in milliseconds
+     */
+    public ProgressNotifier(MsrpEventListener listener, long totalSize, long minSize,
+            long minPeriod) {
+        mListener = listener;
+        mTotalSize = totalSize;
+        mMinSize = minSize;
+        mMinPeriod = minPeriod;
+        mNotificationTimestamp = System.currentTimeMillis();
+    }
+
+    /**
+     * Report the transferred size, the listener is notified if a threshold is reached
+     *
+     * @param currentSize Number of bytes transferred
+     */
+    public void notifyProgress(long currentSize) {
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            boolean notify = currentSize > mNotifiedSize
+                    && (currentSize >= mTotalSize
+                            || (mMinSize > 0 && currentSize - mNotifiedSize >= mMinSize) || now
+                            - mNotificationTimestamp >= mMinPeriod);
+            if (!notify) {
+                sSuppressedEvents.incrementAndGet();
+                return;
+            }
+            mNotifiedSize = currentSize;
+            mNotificationTimestamp = now;
+        }
+        sEmittedEvents.incrementAndGet();
+        mListener.msrpTransferProgress(currentSize, mTotalSize);
+    }
+
+    /**
+     * Returns the number of progress notifications emitted since startup
+     *
+     * @return Number of notifications
+     */
+    public static long getEmittedEvents() {
+        return sEmittedEvents.get();
+    }
+
+    /**
+     * Returns the number of progress notifications suppressed by coalescing since startup
+     *
+     * @return Number of notifications
+     */
+    public static long getSuppressedEvents() {
+        return sSuppressedEvents.get();
+    }
+}
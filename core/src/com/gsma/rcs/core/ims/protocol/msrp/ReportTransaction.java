@@ -22,8 +22,6 @@
 
 package com.gsma.rcs.core.ims.protocol.msrp;
 
-import java.util.Hashtable;
-
 /**
  * Report transaction
  * 
@@ -67,16 +65,15 @@ public class ReportTransaction extends Object {
      * Notify report
      * 
      * @param status Status code
-     * @param headers MSRP headers
+     * @param byteRange Byte-Range header value or null if not present
      */
-    public void notifyReport(int status, Hashtable<String, String> headers) {
+    public void notifyReport(int status, String byteRange) {
         synchronized (this) {
             receivedByteRangeHeader = false;
             isNotified = true;
             statusCode = status;
 
             // Get reported size
-            String byteRange = headers.get(MsrpConstants.HEADER_BYTE_RANGE);
             if (byteRange != null) {
                 reportedSize = MsrpUtils.getChunkSize(byteRange);
                 receivedByteRangeHeader = true;
@@ -150,11 +147,10 @@ public class ReportTransaction extends Object {
     /**
      * Get the status code
      * 
-     * @param headers
-     * @return
+     * @param status Status header value or null if not present
+     * @return Status code
      */
-    public static int parseStatusCode(Hashtable<String, String> headers) {
-        final String status = headers.get(MsrpConstants.HEADER_STATUS);
+    public static int parseStatusCode(String status) {
         if (status == null || status.startsWith("000 ")) {
             return INVALID_STATUS_RESPONSE;
         }
@@ -24,8 +24,6 @@ package com.gsma.rcs.core.ims.protocol.msrp;
 
 import com.gsma.rcs.provider.settings.RcsSettings;
 
-import java.util.Hashtable;
-
 /**
  * Request transaction
  * 
@@ -55,9 +53,8 @@ public class RequestTransaction extends Object {
      * Notify response
      * 
      * @param code Response code
-     * @param headers MSRP headers
      */
-    public void notifyResponse(int code, Hashtable<String, String> headers) {
+    public void notifyResponse(int code) {
         synchronized (this) {
             // Set response code
             this.receivedResponse = code;
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.core.ims.protocol.msrp;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * MSRP client connection shared by the sessions established through the same remote end point,
+ * typically a relay. Received frames are delivered to the session whose local path session-id
+ * matches the last URI of their To-Path header (RFC 4975 section 7.3.1).
+ */
+public class SharedMsrpConnection extends MsrpClientConnection {
+
+    private final MsrpConnectionPool mPool;
+
+    private final String mKey;
+
+    private final ConcurrentHashMap<String, MsrpSession> mSessions = new ConcurrentHashMap<>();
+
+    private volatile boolean mFailed = false;
+
+    /**
+     * Time at which the last session has been released, guarded by the pool
+     */
+    private long mIdleTimestamp = 0;
+
+    /**
+     * Constructor
+     * 
+     * @param pool Connection pool
+     * @param key Key of the connection in the pool
+     * @param remoteAddress Remote IP address
+     * @param remotePort Remote port number
+     * @param secured Secured media flag
+     * @param fingerprint fingerprint announced in SDP
+     */
+    public SharedMsrpConnection(MsrpConnectionPool pool, String key, String remoteAddress,
+            int remotePort, boolean secured, String fingerprint) {
+        super(null, remoteAddress, remotePort, secured, fingerprint);
+        mPool = pool;
+        mKey = key;
+    }
+
+    /**
+     * Returns the key of the connection in the pool
+     * 
+     * @return Key
+     */
+    public String getKey() {
+        return mKey;
+    }
+
+    /**
+     * Is the connection unusable after a transport failure
+     * 
+     * @return True if the connection has failed
+     */
+    public boolean isFailed() {
+        return mFailed;
+    }
+
+    /**
+     * Add a session to the connection
+     * 
+     * @param sessionId Session-id of the local MSRP path of the session
+     * @param session MSRP session
+     */
+    /* package private */void addSession(String sessionId, MsrpSession session) {
+        mSessions.put(sessionId, session);
+    }
+
+    /**
+     * Remove a session from the connection
+     * 
+     * @param sessionId Session-id of the local MSRP path of the session
+     * @return True if no session is using the connection anymore
+     */
+    /* package private */boolean removeSession(String sessionId) {
+        mSessions.remove(sessionId);
+        return mSessions.isEmpty();
+    }
+
+    /* package private */long getIdleTimestamp() {
+        return mIdleTimestamp;
+    }
+
+    /* package private */void setIdleTimestamp(long timestamp) {
+        mIdleTimestamp = timestamp;
+    }
+
+    @Override
+    /* package private */MsrpSession getSession(MsrpFrame frame) {
+        String sessionId = MsrpUtils.getSessionId(frame.getHeader(MsrpConstants.HEADER_TO_PATH));
+        if (sessionId == null) {
+            return null;
+        }
+        return mSessions.get(sessionId);
+    }
+
+    @Override
+    /* package private */Collection<MsrpSession> getSessions() {
+        return mSessions.values();
+    }
+
+    @Override
+    /* package private */void onTransportFailure() {
+        mFailed = true;
+        mPool.remove(this);
+    }
+}
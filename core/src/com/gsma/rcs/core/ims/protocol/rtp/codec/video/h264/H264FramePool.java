@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.core.ims.protocol.rtp.codec.video.h264;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of the arrays in which the depacketized H264 frames are handed to the decoder. An array is
+ * larger than the frame it holds, its length is given by the buffer or the sample which carries
+ * it. Arrays grow to the largest frame, so that no array is allocated once the stream is stable.
+ */
+public final class H264FramePool {
+
+    /**
+     * Minimum size of a pooled frame
+     */
+    public static final int MIN_FRAME_SIZE = 16 * 1024;
+
+    /**
+     * Maximum number of frames kept in the pool
+     */
+    private static final int MAX_POOLED_FRAMES = 8;
+
+    private static final ConcurrentLinkedQueue<byte[]> sFrames = new ConcurrentLinkedQueue<>();
+
+    private static final AtomicInteger sPooledFrames = new AtomicInteger();
+
+    private H264FramePool() {
+    }
+
+    /**
+     * Acquire a frame from the pool. A new one is allocated if the pool is empty or if the pooled
+     * frame is too small.
+     *
+     * @param size Minimum size
+     * @return Frame
+     */
+    public static byte[] acquire(int size) {
+        byte[] frame = sFrames.poll();
+        if (frame == null) {
+            return new byte[Math.max(size, MIN_FRAME_SIZE)];
+        }
+        sPooledFrames.decrementAndGet();
+        if (frame.length < size) {
+            return new byte[Math.max(size, frame.length * 2)];
+        }
+        return frame;
+    }
+
+    /**
+     * Release a frame to the pool once it has been decoded
+     *
+     * @param frame Frame which must not be used anymore by the caller
+     */
+    public static void release(byte[] frame) {
+        if (sPooledFrames.incrementAndGet() > MAX_POOLED_FRAMES) {
+            sPooledFrames.decrementAndGet();
+            return;
+        }
+        sFrames.add(frame);
+    }
+}
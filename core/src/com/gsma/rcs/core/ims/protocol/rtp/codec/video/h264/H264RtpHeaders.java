@@ -60,16 +60,46 @@ public class H264RtpHeaders {
      * @param rtpPacketData
      */
     public H264RtpHeaders(byte[] rtpPacketData) {
+        this(rtpPacketData, 0);
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param rtpPacketData
+     * @param offset Offset of the RTP payload in the data
+     */
+    public H264RtpHeaders(byte[] rtpPacketData, int offset) {
+        parse(rtpPacketData, offset);
+    }
+
+    /**
+     * Constructor of headers filled later by {@link #parse(byte[], int)}
+     */
+    public H264RtpHeaders() {
+    }
+
+    /**
+     * Parse the headers of a RTP payload, so that an instance is reused for successive packets
+     * 
+     * @param rtpPacketData
+     * @param offset Offset of the RTP payload in the data
+     */
+    public void parse(byte[] rtpPacketData, int offset) {
         // Get FU indicator
-        byte data_FUI = rtpPacketData[0];
+        byte data_FUI = rtpPacketData[offset];
         this.FUI_F = ((data_FUI >> 7) & 0x01) != 0;
         this.FUI_NRI = ((data_FUI >> 5) & 0x07);
         this.FUI_TYPE = (byte) (data_FUI & 0x1f);
         this.hasFUHeader = false;
+        this.FUH_S = false;
+        this.FUH_E = false;
+        this.FUH_R = false;
+        this.FUH_TYPE = 0;
 
         if (FUI_TYPE == AVC_NALTYPE_FUA) {
             // Get FU header
-            byte data_FUH = rtpPacketData[1];
+            byte data_FUH = rtpPacketData[offset + 1];
             this.FUH_S = (data_FUH & 0x80) != 0;
             this.FUH_E = (data_FUH & 0x40) != 0;
             this.FUH_R = (data_FUH & 0x20) != 0;
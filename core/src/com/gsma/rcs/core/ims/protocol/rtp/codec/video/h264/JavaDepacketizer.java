@@ -23,9 +23,12 @@ import com.gsma.rcs.core.ims.protocol.rtp.format.Format;
 import com.gsma.rcs.core.ims.protocol.rtp.format.video.VideoOrientation;
 import com.gsma.rcs.core.ims.protocol.rtp.util.Buffer;
 
+import java.util.Arrays;
+
 /**
  * Reassembles H264 RTP packets into H264 frames, as per RFC 3984 Complete frames are sent to
- * decoder once reassembled
+ * decoder once reassembled. Frames are handed out in arrays of the {@link H264FramePool}, flagged
+ * with {@link Buffer#FLAG_POOLED}, which are recycled once decoded.
  * 
  * @author Deutsche Telekom AG
  */
@@ -38,19 +41,25 @@ public class JavaDepacketizer extends VideoCodec {
     private FrameAssemblerCollection assemblersCollection = new FrameAssemblerCollection();
 
     /**
-     * Max frame size to give for next module, as some decoder have frame size limits
+     * Default frame packet size
      */
-    private static final int MAX_H264_FRAME_SIZE = 8192;
+    public static int H264_FRAME_PACKET_SIZE = 1500;
 
     /**
-     * Default frame packet size
+     * Video decoder max payloads chunks mask: a frame is made of up to 256 fragments
      */
-    public static int H264_FRAME_PACKET_SIZE = 1500;
+    private static final int VIDEO_DECODER_MAX_PAYLOADS_CHUNKS_MASK = 0xFF;
+
+    /**
+     * Max number of fragments of a frame
+     */
+    private static final int MAX_FRAME_CHUNKS = VIDEO_DECODER_MAX_PAYLOADS_CHUNKS_MASK + 1;
 
     /**
-     * Video decoder max payloads chunks mask
+     * Max frame size to give for next module: the largest frame held by the fragments of a frame.
+     * Bigger frames are discarded.
      */
-    private static final byte VIDEO_DECODER_MAX_PAYLOADS_CHUNKS_MASK = 0x1F;
+    public static final int MAX_H264_FRAME_SIZE = MAX_FRAME_CHUNKS * 1500;
 
     /**
      * Packet NalUnitHeader
@@ -100,9 +109,9 @@ public class JavaDepacketizer extends VideoCodec {
      */
     private void extractNalUnitHeader(Buffer input) {
         if (mNalUnitHeader == null) {
-            mNalUnitHeader = NalUnitHeader.extract((byte[]) input.getData());
+            mNalUnitHeader = NalUnitHeader.extract(input.getOffset(), (byte[]) input.getData());
         } else {
-            NalUnitHeader.extract((byte[]) input.getData(), mNalUnitHeader);
+            NalUnitHeader.extract(input.getOffset(), (byte[]) input.getData(), mNalUnitHeader);
         }
     }
 
@@ -127,20 +136,19 @@ public class JavaDepacketizer extends VideoCodec {
      */
     private int handleSingleNalUnitPacket(Buffer input, Buffer output) {
         // Create output buffer
-        byte[] bufferData = (byte[]) input.getData();
-        int bufferDataLength = bufferData.length;
-        byte[] data = new byte[bufferDataLength];
-        System.arraycopy(bufferData, 0, data, 0, bufferDataLength);
+        int bufferDataLength = input.getLength();
+        byte[] data = H264FramePool.acquire(bufferDataLength);
+        System.arraycopy((byte[]) input.getData(), input.getOffset(), data, 0, bufferDataLength);
 
         // Set buffer
         output.setData(data);
-        output.setLength(data.length);
+        output.setLength(bufferDataLength);
         output.setOffset(0);
         output.setTimestamp(input.getTimestamp());
         output.setSequenceNumber(input.getSequenceNumber());
         output.setVideoOrientation(input.getVideoOrientation());
         output.setFormat(input.getFormat());
-        output.setFlags(input.getFlags());
+        output.setFlags(input.getFlags() | Buffer.FLAG_POOLED);
 
         return BUFFER_PROCESSED_OK;
     }
@@ -153,7 +161,8 @@ public class JavaDepacketizer extends VideoCodec {
     private int handleAggregationPacket(Buffer input, Buffer output) {
         // Get data
         byte[] bufferData = (byte[]) input.getData();
-        if (aggregationPositon + 1 >= bufferData.length) {
+        int bufferOffset = input.getOffset();
+        if (aggregationPositon + 1 >= input.getLength()) {
             // No more data in aggregation packet
             aggregationPositon = 1;
             output.setDiscard(true);
@@ -161,31 +170,32 @@ public class JavaDepacketizer extends VideoCodec {
         }
 
         // Get NALU size
-        int nalu_size = (((bufferData[aggregationPositon] & 0xff) << 8) | (bufferData[aggregationPositon + 1] & 0xff));
+        int naluSizePosition = bufferOffset + aggregationPositon;
+        int nalu_size = (((bufferData[naluSizePosition] & 0xff) << 8) | (bufferData[naluSizePosition + 1] & 0xff));
         aggregationPositon += 2;
-        if (aggregationPositon + nalu_size > bufferData.length) {
+        if (aggregationPositon + nalu_size > input.getLength()) {
             // Not a correct packet
             aggregationPositon = 1;
             return BUFFER_PROCESSED_FAILED;
         }
 
         // Get NALU HDR
-        extractNalUnitHeader(aggregationPositon, input);
+        extractNalUnitHeader(bufferOffset + aggregationPositon, input);
         if (mNalUnitHeader.isSingleNalUnitPacket()) {
             // Create output buffer
-            byte[] data = new byte[nalu_size];
-            System.arraycopy(bufferData, aggregationPositon, data, 0, nalu_size);
+            byte[] data = H264FramePool.acquire(nalu_size);
+            System.arraycopy(bufferData, bufferOffset + aggregationPositon, data, 0, nalu_size);
             aggregationPositon += nalu_size;
 
             // Set buffer
             output.setData(data);
-            output.setLength(data.length);
+            output.setLength(nalu_size);
             output.setOffset(0);
             output.setTimestamp(input.getTimestamp());
             output.setSequenceNumber(input.getSequenceNumber());
             output.setVideoOrientation(input.getVideoOrientation());
             output.setFormat(input.getFormat());
-            output.setFlags(input.getFlags());
+            output.setFlags(input.getFlags() | Buffer.FLAG_POOLED);
 
             return INPUT_BUFFER_NOT_CONSUMED;
         }
@@ -215,17 +225,23 @@ public class JavaDepacketizer extends VideoCodec {
     }
 
     /**
-     * Used to assemble fragments with the same timestamp into a single frame.
+     * Used to assemble fragments with the same timestamp into a single frame. The fragments are
+     * appended in their arrival order to a data array which is kept from one frame to the next,
+     * and copied in sequence order into a pooled frame once the frame is complete.
      */
     public static class FrameAssembler {
-        private byte[][] reassembledData = null; // Frame sequence chunks
-        private int[] reassembledDataSize = null; // Sequence chunk size
+        private byte[] chunksData = new byte[16 * H264_FRAME_PACKET_SIZE]; // Received chunks
+        private int chunksDataSize = 0; // Used size of the chunks data
+        private int[] chunkOffset = new int[MAX_FRAME_CHUNKS]; // Sequence chunk position
+        private int[] reassembledDataSize = new int[MAX_FRAME_CHUNKS]; // Sequence chunk size
         private int reassembledDataFullSize = 0; // Frame sequence chunks full size
         private boolean reassembledDataHasStart = false; // Has start chunk
         private boolean reassembledDataHasEnd = false; // Has end chunk
         private int reassembledDataPosSeqStart = Integer.MAX_VALUE; // Pos seq start
         private int reassembledDataPosSeqEnd = Integer.MIN_VALUE; // Pos seq end
         private byte reassembledDataNALHeader = 0; // Final frame NAL header
+        private boolean started = false; // Has received a chunk of the frame
+        private H264RtpHeaders h264RtpHeaders = new H264RtpHeaders();
         private long timestamp = -1;
         private Format format = null;
         private long seqNumber = -1;
@@ -245,14 +261,14 @@ public class JavaDepacketizer extends VideoCodec {
             }
 
             byte[] currentRtpPacketData = ((byte[]) buffer.getData());
-            H264RtpHeaders h264RtpHeaders = new H264RtpHeaders(currentRtpPacketData);
+            h264RtpHeaders.parse(currentRtpPacketData, buffer.getOffset());
 
             // Forbidden zero bit, must be zero for a valid stream
             if (h264RtpHeaders.getFUI_F()) {
                 return;
             }
 
-            if (reassembledData == null) {
+            if (!started) {
                 // First packet
                 timestamp = buffer.getTimestamp();
                 format = buffer.getFormat();
@@ -261,18 +277,24 @@ public class JavaDepacketizer extends VideoCodec {
                 // Get NAL header
                 reassembledDataNALHeader = h264RtpHeaders.getNALHeader();
 
-                // Copy packet data to reassembledData
-                reassembledData = new byte[JavaPacketizer.H264_MAX_RTP_PKTS][H264_FRAME_PACKET_SIZE];
-                reassembledDataSize = new int[JavaPacketizer.H264_MAX_RTP_PKTS];
+                // Reuse the chunks data of the previous frame
+                Arrays.fill(reassembledDataSize, 0);
+                chunksDataSize = 0;
+                reassembledDataFullSize = 0;
                 reassembledDataHasStart = false;
                 reassembledDataHasEnd = false;
+                started = true;
             }
 
             // Sequence position on frame
             int posSeq = (int) (buffer.getSequenceNumber() & VIDEO_DECODER_MAX_PAYLOADS_CHUNKS_MASK);
+            if (reassembledDataSize[posSeq] > 0) {
+                // Duplicated chunk
+                return;
+            }
 
             // Exclude header size
-            int payloadStartPosition = h264RtpHeaders.getHeaderSize();
+            int payloadStartPosition = buffer.getOffset() + h264RtpHeaders.getHeaderSize();
             // Exclude header size
             int payloadLength = buffer.getLength() - h264RtpHeaders.getHeaderSize();
 
@@ -293,15 +315,23 @@ public class JavaDepacketizer extends VideoCodec {
                         : reassembledDataPosSeqEnd);
             }
 
-            // Sequence chuck size
+            // Grow the chunks data when the frame is bigger than the previous ones
+            if (chunksDataSize + payloadLength > chunksData.length) {
+                chunksData = Arrays.copyOf(chunksData,
+                        Math.max(chunksDataSize + payloadLength, chunksData.length * 2));
+            }
+
+            // Sequence chuck position and size
+            chunkOffset[posSeq] = chunksDataSize;
             reassembledDataSize[posSeq] = payloadLength;
 
             // Sum chucks total sizes
             reassembledDataFullSize += payloadLength;
 
             // Copy data
-            System.arraycopy(currentRtpPacketData, payloadStartPosition, reassembledData[posSeq],
-                    0, payloadLength);
+            System.arraycopy(currentRtpPacketData, payloadStartPosition, chunksData,
+                    chunksDataSize, payloadLength);
+            chunksDataSize += payloadLength;
             videoOrientation = buffer.getVideoOrientation();
         }
 
@@ -340,7 +370,8 @@ public class JavaDepacketizer extends VideoCodec {
 
             if (reassembledDataFullSize <= MAX_H264_FRAME_SIZE) {
                 // + 1 because of the header size
-                byte[] finalData = new byte[reassembledDataFullSize + 1];
+                int finalDataSize = reassembledDataFullSize + 1;
+                byte[] finalData = H264FramePool.acquire(finalDataSize);
                 int finalDataPos = 0;
 
                 // Copy NAL header
@@ -355,7 +386,7 @@ public class JavaDepacketizer extends VideoCodec {
                     posSeq = posCurrent & VIDEO_DECODER_MAX_PAYLOADS_CHUNKS_MASK;
 
                     // Copy data
-                    System.arraycopy(reassembledData[posSeq], 0, finalData, finalDataPos,
+                    System.arraycopy(chunksData, chunkOffset[posSeq], finalData, finalDataPos,
                             reassembledDataSize[posSeq]);
                     finalDataPos += reassembledDataSize[posSeq];
 
@@ -363,24 +394,26 @@ public class JavaDepacketizer extends VideoCodec {
                 }
 
                 // Copy last chunk data
-                System.arraycopy(reassembledData[reassembledDataPosSeqEnd], 0, finalData,
+                System.arraycopy(chunksData, chunkOffset[reassembledDataPosSeqEnd], finalData,
                         finalDataPos, reassembledDataSize[reassembledDataPosSeqEnd]);
 
                 // If the frame data can be processed by native module, ie
                 // reassembled frame size not too big
                 // Set buffer
                 bDest.setData(finalData);
-                bDest.setLength(reassembledDataSize[reassembledDataPosSeqEnd]);
+                bDest.setLength(finalDataSize);
                 bDest.setOffset(0);
                 bDest.setTimestamp(timestamp);
                 bDest.setFormat(format);
-                bDest.setFlags(Buffer.FLAG_RTP_MARKER | Buffer.FLAG_RTP_TIME);
+                bDest.setFlags(Buffer.FLAG_RTP_MARKER | Buffer.FLAG_RTP_TIME | Buffer.FLAG_POOLED);
                 bDest.setVideoOrientation(videoOrientation);
                 bDest.setSequenceNumber(seqNumber);
+            } else {
+                bDest.setDiscard(true);
             }
 
-            // Set reassembledData to null
-            reassembledData = null;
+            // The chunks data is reused by the next frame
+            started = false;
         }
 
         /**
@@ -389,8 +422,8 @@ public class JavaDepacketizer extends VideoCodec {
          * Package Instead of Private Access with Private Inner Classes
          */
         private void reset() {
-            reassembledData = null;
-            reassembledDataSize = null;
+            started = false;
+            chunksDataSize = 0;
             reassembledDataFullSize = 0;
             reassembledDataHasStart = false;
             reassembledDataHasEnd = false;
@@ -523,18 +556,18 @@ public class JavaDepacketizer extends VideoCodec {
          * @param timestamp
          */
         public void removeOldestThan(long timestamp) {
-            // Find spot from which to remove
-            int spot = numberOfAssemblers - 1;
+            // Keep the assemblers of newer timestamps on the left, in their order, and move the
+            // removed ones to the right so that they are reused
+            int kept = 0;
             for (int i = 0; i < numberOfAssemblers; i++) {
-                if (timestamp <= assemblers[i].getTimestamp()) {
-                    spot = i;
+                FrameAssembler assembler = assemblers[i];
+                if (assembler.getTimestamp() > timestamp) {
+                    assemblers[i] = assemblers[kept];
+                    assemblers[kept] = assembler;
+                    kept++;
                 }
             }
-            // remove all assemblers with oldest timestamp to the left
-            for (int i = numberOfAssemblers - 1; i > spot; i--) {
-                assemblers[i - 1] = assemblers[i];
-            }
-            numberOfAssemblers -= spot + 1;
+            numberOfAssemblers = kept;
         }
     }
 }
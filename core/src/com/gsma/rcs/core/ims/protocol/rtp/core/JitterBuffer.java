@@ -0,0 +1,287 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.core.ims.protocol.rtp.core;
+
+/**
+ * Adaptive jitter buffer placed between the RTP packet receiver and the codec chain. Packets are
+ * ordered by extended sequence number and played out at a deadline derived from their RTP
+ * timestamp. The playout delay follows the interarrival jitter estimate of RFC 3550, packets
+ * arriving after the playout of a following packet and duplicated packets are discarded.
+ */
+public class JitterBuffer {
+
+    /**
+     * Number of slots of the buffer, a power of two
+     */
+    private static final int CAPACITY = 128;
+
+    private static final int MASK = CAPACITY - 1;
+
+    /**
+     * Depth above which the oldest packet is played out without waiting for its deadline
+     */
+    private static final int MAX_DEPTH = CAPACITY / 2;
+
+    /**
+     * Minimum playout delay in milliseconds
+     */
+    public static final int MIN_DELAY = 20;
+
+    /**
+     * Maximum playout delay in milliseconds
+     */
+    public static final int MAX_DELAY = 400;
+
+    /**
+     * Number of times the interarrival jitter covered by the playout delay
+     */
+    private static final int JITTER_DELAY_FACTOR = 3;
+
+    private final RtpPacket[] mPackets = new RtpPacket[CAPACITY];
+
+    private final int mClockRate;
+
+    private final RtpStatisticsReceiver mStats;
+
+    private boolean mStarted = false;
+
+    /**
+     * Extended sequence number of the next packet to play out
+     */
+    private int mNextSeq;
+
+    /**
+     * Highest extended sequence number received
+     */
+    private int mHighestSeq;
+
+    private int mDepth = 0;
+
+    /**
+     * Last RTP timestamp moving the media timeline forward
+     */
+    private long mLastRtpTimestamp;
+
+    /**
+     * Media time of the last RTP timestamp in clock units, extended over the timestamp wrap around
+     */
+    private long mLastMediaTime;
+
+    /**
+     * Relative transit time of the previous packet in clock units
+     */
+    private long mLastTransit;
+
+    /**
+     * Interarrival jitter in clock units, scaled by 16 as in RFC 3550 A.8
+     */
+    private long mJitter = 0;
+
+    /**
+     * Reference transit time in milliseconds scaled by 64: follows the minimum transit time and
+     * slowly drifts up to absorb the clock skew between the sender and the receiver
+     */
+    private long mBaseTransit;
+
+    private int mDelay = MIN_DELAY;
+
+    /**
+     * Constructor
+     * 
+     * @param clockRate RTP clock rate in Hz
+     * @param stats Statistics updated by the buffer
+     */
+    public JitterBuffer(int clockRate, RtpStatisticsReceiver stats) {
+        mClockRate = clockRate;
+        mStats = stats;
+    }
+
+    /**
+     * Add a received packet. A packet which is discarded is released.
+     * 
+     * @param packet Packet with an extended sequence number
+     * @param now Arrival time in milliseconds
+     * @return False if the packet has been discarded
+     */
+    public boolean put(RtpPacket packet, long now) {
+        int seq = packet.seqnum;
+        if (!mStarted || seq - mNextSeq >= CAPACITY || seq - mNextSeq <= -CAPACITY) {
+            // First packet or sequence discontinuity, e.g. the source re-synchronized after a
+            // restart of the sender: restart from this packet
+            flush();
+            start(packet, now);
+        }
+        updateJitter(packet, now);
+
+        if (seq - mNextSeq < 0 || mPackets[seq & MASK] != null) {
+            // Played out after a following packet, or duplicated
+            mStats.numLateRtpPkts++;
+            packet.release();
+            return false;
+        }
+        if (seq - mHighestSeq < 0) {
+            mStats.numReorderedRtpPkts++;
+        } else {
+            mHighestSeq = seq;
+        }
+        mPackets[seq & MASK] = packet;
+        mDepth++;
+        mStats.jitterBufferDepth = mDepth;
+        return true;
+    }
+
+    /**
+     * Remove the next packet in sequence order if its playout deadline is reached
+     * 
+     * @param now Current time in milliseconds
+     * @return Packet or null if no packet has to be played out yet
+     */
+    public RtpPacket poll(long now) {
+        if (mDepth == 0) {
+            return null;
+        }
+        RtpPacket packet = getHead();
+        if (mDepth <= MAX_DEPTH && now < getPlayoutTime(packet)) {
+            return null;
+        }
+        mPackets[packet.seqnum & MASK] = null;
+        mNextSeq = packet.seqnum + 1;
+        mDepth--;
+        mStats.jitterBufferDepth = mDepth;
+        return packet;
+    }
+
+    /**
+     * Returns the time to wait before the playout of the next packet
+     * 
+     * @param now Current time in milliseconds
+     * @return Time in milliseconds, or -1 if the buffer is empty
+     */
+    public long getWaitTime(long now) {
+        if (mDepth == 0) {
+            return -1;
+        }
+        return Math.max(0, getPlayoutTime(getHead()) - now);
+    }
+
+    /**
+     * Release all the buffered packets
+     */
+    public void flush() {
+        for (int i = 0; i < CAPACITY; i++) {
+            if (mPackets[i] != null) {
+                mPackets[i].release();
+                mPackets[i] = null;
+            }
+        }
+        mDepth = 0;
+        mStats.jitterBufferDepth = 0;
+    }
+
+    /**
+     * Returns the number of buffered packets
+     * 
+     * @return Depth
+     */
+    public int getDepth() {
+        return mDepth;
+    }
+
+    /**
+     * Returns the current playout delay
+     * 
+     * @return Delay in milliseconds
+     */
+    public int getDelay() {
+        return mDelay;
+    }
+
+    /**
+     * Returns the interarrival jitter estimate
+     * 
+     * @return Jitter in RTP timestamp units
+     */
+    public int getJitter() {
+        return (int) (mJitter >> 4);
+    }
+
+    private void start(RtpPacket packet, long now) {
+        mStarted = true;
+        mNextSeq = packet.seqnum;
+        mHighestSeq = packet.seqnum;
+        mLastRtpTimestamp = packet.timestamp;
+        mLastMediaTime = 0;
+        mLastTransit = now * mClockRate / 1000;
+        mBaseTransit = now << 6;
+    }
+
+    /**
+     * Returns the media time of a RTP timestamp, using the signed 32-bit distance to the last
+     * timestamp to cross the wrap around
+     * 
+     * @param rtpTimestamp RTP timestamp
+     * @return Media time in clock units
+     */
+    private long getMediaTime(long rtpTimestamp) {
+        return mLastMediaTime + (int) (rtpTimestamp - mLastRtpTimestamp);
+    }
+
+    private long getPlayoutTime(RtpPacket packet) {
+        return getMediaTime(packet.timestamp) * 1000 / mClockRate + (mBaseTransit >> 6) + mDelay;
+    }
+
+    /**
+     * Returns the packet with the lowest sequence number
+     */
+    private RtpPacket getHead() {
+        RtpPacket packet = null;
+        for (int seq = mNextSeq; packet == null; seq++) {
+            packet = mPackets[seq & MASK];
+        }
+        return packet;
+    }
+
+    /**
+     * Update the interarrival jitter (RFC 3550 A.8) and the playout delay
+     */
+    private void updateJitter(RtpPacket packet, long now) {
+        long mediaTime = getMediaTime(packet.timestamp);
+        if (mediaTime > mLastMediaTime) {
+            mLastRtpTimestamp = packet.timestamp;
+            mLastMediaTime = mediaTime;
+        }
+
+        long transit = now * mClockRate / 1000 - mediaTime;
+        long d = Math.abs(transit - mLastTransit);
+        mLastTransit = transit;
+        mJitter += d - ((mJitter + 8) >> 4);
+
+        long transitMillis = now - mediaTime * 1000 / mClockRate;
+        if ((transitMillis << 6) < mBaseTransit) {
+            mBaseTransit = transitMillis << 6;
+        } else {
+            mBaseTransit += transitMillis - (mBaseTransit >> 6);
+        }
+
+        long jitterMillis = (mJitter >> 4) * 1000 / mClockRate;
+        mDelay = (int) Math.min(MAX_DELAY, Math.max(MIN_DELAY, JITTER_DELAY_FACTOR * jitterMillis));
+        mStats.interarrivalJitter = getJitter();
+        mStats.jitterBufferDelay = mDelay;
+    }
+}
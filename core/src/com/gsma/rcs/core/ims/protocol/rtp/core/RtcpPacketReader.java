@@ -0,0 +1,468 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.core.ims.protocol.rtp.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * RTCP compound packet reader. The packets are validated and read in place in the received
+ * buffer, one packet after the other, the fields of the current packet being read on demand.
+ */
+public class RtcpPacketReader {
+
+    /**
+     * Size of the fixed part of a sender report
+     */
+    private static final int SR_HEADER_SIZE = 28;
+
+    /**
+     * Size of the fixed part of a receiver report
+     */
+    private static final int RR_HEADER_SIZE = 8;
+
+    /**
+     * Size of a report block
+     */
+    private static final int REPORT_BLOCK_SIZE = 24;
+
+    /**
+     * Size of the fixed part of an application-defined packet
+     */
+    private static final int APP_HEADER_SIZE = 12;
+
+    private ByteBuffer mBuffer;
+
+    private int mEnd;
+
+    private int mNextPacket;
+
+    private int mPacketStart;
+
+    /**
+     * Length of the current packet without its padding
+     */
+    private int mPacketLength;
+
+    private int mType;
+
+    private int mCount;
+
+    /**
+     * Start reading a compound packet
+     * 
+     * @param buffer Buffer from the first to the last byte of the compound packet
+     */
+    public void reset(ByteBuffer buffer) {
+        mBuffer = buffer;
+        mNextPacket = buffer.position();
+        mEnd = buffer.limit();
+        mPacketStart = mNextPacket;
+        mPacketLength = 0;
+    }
+
+    /**
+     * Move to the next packet of the compound packet
+     * 
+     * @return False if there is no more packet
+     * @throws IOException if the packet is malformed
+     */
+    public boolean next() throws IOException {
+        if (mNextPacket >= mEnd) {
+            return false;
+        }
+        int offset = mNextPacket;
+        if (offset + 4 > mEnd) {
+            throw new IOException("Bad RTCP packet length : " + (mEnd - offset));
+        }
+        int firstbyte = mBuffer.get(offset) & 0xff;
+        if ((firstbyte & 0xc0) != 128) {
+            throw new IOException("Bad RTCP packet version for firstbyte : " + firstbyte);
+        }
+        int length = (mBuffer.getShort(offset + 2) & 0xffff) + 1 << 2;
+        if (offset + length > mEnd) {
+            throw new IOException("Bad RTCP packet length : " + (offset + length - mNextPacket));
+        }
+        int padlen = 0;
+        if ((firstbyte & 0x20) != 0) {
+            if (offset + length != mEnd) {
+                throw new IOException("Bad RTCP packet format (P != 0)");
+            }
+            padlen = mBuffer.get(mEnd - 1) & 0xff;
+            if (padlen == 0 || padlen > length - 4) {
+                throw new IOException("Bad RTCP packet format with padding : " + padlen);
+            }
+        }
+        mPacketStart = offset;
+        mPacketLength = length - padlen;
+        mType = mBuffer.get(offset + 1) & 0xff;
+        mCount = firstbyte & 0x1f;
+        mNextPacket = offset + length;
+
+        switch (mType) {
+            case RtcpPacket.RTCP_SR:
+                if (mPacketLength != SR_HEADER_SIZE + REPORT_BLOCK_SIZE * mCount) {
+                    throw new IOException("Bad RTCP SR packet format");
+                }
+                break;
+
+            case RtcpPacket.RTCP_RR:
+                if (mPacketLength != RR_HEADER_SIZE + REPORT_BLOCK_SIZE * mCount) {
+                    throw new IOException("Bad RTCP RR packet format");
+                }
+                break;
+
+            case RtcpPacket.RTCP_SDES:
+                checkSdesPacket();
+                break;
+
+            case RtcpPacket.RTCP_BYE:
+                int reasonOffset = 4 + 4 * mCount;
+                int reasonLength = 0;
+                if (mPacketLength > reasonOffset) {
+                    reasonLength = (mBuffer.get(offset + reasonOffset) & 0xff) + 1 + 3 & -4;
+                }
+                if (mPacketLength != reasonOffset + reasonLength) {
+                    throw new IOException("Bad RTCP BYE packet format");
+                }
+                break;
+
+            case RtcpPacket.RTCP_APP:
+                if (mPacketLength < APP_HEADER_SIZE) {
+                    throw new IOException("Bad RTCP APP packet format");
+                }
+                break;
+
+            default:
+                // Unknown packets are left to the caller
+                break;
+        }
+        return true;
+    }
+
+    private void checkSdesPacket() throws IOException {
+        int end = mPacketStart + mPacketLength;
+        int pos = mPacketStart + 4;
+        for (int i = 0; i < mCount; i++) {
+            // SSRC followed by the list of items
+            pos += 4;
+            boolean gotcname = false;
+            int type;
+            do {
+                if (pos >= end) {
+                    throw new IOException("Bad RTCP SDES packet format");
+                }
+                type = mBuffer.get(pos++) & 0xff;
+                if (type > 8) {
+                    throw new IOException("Bad RTCP SDES packet format");
+                }
+                if (type != 0) {
+                    if (type == 1) {
+                        gotcname = true;
+                    }
+                    if (pos >= end) {
+                        throw new IOException("Bad RTCP SDES packet format");
+                    }
+                    pos += 1 + (mBuffer.get(pos) & 0xff);
+                }
+            } while (type != 0);
+            if (!gotcname) {
+                throw new IOException("Bad RTCP SDES packet format");
+            }
+            // Chunks are 32 bit aligned
+            pos = mPacketStart + (pos - mPacketStart + 3 & -4);
+        }
+        if (pos != end) {
+            throw new IOException("Bad RTCP SDES packet format");
+        }
+    }
+
+    /**
+     * Returns the type of the current packet
+     * 
+     * @return Type
+     */
+    public int getType() {
+        return mType;
+    }
+
+    /**
+     * Returns the count field of the current packet: the number of report blocks of a report,
+     * the number of chunks of a SDES, the number of sources of a BYE or the subtype of an APP
+     * 
+     * @return Count
+     */
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Returns the offset of the current packet in the buffer
+     * 
+     * @return Offset
+     */
+    public int getOffset() {
+        return mPacketStart;
+    }
+
+    /**
+     * Returns the length of the current packet, padding included
+     * 
+     * @return Length
+     */
+    public int getLength() {
+        return mNextPacket - mPacketStart;
+    }
+
+    /**
+     * Returns the first SSRC of the current packet: the sender of a report or APP packet, the
+     * first chunk of a SDES or the first source of a BYE
+     * 
+     * @return SSRC
+     */
+    public int getSsrc() {
+        return mBuffer.getInt(mPacketStart + 4);
+    }
+
+    /**
+     * Returns the NTP timestamp of the current sender report
+     * 
+     * @return NTP timestamp
+     */
+    public long getNtpTimestamp() {
+        return mBuffer.getLong(mPacketStart + 8);
+    }
+
+    /**
+     * Returns the RTP timestamp of the current sender report
+     * 
+     * @return RTP timestamp
+     */
+    public long getRtpTimestamp() {
+        return mBuffer.getInt(mPacketStart + 16) & 0xffffffffL;
+    }
+
+    /**
+     * Returns the packet count of the current sender report
+     * 
+     * @return Packet count
+     */
+    public long getPacketCount() {
+        return mBuffer.getInt(mPacketStart + 20) & 0xffffffffL;
+    }
+
+    /**
+     * Returns the octet count of the current sender report
+     * 
+     * @return Octet count
+     */
+    public long getOctetCount() {
+        return mBuffer.getInt(mPacketStart + 24) & 0xffffffffL;
+    }
+
+    private int getReportBlock(int index) {
+        return mPacketStart + (mType == RtcpPacket.RTCP_SR ? SR_HEADER_SIZE : RR_HEADER_SIZE)
+                + REPORT_BLOCK_SIZE * index;
+    }
+
+    /**
+     * Returns the SSRC of a report block of the current report
+     * 
+     * @param index Index of the report block
+     * @return SSRC of the source reported
+     */
+    public int getReportSsrc(int index) {
+        return mBuffer.getInt(getReportBlock(index));
+    }
+
+    /**
+     * Returns the fraction lost of a report block of the current report
+     * 
+     * @param index Index of the report block
+     * @return Fraction lost in 1/256
+     */
+    public int getReportFractionLost(int index) {
+        return mBuffer.get(getReportBlock(index) + 4) & 0xff;
+    }
+
+    /**
+     * Returns the cumulative number of packets lost of a report block of the current report
+     * 
+     * @param index Index of the report block
+     * @return Number of packets lost
+     */
+    public int getReportPacketsLost(int index) {
+        return mBuffer.getInt(getReportBlock(index) + 4) & 0xffffff;
+    }
+
+    /**
+     * Returns the extended highest sequence number received of a report block of the current
+     * report
+     * 
+     * @param index Index of the report block
+     * @return Extended sequence number
+     */
+    public long getReportLastSeq(int index) {
+        return mBuffer.getInt(getReportBlock(index) + 8) & 0xffffffffL;
+    }
+
+    /**
+     * Returns the interarrival jitter of a report block of the current report
+     * 
+     * @param index Index of the report block
+     * @return Jitter in timestamp units
+     */
+    public int getReportJitter(int index) {
+        return mBuffer.getInt(getReportBlock(index) + 12);
+    }
+
+    /**
+     * Returns the last SR timestamp of a report block of the current report
+     * 
+     * @param index Index of the report block
+     * @return Middle 32 bits of the NTP timestamp of the last sender report
+     */
+    public long getReportLsr(int index) {
+        return mBuffer.getInt(getReportBlock(index) + 16) & 0xffffffffL;
+    }
+
+    /**
+     * Returns the delay since last SR of a report block of the current report
+     * 
+     * @param index Index of the report block
+     * @return Delay in 1/65536 seconds
+     */
+    public long getReportDlsr(int index) {
+        return mBuffer.getInt(getReportBlock(index) + 20) & 0xffffffffL;
+    }
+
+    /**
+     * Returns a report block of the current report
+     * 
+     * @param index Index of the report block
+     * @return Report
+     */
+    public RtcpReport getReport(int index) {
+        return new RtcpReport(getReportSsrc(index), getReportFractionLost(index),
+                getReportPacketsLost(index), getReportLastSeq(index), getReportJitter(index),
+                getReportLsr(index), getReportDlsr(index));
+    }
+
+    /**
+     * Returns the chunks of the current SDES
+     * 
+     * @return Chunks
+     */
+    public RtcpSdesBlock[] getSdesBlocks() {
+        RtcpSdesBlock[] blocks = new RtcpSdesBlock[mCount];
+        int pos = mPacketStart + 4;
+        for (int i = 0; i < mCount; i++) {
+            RtcpSdesBlock block = new RtcpSdesBlock();
+            blocks[i] = block;
+            block.ssrc = mBuffer.getInt(pos);
+            pos += 4;
+            int count = 0;
+            for (int item = pos; mBuffer.get(item) != 0; item += 2 + (mBuffer.get(item + 1)
+                    & 0xff)) {
+                count++;
+            }
+            block.items = new RtcpSdesItem[count];
+            for (int j = 0; j < count; j++) {
+                RtcpSdesItem item = new RtcpSdesItem();
+                item.type = mBuffer.get(pos) & 0xff;
+                item.data = new byte[mBuffer.get(pos + 1) & 0xff];
+                copy(pos + 2, item.data);
+                block.items[j] = item;
+                pos += 2 + item.data.length;
+            }
+            pos = mPacketStart + (pos + 1 - mPacketStart + 3 & -4);
+        }
+        return blocks;
+    }
+
+    /**
+     * Returns the SSRC of a source of the current BYE
+     * 
+     * @param index Index of the source
+     * @return SSRC
+     */
+    public int getByeSsrc(int index) {
+        return mBuffer.getInt(mPacketStart + 4 + 4 * index);
+    }
+
+    /**
+     * Returns the reason for leaving of the current BYE
+     * 
+     * @return Reason, empty if there is none
+     */
+    public byte[] getByeReason() {
+        int reasonOffset = mPacketStart + 4 + 4 * mCount;
+        if (mPacketStart + mPacketLength <= reasonOffset) {
+            return new byte[0];
+        }
+        byte[] reason = new byte[mBuffer.get(reasonOffset) & 0xff];
+        copy(reasonOffset + 1, reason);
+        return reason;
+    }
+
+    /**
+     * Returns the name of the current APP packet
+     * 
+     * @return Name made of four ASCII characters
+     */
+    public int getAppName() {
+        return mBuffer.getInt(mPacketStart + 8);
+    }
+
+    /**
+     * Returns the offset in the buffer of the application-dependent data of the current APP
+     * packet
+     * 
+     * @return Offset
+     */
+    public int getAppDataOffset() {
+        return mPacketStart + APP_HEADER_SIZE;
+    }
+
+    /**
+     * Returns the length of the application-dependent data of the current APP packet
+     * 
+     * @return Length
+     */
+    public int getAppDataLength() {
+        return mPacketLength - APP_HEADER_SIZE;
+    }
+
+    /**
+     * Returns the application-dependent data of the current APP packet
+     * 
+     * @return Data
+     */
+    public byte[] getAppData() {
+        byte[] data = new byte[getAppDataLength()];
+        copy(getAppDataOffset(), data);
+        return data;
+    }
+
+    private void copy(int offset, byte[] dst) {
+        for (int i = 0; i < dst.length; i++) {
+            dst[i] = mBuffer.get(offset + i);
+        }
+    }
+}
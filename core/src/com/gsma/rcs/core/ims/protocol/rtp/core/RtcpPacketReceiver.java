@@ -35,11 +35,10 @@ import com.gsma.rcs.platform.network.DatagramConnection;
 import com.gsma.rcs.platform.network.NetworkFactory;
 import com.gsma.rcs.utils.logger.Logger;
 
-import java.io.ByteArrayInputStream;
 import java.io.Closeable;
-import java.io.DataInputStream;
 import java.io.IOException;
 import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
 import java.util.Vector;
 
 /**
@@ -63,6 +62,18 @@ public class RtcpPacketReceiver extends Thread implements Closeable {
 
     private RtcpSession mRtcpSession;
 
+    /**
+     * Buffer in which the RTCP packets are received
+     */
+    private final ByteBuffer mBuffer = ByteBuffer.allocate(RtcpPacket.MAX_PACKET_SIZE);
+
+    /**
+     * Received packet, wrapping the receive buffer
+     */
+    private final Packet mPacket = new Packet();
+
+    private final RtcpPacketReader mReader = new RtcpPacketReader();
+
     /**
      * Signals that thread is interrupted
      */
@@ -83,6 +94,8 @@ public class RtcpPacketReceiver extends Thread implements Closeable {
         super();
 
         mRtcpSession = rtcpSession;
+        mPacket.mData = mBuffer.array();
+        mPacket.mOffset = 0;
 
         // Create the UDP server
         mDatagramConnection = NetworkFactory.getFactory().createDatagramConnection(socketTimeout);
@@ -126,20 +139,15 @@ public class RtcpPacketReceiver extends Thread implements Closeable {
         try {
             while (mDatagramConnection != null) {
                 // Wait a packet
-                byte[] data = mDatagramConnection.receive();
-
-                // Create a packet object
-                Packet packet = new Packet();
-                packet.mData = data;
-                packet.mLength = data.length;
-                packet.mOffset = 0;
-                packet.mReceivedAt = System.currentTimeMillis();
+                mDatagramConnection.receive(mBuffer);
+                mPacket.mLength = mBuffer.limit();
+                mPacket.mReceivedAt = System.currentTimeMillis();
 
                 // Process the received packet
                 /* Update statistics */
                 mStats.numRtcpPkts++;
-                mStats.numRtcpBytes += packet.mLength;
-                parseRtcpPacket(packet);
+                mStats.numRtcpBytes += mPacket.mLength;
+                parseRtcpPacket();
             }
         } catch (SocketTimeoutException e) {
             if (sLogger.isActivated()) {
@@ -171,231 +179,118 @@ public class RtcpPacketReceiver extends Thread implements Closeable {
         }
     }
 
-    private RtcpReport getRtcpReport(DataInputStream in) throws IOException {
-        int ssrc = in.readInt();
-        long val = in.readInt();
-        val &= 0xffffffffL;
-        int fractionLost = (int) (val >> 24);
-        int packetsLost = (int) (val & 0xffffffL);
-        long lastSeq = in.readInt() & 0xffffffffL;
-        int jitter = in.readInt();
-        long lsr = in.readInt() & 0xffffffffL;
-        long dlsr = in.readInt() & 0xffffffffL;
-        return new RtcpReport(ssrc, fractionLost, packetsLost, lastSeq, jitter, lsr, dlsr);
-    }
-
     /**
-     * Parse the RTCP packet
+     * Parse the received RTCP compound packet in place. The packet objects carried by the events
+     * are only created when there are listeners to notify.
      * 
-     * @param packet RTCP packet not yet parsed
-     * @return RTCP packet
      * @throws IOException
      */
-    private RtcpPacket parseRtcpPacket(Packet packet) throws IOException {
-        RtcpCompoundPacket compoundPacket = new RtcpCompoundPacket(packet);
-        Vector<RtcpPacket> subpackets = new Vector<RtcpPacket>();
-        DataInputStream in = new DataInputStream(new ByteArrayInputStream(compoundPacket.mData,
-                compoundPacket.mOffset, compoundPacket.mLength));
-        mRtcpSession.updateavgrtcpsize(compoundPacket.mLength);
-        int length = 0;
-        for (int offset = 0; offset < compoundPacket.mLength; offset += length) {
-            int firstbyte = in.readUnsignedByte();
-            if ((firstbyte & 0xc0) != 128) {
-                throw new IOException(new StringBuilder("Bad RTCP packet version for firstbyte : ")
-                        .append(firstbyte).toString());
-            }
-
-            /* Read type of subpacket */
-            int type = in.readUnsignedByte();
-
-            /* Read length of subpacket */
-            length = in.readUnsignedShort();
-            length = length + 1 << 2;
-            int padlen = 0;
-            if (offset + length > compoundPacket.mLength) {
-                throw new IOException(new StringBuilder("Bad RTCP packet length : ").append(
-                        offset + length).toString());
+    private void parseRtcpPacket() throws IOException {
+        mRtcpSession.updateavgrtcpsize(mPacket.mLength);
+        mReader.reset(mBuffer);
+        RtcpCompoundPacket compoundPacket = null;
+        while (nextRtcpPacket()) {
+            boolean notify = !mListeners.isEmpty();
+            if (notify && compoundPacket == null) {
+                compoundPacket = new RtcpCompoundPacket(mPacket);
             }
-            if (offset + length == compoundPacket.mLength) {
-                if ((firstbyte & 0x20) != 0) {
-                    padlen = compoundPacket.mData[compoundPacket.mOffset + compoundPacket.mLength
-                            - 1] & 0xff;
-                    if (padlen == 0) {
-                        if (sLogger.isActivated()) {
-                            sLogger.error("Bad RTCP packet format");
-                        }
-                        throw new IOException(new StringBuilder(
-                                "Bad RTCP packet format with length : ").append(padlen).toString());
-                    }
-                }
-            } else if ((firstbyte & 0x20) != 0) {
-                throw new IOException("Bad RTCP packet format (P != 0)");
-            }
-            int inlength = length - padlen;
-            firstbyte &= 0x1f;
-
-            RtcpPacket subpacket;
-            switch (type) {
+            RtcpPacket subpacket = null;
+            switch (mReader.getType()) {
                 case RtcpPacket.RTCP_SR:
                     mStats.numSrPkts++;
-                    if (inlength != 28 + 24 * firstbyte) {
-                        mStats.numMalformedRtcpPkts++;
-                        throw new IOException("Bad RTCP SR packet format");
-                    }
-                    RtcpSenderReportPacket srp = new RtcpSenderReportPacket(compoundPacket);
-                    subpacket = srp;
-                    srp.ssrc = in.readInt();
-                    srp.ntptimestampmsw = in.readInt() & 0xffffffffL;
-                    srp.ntptimestamplsw = in.readInt() & 0xffffffffL;
-                    srp.rtptimestamp = in.readInt() & 0xffffffffL;
-                    srp.packetcount = in.readInt() & 0xffffffffL;
-                    srp.octetcount = in.readInt() & 0xffffffffL;
-                    srp.reports = new RtcpReport[firstbyte];
-
                     RtpSource sourceSR = mRtcpSession.getMySource();
                     if (sourceSR != null) {
-                        sourceSR.receivedSenderReport(srp);
+                        sourceSR.receivedSenderReport(mReader.getNtpTimestamp());
                     }
-
-                    for (int i = 0; i < srp.reports.length; i++) {
-                        srp.reports[i] = getRtcpReport(in);
+                    if (notify) {
+                        RtcpSenderReportPacket srp = new RtcpSenderReportPacket(compoundPacket);
+                        subpacket = srp;
+                        long ntpTimestamp = mReader.getNtpTimestamp();
+                        srp.ssrc = mReader.getSsrc();
+                        srp.ntptimestampmsw = ntpTimestamp >>> 32;
+                        srp.ntptimestamplsw = ntpTimestamp & 0xffffffffL;
+                        srp.rtptimestamp = mReader.getRtpTimestamp();
+                        srp.packetcount = mReader.getPacketCount();
+                        srp.octetcount = mReader.getOctetCount();
+                        srp.reports = new RtcpReport[mReader.getCount()];
+                        for (int i = 0; i < srp.reports.length; i++) {
+                            srp.reports[i] = mReader.getReport(i);
+                        }
+                        notifyRtcpListeners(new RtcpSenderReportEvent(srp));
                     }
-
-                    notifyRtcpListeners(new RtcpSenderReportEvent(srp));
                     break;
 
                 case RtcpPacket.RTCP_RR:
-                    if (inlength != 8 + 24 * firstbyte) {
-                        mStats.numMalformedRtcpPkts++;
-                        throw new IOException("Bad RTCP RR packet format");
-                    }
-                    RtcpReceiverReportPacket rrp = new RtcpReceiverReportPacket(compoundPacket);
-                    subpacket = rrp;
-                    rrp.ssrc = in.readInt();
-                    rrp.reports = new RtcpReport[firstbyte];
-
-                    for (int i = 0; i < rrp.reports.length; i++) {
-                        rrp.reports[i] = getRtcpReport(in);
+                    if (notify) {
+                        RtcpReceiverReportPacket rrp = new RtcpReceiverReportPacket(compoundPacket);
+                        subpacket = rrp;
+                        rrp.ssrc = mReader.getSsrc();
+                        rrp.reports = new RtcpReport[mReader.getCount()];
+                        for (int i = 0; i < rrp.reports.length; i++) {
+                            rrp.reports[i] = mReader.getReport(i);
+                        }
+                        notifyRtcpListeners(new RtcpReceiverReportEvent(rrp));
                     }
-
-                    notifyRtcpListeners(new RtcpReceiverReportEvent(rrp));
                     break;
 
                 case RtcpPacket.RTCP_SDES:
-                    RtcpSdesPacket sdesp = new RtcpSdesPacket(compoundPacket);
-                    subpacket = sdesp;
-                    sdesp.sdes = new RtcpSdesBlock[firstbyte];
-                    int sdesoff = 4;
-                    for (int i = 0; i < sdesp.sdes.length; i++) {
-                        RtcpSdesBlock chunk = new RtcpSdesBlock();
-                        sdesp.sdes[i] = chunk;
-                        chunk.ssrc = in.readInt();
-                        sdesoff += 5;
-                        Vector<RtcpSdesItem> items = new Vector<RtcpSdesItem>();
-                        boolean gotcname = false;
-                        int j;
-                        while ((j = in.readUnsignedByte()) != 0) {
-                            if (j < 1 || j > 8) {
-                                mStats.numMalformedRtcpPkts++;
-                                throw new IOException("Bad RTCP SDES packet format");
-                            }
-                            if (j == 1) {
-                                gotcname = true;
-                            }
-                            RtcpSdesItem item = new RtcpSdesItem();
-                            items.addElement(item);
-                            item.type = j;
-                            int sdeslen = in.readUnsignedByte();
-                            item.data = new byte[sdeslen];
-                            in.readFully(item.data);
-                            sdesoff += 2 + sdeslen;
-                        }
-                        if (!gotcname) {
-                            mStats.numMalformedRtcpPkts++;
-                            throw new IOException("Bad RTCP SDES packet format");
-                        }
-                        chunk.items = new RtcpSdesItem[items.size()];
-                        items.copyInto(chunk.items);
-                        if ((sdesoff & 3) != 0) {
-                            if (in.skip(4 - (sdesoff & 3)) != 4 - (sdesoff & 3)) {
-                                throw new IOException("Bad RTCP SDES packet format");
-                            }
-                            sdesoff = sdesoff + 3 & -4;
-                        }
-                    }
-
-                    if (inlength != sdesoff) {
-                        mStats.numMalformedRtcpPkts++;
-                        throw new IOException("Bad RTCP SDES packet format");
+                    if (notify) {
+                        RtcpSdesPacket sdesp = new RtcpSdesPacket(compoundPacket);
+                        subpacket = sdesp;
+                        sdesp.sdes = mReader.getSdesBlocks();
+                        notifyRtcpListeners(new RtcpSdesEvent(sdesp));
                     }
-
-                    notifyRtcpListeners(new RtcpSdesEvent(sdesp));
                     break;
 
                 case RtcpPacket.RTCP_BYE:
-                    RtcpByePacket byep = new RtcpByePacket(compoundPacket);
-                    subpacket = byep;
-                    byep.mSsrc = new int[firstbyte];
-                    for (int i = 0; i < byep.mSsrc.length; i++) {
-                        byep.mSsrc[i] = in.readInt();
-                    }
-
-                    int reasonlen;
-                    if (inlength > 4 + 4 * firstbyte) {
-                        reasonlen = in.readUnsignedByte();
-                        byep.mReason = new byte[reasonlen];
-                        reasonlen++;
-                    } else {
-                        reasonlen = 0;
-                        byep.mReason = new byte[0];
-                    }
-                    reasonlen = reasonlen + 3 & -4;
-                    if (inlength != 4 + 4 * firstbyte + reasonlen) {
-                        mStats.numMalformedRtcpPkts++;
-                        throw new IOException("Bad RTCP BYE packet format");
-                    }
-                    in.readFully(byep.mReason);
-                    int skipBye = reasonlen - byep.mReason.length;
-                    if (in.skip(skipBye) != skipBye) {
-                        throw new IOException("Bad RTCP BYE packet format");
+                    if (notify) {
+                        RtcpByePacket byep = new RtcpByePacket(compoundPacket);
+                        subpacket = byep;
+                        byep.mSsrc = new int[mReader.getCount()];
+                        for (int i = 0; i < byep.mSsrc.length; i++) {
+                            byep.mSsrc[i] = mReader.getByeSsrc(i);
+                        }
+                        byep.mReason = mReader.getByeReason();
+                        notifyRtcpListeners(new RtcpByeEvent(byep));
                     }
-
-                    notifyRtcpListeners(new RtcpByeEvent(byep));
                     break;
 
                 case RtcpPacket.RTCP_APP:
-                    if (inlength < 12) {
-                        throw new IOException("Bad RTCP APP packet format");
-                    }
-                    RtcpAppPacket appp = new RtcpAppPacket(compoundPacket);
-                    subpacket = appp;
-                    appp.mSsrc = in.readInt();
-                    appp.mName = in.readInt();
-                    appp.mSubtype = firstbyte;
-                    appp.mData = new byte[inlength - 12];
-                    in.readFully(appp.mData);
-                    int skipApp = inlength - 12 - appp.mData.length;
-                    if (in.skip(skipApp) != skipApp) {
-                        throw new IOException("Bad RTCP APP packet format");
+                    if (notify) {
+                        RtcpAppPacket appp = new RtcpAppPacket(compoundPacket);
+                        subpacket = appp;
+                        appp.mSsrc = mReader.getSsrc();
+                        appp.mName = mReader.getAppName();
+                        appp.mSubtype = mReader.getCount();
+                        appp.mData = mReader.getAppData();
+                        notifyRtcpListeners(new RtcpApplicationEvent(appp));
                     }
-
-                    notifyRtcpListeners(new RtcpApplicationEvent(appp));
                     break;
 
                 default:
                     mStats.numUnknownTypes++;
                     throw new IOException("Bad RTCP packet format");
             }
-            subpacket.mOffset = offset;
-            subpacket.mLength = length;
-            subpackets.addElement(subpacket);
-            if (in.skipBytes(padlen) != padlen) {
-                throw new IOException("Bad RTCP packet format");
+            if (subpacket != null) {
+                subpacket.mOffset = mReader.getOffset();
+                subpacket.mLength = mReader.getLength();
             }
         }
-        compoundPacket.mPackets = new RtcpPacket[subpackets.size()];
-        subpackets.copyInto(compoundPacket.mPackets);
-        return compoundPacket;
+    }
+
+    /**
+     * Move to the next packet of the received compound packet
+     * 
+     * @return False if there is no more packet
+     * @throws IOException
+     */
+    private boolean nextRtcpPacket() throws IOException {
+        try {
+            return mReader.next();
+        } catch (IOException e) {
+            mStats.numMalformedRtcpPkts++;
+            throw e;
+        }
     }
 
     /**
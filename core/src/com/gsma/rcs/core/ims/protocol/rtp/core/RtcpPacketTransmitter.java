@@ -22,6 +22,8 @@
 
 package com.gsma.rcs.core.ims.protocol.rtp.core;
 
+import static com.gsma.rcs.utils.StringUtils.UTF8;
+
 import com.gsma.rcs.core.ims.network.NetworkException;
 import com.gsma.rcs.platform.network.DatagramConnection;
 import com.gsma.rcs.platform.network.NetworkFactory;
@@ -29,15 +31,19 @@ import com.gsma.rcs.utils.logger.Logger;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Random;
-import java.util.Vector;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * RTCP packet transmitter
  * 
  * @author jexa7410
  */
-public class RtcpPacketTransmitter extends Thread implements Closeable {
+public class RtcpPacketTransmitter implements Closeable {
 
     private String mRemoteAddress;
 
@@ -53,20 +59,44 @@ public class RtcpPacketTransmitter extends Thread implements Closeable {
     private RtcpSession mRtcpSession;
 
     /**
-     * Flag used to determine when to terminate after sending a BYE
+     * Flag used to properly close
      */
-    private boolean mWaitingForByeBackoff = false;
+    private volatile boolean mClosed = false;
 
     /**
-     * Flag used to properly close
+     * Writer of the RTCP compound packets, reused from one report to the next
      */
-    private boolean mClosed = false;
+    private final RtcpPacketWriter mWriter = new RtcpPacketWriter();
+
+    private final ReceptionReport mReceptionReport;
+
+    private String mCname;
+
+    private byte[] mCnameData;
+
+    /**
+     * Next report to be sent
+     */
+    private ScheduledFuture<?> mReport;
+
+    private final Runnable mReportTask = new Runnable() {
+        @Override
+        public void run() {
+            sendReport();
+        }
+    };
 
     /**
      * Random value
      */
     private Random mRand = new Random();
 
+    /**
+     * Scheduler shared by the RTCP transmitters of all the sessions
+     */
+    private static final ScheduledExecutorService sScheduler = Executors
+            .newSingleThreadScheduledExecutor();
+
     private static final Logger sLogger = Logger.getLogger(RtcpPacketTransmitter.class.getName());
 
     /**
@@ -79,11 +109,10 @@ public class RtcpPacketTransmitter extends Thread implements Closeable {
      */
     public RtcpPacketTransmitter(String address, int port, RtcpSession rtcpSession)
             throws IOException {
-        super();
-
         mRemoteAddress = address;
         mRemotePort = port;
         mRtcpSession = rtcpSession;
+        mReceptionReport = new ReceptionReport(rtcpSession.SSRC);
 
         // Open the connection
         mDatagramConnection = NetworkFactory.getFactory().createDatagramConnection();
@@ -105,11 +134,10 @@ public class RtcpPacketTransmitter extends Thread implements Closeable {
      */
     public RtcpPacketTransmitter(String address, int port, RtcpSession rtcpSession,
             DatagramConnection connection) throws IOException {
-        super();
-
         mRemoteAddress = address;
         mRemotePort = port;
         mRtcpSession = rtcpSession;
+        mReceptionReport = new ReceptionReport(rtcpSession.SSRC);
 
         // Open the connection
         if (connection != null) {
@@ -124,18 +152,50 @@ public class RtcpPacketTransmitter extends Thread implements Closeable {
         }
     }
 
+    /**
+     * Start sending the RTCP reports
+     */
+    public void start() {
+        sScheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // Send a SDES packet
+                    sendSdesPacket();
+                    scheduleReport();
+                } catch (NetworkException e) {
+                    if (sLogger.isActivated()) {
+                        sLogger.debug(e.getMessage());
+                    }
+                } catch (RuntimeException e) {
+                    /*
+                     * Intentionally catch runtime exceptions as else it will abruptly end the
+                     * scheduler thread, which is not intended.
+                     */
+                    sLogger.error("Can't send the RTCP packet", e);
+                }
+            }
+        });
+    }
+
     /**
      * Close the transmitter
      * 
      * @throws IOException
      */
     public void close() throws IOException {
-        if (mClosed) {
-            return;
-        }
+        synchronized (this) {
+            if (mClosed) {
+                return;
+            }
 
-        mRtcpSession.isByeRequested = true;
-        mClosed = true;
+            mRtcpSession.isByeRequested = true;
+            mClosed = true;
+            if (mReport != null) {
+                mReport.cancel(false);
+                mReport = null;
+            }
+        }
 
         // Close the datagram connection
         if (mDatagramConnection != null) {
@@ -144,283 +204,104 @@ public class RtcpPacketTransmitter extends Thread implements Closeable {
         if (sLogger.isActivated()) {
             sLogger.debug("RTCP transmitter closed");
         }
-        // If the method start() was never invoked this Thread will be on NEW
-        // state and the resources won't be freed. We need to force the start()
-        // to allow it to die gracefully
-        if (getState() == State.NEW) {
-            start();
-        }
+    }
 
+    /**
+     * Schedule the next report after the RTCP report interval
+     */
+    private synchronized void scheduleReport() {
+        if (mClosed) {
+            return;
+        }
+        mReport = sScheduler.schedule(mReportTask, (long) mRtcpSession.getReportInterval(),
+                TimeUnit.MILLISECONDS);
     }
 
     /**
-     * Background processing
+     * Send a report if it is the right time or reschedule it
      */
-    public void run() {
+    private void sendReport() {
         if (mClosed) {
             return;
         }
 
         try {
-            // Send a SDES packet
-            sendSdesPacket();
-
-            boolean terminate = false;
-            while (!terminate) {
-                try {
-                    // Wait the RTCP report interval.
-                    Thread.sleep((long) mRtcpSession.getReportInterval());
-
-                    // Right time to send a RTCP packet or reschedule ?
-                    if ((mRtcpSession.timeOfLastRTCPSent + mRtcpSession.T) <= mRtcpSession
-                            .currentTime()) {
-                        // We know that it is time to send a RTCP packet, is it
-                        // a BYE packet
-                        if ((mRtcpSession.isByeRequested && mWaitingForByeBackoff)) {
-                            // If it is bye then did we ever sent anything
-                            if (mRtcpSession.timeOfLastRTCPSent > 0
-                                    && mRtcpSession.timeOfLastRTPSent > 0) {
-                                mRtcpSession.getMySource().activeSender = false;
-                                mRtcpSession.timeOfLastRTCPSent = mRtcpSession.currentTime();
-                            } else {
-                                // We never sent anything and we have to quit :(
-                                // do not send BYE
-                                terminate = true;
-                            }
-                        } else {
-                            if (!mClosed) {
-                                byte[] data = assembleRtcpPacket();
-                                if (data != null) {
-                                    transmit(assembleRtcpPacket());
-                                }
-                                if (mRtcpSession.isByeRequested && !mWaitingForByeBackoff) {
-                                    // We have sent a BYE packet, so terminate
-                                    terminate = true;
-                                } else {
-                                    mRtcpSession.timeOfLastRTCPSent = mRtcpSession.currentTime();
-                                }
-                            } else {
-                                terminate = true;
-                            }
-
-                        }
-                    }
-                    mWaitingForByeBackoff = false;
-
-                } catch (InterruptedException e) {
-                    mWaitingForByeBackoff = true;
-                    mRtcpSession.isByeRequested = true;
+            // Right time to send a RTCP packet or reschedule ?
+            if ((mRtcpSession.timeOfLastRTCPSent + mRtcpSession.T) <= mRtcpSession.currentTime()) {
+                assembleRtcpPacket();
+                transmit();
+                if (mRtcpSession.isByeRequested) {
+                    // We have sent a BYE packet, so terminate
+                    return;
                 }
             }
+            scheduleReport();
         } catch (NetworkException e) {
             if (sLogger.isActivated()) {
                 sLogger.debug(e.getMessage());
             }
         } catch (RuntimeException e) {
             /*
-             * Intentionally catch runtime exceptions as else it will abruptly end the thread and
-             * eventually bring the whole system down, which is not intended.
+             * Intentionally catch runtime exceptions as else it will abruptly end the scheduler
+             * thread, which is not intended.
              */
             sLogger.error("Can't send the RTCP packet", e);
         }
     }
 
     /**
-     * assemble RTCP packet
+     * Assemble a RTCP compound packet in the writer
      */
-    private byte[] assembleRtcpPacket() {
-        byte data[] = new byte[0];
+    private void assembleRtcpPacket() {
+        mWriter.reset();
 
         // Sender or receiver packet
         RtpSource s = mRtcpSession.getMySource();
+        s.updateReceptionReport(mReceptionReport);
         if ((s.activeSender) && (mRtcpSession.timeOfLastRTCPSent < mRtcpSession.timeOfLastRTPSent)) {
-            data = RtcpPacketUtils.append(data, assembleSenderReportPacket());
+            long ntpTimestamp = RtcpPacketUtils.toNtpTimestamp(mRtcpSession.currentTime());
+            long randomOffset = mRand.nextInt() & 0x000000FF;
+            mWriter.writeSenderReport(mRtcpSession.SSRC, ntpTimestamp, (long) mRtcpSession.tc
+                    + randomOffset, mRtcpSession.packetCount, mRtcpSession.octetCount,
+                    mReceptionReport);
         } else {
-            data = RtcpPacketUtils.append(data, assembleReceiverReportPacket());
+            mWriter.writeReceiverReport(mRtcpSession.SSRC, mReceptionReport);
         }
 
-        // SDES packets
-        Vector<RtcpSdesPacket> repvec = makereports();
-        for (int i = 0; i < repvec.size(); i++) {
-            if (repvec.elementAt(i).mData != null)
-                data = RtcpPacketUtils.append(data, repvec.elementAt(i).mData);
-        }
+        // SDES packet
+        mWriter.writeSdes(mRtcpSession.SSRC, getCname());
 
         // BYE packet
-        RtcpByePacket byepacket = null;
         if (mRtcpSession.isByeRequested) {
-            int ssrc[] = {
-                mRtcpSession.SSRC
-            };
-            byepacket = new RtcpByePacket(ssrc, null);
-            data = RtcpPacketUtils.append(data, byepacket.mData);
+            mWriter.writeBye(mRtcpSession.SSRC, null);
         }
-
-        return data;
     }
 
     /**
-     * assemble RTCP SR packet
+     * Returns the CNAME of the local source, encoded again only when it has changed
      * 
-     * @return packet data
+     * @return CNAME
      */
-    private byte[] assembleSenderReportPacket() {
-        final int FIXED_HEADER_SIZE = 4;
-        byte V_P_RC = (byte) ((RtcpPacket.VERSION << 6) | (RtcpPacket.PADDING << 5) | (0x00));
-        byte ss[] = RtcpPacketUtils.longToBytes(mRtcpSession.SSRC, 4);
-        byte PT[] = RtcpPacketUtils.longToBytes(RtcpPacket.RTCP_SR, 1);
-        byte NTP_Timestamp[] = RtcpPacketUtils.longToBytes(mRtcpSession.currentTime(), 8);
-        short randomOffset = (short) Math.abs(mRand.nextInt() & 0x000000FF);
-        byte RTP_Timestamp[] = RtcpPacketUtils
-                .longToBytes((long) mRtcpSession.tc + randomOffset, 4);
-        byte SenderPacketCount[] = RtcpPacketUtils.longToBytes(mRtcpSession.packetCount, 4);
-        byte SenderOctetCount[] = RtcpPacketUtils.longToBytes(mRtcpSession.octetCount, 4);
-
-        // report block
-        byte receptionReportBlocks[] = new byte[0];
-        receptionReportBlocks = RtcpPacketUtils.append(receptionReportBlocks,
-                assembleRTCPReceptionReport());
-        byte receptionReports = (byte) (receptionReportBlocks.length / 24);
-        V_P_RC = (byte) (V_P_RC | (byte) (receptionReports & 0x1F));
-
-        // Length is 32 bit words contained in the packet -1
-        byte length[] = RtcpPacketUtils.longToBytes((FIXED_HEADER_SIZE + ss.length
-                + NTP_Timestamp.length + RTP_Timestamp.length + SenderPacketCount.length
-                + SenderOctetCount.length + receptionReportBlocks.length) / 4 - 1, 2);
-
-        // Build RTCP SR Packet
-        byte rtcpSRPacket[] = new byte[1];
-        rtcpSRPacket[0] = V_P_RC;
-        rtcpSRPacket = RtcpPacketUtils.append(rtcpSRPacket, PT);
-        rtcpSRPacket = RtcpPacketUtils.append(rtcpSRPacket, length);
-        rtcpSRPacket = RtcpPacketUtils.append(rtcpSRPacket, ss);
-        rtcpSRPacket = RtcpPacketUtils.append(rtcpSRPacket, NTP_Timestamp);
-        rtcpSRPacket = RtcpPacketUtils.append(rtcpSRPacket, RTP_Timestamp);
-        rtcpSRPacket = RtcpPacketUtils.append(rtcpSRPacket, SenderPacketCount);
-        rtcpSRPacket = RtcpPacketUtils.append(rtcpSRPacket, SenderOctetCount);
-        rtcpSRPacket = RtcpPacketUtils.append(rtcpSRPacket, receptionReportBlocks);
-
-        return rtcpSRPacket;
-    }
-
-    /**
-     * assemble RTCP RR packet
-     * 
-     * @return packet data
-     */
-    private byte[] assembleReceiverReportPacket() {
-        final int FIXED_HEADER_SIZE = 4;
-        byte V_P_RC = (byte) ((RtcpPacket.VERSION << 6) | (RtcpPacket.PADDING << 5) | (0x00));
-        byte ss[] = RtcpPacketUtils.longToBytes(mRtcpSession.SSRC, 4);
-        byte PT[] = RtcpPacketUtils.longToBytes(RtcpPacket.RTCP_RR, 1);
-
-        // report block
-        byte receptionReportBlocks[] = new byte[0];
-        receptionReportBlocks = RtcpPacketUtils.append(receptionReportBlocks,
-                assembleRTCPReceptionReport());
-        byte receptionReports = (byte) (receptionReportBlocks.length / 24);
-        V_P_RC = (byte) (V_P_RC | (byte) (receptionReports & 0x1F));
-
-        byte length[] = RtcpPacketUtils.longToBytes(
-                (FIXED_HEADER_SIZE + ss.length + receptionReportBlocks.length) / 4 - 1, 2);
-
-        // Build RTCP RR Packet
-        byte RRPacket[] = new byte[1];
-        RRPacket[0] = V_P_RC;
-        RRPacket = RtcpPacketUtils.append(RRPacket, PT);
-        RRPacket = RtcpPacketUtils.append(RRPacket, length);
-        RRPacket = RtcpPacketUtils.append(RRPacket, ss);
-        RRPacket = RtcpPacketUtils.append(RRPacket, receptionReportBlocks);
-        return RRPacket;
-    }
-
-    /**
-     * assemble RTCP Reception report block
-     * 
-     * @return report data
-     */
-    private byte[] assembleRTCPReceptionReport() {
-        byte reportBlock[] = new byte[0];
-        RtpSource source = mRtcpSession.getMySource();
-
-        ReceptionReport rr = source.generateReceptionReport();
-        byte SSRC[] = RtcpPacketUtils.longToBytes(rr.getSsrc(), 4);
-        byte fraction_lost[] = RtcpPacketUtils.longToBytes((long) rr.getFractionLost(), 1);
-        byte pkts_lost[] = RtcpPacketUtils.longToBytes(rr.getCumulativeNumberOfPacketsLost(), 3);
-        byte last_seq[] = RtcpPacketUtils.longToBytes(
-                rr.getExtendedHighestSequenceNumberReceived(), 4);
-        byte jitter[] = RtcpPacketUtils.longToBytes(rr.getInterarrivalJitter(), 4);
-        byte lst[] = RtcpPacketUtils.longToBytes(rr.getLastSenderReport(), 4);
-        byte dlsr[] = RtcpPacketUtils.longToBytes(rr.getDelaySinceLastSenderReport(), 4);
-
-        reportBlock = RtcpPacketUtils.append(reportBlock, SSRC);
-        reportBlock = RtcpPacketUtils.append(reportBlock, fraction_lost);
-        reportBlock = RtcpPacketUtils.append(reportBlock, pkts_lost);
-        reportBlock = RtcpPacketUtils.append(reportBlock, last_seq);
-        reportBlock = RtcpPacketUtils.append(reportBlock, jitter);
-        reportBlock = RtcpPacketUtils.append(reportBlock, lst);
-        reportBlock = RtcpPacketUtils.append(reportBlock, dlsr);
-
-        return reportBlock;
-    }
-
-    /**
-     * Generate a RTCP report
-     * 
-     * @return Vector
-     */
-    public Vector<RtcpSdesPacket> makereports() {
-        Vector<RtcpSdesPacket> packets = new Vector<RtcpSdesPacket>();
-
-        RtcpSdesPacket rtcpsdespacket = new RtcpSdesPacket(new RtcpSdesBlock[1]);
-        rtcpsdespacket.sdes[0] = new RtcpSdesBlock();
-        rtcpsdespacket.sdes[0].ssrc = mRtcpSession.SSRC;
-
-        Vector<RtcpSdesItem> vector = new Vector<RtcpSdesItem>();
-        vector.addElement(new RtcpSdesItem(1, RtpSource.getCname()));
-        rtcpsdespacket.sdes[0].items = new RtcpSdesItem[vector.size()];
-        vector.copyInto(rtcpsdespacket.sdes[0].items);
-
-        packets.addElement(rtcpsdespacket);
-        return packets;
-    }
-
-    /**
-     * Transmit a RTCP compound packet to the remote destination
-     * 
-     * @param packet Compound packet to be sent
-     * @throws NetworkException
-     */
-    private void transmit(RtcpCompoundPacket packet) throws NetworkException {
-        // Prepare data to be sent
-        byte[] data = packet.mData;
-        if (packet.mOffset > 0) {
-            System.arraycopy(data, packet.mOffset, data = new byte[packet.mLength], 0,
-                    packet.mLength);
+    private byte[] getCname() {
+        String cname = RtpSource.getCname();
+        if (!cname.equals(mCname)) {
+            mCname = cname;
+            mCnameData = cname.getBytes(UTF8);
         }
-
-        // Update statistics
-        mStats.numBytes += packet.mLength;
-        mStats.numPackets++;
-        mRtcpSession.updateavgrtcpsize(packet.mLength);
-        mRtcpSession.timeOfLastRTCPSent = mRtcpSession.currentTime();
-        // Send data over UDP
-        if (data == null) {
-            return;
-        }
-        mDatagramConnection.send(mRemoteAddress, mRemotePort, data);
+        return mCnameData;
     }
 
     /**
-     * Transmit a RTCP compound packet to the remote destination
+     * Transmit the RTCP compound packet of the writer to the remote destination
      * 
-     * @param packet Compound packet to be sent
      * @throws NetworkException
      */
-    private void transmit(byte packet[]) throws NetworkException {
-        mStats.numBytes += packet.length;
+    private void transmit() throws NetworkException {
+        ByteBuffer packet = mWriter.getPacket();
+        int length = packet.remaining();
+        mStats.numBytes += length;
         mStats.numPackets++;
-        mRtcpSession.updateavgrtcpsize(packet.length);
+        mRtcpSession.updateavgrtcpsize(length);
         mRtcpSession.timeOfLastRTCPSent = mRtcpSession.currentTime();
         /* Send data over UDP */
         mDatagramConnection.send(mRemoteAddress, mRemotePort, packet);
@@ -441,23 +322,8 @@ public class RtcpPacketTransmitter extends Thread implements Closeable {
      * @throws NetworkException
      */
     private void sendSdesPacket() throws NetworkException {
-        try {
-            // Create a report
-            Vector<RtcpSdesPacket> repvec = makereports();
-            RtcpPacket packets[] = new RtcpPacket[repvec.size()];
-            repvec.copyInto(packets);
-
-            // Create a RTCP compound packet
-            RtcpCompoundPacket cp = new RtcpCompoundPacket(packets);
-
-            // Assemble the RTCP packet
-            int i = cp.calcLength();
-            cp.assemble(i, false);
-
-            // Send the RTCP packet
-            transmit(cp);
-        } catch (IOException e) {
-            throw new NetworkException("Failed to send a SDES packet!", e);
-        }
+        mWriter.reset();
+        mWriter.writeSdes(mRtcpSession.SSRC, getCname());
+        transmit();
     }
 }
@@ -26,34 +26,20 @@ package com.gsma.rcs.core.ims.protocol.rtp.core;
 public class RtcpPacketUtils {
 
     /**
-     * Convert 64 bit long to n bytes.
-     * 
-     * @param data data
-     * @param n desired number of bytes to convert the long to.
-     * @return buffer
+     * Offset between the NTP epoch (1900) and the Unix epoch (1970) in seconds
      */
-    public static byte[] longToBytes(long data, int n) {
-        byte buf[] = new byte[n];
-        for (int i = n - 1; i >= 0; i--) {
-            buf[i] = (byte) data;
-            data = data >> 8;
-        }
-        return buf;
-    }
+    private static final long NTP_EPOCH_OFFSET = 2208988800L;
 
     /**
-     * Append two byte arrays.
+     * Convert a time to a 64 bit NTP timestamp, made of the seconds since 1900 in the 32 most
+     * significant bits and of the fraction of second in the 32 least significant bits.
      * 
-     * @param pck1 first packet.
-     * @param pck2 second packet.
-     * @return concatenated packet.
+     * @param timeMillis Time in milliseconds since the Unix epoch
+     * @return NTP timestamp
      */
-    public static byte[] append(byte[] pck1, byte[] pck2) {
-        byte packet[] = new byte[pck1.length + pck2.length];
-        for (int i = 0; i < pck1.length; i++)
-            packet[i] = pck1[i];
-        for (int i = 0; i < pck2.length; i++)
-            packet[i + pck1.length] = pck2[i];
-        return packet;
+    public static long toNtpTimestamp(long timeMillis) {
+        long seconds = timeMillis / 1000 + NTP_EPOCH_OFFSET;
+        long fraction = ((timeMillis % 1000) << 32) / 1000;
+        return (seconds << 32) | fraction;
     }
 }
@@ -24,6 +24,7 @@ import com.gsma.rcs.core.ims.protocol.rtp.util.Packet;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * Abstract RTP packet
@@ -43,10 +44,27 @@ public class RtpPacket extends Packet {
     public boolean extension;
     public RtpExtensionHeader extensionHeader;
 
+    /**
+     * Receive buffer of a pooled packet, the packet data is its backing array
+     */
+    private ByteBuffer mBuffer;
+
     public RtpPacket() {
         super();
     }
 
+    /**
+     * Constructor of a packet received in the given buffer
+     * 
+     * @param buffer Receive buffer backed by an array
+     */
+    RtpPacket(ByteBuffer buffer) {
+        super();
+
+        mBuffer = buffer;
+        mData = buffer.array();
+    }
+
     public RtpPacket(Packet packet) {
         super(packet);
 
@@ -96,4 +114,24 @@ public class RtpPacket extends Packet {
     public int calcLength() {
         return payloadlength + 12;
     }
+
+    /**
+     * Returns the receive buffer of a pooled packet
+     * 
+     * @return Buffer or null if the packet is not pooled
+     */
+    public ByteBuffer getBuffer() {
+        return mBuffer;
+    }
+
+    /**
+     * Release a pooled packet once its payload has been consumed. The packet data must not be
+     * used anymore after this call.
+     */
+    public void release() {
+        if (mBuffer != null) {
+            extensionHeader = null;
+            RtpPacketPool.release(this);
+        }
+    }
 }
@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.core.ims.protocol.rtp.core;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of the RTP packets in which the received datagrams are read, shared by all the RTP
+ * receivers. A pooled packet owns its receive buffer and is parsed in place.
+ */
+public final class RtpPacketPool {
+
+    /**
+     * Size of the receive buffer of a packet, larger than the path MTU
+     */
+    public static final int PACKET_SIZE = 4096;
+
+    /**
+     * Maximum number of packets kept in the pool
+     */
+    private static final int MAX_POOLED_PACKETS = 128;
+
+    private static final ConcurrentLinkedQueue<RtpPacket> sPackets = new ConcurrentLinkedQueue<>();
+
+    private static final AtomicInteger sPooledPackets = new AtomicInteger();
+
+    private RtpPacketPool() {
+    }
+
+    /**
+     * Acquire a packet from the pool, a new one is allocated if the pool is empty
+     *
+     * @return Packet with a cleared receive buffer
+     */
+    public static RtpPacket acquire() {
+        RtpPacket packet = sPackets.poll();
+        if (packet == null) {
+            return new RtpPacket(ByteBuffer.allocate(PACKET_SIZE));
+        }
+        sPooledPackets.decrementAndGet();
+        packet.getBuffer().clear();
+        return packet;
+    }
+
+    /**
+     * Release a packet to the pool
+     *
+     * @param packet Packet which must not be used anymore by the caller
+     */
+    static void release(RtpPacket packet) {
+        if (sPooledPackets.incrementAndGet() > MAX_POOLED_PACKETS) {
+            sPooledPackets.decrementAndGet();
+            return;
+        }
+        sPackets.add(packet);
+    }
+}
@@ -27,6 +27,7 @@ import com.gsma.rcs.platform.network.DatagramConnection;
 import com.gsma.rcs.platform.network.NetworkFactory;
 import com.gsma.rcs.utils.CloseableUtils;
 import com.gsma.rcs.utils.FifoBuffer;
+import com.gsma.rcs.utils.FifoBuffer.DropPolicy;
 import com.gsma.rcs.utils.logger.Logger;
 
 import java.io.Closeable;
@@ -54,31 +55,21 @@ public class RtpPacketReceiver extends Thread implements Closeable {
      */
     private RtcpSession mRtcpSession;
 
-    /**
-     * Fifo buffer for received packet
-     */
-    private FifoBuffer mBuffer = new FifoBuffer();
-
     /**
      * Max size for the fifo
      */
     private static final int FIFO_MAX_NUMBER = 100;
 
     /**
-     * Number of element to clean in the fifo
+     * Fifo buffer for received packet, the oldest packets are dropped when it is full
      */
-    private static final int FIFO_CLEAN_NUMBER = 20;
+    private FifoBuffer mBuffer = new FifoBuffer(FIFO_MAX_NUMBER, DropPolicy.DROP_OLDEST);
 
     /**
      * Signals that thread is interrupted
      */
     private boolean mInterrupted;
 
-    /**
-     * Last sequence number
-     */
-    private int mLastSeqnum;
-
     /**
      * timeout
      */
@@ -140,27 +131,24 @@ public class RtpPacketReceiver extends Thread implements Closeable {
         }
         try {
             while (mDatagramConnection != null) {
-                // Wait a new packet
-                byte[] data = mDatagramConnection.receive();
+                // Wait a new packet, received in a pooled buffer
+                RtpPacket packet = RtpPacketPool.acquire();
+                int length = mDatagramConnection.receive(packet.getBuffer());
+                byte[] data = packet.mData;
+                boolean queued = false;
 
-                if (data.length >= 12) {
+                if (length >= 12) {
                     // Drop empty packet (payload 20)
                     int payloadType = (byte) ((data[1] & 0xff) & 0x7f);
                     if (payloadType != 20) {
-                        // Drop too old packet
-                        int seqnum = (char) ((data[2] << 8) | (data[3] & 0xff));
-                        if (seqnum > mLastSeqnum - 10) {
-                            // Clean the FIFO if full
-                            if (mBuffer.size() >= FIFO_MAX_NUMBER) {
-                                mBuffer.clean(FIFO_CLEAN_NUMBER);
-                            }
-                            mBuffer.addObject(data);
-                            mLastSeqnum = seqnum;
-                        } else {
-                            mStats.numBadRtpPkts++;
-                        }
+                        // Late packets are discarded by the jitter buffer of the reader
+                        releaseOldestIfFull();
+                        queued = mBuffer.addObject(packet);
                     }
                 }
+                if (!queued) {
+                    packet.release();
+                }
             }
         } catch (NetworkException e) {
             if (!mInterrupted) {
@@ -178,53 +166,83 @@ public class RtpPacketReceiver extends Thread implements Closeable {
     }
 
     /**
-     * Read a RTP packet (blocking method)
+     * Release the oldest packet of the FIFO when it is full, so that its buffer goes back to the
+     * pool instead of being dropped by the FIFO
+     */
+    private void releaseOldestIfFull() {
+        while (mBuffer.size() >= mBuffer.getCapacity()) {
+            RtpPacket oldest = (RtpPacket) mBuffer.getObject(1);
+            if (oldest == null) {
+                return;
+            }
+            oldest.release();
+        }
+    }
+
+    /**
+     * Read a RTP packet (blocking method). The returned packet is parsed in place in its receive
+     * buffer and must be released once its payload has been consumed.
      * 
      * @return RTP packet
      * @throws TimeoutException
      */
     public RtpPacket readRtpPacket() throws TimeoutException {
-        // Get a new packet in FIFO
-        byte[] data = (byte[]) mBuffer.getObject(mTimeout);
-        if (data == null) {
+        RtpPacket pkt = readRtpPacket(mTimeout);
+        if (pkt == null) {
             throw new TimeoutException("Unable to fetch packet from FIFO queue!");
         }
+        return pkt;
+    }
 
-        // Parse the RTP packet
-        RtpPacket pkt = parseRtpPacket(data);
-
-        if (pkt != null) {
-            // Update statistics
-            mStats.numPackets++;
-            mStats.numBytes += data.length;
-
-            RtpSource s = mRtcpSession.getMySource();
-            s.setSsrc(pkt.ssrc);
-            s.activeSender = true;
-            s.receiveRtpPacket(pkt);
-            pkt.seqnum = s.generateExtendedSequenceNumber(pkt.seqnum);
-
-            return pkt;
+    /**
+     * Read a RTP packet, waiting at most the given timeout. The returned packet is parsed in place
+     * in its receive buffer and must be released once its payload has been consumed.
+     * 
+     * @param timeout Timeout in milliseconds, 0 for no timeout
+     * @return RTP packet with an extended sequence number, or null if no packet has been read
+     */
+    public RtpPacket readRtpPacket(int timeout) {
+        RtpPacket pkt;
+        // Get a new packet in FIFO
+        while ((pkt = (RtpPacket) mBuffer.getObject(timeout)) != null) {
+            // Parse the RTP packet
+            if (parseRtpPacket(pkt)) {
+                // Update statistics
+                mStats.numPackets++;
+                mStats.numBytes += pkt.mLength;
+
+                RtpSource s = mRtcpSession.getMySource();
+                s.setSsrc(pkt.ssrc);
+                s.activeSender = true;
+                s.receiveRtpPacket(pkt);
+                pkt.seqnum = s.generateExtendedSequenceNumber(pkt.seqnum);
+
+                return pkt;
+            }
+            mStats.numBadRtpPkts++;
+            pkt.release();
         }
-        return readRtpPacket();
+        return null;
     }
 
     /**
-     * Parse the RTP packet
+     * Parse the RTP packet in place, the payload is left in the receive buffer
      * 
-     * @param data RTP packet not yet parsed
-     * @return RTP packet
+     * @param packet RTP packet not yet parsed
+     * @return False if the packet is malformed
      */
-    private RtpPacket parseRtpPacket(byte[] data) {
-        RtpPacket packet = new RtpPacket();
+    private boolean parseRtpPacket(RtpPacket packet) {
+        byte[] data = packet.mData;
         // Read RTP packet length
-        packet.mLength = data.length;
+        packet.mLength = packet.getBuffer().limit();
+        packet.mOffset = 0;
 
         // Set received timestamp
         packet.mReceivedAt = System.currentTimeMillis();
 
         // Read extension bit
         packet.extension = (data[0] & 0x10) > 0;
+        packet.extensionHeader = null;
 
         // Read marker
         if ((byte) ((data[1] & 0xff) & 0x80) == (byte) 0x80) {
@@ -250,26 +268,29 @@ public class RtpPacketReceiver extends Thread implements Closeable {
 
         // Extract the extension header
         if (packet.extension) {
+            if (packet.mLength < 16) {
+                return false;
+            }
             int dataId = 11;
             int extensionHeaderId = ((data[++dataId] & 0xff) << 8) | (data[++dataId] & 0xff);
             int length = ((data[++dataId] & 0xff) << 8) | (data[++dataId] & 0xff);
 
-            if (extensionHeaderId == RtpExtensionHeader.RTP_EXTENSION_HEADER_ID) {
-                extractExtensionHeader(data, length, dataId, packet);
-            }
-
             // increment payload offset = RtpHeader size (12) + Extension Header ID (2) + Header
             // Length (2) +
             // elements * 4 (32 bits each) + 1 (to set at correct index)
             packet.payloadoffset = 16 + length * 4;
+            if (packet.payloadoffset > packet.mLength) {
+                return false;
+            }
+
+            if (extensionHeaderId == RtpExtensionHeader.RTP_EXTENSION_HEADER_ID) {
+                extractExtensionHeader(data, length, dataId, packet);
+            }
         } else {
             packet.payloadoffset = 12;
         }
         packet.payloadlength = packet.mLength - packet.payloadoffset;
-        packet.mData = new byte[packet.payloadlength];
-        System.arraycopy(data, packet.payloadoffset, packet.mData, 0, packet.payloadlength);
-
-        return packet;
+        return true;
     }
 
     /**
@@ -299,13 +320,13 @@ public class RtpPacketReceiver extends Thread implements Closeable {
      * @param packet
      */
     private void extractExtensionHeader(byte[] data, int length, int dataId, RtpPacket packet) {
-        byte[] extensionHeaderData = new byte[length * 4];
-        System.arraycopy(data, ++dataId, extensionHeaderData, 0, extensionHeaderData.length);
+        int start = dataId + 1;
+        int end = start + length * 4;
         packet.extensionHeader = new RtpExtensionHeader();
 
-        int i = 0;
-        while (packet.extensionHeader.elementsCount() < length) {
-            byte idAndLength = extensionHeaderData[i];
+        int i = start;
+        while (packet.extensionHeader.elementsCount() < length && i < end) {
+            byte idAndLength = data[i];
             if (idAndLength == 0x00) {
                 // its a padding byte, skip it
                 i = i + 1;
@@ -317,8 +338,11 @@ public class RtpPacketReceiver extends Thread implements Closeable {
             // Each extension element id must have a value between 1 and 14 inclusive
             if (elementId > 0 && elementId < 15) {
                 int elementLength = (idAndLength & 0x0f);
+                if (i + 1 + elementLength >= end) {
+                    break;
+                }
                 byte[] elementData = new byte[elementLength + 1];
-                System.arraycopy(extensionHeaderData, i + 1, elementData, 0, elementData.length);
+                System.arraycopy(data, i + 1, elementData, 0, elementData.length);
                 packet.extensionHeader.addElement(elementId, elementData);
                 i = i + elementData.length + 1;
             } else {
@@ -114,6 +114,11 @@ public class RtpSource {
      */
     private long lastSenderReport;
 
+    /**
+     * Local time at which the last SR Packet was received
+     */
+    private long lastSenderReportTime;
+
     /**
      * Constructor requires an SSRC for it to be a valid source. The constructor initializes all the
      * source class members to a default value
@@ -135,20 +140,23 @@ public class RtpSource {
      * @return Extended sequence number
      */
     public int generateExtendedSequenceNumber(int seq) {
-        return seq + (RTP_SEQ_MOD * cycles);
+        // Signed 16-bit distance to the highest sequence number, so that a late packet sent before
+        // a wrap around stays in the previous cycle
+        return getExtendedSequenceNumber() + (short) (seq - maxSeq);
     }
 
     /**
      * Updates the statistics related to Sender Reports. Should be invoked when a RTCP Sender Report
      * is received.
      * 
-     * @param srp Sender Report
+     * @param ntpTimestamp NTP timestamp of the Sender Report
      */
-    public void receivedSenderReport(RtcpSenderReportPacket srp) {
+    public void receivedSenderReport(long ntpTimestamp) {
         // RFC 3550: last SR timestamp (LSR): 32 bits - The middle 32 bits out
         // of 64 in the NTP timestamp received as part of the most recent RTCP
         // sender report
-        lastSenderReport = (((srp.ntptimestampmsw << 32) | srp.ntptimestamplsw) & 0x0000ffffffff0000L) >>> 16;
+        lastSenderReport = (ntpTimestamp & 0x0000ffffffff0000L) >>> 16;
+        lastSenderReportTime = System.currentTimeMillis();
     }
 
     /**
@@ -188,8 +196,14 @@ public class RtpSource {
         int expected = extendedMax - baseSeq + 1;
         report.setCumulativeNumberOfPacketsLost(expected - received);
 
-        // TODO : Calculate the delay after last sender report received
-        report.setDelaySinceLastSenderReport(0);
+        // RFC 3550: delay since last SR (DLSR) expressed in units of 1/65536 seconds, the sender
+        // of the SR computing the round trip time from it
+        if (lastSenderReport != 0) {
+            long delay = System.currentTimeMillis() - lastSenderReportTime;
+            report.setDelaySinceLastSenderReport((delay << 16) / 1000);
+        } else {
+            report.setDelaySinceLastSenderReport(0);
+        }
         report.setExtendedHighestSequenceNumberReceived(getExtendedSequenceNumber());
 
         // Calculate the fraction lost
@@ -243,7 +257,7 @@ public class RtpSource {
      * @param seq Sequence Number
      */
     private int updateSeq(int seq) {
-        long udelta = seq - maxSeq;
+        int udelta = (seq - maxSeq) & (RTP_SEQ_MOD - 1);
 
         // Source is not valid until MIN_SEQUENTIAL packets with sequential
         // sequence numbers have been received.
@@ -264,12 +278,6 @@ public class RtpSource {
             return 0;
         } else if (udelta < MAX_DROPOUT) {
             // in order, with permissible gap
-            if (seq < maxSeq && (udelta >= (MAX_MISORDER * -1))) {
-                // late packet within interval
-                received++;
-                return 1;
-            }
-
             if (seq < maxSeq) {
                 // Sequence number wrapped - count another 64K cycle.
                 cycles++;
@@ -299,7 +307,7 @@ public class RtpSource {
      * @return Extended sequence number
      */
     private int getExtendedSequenceNumber() {
-        return generateExtendedSequenceNumber(maxSeq);
+        return maxSeq + (RTP_SEQ_MOD * cycles);
     }
 
     /**
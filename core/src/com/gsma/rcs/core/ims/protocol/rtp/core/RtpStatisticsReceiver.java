@@ -38,4 +38,30 @@ public class RtpStatisticsReceiver {
      * Number of bad RTP packet received
      */
     public int numBadRtpPkts = 0;
+
+    /**
+     * Number of RTP packets discarded by the jitter buffer because they arrived after their
+     * playout or were duplicated
+     */
+    public int numLateRtpPkts = 0;
+
+    /**
+     * Number of RTP packets received out of order and reordered by the jitter buffer
+     */
+    public int numReorderedRtpPkts = 0;
+
+    /**
+     * Number of RTP packets currently held by the jitter buffer
+     */
+    public int jitterBufferDepth = 0;
+
+    /**
+     * Current playout delay of the jitter buffer in milliseconds
+     */
+    public int jitterBufferDelay = 0;
+
+    /**
+     * Interarrival jitter estimate in RTP timestamp units (RFC 3550)
+     */
+    public int interarrivalJitter = 0;
 }
@@ -29,6 +29,11 @@ public abstract class Format {
      */
     public static final int UNKNOWN_PAYLOAD = -1;
 
+    /**
+     * Default RTP clock rate, used by the video payloads
+     */
+    public static final int DEFAULT_CLOCK_RATE = 90000;
+
     /**
      * Codec
      */
@@ -67,4 +72,21 @@ public abstract class Format {
     public int getPayload() {
         return payload;
     }
+
+    /**
+     * Get the RTP clock rate, read from the encoding name when it contains one
+     * 
+     * @return Clock rate in Hz
+     */
+    public int getClockRate() {
+        int index = codec.indexOf('/');
+        if (index != -1) {
+            try {
+                return Integer.parseInt(codec.substring(index + 1).trim());
+            } catch (NumberFormatException e) {
+                /* Nothing to do: the default clock rate is used */
+            }
+        }
+        return DEFAULT_CLOCK_RATE;
+    }
 }
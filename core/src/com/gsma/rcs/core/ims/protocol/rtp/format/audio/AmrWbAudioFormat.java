@@ -35,10 +35,20 @@ public class AmrWbAudioFormat extends AudioFormat {
      */
     public static final int PAYLOAD = 126;
 
+    /**
+     * Clock rate
+     */
+    public static final int CLOCK_RATE = 16000;
+
     /**
      * Constructor
      */
     public AmrWbAudioFormat() {
         super(ENCODING, PAYLOAD);
     }
+
+    @Override
+    public int getClockRate() {
+        return CLOCK_RATE;
+    }
 }
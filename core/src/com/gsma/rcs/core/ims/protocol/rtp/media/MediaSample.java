@@ -18,6 +18,8 @@
 
 package com.gsma.rcs.core.ims.protocol.rtp.media;
 
+import java.util.Arrays;
+
 /**
  * Media sample
  * 
@@ -30,6 +32,11 @@ public class MediaSample {
      */
     private byte[] data;
 
+    /**
+     * Data length, lower than the array length when the array is borrowed from a pool
+     */
+    private int length;
+
     /**
      * Timestamp
      */
@@ -55,7 +62,20 @@ public class MediaSample {
      * @Param sequenceNumber Packet sequence number
      */
     public MediaSample(byte[] data, long timestamp, long sequenceNumber) {
+        this(data, (data != null) ? data.length : 0, timestamp, sequenceNumber);
+    }
+
+    /**
+     * Constructor of a sample held at the beginning of a larger array
+     * 
+     * @param data Data
+     * @param length Data length
+     * @param timestamp Timestamp
+     * @Param sequenceNumber Packet sequence number
+     */
+    public MediaSample(byte[] data, int length, long timestamp, long sequenceNumber) {
         this.data = data;
+        this.length = length;
         this.mTimestamp = timestamp;
         this.sequenceNumber = sequenceNumber;
     }
@@ -68,6 +88,7 @@ public class MediaSample {
      */
     public MediaSample(byte[] data, long timestamp) {
         this.data = data;
+        this.length = (data != null) ? data.length : 0;
         this.mTimestamp = timestamp;
     }
 
@@ -80,16 +101,32 @@ public class MediaSample {
      */
     public MediaSample(byte[] data, long timestamp, boolean marker) {
         this.data = data;
+        this.length = (data != null) ? data.length : 0;
         this.mTimestamp = timestamp;
         this.marker = marker;
     }
 
     /**
-     * Returns the data sample
+     * Returns the data sample. A sample held in a larger array is copied to an array of its
+     * length, use {@link #getRawData()} to avoid the copy.
      * 
      * @return Byte array
      */
     public byte[] getData() {
+        if (data != null && length != data.length) {
+            data = Arrays.copyOf(data, length);
+        }
+        return data;
+    }
+
+    /**
+     * Returns the array holding the data sample from its beginning, which may be larger than the
+     * sample. A borrowed array is only valid until the sample has been written to the media
+     * output.
+     * 
+     * @return Byte array
+     */
+    public byte[] getRawData() {
         return data;
     }
 
@@ -99,10 +136,7 @@ public class MediaSample {
      * @return Data sample length
      */
     public int getLength() {
-        if (data != null) {
-            return data.length;
-        }
-        return 0;
+        return length;
     }
 
     /**
@@ -58,6 +58,21 @@ public class VideoSample extends MediaSample {
         this.videoOrientation = videoOrientation;
     }
 
+    /**
+     * Constructor of a sample held at the beginning of a larger array
+     * 
+     * @param data Data
+     * @param length Data length
+     * @param timestamp Timestamp
+     * @Param sequenceNumber Packet sequence number
+     * @param videoOrientation Video orientation
+     */
+    public VideoSample(byte[] data, int length, long timestamp, long sequenceNumber,
+            VideoOrientation videoOrientation) {
+        super(data, length, timestamp, sequenceNumber);
+        this.videoOrientation = videoOrientation;
+    }
+
     /**
      * Gets the video orientation
      * 
@@ -23,6 +23,7 @@ import com.gsma.rcs.core.ims.protocol.rtp.format.Format;
 import com.gsma.rcs.core.ims.protocol.rtp.util.Buffer;
 import com.gsma.rcs.core.ims.protocol.rtp.util.SystemTimeBase;
 import com.gsma.rcs.utils.FifoBuffer;
+import com.gsma.rcs.utils.FifoBuffer.DropPolicy;
 import com.gsma.rcs.utils.logger.Logger;
 
 /**
@@ -57,10 +58,15 @@ public class DummyPacketSourceStream extends Thread implements ProcessorInputStr
      */
     private long mSeqNo;
 
+    /**
+     * Max number of packets waiting to be read, the oldest ones are dropped above
+     */
+    private static final int FIFO_MAX_NUMBER = 16;
+
     /**
      * Message buffer
      */
-    private FifoBuffer mBuffer = new FifoBuffer();
+    private FifoBuffer mBuffer = new FifoBuffer(FIFO_MAX_NUMBER, DropPolicy.DROP_OLDEST);
 
     /**
      * The logger
@@ -91,7 +91,15 @@ public class MediaRendererStream implements ProcessorOutputStream {
      * @param buffer Input buffer
      */
     public void write(Buffer buffer) {
-        MediaSample sample = new MediaSample((byte[]) buffer.getData(), buffer.getTimestamp(),
+        byte[] data = (byte[]) buffer.getData();
+        int length = buffer.getLength();
+        if (buffer.getOffset() != 0 || length != data.length) {
+            // The buffer is a view on a receive buffer which is reused after this call
+            byte[] sampleData = new byte[length];
+            System.arraycopy(data, buffer.getOffset(), sampleData, 0, length);
+            data = sampleData;
+        }
+        MediaSample sample = new MediaSample(data, buffer.getTimestamp(),
                 buffer.getSequenceNumber());
         renderer.writeSample(sample);
     }
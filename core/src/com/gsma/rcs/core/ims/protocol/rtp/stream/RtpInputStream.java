@@ -24,6 +24,7 @@ package com.gsma.rcs.core.ims.protocol.rtp.stream;
 
 import com.gsma.rcs.core.ims.network.NetworkException;
 import com.gsma.rcs.core.ims.protocol.rtp.RtpUtils;
+import com.gsma.rcs.core.ims.protocol.rtp.core.JitterBuffer;
 import com.gsma.rcs.core.ims.protocol.rtp.core.RtcpPacketReceiver;
 import com.gsma.rcs.core.ims.protocol.rtp.core.RtcpPacketTransmitter;
 import com.gsma.rcs.core.ims.protocol.rtp.core.RtcpSession;
@@ -36,8 +37,6 @@ import com.gsma.rcs.core.ims.protocol.rtp.util.Buffer;
 import com.gsma.rcs.utils.CloseableUtils;
 
 import java.io.IOException;
-import java.util.Comparator;
-import java.util.PriorityQueue;
 import java.util.concurrent.TimeoutException;
 
 /**
@@ -51,8 +50,6 @@ public class RtpInputStream implements ProcessorInputStream {
      */
     private static final int RTP_SOCKET_TIMEOUT = 20000;
 
-    private static final int MAX_RTP_PACKETS = 5;
-
     /**
      * Remote address
      */
@@ -114,9 +111,19 @@ public class RtpInputStream implements ProcessorInputStream {
     private boolean mIsClosed;
 
     /**
-     * Sequence RTP packets buffer
+     * RTP clock rate of the input format
+     */
+    private int mClockRate;
+
+    /**
+     * Jitter buffer reordering the RTP packets before the codec chain
      */
-    private PriorityQueue<RtpPacket> mRtpPacketsBuffer;
+    private JitterBuffer mJitterBuffer;
+
+    /**
+     * Packet whose payload is referenced by the input buffer, released at the next read
+     */
+    private RtpPacket mReadPacket;
 
     /**
      * Constructor
@@ -129,21 +136,9 @@ public class RtpInputStream implements ProcessorInputStream {
         mRemotePort = remotePort;
         mLocalPort = localPort;
         mInputFormat = inputFormat;
+        mClockRate = inputFormat.getClockRate();
 
         mRtcpSession = new RtcpSession(false, 16000);
-
-        mRtpPacketsBuffer = new PriorityQueue<RtpPacket>(10, new Comparator<RtpPacket>() {
-            @Override
-            public int compare(RtpPacket object1, RtpPacket object2) {
-                if (object1.seqnum == object2.seqnum) {
-                    return 0;
-                } else if (object1.seqnum < object2.seqnum) {
-                    return -1;
-                }
-                return 1;
-            }
-        });
-
     }
 
     /**
@@ -154,6 +149,7 @@ public class RtpInputStream implements ProcessorInputStream {
     public void open() throws IOException {
         mRtpReceiver = new RtpPacketReceiver(mLocalPort, mRtcpSession, RTP_SOCKET_TIMEOUT);
         mRtpReceiver.start();
+        mJitterBuffer = new JitterBuffer(mClockRate, mRtpReceiver.getRtpReceptionStats());
 
         mRtcpReceiver = new RtcpPacketReceiver(mLocalPort + 1, mRtcpSession);
         mRtcpReceiver.start();
@@ -185,6 +181,15 @@ public class RtpInputStream implements ProcessorInputStream {
         return mRtpReceiver;
     }
 
+    /**
+     * Returns the jitter buffer
+     * 
+     * @return Jitter buffer
+     */
+    public JitterBuffer getJitterBuffer() {
+        return mJitterBuffer;
+    }
+
     /**
      * Returns the RTCP receiver
      * 
@@ -195,36 +200,48 @@ public class RtpInputStream implements ProcessorInputStream {
     }
 
     /**
-     * Read from the input stream without blocking
+     * Read from the input stream without blocking. The returned buffer references the payload in
+     * the receive buffer of the RTP packet, it is valid until the next read.
      * 
      * @return Buffer
      * @throws NetworkException
      */
     public Buffer read() throws NetworkException {
-        do {
-            try {
-                /* Wait and read a RTP packet */
-                RtpPacket rtpPacket = mRtpReceiver.readRtpPacket();
-                if (rtpPacket == null) {
-                    throw new NetworkException("Unable to read RTP packet!");
+        // The previous payload has been consumed by the codec chain
+        if (mReadPacket != null) {
+            mReadPacket.release();
+            mReadPacket = null;
+        }
+        RtpPacket packet;
+        try {
+            while ((packet = mJitterBuffer.poll(System.currentTimeMillis())) == null) {
+                long waitTime = mJitterBuffer.getWaitTime(System.currentTimeMillis());
+                RtpPacket rtpPacket;
+                if (waitTime < 0) {
+                    /* Jitter buffer is empty: wait a RTP packet */
+                    rtpPacket = mRtpReceiver.readRtpPacket();
+                } else {
+                    /* Wait a RTP packet until the playout of the next buffered one */
+                    rtpPacket = mRtpReceiver.readRtpPacket((int) Math.max(1, waitTime));
                 }
-
-                mRtpPacketsBuffer.add(rtpPacket);
-            } catch (TimeoutException e) {
-                if (!mIsClosed) {
-                    if (mRtpStreamListener != null) {
-                        mRtpStreamListener.rtpStreamAborted();
-                    }
+                if (rtpPacket != null) {
+                    mJitterBuffer.put(rtpPacket, System.currentTimeMillis());
                 }
-                throw new NetworkException("RTP Packet reading timeout!", e);
             }
-        } while (mRtpPacketsBuffer.size() <= MAX_RTP_PACKETS);
+        } catch (TimeoutException e) {
+            if (!mIsClosed) {
+                if (mRtpStreamListener != null) {
+                    mRtpStreamListener.rtpStreamAborted();
+                }
+            }
+            throw new NetworkException("RTP Packet reading timeout!", e);
+        }
 
-        RtpPacket packet = mRtpPacketsBuffer.poll();
+        mReadPacket = packet;
 
         mBuffer.setData(packet.mData);
         mBuffer.setLength(packet.payloadlength);
-        mBuffer.setOffset(0);
+        mBuffer.setOffset(packet.payloadoffset);
         mBuffer.setFormat(mInputFormat);
         mBuffer.setSequenceNumber(packet.seqnum);
         mBuffer.setRTPMarker(packet.marker != 0);
@@ -18,6 +18,7 @@
 
 package com.gsma.rcs.core.ims.protocol.rtp.stream;
 
+import com.gsma.rcs.core.ims.protocol.rtp.codec.video.h264.H264FramePool;
 import com.gsma.rcs.core.ims.protocol.rtp.media.MediaOutput;
 import com.gsma.rcs.core.ims.protocol.rtp.media.VideoSample;
 import com.gsma.rcs.core.ims.protocol.rtp.util.Buffer;
@@ -43,8 +44,13 @@ public class VideoRendererStream extends MediaRendererStream {
      * @param buffer Input buffer
      */
     public void write(Buffer buffer) {
-        VideoSample sample = new VideoSample((byte[]) buffer.getData(), buffer.getTimestamp(),
+        byte[] data = (byte[]) buffer.getData();
+        VideoSample sample = new VideoSample(data, buffer.getLength(), buffer.getTimestamp(),
                 buffer.getSequenceNumber(), buffer.getVideoOrientation());
         getRenderer().writeSample(sample);
+        if ((buffer.getFlags() & Buffer.FLAG_POOLED) != 0) {
+            // The frame has been decoded by the renderer
+            H264FramePool.release(data);
+        }
     }
 }
@@ -47,6 +47,11 @@ public class Buffer {
      */
     public final static int FLAG_RTP_TIME = (1 << 12);
 
+    /**
+     * Indicates that the data array is borrowed from a pool and is recycled once rendered
+     */
+    public final static int FLAG_POOLED = (1 << 13);
+
     /**
      * Default value if the timestamp of the media is not known
      */
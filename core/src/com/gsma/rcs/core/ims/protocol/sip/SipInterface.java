@@ -27,6 +27,7 @@ import com.gsma.rcs.core.ims.network.sip.SipMessageFactory;
 import com.gsma.rcs.core.ims.network.sip.SipUtils;
 import com.gsma.rcs.core.ims.protocol.PayloadException;
 import com.gsma.rcs.core.ims.protocol.sip.SipTransactionContext.INotifySipProvisionalResponse;
+import com.gsma.rcs.core.ims.protocol.sip.SipTransactionContext.INotifySipResponse;
 import com.gsma.rcs.core.ims.security.cert.KeyStoreManager;
 import com.gsma.rcs.core.ims.service.SessionAuthenticationAgent;
 import com.gsma.rcs.provider.settings.RcsSettings;
@@ -63,6 +64,7 @@ import javax2.sip.SipListener;
 import javax2.sip.SipProvider;
 import javax2.sip.SipStack;
 import javax2.sip.TimeoutEvent;
+import javax2.sip.Transaction;
 import javax2.sip.TransactionAlreadyExistsException;
 import javax2.sip.TransactionTerminatedEvent;
 import javax2.sip.TransactionUnavailableException;
@@ -134,6 +136,14 @@ public class SipInterface implements SipListener {
 
     private String mInstanceId;
 
+    /**
+     * Prototypes of the local Via and Contact headers, cloned for each message so that the SIP
+     * URIs are not parsed again
+     */
+    private ViaHeader mViaHeader;
+
+    private ContactHeader mContactHeader;
+
     /**
      * Base timer T1 (in ms)
      */
@@ -206,6 +216,16 @@ public class SipInterface implements SipListener {
             Properties properties = new Properties();
             properties.setProperty("javax2.sip.STACK_NAME", mLocalIpAddress);
             properties.setProperty("gov2.nist.javax2.sip.THREAD_POOL_SIZE", "1");
+            /* Only parse the headers of a received message when they are accessed */
+            properties.setProperty("gov2.nist.javax2.sip.LAZY_HEADER_PARSING", "true");
+            /* Serve the TCP and TLS connections from a single selector thread */
+            properties.setProperty("gov2.nist.javax2.sip.USE_NIO", "true");
+            /* Deliver the events of distinct dialogs concurrently, in order within a dialog */
+            properties.setProperty("gov2.nist.javax2.sip.EVENT_LANES", "4");
+            if (mRcsSettings.isSipCompactHeadersActivated()) {
+                /* Send the compact form of the header names to save radio bytes */
+                properties.setProperty("gov2.nist.javax2.sip.COMPACT_HEADERS", "true");
+            }
             properties.setProperty("javax2.sip.OUTBOUND_PROXY", getOutboundProxy());
             if (mSipTraceEnabled) {
                 /* Activate SIP stack traces */
@@ -333,6 +353,7 @@ public class SipInterface implements SipListener {
                 }
             }
             SipFactory.getInstance().resetFactory();
+            abortTransactionContexts();
         }
     }
 
@@ -467,7 +488,10 @@ public class SipInterface implements SipListener {
      * @param gruu GRUU
      */
     public void setPublicGruu(String gruu) {
-        mPublicGruu = gruu;
+        synchronized (this) {
+            mPublicGruu = gruu;
+            mContactHeader = null;
+        }
     }
 
     /**
@@ -494,7 +518,10 @@ public class SipInterface implements SipListener {
      * @param id Instance ID
      */
     public void setInstanceId(String id) {
-        mInstanceId = id;
+        synchronized (this) {
+            mInstanceId = id;
+            mContactHeader = null;
+        }
     }
 
     /**
@@ -505,10 +532,14 @@ public class SipInterface implements SipListener {
      */
     public List<ViaHeader> getViaHeaders() throws PayloadException {
         try {
+            synchronized (this) {
+                if (mViaHeader == null) {
+                    mViaHeader = SipUtils.HEADER_FACTORY.createViaHeader(mLocalIpAddress,
+                            mListeningPort, getProxyProtocol(), null);
+                }
+            }
             List<ViaHeader> viaHeaders = new ArrayList<>();
-            ViaHeader via = SipUtils.HEADER_FACTORY.createViaHeader(mLocalIpAddress,
-                    mListeningPort, getProxyProtocol(), null);
-            viaHeaders.add(via);
+            viaHeaders.add((ViaHeader) mViaHeader.clone());
             return viaHeaders;
 
         } catch (ParseException | InvalidArgumentException e) {
@@ -558,6 +589,17 @@ public class SipInterface implements SipListener {
      * @throws PayloadException
      */
     public ContactHeader getContact() throws PayloadException {
+        ContactHeader contactHeader;
+        synchronized (this) {
+            if (mContactHeader == null) {
+                mContactHeader = createContact();
+            }
+            contactHeader = mContactHeader;
+        }
+        return (ContactHeader) contactHeader.clone();
+    }
+
+    private ContactHeader createContact() throws PayloadException {
         try {
             ContactHeader contactHeader;
             if (mPublicGruu != null) {
@@ -647,15 +689,54 @@ public class SipInterface implements SipListener {
         mListeners.add(listener);
     }
 
+    /**
+     * Add a transaction context and notify the orphaned contexts expired meanwhile
+     *
+     * @param id Transaction ID
+     * @param ctx Transaction context
+     */
+    private void addTransactionContext(String id, SipTransactionContext ctx) {
+        List<SipTransactionContext> expired = mTransactions.put(id, ctx);
+        if (expired == null || expired.isEmpty()) {
+            return;
+        }
+        if (sLogger.isActivated()) {
+            sLogger.warn(new StringBuilder("Expire ").append(expired.size())
+                    .append(" orphaned transaction contexts, ").append(mTransactions.size())
+                    .append(" remaining").toString());
+        }
+        for (SipTransactionContext expiredCtx : expired) {
+            expiredCtx.responseReceived(null);
+        }
+    }
+
     /**
      * Remove a transaction context from its ID
      *
      * @param id Transaction ID
      */
-    public synchronized void removeTransactionContext(String id) {
+    public void removeTransactionContext(String id) {
         mTransactions.remove(id);
     }
 
+    /**
+     * Returns the number of pending transaction contexts
+     *
+     * @return Number of transaction contexts
+     */
+    public int getTransactionContextCount() {
+        return mTransactions.size();
+    }
+
+    /**
+     * Returns the number of transaction contexts expired without being completed
+     *
+     * @return Number of expired transaction contexts
+     */
+    public long getExpiredTransactionContextCount() {
+        return mTransactions.getExpiredContexts();
+    }
+
     /**
      * Notify the transaction context that a message has been received (response or ACK)
      *
@@ -663,13 +744,22 @@ public class SipInterface implements SipListener {
      * @param msg SIP message
      */
     private void notifyTransactionContext(String transactionId, SipMessage msg) {
-        SipTransactionContext ctx = mTransactions.get(transactionId);
+        SipTransactionContext ctx = mTransactions.remove(transactionId);
         if (ctx != null) {
-            removeTransactionContext(transactionId);
             ctx.responseReceived(msg);
         }
     }
 
+    /**
+     * Notify all the transaction contexts that no response will be received as the stack is
+     * closed
+     */
+    private void abortTransactionContexts() {
+        for (SipTransactionContext ctx : mTransactions.removeAll()) {
+            ctx.responseReceived(null);
+        }
+    }
+
     /**
      * Send a SIP message and create a context to wait a response
      *
@@ -682,6 +772,28 @@ public class SipInterface implements SipListener {
     public SipTransactionContext sendSipMessageAndWait(SipMessage message,
             INotifySipProvisionalResponse callbackSipProvisionalResponse) throws PayloadException,
             NetworkException {
+        return sendSipMessage(message, callbackSipProvisionalResponse, null);
+    }
+
+    /**
+     * Send a SIP message without waiting: the callback is notified of the response, or of the
+     * timeout of the transaction, from the SIP stack thread.
+     * 
+     * @param message SIP message
+     * @param callbackSipResponse a callback to handle SIP final response
+     * @return Transaction context
+     * @throws PayloadException
+     * @throws NetworkException
+     */
+    public SipTransactionContext sendSipMessageAsync(SipMessage message,
+            INotifySipResponse callbackSipResponse) throws PayloadException, NetworkException {
+        return sendSipMessage(message, null, callbackSipResponse);
+    }
+
+    private SipTransactionContext sendSipMessage(SipMessage message,
+            INotifySipProvisionalResponse callbackSipProvisionalResponse,
+            INotifySipResponse callbackSipResponse) throws PayloadException, NetworkException {
+        String id = null;
         try {
             if (message instanceof SipRequest) {
                 SipRequest req = (SipRequest) message;
@@ -691,9 +803,9 @@ public class SipInterface implements SipListener {
                     req.setStackTransaction(transaction);
                 }
                 SipTransactionContext ctx = new SipTransactionContext(transaction,
-                        callbackSipProvisionalResponse);
-                String id = SipTransactionContext.getTransactionContextId(req);
-                mTransactions.put(id, ctx);
+                        callbackSipProvisionalResponse, callbackSipResponse);
+                id = SipTransactionContext.getTransactionContextId(req);
+                addTransactionContext(id, ctx);
                 if (sLogger.isActivated()) {
                     sLogger.debug("Create a transaction context ".concat(id));
                 }
@@ -713,9 +825,10 @@ public class SipInterface implements SipListener {
                 throw new NetworkException("No transaction exist for " + resp.getCallId()
                         + ": the response can't be sent!");
             }
-            SipTransactionContext ctx = new SipTransactionContext(transaction);
-            String id = SipTransactionContext.getTransactionContextId(resp);
-            mTransactions.put(id, ctx);
+            SipTransactionContext ctx = new SipTransactionContext(transaction, null,
+                    callbackSipResponse);
+            id = SipTransactionContext.getTransactionContextId(resp);
+            addTransactionContext(id, ctx);
             if (sLogger.isActivated()) {
                 sLogger.debug("Create a transaction context ".concat(id));
             }
@@ -733,6 +846,10 @@ public class SipInterface implements SipListener {
             throw new PayloadException("Unable to instantiate SIP transaction!", e);
 
         } catch (SipException e) {
+            if (id != null) {
+                /* No response will be received */
+                mTransactions.remove(id);
+            }
             throw new NetworkException("Can't send SIP message!", e);
         }
     }
@@ -898,7 +1015,7 @@ public class SipInterface implements SipListener {
             dialog.getStackDialog().sendRequest(transaction);
             SipTransactionContext ctx = new SipTransactionContext(transaction);
             String id = SipTransactionContext.getTransactionContextId(request);
-            mTransactions.put(id, ctx);
+            addTransactionContext(id, ctx);
             return ctx;
 
         } catch (ParseException e) {
@@ -926,9 +1043,31 @@ public class SipInterface implements SipListener {
      * @param exceptionEvent Event
      */
     public void processIOException(IOExceptionEvent exceptionEvent) {
-        if (sLogger.isActivated()) {
+        boolean loggerActivated = sLogger.isActivated();
+        if (loggerActivated) {
             sLogger.debug("IO Exception on " + exceptionEvent.getTransport() + " transport");
         }
+        Object source = exceptionEvent.getSource();
+        if (!(source instanceof Transaction)) {
+            return;
+        }
+        /*
+         * The transaction is terminated by the stack and will not time out: notify its context
+         * now rather than letting it wait for its own timeout.
+         */
+        Transaction transaction = (Transaction) source;
+        String transactionId = SipTransactionContext.getTransactionContextId(transaction
+                .getRequest());
+        SipTransactionContext ctx = mTransactions.remove(transactionId, transaction);
+        if (ctx == null) {
+            return;
+        }
+        if (loggerActivated) {
+            sLogger.warn(new StringBuilder("Transaction ").append(transactionId)
+                    .append(" failed to reach ").append(exceptionEvent.getHost()).append(':')
+                    .append(exceptionEvent.getPort()).toString());
+        }
+        ctx.responseReceived(null);
     }
 
     /**
@@ -24,6 +24,7 @@ package com.gsma.rcs.core.ims.protocol.sip;
 
 import static com.gsma.rcs.utils.StringUtils.UTF8;
 
+import com.gsma.rcs.core.ims.network.sip.FeatureTagRegistry;
 import com.gsma.rcs.core.ims.network.sip.FeatureTags;
 import com.gsma.rcs.core.ims.network.sip.Multipart;
 import com.gsma.rcs.core.ims.network.sip.SipUtils;
@@ -35,6 +36,7 @@ import android.text.TextUtils;
 import gov2.nist.javax2.sip.header.extensions.SessionExpiresHeader;
 
 import java.text.ParseException;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.ListIterator;
@@ -78,6 +80,16 @@ public abstract class SipMessage {
 
     private Transaction mStackTransaction;
 
+    /**
+     * Feature tags parsed from the Contact and Accept-Contact headers, null until first accessed
+     */
+    private volatile Set<String> mFeatureTags;
+
+    /**
+     * Mask of the known feature tags, valid once mFeatureTags is set
+     */
+    private volatile long mFeatureTagMask;
+
     /**
      * Constructor
      * 
@@ -122,6 +134,7 @@ public abstract class SipMessage {
     public void addHeader(String name, String value) throws ParseException {
         Header header = SipUtils.HEADER_FACTORY.createHeader(name, value);
         mStackMessage.setHeader(header);
+        mFeatureTags = null;
     }
 
     /**
@@ -455,6 +468,28 @@ public abstract class SipMessage {
      * @return Set of feature tags
      */
     public Set<String> getFeatureTags() {
+        Set<String> featureTags = mFeatureTags;
+        if (featureTags == null) {
+            featureTags = Collections.unmodifiableSet(parseFeatureTags());
+            mFeatureTagMask = FeatureTagRegistry.getMask(featureTags);
+            mFeatureTags = featureTags;
+        }
+        return featureTags;
+    }
+
+    /**
+     * Get the mask of the known feature tags from Contact header and Accept-Contact header
+     * 
+     * @return Mask of {@link FeatureTagRegistry} bits
+     */
+    public long getFeatureTagMask() {
+        if (mFeatureTags == null) {
+            getFeatureTags();
+        }
+        return mFeatureTagMask;
+    }
+
+    private Set<String> parseFeatureTags() {
         Set<String> tags = new HashSet<>();
         /* Read Contact header */
         ContactHeader contactHeader = (ContactHeader) mStackMessage.getHeader(ContactHeader.NAME);
@@ -18,15 +18,19 @@
 
 package com.gsma.rcs.core.ims.protocol.sip;
 
+import gov2.nist.javax2.sip.message.MessageExt;
+
 import javax2.sip.Transaction;
+import javax2.sip.header.CSeqHeader;
 import javax2.sip.header.CallIdHeader;
 import javax2.sip.message.Message;
+import javax2.sip.message.Request;
 import javax2.sip.message.Response;
 
 /**
  * SIP transaction context object composed of a request and of the corresponding response. The
- * Transaction context is used for waiting responses of requests and also for waiting an ACK message
- * (special case).
+ * Transaction context is used for waiting responses of requests, or for being notified of them,
+ * and also for waiting an ACK message (special case).
  * 
  * @author JM. Auffret
  * @author yplo6403
@@ -40,6 +44,19 @@ public class SipTransactionContext {
         public void handle180Ringing(SipResponse response);
     }
 
+    /**
+     * An interface to handle the final SIP response of a transaction without waiting for it
+     */
+    public interface INotifySipResponse {
+        /**
+         * Handle the final response, or the timeout of the transaction. Called once from the SIP
+         * stack thread: the processing must not block.
+         * 
+         * @param ctx Transaction context
+         */
+        public void handleSipResponse(SipTransactionContext ctx);
+    }
+
     /**
      * Transaction
      */
@@ -55,6 +72,11 @@ public class SipTransactionContext {
      */
     private INotifySipProvisionalResponse mCallbackSipProvisionalResponse;
 
+    /**
+     * Callback to handle SIP final response, reset once called
+     */
+    private INotifySipResponse mCallbackSipResponse;
+
     /**
      * Constructor
      * 
@@ -71,8 +93,21 @@ public class SipTransactionContext {
      * @param callback Callback to handle SIP provisional response
      */
     public SipTransactionContext(Transaction transaction, INotifySipProvisionalResponse callback) {
+        this(transaction, callback, null);
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param transaction SIP transaction
+     * @param provisionalCallback Callback to handle SIP provisional response
+     * @param responseCallback Callback to handle SIP final response
+     */
+    public SipTransactionContext(Transaction transaction,
+            INotifySipProvisionalResponse provisionalCallback, INotifySipResponse responseCallback) {
         mTransaction = transaction;
-        mCallbackSipProvisionalResponse = callback;
+        mCallbackSipProvisionalResponse = provisionalCallback;
+        mCallbackSipResponse = responseCallback;
     }
 
     /**
@@ -216,9 +251,15 @@ public class SipTransactionContext {
      * @param msg SIP message object
      */
     public void responseReceived(SipMessage msg) {
+        INotifySipResponse callback;
         synchronized (this) {
             recvMsg = msg;
             super.notify();
+            callback = mCallbackSipResponse;
+            mCallbackSipResponse = null;
+        }
+        if (callback != null) {
+            callback.handleSipResponse(this);
         }
     }
 
@@ -243,14 +284,30 @@ public class SipTransactionContext {
     }
 
     /**
-     * Get the transaction context ID associated a SIP message
+     * Get the transaction context ID associated a SIP message. The ID identifies a single
+     * transaction of a dialog from the Call-ID and the CSeq of the message, so that the
+     * transactions running at the same time in a dialog (e.g. re-INVITE and INFO) have their own
+     * context. An ACK is associated to the INVITE transaction it acknowledges.
      * 
      * @param msg SIP message
      * @return Transaction context ID
      */
     public static String getTransactionContextId(Message msg) {
-        CallIdHeader header = (CallIdHeader) msg.getHeader(CallIdHeader.NAME);
-        return header.getCallId();
+        CallIdHeader callIdHeader;
+        CSeqHeader cseqHeader;
+        if (msg instanceof MessageExt) {
+            callIdHeader = ((MessageExt) msg).getCallIdHeader();
+            cseqHeader = ((MessageExt) msg).getCSeqHeader();
+        } else {
+            callIdHeader = (CallIdHeader) msg.getHeader(CallIdHeader.NAME);
+            cseqHeader = (CSeqHeader) msg.getHeader(CSeqHeader.NAME);
+        }
+        String method = cseqHeader.getMethod();
+        if (Request.ACK.equals(method)) {
+            method = Request.INVITE;
+        }
+        return new StringBuilder(callIdHeader.getCallId()).append('/')
+                .append(cseqHeader.getSeqNumber()).append('/').append(method).toString();
     }
 
     /**
@@ -18,13 +18,178 @@
 
 package com.gsma.rcs.core.ims.protocol.sip;
 
-import java.util.Hashtable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax2.sip.Transaction;
 
 /**
- * List of SIP transactions
+ * List of SIP transactions, keyed by transaction context ID. The ID identifies a single transaction
+ * of a dialog, so that the transactions running at the same time in a dialog do not replace each
+ * other's context. The contexts are kept in a concurrent map so that the senders and the SIP stack
+ * thread do not contend on a single lock. A context which has been neither completed nor removed
+ * within its lifetime (e.g. a server transaction whose ACK is never received) is expired by the
+ * next addition following the expiry period.
  * 
  * @author JM. Auffret
  */
-public class SipTransactionList extends Hashtable<String, SipTransactionContext> {
-    static final long serialVersionUID = 1L;
+public class SipTransactionList {
+
+    /**
+     * Default lifetime of a transaction context in milliseconds, longer than any transaction
+     */
+    public static final long DEFAULT_LIFETIME = 600000;
+
+    private final ConcurrentHashMap<String, Entry> mEntries = new ConcurrentHashMap<>();
+
+    private final long mLifetime;
+
+    /**
+     * Time from which the contexts are checked for expiry at the next addition
+     */
+    private final AtomicLong mNextExpiryTime = new AtomicLong();
+
+    private final AtomicLong mExpiredContexts = new AtomicLong();
+
+    private static final class Entry {
+        private final SipTransactionContext mContext;
+
+        private final long mExpirationTime;
+
+        private Entry(SipTransactionContext context, long expirationTime) {
+            mContext = context;
+            mExpirationTime = expirationTime;
+        }
+    }
+
+    /**
+     * Constructor
+     */
+    public SipTransactionList() {
+        this(DEFAULT_LIFETIME);
+    }
+
+    /**
+     * Constructor
+     * 
+     * @param lifetime Lifetime of a transaction context in milliseconds
+     */
+    public SipTransactionList(long lifetime) {
+        mLifetime = lifetime;
+        mNextExpiryTime.set(System.currentTimeMillis() + lifetime);
+    }
+
+    /**
+     * Add a transaction context, replacing the one with the same ID if any
+     * 
+     * @param id Transaction context ID
+     * @param ctx Transaction context
+     * @return the contexts expired by this addition, to be notified of their timeout
+     */
+    public List<SipTransactionContext> put(String id, SipTransactionContext ctx) {
+        long now = System.currentTimeMillis();
+        mEntries.put(id, new Entry(ctx, now + mLifetime));
+        long nextExpiryTime = mNextExpiryTime.get();
+        if (now < nextExpiryTime
+                || !mNextExpiryTime.compareAndSet(nextExpiryTime, now + mLifetime / 2)) {
+            return null;
+        }
+        return expire(now);
+    }
+
+    /**
+     * Get a transaction context
+     * 
+     * @param id Transaction context ID
+     * @return Transaction context or null
+     */
+    public SipTransactionContext get(String id) {
+        Entry entry = mEntries.get(id);
+        return entry != null ? entry.mContext : null;
+    }
+
+    /**
+     * Remove a transaction context
+     * 
+     * @param id Transaction context ID
+     * @return the removed transaction context or null
+     */
+    public SipTransactionContext remove(String id) {
+        Entry entry = mEntries.remove(id);
+        return entry != null ? entry.mContext : null;
+    }
+
+    /**
+     * Remove the transaction context of a transaction
+     * 
+     * @param id Transaction context ID
+     * @param transaction SIP transaction
+     * @return the removed transaction context or null if the context of this ID belongs to
+     *         another transaction
+     */
+    public SipTransactionContext remove(String id, Transaction transaction) {
+        Entry entry = mEntries.get(id);
+        if (entry == null || entry.mContext.getTransaction() != transaction
+                || !mEntries.remove(id, entry)) {
+            return null;
+        }
+        return entry.mContext;
+    }
+
+    /**
+     * Remove all the transaction contexts
+     * 
+     * @return the removed transaction contexts
+     */
+    public List<SipTransactionContext> removeAll() {
+        List<SipTransactionContext> contexts = new ArrayList<>(mEntries.size());
+        Iterator<Map.Entry<String, Entry>> iterator = mEntries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> mapEntry = iterator.next();
+            if (mEntries.remove(mapEntry.getKey(), mapEntry.getValue())) {
+                contexts.add(mapEntry.getValue().mContext);
+            }
+        }
+        return contexts;
+    }
+
+    /**
+     * Remove the transaction contexts whose lifetime is over
+     * 
+     * @param now Current time in milliseconds
+     * @return the expired transaction contexts
+     */
+    public List<SipTransactionContext> expire(long now) {
+        List<SipTransactionContext> expired = new ArrayList<>();
+        for (Map.Entry<String, Entry> mapEntry : mEntries.entrySet()) {
+            Entry entry = mapEntry.getValue();
+            if (entry.mExpirationTime <= now && mEntries.remove(mapEntry.getKey(), entry)) {
+                expired.add(entry.mContext);
+            }
+        }
+        mExpiredContexts.addAndGet(expired.size());
+        return expired;
+    }
+
+    /**
+     * Returns the number of transaction contexts
+     * 
+     * @return Number of transaction contexts
+     */
+    public int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * Returns the number of transaction contexts expired since the creation of the list
+     * 
+     * @return Number of expired transaction contexts
+     */
+    public long getExpiredContexts() {
+        return mExpiredContexts.get();
+    }
 }
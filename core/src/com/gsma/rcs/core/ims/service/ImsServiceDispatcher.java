@@ -25,7 +25,7 @@ package com.gsma.rcs.core.ims.service;
 import com.gsma.rcs.core.ims.ImsModule;
 import com.gsma.rcs.core.ims.network.ImsNetworkInterface;
 import com.gsma.rcs.core.ims.network.NetworkException;
-import com.gsma.rcs.core.ims.network.sip.FeatureTags;
+import com.gsma.rcs.core.ims.network.sip.FeatureTagRegistry;
 import com.gsma.rcs.core.ims.network.sip.SipMessageFactory;
 import com.gsma.rcs.core.ims.network.sip.SipUtils;
 import com.gsma.rcs.core.ims.protocol.PayloadException;
@@ -38,6 +38,7 @@ import com.gsma.rcs.core.ims.service.presence.PresenceService;
 import com.gsma.rcs.core.ims.service.terms.TermsConditionsService;
 import com.gsma.rcs.provider.settings.RcsSettings;
 import com.gsma.rcs.utils.FifoBuffer;
+import com.gsma.rcs.utils.FifoBuffer.DropPolicy;
 import com.gsma.rcs.utils.IdGenerator;
 import com.gsma.rcs.utils.logger.Logger;
 
@@ -59,12 +60,18 @@ import javax2.sip.message.Response;
  */
 public class ImsServiceDispatcher extends Thread {
 
+    /**
+     * Maximum number of received SIP requests waiting to be dispatched
+     */
+    private static final int MAX_PENDING_REQUESTS = 1024;
+
     private ImsModule mImsModule;
 
     /**
-     * Buffer of messages
+     * Buffer of messages, filled from the SIP stack thread which must never wait: when full the
+     * new requests are dropped and rejected with a 503 so that the remote can retry later.
      */
-    private FifoBuffer mBuffer = new FifoBuffer();
+    private FifoBuffer mBuffer = new FifoBuffer(MAX_PENDING_REQUESTS, DropPolicy.DROP_NEWEST);
 
     private SipIntentManager mIntentMgr = new SipIntentManager();
 
@@ -103,7 +110,25 @@ public class ImsServiceDispatcher extends Thread {
      * @param request SIP request
      */
     public void postSipRequest(SipRequest request) {
-        mBuffer.addObject(request);
+        if (mBuffer.addObject(request)) {
+            return;
+        }
+        String method = request.getMethod();
+        sLogger.warn("SIP request " + method + " dropped! CallId=" + request.getCallId());
+        if (Request.ACK.equals(method)) {
+            return;
+        }
+        try {
+            sendFinalResponse(request, Response.SERVICE_UNAVAILABLE);
+
+        } catch (PayloadException | RuntimeException e) {
+            sLogger.error("Failed to reject dropped SIP request! CallId=" + request.getCallId(), e);
+
+        } catch (NetworkException e) {
+            if (sLogger.isActivated()) {
+                sLogger.debug(e.getMessage());
+            }
+        }
     }
 
     /**
@@ -243,11 +268,13 @@ public class ImsServiceDispatcher extends Thread {
                 return;
             }
             sdp = sdp.toLowerCase();
+            /* Feature tags of the Contact and Accept-Contact headers, parsed once */
+            long featureTags = request.getFeatureTagMask();
             /* New incoming session invitation */
             if (isTagPresent(sdp, "msrp")
-                    && SipUtils.isFeatureTagPresent(request, FeatureTags.FEATURE_3GPP_VIDEO_SHARE)
-                    && (SipUtils.isFeatureTagPresent(request, FeatureTags.FEATURE_3GPP_IMAGE_SHARE) || SipUtils
-                            .isFeatureTagPresent(request, FeatureTags.FEATURE_3GPP_IMAGE_SHARE_RCS2))) {
+                    && hasFeatureTags(featureTags, FeatureTagRegistry.VIDEO_SHARE)
+                    && hasAnyFeatureTag(featureTags, FeatureTagRegistry.IMAGE_SHARE_3GPP
+                            | FeatureTagRegistry.IMAGE_SHARE_3GPP_RCS2)) {
                 if (mRcsSettings.isImageSharingSupported()) {
                     if (logActivated) {
                         sLogger.debug("Image content sharing transfer invitation");
@@ -261,7 +288,7 @@ public class ImsServiceDispatcher extends Thread {
                     sendFinalResponse(request, Response.DECLINE);
                 }
             } else if (isTagPresent(sdp, "msrp")
-                    && SipUtils.isFeatureTagPresent(request, FeatureTags.FEATURE_OMA_IM)
+                    && hasFeatureTags(featureTags, FeatureTagRegistry.OMA_IM)
                     && isTagPresent(sdp, "file-selector")) {
                 if (mRcsSettings.isFileTransferSupported()) {
                     if (logActivated) {
@@ -276,7 +303,7 @@ public class ImsServiceDispatcher extends Thread {
                     sendFinalResponse(request, Response.DECLINE);
                 }
             } else if (isTagPresent(sdp, "msrp")
-                    && SipUtils.isFeatureTagPresent(request, FeatureTags.FEATURE_OMA_IM)) {
+                    && hasFeatureTags(featureTags, FeatureTagRegistry.OMA_IM)) {
                 if (!mRcsSettings.isImSessionSupported()) {
                     if (logActivated) {
                         sLogger.debug("IM service not supported: automatically reject");
@@ -346,7 +373,7 @@ public class ImsServiceDispatcher extends Thread {
                     }
                 }
             } else if (isTagPresent(sdp, "rtp")
-                    && SipUtils.isFeatureTagPresent(request, FeatureTags.FEATURE_3GPP_VIDEO_SHARE)) {
+                    && hasFeatureTags(featureTags, FeatureTagRegistry.VIDEO_SHARE)) {
                 if (mRcsSettings.isVideoSharingSupported()) {
                     if (logActivated) {
                         sLogger.debug("Video content sharing streaming invitation");
@@ -360,9 +387,8 @@ public class ImsServiceDispatcher extends Thread {
                     sendFinalResponse(request, Response.DECLINE);
                 }
             } else if (isTagPresent(sdp, "msrp")
-                    && SipUtils.isFeatureTagPresent(request, FeatureTags.FEATURE_3GPP_VIDEO_SHARE)
-                    && SipUtils.isFeatureTagPresent(request,
-                            FeatureTags.FEATURE_RCSE_GEOLOCATION_PUSH)) {
+                    && hasFeatureTags(featureTags, FeatureTagRegistry.VIDEO_SHARE
+                            | FeatureTagRegistry.GEOLOCATION_PUSH)) {
                 if (mRcsSettings.isGeoLocationPushSupported()) {
                     if (logActivated) {
                         sLogger.debug("Geoloc content sharing transfer invitation");
@@ -375,10 +401,8 @@ public class ImsServiceDispatcher extends Thread {
                     }
                     sendFinalResponse(request, Response.DECLINE);
                 }
-            } else if (SipUtils
-                    .isFeatureTagPresent(request, FeatureTags.FEATURE_RCSE_IP_VOICE_CALL)
-                    && SipUtils
-                            .isFeatureTagPresent(request, FeatureTags.FEATURE_3GPP_IP_VOICE_CALL)) {
+            } else if (hasFeatureTags(featureTags, FeatureTagRegistry.IP_VOICE_CALL
+                    | FeatureTagRegistry.IP_VOICE_CALL_3GPP)) {
                 // TODO: Add Ipcall support here in future releases
                 // Service not supported: reject the invitation with a 603 Decline
                 if (logActivated) {
@@ -386,12 +410,8 @@ public class ImsServiceDispatcher extends Thread {
                 }
                 sendFinalResponse(request, Response.DECLINE);
 
-            } else if (SipUtils
-                    .isFeatureTagPresent(request, FeatureTags.FEATURE_RCSE_IP_VOICE_CALL)
-                    && SipUtils
-                            .isFeatureTagPresent(request, FeatureTags.FEATURE_3GPP_IP_VOICE_CALL)
-                    && SipUtils
-                            .isFeatureTagPresent(request, FeatureTags.FEATURE_RCSE_IP_VIDEO_CALL)) {
+            } else if (hasFeatureTags(featureTags, FeatureTagRegistry.IP_VOICE_CALL
+                    | FeatureTagRegistry.IP_VOICE_CALL_3GPP | FeatureTagRegistry.IP_VIDEO_CALL)) {
                 // TODO: Add Ipcall support here in future releases
                 // Service not supported: reject the invitation with a 603 Decline
                 if (logActivated) {
@@ -533,6 +553,28 @@ public class ImsServiceDispatcher extends Thread {
         return (message != null) && (tag != null) && (message.toLowerCase().contains(tag));
     }
 
+    /**
+     * Test if all the given feature tags are present
+     * 
+     * @param featureTags Mask of the feature tags of the request
+     * @param bits Mask of the feature tags to test
+     * @return Boolean
+     */
+    private static boolean hasFeatureTags(long featureTags, long bits) {
+        return (featureTags & bits) == bits;
+    }
+
+    /**
+     * Test if at least one of the given feature tags is present
+     * 
+     * @param featureTags Mask of the feature tags of the request
+     * @param bits Mask of the feature tags to test
+     * @return Boolean
+     */
+    private static boolean hasAnyFeatureTag(long featureTags, long bits) {
+        return (featureTags & bits) != 0;
+    }
+
     /**
      * Search the IMS session that corresponds to a given call-ID
      * 
@@ -34,24 +34,26 @@ public class Capabilities {
      */
     public static final long INVALID_TIMESTAMP = -1;
 
-    private final boolean mImageSharing;
-    private final boolean mVideoSharing;
-    private final boolean mIpVoiceCall;
-    private final boolean mIpVideoCall;
-    private final boolean mImSession;
-    private final boolean mFileTransferMsrp;
-    private final boolean mCsVideo;
-    private final boolean mPresenceDiscovery;
-    private final boolean mSocialPresence;
-    private final boolean mFileTransferHttp;
-    private final boolean mGeolocationPush;
-    private final boolean mFileTransferThumbnail;
-    private final boolean mFileTransferStoreForward;
-    private final boolean mGroupChatStoreForward;
+    private static final int IMAGE_SHARING = 1;
+    private static final int VIDEO_SHARING = 1 << 1;
+    private static final int IP_VOICE_CALL = 1 << 2;
+    private static final int IP_VIDEO_CALL = 1 << 3;
+    private static final int IM_SESSION = 1 << 4;
+    private static final int FILE_TRANSFER_MSRP = 1 << 5;
+    private static final int CS_VIDEO = 1 << 6;
+    private static final int PRESENCE_DISCOVERY = 1 << 7;
+    private static final int SOCIAL_PRESENCE = 1 << 8;
+    private static final int FILE_TRANSFER_HTTP = 1 << 9;
+    private static final int GEOLOCATION_PUSH = 1 << 10;
+    private static final int FILE_TRANSFER_THUMBNAIL = 1 << 11;
+    private static final int FILE_TRANSFER_STORE_FORWARD = 1 << 12;
+    private static final int GROUP_CHAT_STORE_FORWARD = 1 << 13;
+    private static final int SIP_AUTOMATA = 1 << 14;
+
     /**
-     * SIP automata (@see RFC 3840)
+     * Mask of the supported services, SIP automata (@see RFC 3840) included
      */
-    private final boolean mSipAutomata;
+    private final int mServices;
 
     /**
      * Set of supported extensions
@@ -75,21 +77,7 @@ public class Capabilities {
             .build();
 
     private Capabilities(CapabilitiesBuilder builder) {
-        mImageSharing = builder.mImageSharing;
-        mVideoSharing = builder.mVideoSharing;
-        mIpVoiceCall = builder.mIpVoiceCall;
-        mIpVideoCall = builder.mIpVideoCall;
-        mImSession = builder.mImSession;
-        mFileTransferMsrp = builder.mFileTransferMsrp;
-        mCsVideo = builder.mCsVideo;
-        mPresenceDiscovery = builder.mPresenceDiscovery;
-        mSocialPresence = builder.mSocialPresence;
-        mFileTransferHttp = builder.mFileTransferHttp;
-        mGeolocationPush = builder.mGeolocationPush;
-        mFileTransferThumbnail = builder.mFileTransferThumbnail;
-        mFileTransferStoreForward = builder.mFileTransferStoreForward;
-        mGroupChatStoreForward = builder.mGroupChatStoreForward;
-        mSipAutomata = builder.mSipAutomata;
+        mServices = builder.mServices;
         mTimestampOfLastRequest = builder.mTimestampOfLastRequest;
         mTimestampOfLastResponse = builder.mTimestampOfLastResponse;
         mExtensions = new HashSet<>(builder.mExtensions);
@@ -101,7 +89,7 @@ public class Capabilities {
      * @return Boolean
      */
     public boolean isImageSharingSupported() {
-        return mImageSharing;
+        return (mServices & IMAGE_SHARING) != 0;
     }
 
     /**
@@ -110,7 +98,7 @@ public class Capabilities {
      * @return Boolean
      */
     public boolean isVideoSharingSupported() {
-        return mVideoSharing;
+        return (mServices & VIDEO_SHARING) != 0;
     }
 
     /**
@@ -119,7 +107,7 @@ public class Capabilities {
      * @return Boolean
      */
     public boolean isIPVoiceCallSupported() {
-        return mIpVoiceCall;
+        return (mServices & IP_VOICE_CALL) != 0;
     }
 
     /**
@@ -128,7 +116,7 @@ public class Capabilities {
      * @return Boolean
      */
     public boolean isIPVideoCallSupported() {
-        return mIpVideoCall;
+        return (mServices & IP_VIDEO_CALL) != 0;
     }
 
     /**
@@ -137,7 +125,7 @@ public class Capabilities {
      * @return Boolean
      */
     public boolean isImSessionSupported() {
-        return mImSession;
+        return (mServices & IM_SESSION) != 0;
     }
 
     /**
@@ -146,7 +134,7 @@ public class Capabilities {
      * @return Boolean
      */
     public boolean isFileTransferMsrpSupported() {
-        return mFileTransferMsrp;
+        return (mServices & FILE_TRANSFER_MSRP) != 0;
     }
 
     /**
@@ -155,7 +143,7 @@ public class Capabilities {
      * @return Boolean
      */
     public boolean isCsVideoSupported() {
-        return mCsVideo;
+        return (mServices & CS_VIDEO) != 0;
     }
 
     /**
@@ -164,7 +152,7 @@ public class Capabilities {
      * @return Boolean
      */
     public boolean isPresenceDiscoverySupported() {
-        return mPresenceDiscovery;
+        return (mServices & PRESENCE_DISCOVERY) != 0;
     }
 
     /**
@@ -173,7 +161,7 @@ public class Capabilities {
      * @return Boolean
      */
     public boolean isSocialPresenceSupported() {
-        return mSocialPresence;
+        return (mServices & SOCIAL_PRESENCE) != 0;
     }
 
     /**
@@ -182,7 +170,7 @@ public class Capabilities {
      * @return Boolean
      */
     public boolean isFileTransferHttpSupported() {
-        return mFileTransferHttp;
+        return (mServices & FILE_TRANSFER_HTTP) != 0;
     }
 
     /**
@@ -191,7 +179,7 @@ public class Capabilities {
      * @return Boolean
      */
     public boolean isGeolocationPushSupported() {
-        return mGeolocationPush;
+        return (mServices & GEOLOCATION_PUSH) != 0;
     }
 
     /**
@@ -200,7 +188,7 @@ public class Capabilities {
      * @return Boolean
      */
     public boolean isFileTransferThumbnailSupported() {
-        return mFileTransferThumbnail;
+        return (mServices & FILE_TRANSFER_THUMBNAIL) != 0;
     }
 
     /**
@@ -209,7 +197,7 @@ public class Capabilities {
      * @return Boolean
      */
     public boolean isFileTransferStoreForwardSupported() {
-        return mFileTransferStoreForward;
+        return (mServices & FILE_TRANSFER_STORE_FORWARD) != 0;
     }
 
     /**
@@ -218,7 +206,7 @@ public class Capabilities {
      * @return Boolean
      */
     public boolean isGroupChatStoreForwardSupported() {
-        return mGroupChatStoreForward;
+        return (mServices & GROUP_CHAT_STORE_FORWARD) != 0;
     }
 
     /**
@@ -227,7 +215,7 @@ public class Capabilities {
      * @return True if automata
      */
     public boolean isSipAutomata() {
-        return mSipAutomata;
+        return (mServices & SIP_AUTOMATA) != 0;
     }
 
     /**
@@ -252,16 +240,16 @@ public class Capabilities {
     @Override
     public String toString() {
         return "Caps{" +
-                "ImageShare=" + mImageSharing +
-                ", VideoSharing=" + mVideoSharing +
-                ", IM=" + mImSession +
-                ", FtMsrp=" + mFileTransferMsrp +
-                ", FtHttp=" + mFileTransferHttp +
-                ", GeoPush=" + mGeolocationPush +
-                ", FtThumbnail=" + mFileTransferThumbnail +
-                ", FtSF=" + mFileTransferStoreForward +
-                ", GcSF=" + mGroupChatStoreForward +
-                ", SipAutomata=" + mSipAutomata +
+                "ImageShare=" + isImageSharingSupported() +
+                ", VideoSharing=" + isVideoSharingSupported() +
+                ", IM=" + isImSessionSupported() +
+                ", FtMsrp=" + isFileTransferMsrpSupported() +
+                ", FtHttp=" + isFileTransferHttpSupported() +
+                ", GeoPush=" + isGeolocationPushSupported() +
+                ", FtThumbnail=" + isFileTransferThumbnailSupported() +
+                ", FtSF=" + isFileTransferStoreForwardSupported() +
+                ", GcSF=" + isGroupChatStoreForwardSupported() +
+                ", SipAutomata=" + isSipAutomata() +
                 ", Exts=" + mExtensions +
                 ", TimeOfLastRequest=" + mTimestampOfLastRequest +
                 ", TimeOfLastResponse=" + mTimestampOfLastResponse +
@@ -281,60 +269,12 @@ public class Capabilities {
         if (getClass() != obj.getClass())
             return false;
         Capabilities other = (Capabilities) obj;
-        if (mCsVideo != other.mCsVideo)
-            return false;
-        if (!mExtensions.equals(other.mExtensions))
-            return false;
-        if (mFileTransferMsrp != other.mFileTransferMsrp)
-            return false;
-        if (mFileTransferHttp != other.mFileTransferHttp)
-            return false;
-        if (mFileTransferStoreForward != other.mFileTransferStoreForward)
-            return false;
-        if (mFileTransferThumbnail != other.mFileTransferThumbnail)
-            return false;
-        if (mGeolocationPush != other.mGeolocationPush)
-            return false;
-        if (mGroupChatStoreForward != other.mGroupChatStoreForward)
-            return false;
-        if (mImSession != other.mImSession)
-            return false;
-        if (mImageSharing != other.mImageSharing)
-            return false;
-        if (mIpVideoCall != other.mIpVideoCall)
-            return false;
-        if (mIpVoiceCall != other.mIpVoiceCall)
-            return false;
-        if (mPresenceDiscovery != other.mPresenceDiscovery)
-            return false;
-        if (mSipAutomata != other.mSipAutomata)
-            return false;
-        if (mSocialPresence != other.mSocialPresence)
-            return false;
-        return mVideoSharing == other.mVideoSharing;
+        return mServices == other.mServices && mExtensions.equals(other.mExtensions);
     }
 
     @Override
     public int hashCode() {
-        final int prime = 31;
-        int result = 1;
-        result = prime * result + (mCsVideo ? 1231 : 1237);
-        result = prime * result + (mExtensions.hashCode());
-        result = prime * result + (mFileTransferHttp ? 1231 : 1237);
-        result = prime * result + (mFileTransferMsrp ? 1231 : 1237);
-        result = prime * result + (mFileTransferStoreForward ? 1231 : 1237);
-        result = prime * result + (mFileTransferThumbnail ? 1231 : 1237);
-        result = prime * result + (mGeolocationPush ? 1231 : 1237);
-        result = prime * result + (mGroupChatStoreForward ? 1231 : 1237);
-        result = prime * result + (mImSession ? 1231 : 1237);
-        result = prime * result + (mImageSharing ? 1231 : 1237);
-        result = prime * result + (mIpVideoCall ? 1231 : 1237);
-        result = prime * result + (mIpVoiceCall ? 1231 : 1237);
-        result = prime * result + (mPresenceDiscovery ? 1231 : 1237);
-        result = prime * result + (mSipAutomata ? 1231 : 1237);
-        result = prime * result + (mSocialPresence ? 1231 : 1237);
-        result = prime * result + (mVideoSharing ? 1231 : 1237);
-        return result;
+        return 31 * mServices + mExtensions.hashCode();
     }
 
     /**
@@ -350,21 +290,7 @@ public class Capabilities {
      * Capabilities builder class
      */
     public static class CapabilitiesBuilder {
-        private boolean mImageSharing = false;
-        private boolean mVideoSharing = false;
-        private boolean mIpVoiceCall = false;
-        private boolean mIpVideoCall = false;
-        private boolean mImSession = false;
-        private boolean mFileTransferMsrp = false;
-        private boolean mCsVideo = false;
-        private boolean mPresenceDiscovery = false;
-        private boolean mSocialPresence = false;
-        private boolean mFileTransferHttp = false;
-        private boolean mGeolocationPush = false;
-        private boolean mFileTransferThumbnail = false;
-        private boolean mFileTransferStoreForward = false;
-        private boolean mGroupChatStoreForward = false;
-        private boolean mSipAutomata = false;
+        private int mServices = 0;
         private Set<String> mExtensions = new HashSet<>();
         private long mTimestampOfLastRequest = INVALID_TIMESTAMP;
         private long mTimestampOfLastResponse = INVALID_TIMESTAMP;
@@ -381,21 +307,7 @@ public class Capabilities {
          * @param capabilities to copy or null if construct with default values
          */
         public CapabilitiesBuilder(Capabilities capabilities) {
-            mImageSharing = capabilities.isImageSharingSupported();
-            mVideoSharing = capabilities.isVideoSharingSupported();
-            mIpVoiceCall = capabilities.isIPVoiceCallSupported();
-            mIpVideoCall = capabilities.isIPVideoCallSupported();
-            mImSession = capabilities.isImSessionSupported();
-            mFileTransferMsrp = capabilities.isFileTransferMsrpSupported();
-            mCsVideo = capabilities.isCsVideoSupported();
-            mPresenceDiscovery = capabilities.isPresenceDiscoverySupported();
-            mSocialPresence = capabilities.isSocialPresenceSupported();
-            mFileTransferHttp = capabilities.isFileTransferHttpSupported();
-            mGeolocationPush = capabilities.isGeolocationPushSupported();
-            mFileTransferThumbnail = capabilities.isFileTransferThumbnailSupported();
-            mFileTransferStoreForward = capabilities.isFileTransferStoreForwardSupported();
-            mGroupChatStoreForward = capabilities.isGroupChatStoreForwardSupported();
-            mSipAutomata = capabilities.isSipAutomata();
+            mServices = capabilities.mServices;
             mTimestampOfLastRequest = capabilities.getTimestampOfLastRequest();
             mTimestampOfLastResponse = capabilities.getTimestampOfLastResponse();
             mExtensions = new HashSet<>(capabilities.getSupportedExtensions());
@@ -408,7 +320,7 @@ public class Capabilities {
          * @return the current instance
          */
         public CapabilitiesBuilder setImageSharing(boolean support) {
-            mImageSharing = support;
+            setService(IMAGE_SHARING, support);
             return this;
         }
 
@@ -418,7 +330,7 @@ public class Capabilities {
          * @return Boolean
          */
         public boolean isImageSharingSupported() {
-            return mImageSharing;
+            return (mServices & IMAGE_SHARING) != 0;
         }
 
         /**
@@ -428,7 +340,7 @@ public class Capabilities {
          * @return the current instance
          */
         public CapabilitiesBuilder setVideoSharing(boolean support) {
-            mVideoSharing = support;
+            setService(VIDEO_SHARING, support);
             return this;
         }
 
@@ -438,7 +350,7 @@ public class Capabilities {
          * @return Boolean
          */
         public boolean isVideoSharingSupported() {
-            return mVideoSharing;
+            return (mServices & VIDEO_SHARING) != 0;
         }
 
         /**
@@ -448,7 +360,7 @@ public class Capabilities {
          * @return the current instance
          */
         public CapabilitiesBuilder setIpVoiceCall(boolean support) {
-            mIpVoiceCall = support;
+            setService(IP_VOICE_CALL, support);
             return this;
         }
 
@@ -458,7 +370,7 @@ public class Capabilities {
          * @return Boolean
          */
         public boolean isIPVoiceCallSupported() {
-            return mIpVoiceCall;
+            return (mServices & IP_VOICE_CALL) != 0;
         }
 
         /**
@@ -468,7 +380,7 @@ public class Capabilities {
          * @return the current instance
          */
         public CapabilitiesBuilder setIpVideoCall(boolean support) {
-            mIpVideoCall = support;
+            setService(IP_VIDEO_CALL, support);
             return this;
         }
 
@@ -478,7 +390,7 @@ public class Capabilities {
          * @return Boolean
          */
         public boolean isIPVideoCallSupported() {
-            return mIpVideoCall;
+            return (mServices & IP_VIDEO_CALL) != 0;
         }
 
         /**
@@ -488,7 +400,7 @@ public class Capabilities {
          * @return the current instance
          */
         public CapabilitiesBuilder setImSession(boolean support) {
-            mImSession = support;
+            setService(IM_SESSION, support);
             return this;
         }
 
@@ -498,7 +410,7 @@ public class Capabilities {
          * @return Boolean
          */
         public boolean isImSessionSupported() {
-            return mImSession;
+            return (mServices & IM_SESSION) != 0;
         }
 
         /**
@@ -508,7 +420,7 @@ public class Capabilities {
          * @return the current instance
          */
         public CapabilitiesBuilder setFileTransferMsrp(boolean support) {
-            mFileTransferMsrp = support;
+            setService(FILE_TRANSFER_MSRP, support);
             return this;
         }
 
@@ -518,7 +430,7 @@ public class Capabilities {
          * @return Boolean
          */
         public boolean isFileTransferMsrpSupported() {
-            return mFileTransferMsrp;
+            return (mServices & FILE_TRANSFER_MSRP) != 0;
         }
 
         /**
@@ -528,7 +440,7 @@ public class Capabilities {
          * @return the current instance
          */
         public CapabilitiesBuilder setCsVideo(boolean support) {
-            mCsVideo = support;
+            setService(CS_VIDEO, support);
             return this;
         }
 
@@ -538,7 +450,7 @@ public class Capabilities {
          * @return Boolean
          */
         public boolean isCsVideoSupported() {
-            return mCsVideo;
+            return (mServices & CS_VIDEO) != 0;
         }
 
         /**
@@ -548,7 +460,7 @@ public class Capabilities {
          * @return the current instance
          */
         public CapabilitiesBuilder setPresenceDiscovery(boolean support) {
-            mPresenceDiscovery = support;
+            setService(PRESENCE_DISCOVERY, support);
             return this;
         }
 
@@ -558,7 +470,7 @@ public class Capabilities {
          * @return Boolean
          */
         public boolean isPresenceDiscovery() {
-            return mPresenceDiscovery;
+            return (mServices & PRESENCE_DISCOVERY) != 0;
         }
 
         /**
@@ -568,7 +480,7 @@ public class Capabilities {
          * @return the current instance
          */
         public CapabilitiesBuilder setSocialPresence(boolean support) {
-            mSocialPresence = support;
+            setService(SOCIAL_PRESENCE, support);
             return this;
         }
 
@@ -578,7 +490,7 @@ public class Capabilities {
          * @return Boolean
          */
         public boolean isSocialPresence() {
-            return mSocialPresence;
+            return (mServices & SOCIAL_PRESENCE) != 0;
         }
 
         /**
@@ -588,7 +500,7 @@ public class Capabilities {
          * @return the current instance
          */
         public CapabilitiesBuilder setFileTransferHttp(boolean support) {
-            mFileTransferHttp = support;
+            setService(FILE_TRANSFER_HTTP, support);
             return this;
         }
 
@@ -598,7 +510,7 @@ public class Capabilities {
          * @return Boolean
          */
         public boolean isFileTransferHttpSupported() {
-            return mFileTransferHttp;
+            return (mServices & FILE_TRANSFER_HTTP) != 0;
         }
 
         /**
@@ -608,7 +520,7 @@ public class Capabilities {
          * @return the current instance
          */
         public CapabilitiesBuilder setGeolocationPush(boolean support) {
-            mGeolocationPush = support;
+            setService(GEOLOCATION_PUSH, support);
             return this;
         }
 
@@ -618,7 +530,7 @@ public class Capabilities {
          * @return Boolean
          */
         public boolean isGeolocationPushSupported() {
-            return mGeolocationPush;
+            return (mServices & GEOLOCATION_PUSH) != 0;
         }
 
         /**
@@ -628,7 +540,7 @@ public class Capabilities {
          * @return the current instance
          */
         public CapabilitiesBuilder setFileTransferThumbnail(boolean support) {
-            mFileTransferThumbnail = support;
+            setService(FILE_TRANSFER_THUMBNAIL, support);
             return this;
         }
 
@@ -638,7 +550,7 @@ public class Capabilities {
          * @return Boolean
          */
         public boolean isFileTransferThumbnailSupported() {
-            return mFileTransferThumbnail;
+            return (mServices & FILE_TRANSFER_THUMBNAIL) != 0;
         }
 
         /**
@@ -648,7 +560,7 @@ public class Capabilities {
          * @return the current instance
          */
         public CapabilitiesBuilder setFileTransferStoreForward(boolean support) {
-            mFileTransferStoreForward = support;
+            setService(FILE_TRANSFER_STORE_FORWARD, support);
             return this;
         }
 
@@ -658,7 +570,7 @@ public class Capabilities {
          * @return Boolean
          */
         public boolean isFileTransferStoreForwardSupported() {
-            return mFileTransferStoreForward;
+            return (mServices & FILE_TRANSFER_STORE_FORWARD) != 0;
         }
 
         /**
@@ -668,7 +580,7 @@ public class Capabilities {
          * @return the current instance
          */
         public CapabilitiesBuilder setGroupChatStoreForward(boolean support) {
-            mGroupChatStoreForward = support;
+            setService(GROUP_CHAT_STORE_FORWARD, support);
             return this;
         }
 
@@ -678,7 +590,7 @@ public class Capabilities {
          * @return Boolean
          */
         public boolean isGroupChatStoreForwardSupported() {
-            return mGroupChatStoreForward;
+            return (mServices & GROUP_CHAT_STORE_FORWARD) != 0;
         }
 
         /**
@@ -688,7 +600,7 @@ public class Capabilities {
          * @return the current instance
          */
         public CapabilitiesBuilder setSipAutomata(boolean support) {
-            mSipAutomata = support;
+            setService(SIP_AUTOMATA, support);
             return this;
         }
 
@@ -698,7 +610,19 @@ public class Capabilities {
          * @return Boolean
          */
         public boolean isSipAutomata() {
-            return mSipAutomata;
+            return (mServices & SIP_AUTOMATA) != 0;
+        }
+
+        /**
+         * Adds the services supported by other capabilities, as a single mask operation. The
+         * extensions and the timestamps are not merged.
+         * 
+         * @param capabilities the capabilities whose services are added
+         * @return the current instance
+         */
+        public CapabilitiesBuilder addServices(Capabilities capabilities) {
+            mServices |= capabilities.mServices;
+            return this;
         }
 
         /**
@@ -763,6 +687,14 @@ public class Capabilities {
             return mTimestampOfLastResponse;
         }
 
+        private void setService(int service, boolean support) {
+            if (support) {
+                mServices |= service;
+            } else {
+                mServices &= ~service;
+            }
+        }
+
         /**
          * Build the capabilities
          * 
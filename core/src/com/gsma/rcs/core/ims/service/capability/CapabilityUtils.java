@@ -23,6 +23,7 @@
 package com.gsma.rcs.core.ims.service.capability;
 
 import com.gsma.rcs.core.content.GeolocContent;
+import com.gsma.rcs.core.ims.network.sip.FeatureTagRegistry;
 import com.gsma.rcs.core.ims.network.sip.FeatureTags;
 import com.gsma.rcs.core.ims.network.sip.SipUtils;
 import com.gsma.rcs.core.ims.protocol.rtp.MediaRegistry;
@@ -144,6 +145,10 @@ public class CapabilityUtils {
         return tags.toArray(new String[tags.size()]);
     }
 
+    private static boolean hasAnyFeatureTag(long featureTags, long bits) {
+        return (featureTags & bits) != 0;
+    }
+
     /**
      * Extract features tags
      * 
@@ -153,63 +158,54 @@ public class CapabilityUtils {
     public static Capabilities extractCapabilities(SipMessage msg) {
         /* Analyze feature tags */
         Capabilities.CapabilitiesBuilder capaBuilder = new Capabilities.CapabilitiesBuilder();
-        Set<String> tags = msg.getFeatureTags();
-        boolean ipCall_RCSE = false;
-        boolean ipCall_3GPP = false;
-        for (String tag : tags) {
-            if (tag.contains(FeatureTags.FEATURE_3GPP_VIDEO_SHARE)) {
-                capaBuilder.setVideoSharing(true);
-
-            } else if (tag.contains(FeatureTags.FEATURE_RCSE_IMAGE_SHARE)) {
-                capaBuilder.setImageSharing(true);
-
-            } else if (tag.contains(FeatureTags.FEATURE_RCSE_CHAT)) {
-                capaBuilder.setImSession(true);
-
-            } else if (tag.contains(FeatureTags.FEATURE_RCSE_FT)) {
-                capaBuilder.setFileTransferMsrp(true);
-
-            } else if (tag.contains(FeatureTags.FEATURE_RCSE_FT_HTTP)) {
-                capaBuilder.setFileTransferHttp(true);
-
-            } else if (tag.contains(FeatureTags.FEATURE_OMA_IM)) {
-                /* Support both IM & FT services */
-                capaBuilder.setImSession(true).setFileTransferMsrp(true);
-
-            } else if (tag.contains(FeatureTags.FEATURE_RCSE_PRESENCE_DISCOVERY)) {
-                capaBuilder.setPresenceDiscovery(true);
-
-            } else if (tag.contains(FeatureTags.FEATURE_RCSE_SOCIAL_PRESENCE)) {
-                capaBuilder.setSocialPresence(true);
-
-            } else if (tag.contains(FeatureTags.FEATURE_RCSE_GEOLOCATION_PUSH)) {
-                capaBuilder.setGeolocationPush(true);
-
-            } else if (tag.contains(FeatureTags.FEATURE_RCSE_FT_THUMBNAIL)) {
-                capaBuilder.setFileTransferThumbnail(true);
-
-            } else if (tag.contains(FeatureTags.FEATURE_RCSE_IP_VOICE_CALL)) {
-                if (ipCall_3GPP) {
-                    capaBuilder.setIpVoiceCall(true);
-                } else {
-                    ipCall_RCSE = true;
-                }
-            } else if (tag.contains(FeatureTags.FEATURE_3GPP_IP_VOICE_CALL)) {
-                if (ipCall_RCSE) {
-                    capaBuilder.setIpVoiceCall(true);
-                } else {
-                    ipCall_3GPP = true;
-                }
-            } else if (tag.contains(FeatureTags.FEATURE_RCSE_IP_VIDEO_CALL)) {
-                capaBuilder.setIpVideoCall(true);
-
-            } else if (tag.contains(FeatureTags.FEATURE_RCSE_FT_SF)) {
-                capaBuilder.setFileTransferStoreForward(true);
-
-            } else if (tag.contains(FeatureTags.FEATURE_RCSE_GC_SF)) {
-                capaBuilder.setGroupChatStoreForward(true);
-
-            } else if (tag.contains(FeatureTags.FEATURE_RCSE_IARI_EXTENSION + ".ext")
+        long featureTags = msg.getFeatureTagMask();
+        if (hasAnyFeatureTag(featureTags, FeatureTagRegistry.VIDEO_SHARE)) {
+            capaBuilder.setVideoSharing(true);
+        }
+        if (hasAnyFeatureTag(featureTags, FeatureTagRegistry.IMAGE_SHARE)) {
+            capaBuilder.setImageSharing(true);
+        }
+        /* OMA IM supports both IM & FT services */
+        if (hasAnyFeatureTag(featureTags, FeatureTagRegistry.CHAT | FeatureTagRegistry.OMA_IM)) {
+            capaBuilder.setImSession(true);
+        }
+        if (hasAnyFeatureTag(featureTags, FeatureTagRegistry.FT | FeatureTagRegistry.OMA_IM)) {
+            capaBuilder.setFileTransferMsrp(true);
+        }
+        if (hasAnyFeatureTag(featureTags, FeatureTagRegistry.FT_HTTP)) {
+            capaBuilder.setFileTransferHttp(true);
+        }
+        if (hasAnyFeatureTag(featureTags, FeatureTagRegistry.PRESENCE_DISCOVERY)) {
+            capaBuilder.setPresenceDiscovery(true);
+        }
+        if (hasAnyFeatureTag(featureTags, FeatureTagRegistry.SOCIAL_PRESENCE)) {
+            capaBuilder.setSocialPresence(true);
+        }
+        if (hasAnyFeatureTag(featureTags, FeatureTagRegistry.GEOLOCATION_PUSH)) {
+            capaBuilder.setGeolocationPush(true);
+        }
+        if (hasAnyFeatureTag(featureTags, FeatureTagRegistry.FT_THUMBNAIL)) {
+            capaBuilder.setFileTransferThumbnail(true);
+        }
+        /* IP voice call requires both the RCS and the 3GPP feature tags */
+        long ipVoiceCall = FeatureTagRegistry.IP_VOICE_CALL | FeatureTagRegistry.IP_VOICE_CALL_3GPP;
+        if ((featureTags & ipVoiceCall) == ipVoiceCall) {
+            capaBuilder.setIpVoiceCall(true);
+        }
+        if (hasAnyFeatureTag(featureTags, FeatureTagRegistry.IP_VIDEO_CALL)) {
+            capaBuilder.setIpVideoCall(true);
+        }
+        if (hasAnyFeatureTag(featureTags, FeatureTagRegistry.FT_SF)) {
+            capaBuilder.setFileTransferStoreForward(true);
+        }
+        if (hasAnyFeatureTag(featureTags, FeatureTagRegistry.GC_SF)) {
+            capaBuilder.setGroupChatStoreForward(true);
+        }
+        if (hasAnyFeatureTag(featureTags, FeatureTagRegistry.SIP_AUTOMATA)) {
+            capaBuilder.setSipAutomata(true);
+        }
+        for (String tag : msg.getFeatureTags()) {
+            if (tag.contains(FeatureTags.FEATURE_RCSE_IARI_EXTENSION + ".ext")
                     || tag.contains(FeatureTags.FEATURE_RCSE_IARI_EXTENSION + ".mnc")
                     || tag.contains(FeatureTags.FEATURE_RCSE_ICSI_EXTENSION + ".gsma")) {
                 // Support an RCS extension
@@ -217,8 +213,6 @@ public class CapabilityUtils {
                 if (!"gsma.rcs.extension".equals(serviceId)) {
                     capaBuilder.addExtension(serviceId);
                 }
-            } else if (tag.contains(FeatureTags.FEATURE_SIP_AUTOMATA)) {
-                capaBuilder.setSipAutomata(true);
             }
         }
         /* Analyze SDP part */
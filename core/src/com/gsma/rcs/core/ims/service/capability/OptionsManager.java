@@ -53,9 +53,9 @@ import java.util.concurrent.Executors;
  */
 public class OptionsManager implements DiscoveryManager {
     /**
-     * Max number of threads for background processing
+     * Max number of threads for background processing, the threads do not wait for the responses
      */
-    private final static int MAX_PROCESSING_THREADS = 15;
+    private final static int MAX_PROCESSING_THREADS = 4;
 
     private ImsModule mImsModule;
 
@@ -111,7 +111,7 @@ public class OptionsManager implements DiscoveryManager {
         boolean richcall = mImsModule.getRichcallService().isCallConnectedWith(contact);
         OptionsRequestTask task = new OptionsRequestTask(mImsModule, contact,
                 CapabilityUtils.getSupportedFeatureTags(richcall, mRcsSettings), mRcsSettings,
-                mContactManager, listener);
+                mContactManager, mThreadPool, listener);
         if (mThreadPool.isShutdown()) {
             if (sLogger.isActivated()) {
                 sLogger.warn("Request capabilities in background for " + contact
@@ -31,6 +31,7 @@ import com.gsma.rcs.core.ims.protocol.sip.SipDialogPath;
 import com.gsma.rcs.core.ims.protocol.sip.SipRequest;
 import com.gsma.rcs.core.ims.protocol.sip.SipResponse;
 import com.gsma.rcs.core.ims.protocol.sip.SipTransactionContext;
+import com.gsma.rcs.core.ims.protocol.sip.SipTransactionContext.INotifySipResponse;
 import com.gsma.rcs.core.ims.service.ContactInfo;
 import com.gsma.rcs.core.ims.service.ContactInfo.RcsStatus;
 import com.gsma.rcs.core.ims.service.ContactInfo.RegistrationState;
@@ -43,16 +44,19 @@ import com.gsma.rcs.utils.logger.Logger;
 import com.gsma.services.rcs.contact.ContactId;
 
 import java.text.ParseException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax2.sip.InvalidArgumentException;
 import javax2.sip.message.Response;
 
 /**
- * Options request task
+ * Options request task. The OPTIONS request is sent without waiting for its response, which is
+ * then processed by the executor of the task.
  * 
  * @author Jean-Marc AUFFRET
  */
-public class OptionsRequestTask implements Runnable {
+public class OptionsRequestTask implements Runnable, INotifySipResponse {
     private final ImsModule mImsModule;
 
     private final ContactId mContact;
@@ -71,6 +75,8 @@ public class OptionsRequestTask implements Runnable {
 
     private final IOptionsRequestTaskListener mCallback;
 
+    private final Executor mExecutor;
+
     /**
      * Constructor
      * 
@@ -79,10 +85,11 @@ public class OptionsRequestTask implements Runnable {
      * @param featureTags Feature tags
      * @param rcsSettings accessor to RCS settings
      * @param contactManager accessor to contact manager
+     * @param executor Executor processing the responses
      * @param callback Callback to be executed at end of task
      */
     public OptionsRequestTask(ImsModule parent, ContactId contact, String[] featureTags,
-            RcsSettings rcsSettings, ContactManager contactManager,
+            RcsSettings rcsSettings, ContactManager contactManager, Executor executor,
             IOptionsRequestTaskListener callback) {
         mImsModule = parent;
         mContact = contact;
@@ -90,13 +97,46 @@ public class OptionsRequestTask implements Runnable {
         mAuthenticationAgent = new SessionAuthenticationAgent(mImsModule);
         mRcsSettings = rcsSettings;
         mContactManager = contactManager;
+        mExecutor = executor;
         mCallback = callback;
     }
 
     @Override
     public void run() {
+        process(null);
+    }
+
+    @Override
+    public void handleSipResponse(final SipTransactionContext ctx) {
+        try {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    process(ctx);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            if (sLogger.isActivated()) {
+                sLogger.debug("Options response ignored for contact " + mContact
+                        + ": manager is stopped!");
+            }
+            notifyEndOfTask();
+        }
+    }
+
+    /**
+     * Send the first OPTIONS request or process the response of the last one
+     * 
+     * @param ctx SIP transaction context of the response or null to send the first request
+     */
+    private void process(SipTransactionContext ctx) {
+        boolean pending = false;
         try {
-            sendOptions();
+            if (ctx == null) {
+                pending = sendOptions();
+            } else {
+                pending = handleResponse(ctx);
+            }
         } catch (ContactManagerException | PayloadException e) {
             sLogger.error("Options request failed for contact : " + mContact, e);
             handleError(new CapabilityError(CapabilityError.OPTIONS_FAILED, e));
@@ -113,20 +153,29 @@ public class OptionsRequestTask implements Runnable {
              */
             sLogger.error("Options request failed for contact : " + mContact, e);
         } finally {
-            if (mCallback != null) {
-                try {
-                    mCallback.endOfOptionsRequestTask(mContact);
-                } catch (RuntimeException e) {
-                    /*
-                     * Normally we are not allowed to catch runtime exceptions as these are genuine
-                     * bugs which should be handled/fixed within the code. However the cases when we
-                     * are executing operations on a thread unhandling such exceptions will
-                     * eventually lead to exit the system and thus can bring the whole system down,
-                     * which is not intended.
-                     */
-                    sLogger.error("Failed to notify end of options request for contact : "
-                            + mContact, e);
-                }
+            if (!pending) {
+                notifyEndOfTask();
+            }
+        }
+    }
+
+    /**
+     * Notify the end of the task
+     */
+    private void notifyEndOfTask() {
+        if (mCallback != null) {
+            try {
+                mCallback.endOfOptionsRequestTask(mContact);
+            } catch (RuntimeException e) {
+                /*
+                 * Normally we are not allowed to catch runtime exceptions as these are genuine bugs
+                 * which should be handled/fixed within the code. However the cases when we are
+                 * executing operations on a thread unhandling such exceptions will eventually lead
+                 * to exit the system and thus can bring the whole system down, which is not
+                 * intended.
+                 */
+                sLogger.error("Failed to notify end of options request for contact : " + mContact,
+                        e);
             }
         }
     }
@@ -134,11 +183,11 @@ public class OptionsRequestTask implements Runnable {
     /**
      * Send an OPTIONS request
      * 
+     * @return True if a response is pending
      * @throws PayloadException
-     * @throws ContactManagerException
      * @throws NetworkException
      */
-    private void sendOptions() throws PayloadException, NetworkException, ContactManagerException {
+    private boolean sendOptions() throws PayloadException, NetworkException {
         if (sLogger.isActivated()) {
             sLogger.info("Send an options request to ".concat(mContact.toString()));
         }
@@ -146,7 +195,7 @@ public class OptionsRequestTask implements Runnable {
             if (sLogger.isActivated()) {
                 sLogger.debug("IMS not registered, do nothing");
             }
-            return;
+            return false;
         }
         // @FIXME: This should be an URI instead of String
         String contactUri = PhoneUtils.formatContactIdToUri(mContact).toString();
@@ -160,24 +209,36 @@ public class OptionsRequestTask implements Runnable {
         }
         SipRequest options = SipMessageFactory.createOptions(mDialogPath, mFeatureTags);
 
-        sendAndWaitOptions(options);
+        sendOptions(options);
+        return true;
     }
 
     /**
-     * Sends OPTIONS message and waits for response
+     * Sends OPTIONS message, the response is handled by this task
      * 
      * @param options SIP OPTIONS
      * @throws PayloadException
      * @throws NetworkException
+     */
+    private void sendOptions(SipRequest options) throws PayloadException, NetworkException {
+        if (sLogger.isActivated()) {
+            sLogger.info("Send OPTIONS");
+        }
+        mImsModule.getSipManager().sendSipMessageAsync(options, this);
+    }
+
+    /**
+     * Handle the response of an OPTIONS request
+     * 
+     * @param ctx SIP transaction context
+     * @return True if a response to a new request is pending
+     * @throws PayloadException
+     * @throws NetworkException
      * @throws ContactManagerException
      */
-    private void sendAndWaitOptions(SipRequest options) throws PayloadException, NetworkException,
-            ContactManagerException {
+    private boolean handleResponse(SipTransactionContext ctx) throws PayloadException,
+            NetworkException, ContactManagerException {
         try {
-            if (sLogger.isActivated()) {
-                sLogger.info("Send OPTIONS");
-            }
-            SipTransactionContext ctx = mImsModule.getSipManager().sendSipMessageAndWait(options);
             final int statusCode = ctx.getStatusCode();
             if (ctx.isSipResponse()) {
                 switch (statusCode) {
@@ -186,7 +247,7 @@ public class OptionsRequestTask implements Runnable {
                         break;
                     case Response.PROXY_AUTHENTICATION_REQUIRED:
                         handle407Authentication(ctx);
-                        break;
+                        return true;
                     case Response.REQUEST_TIMEOUT:
                         /* Intentional fall through */
                     case Response.TEMPORARILY_UNAVAILABLE:
@@ -208,6 +269,8 @@ public class OptionsRequestTask implements Runnable {
                 handleError(new CapabilityError(CapabilityError.OPTIONS_FAILED,
                         String.valueOf(statusCode) + ' ' + ctx.getReasonPhrase()));
             }
+            return false;
+
         } catch (FileAccessException e) {
             throw new PayloadException("Failed to send OPTIONS!", e);
         }
@@ -308,10 +371,9 @@ public class OptionsRequestTask implements Runnable {
      * @param ctx SIP transaction context
      * @throws PayloadException
      * @throws NetworkException
-     * @throws ContactManagerException
      */
     private void handle407Authentication(SipTransactionContext ctx) throws PayloadException,
-            NetworkException, ContactManagerException {
+            NetworkException {
         try {
             if (sLogger.isActivated()) {
                 sLogger.info("407 response received");
@@ -331,7 +393,7 @@ public class OptionsRequestTask implements Runnable {
 
             mAuthenticationAgent.setProxyAuthorizationHeader(options);
 
-            sendAndWaitOptions(options);
+            sendOptions(options);
         } catch (InvalidArgumentException | ParseException e) {
             throw new PayloadException("Failed to handle 407 authentication response!", e);
 
@@ -32,6 +32,7 @@ import com.gsma.rcs.core.ims.protocol.PayloadException;
 import com.gsma.rcs.core.ims.protocol.sip.SipDialogPath;
 import com.gsma.rcs.core.ims.protocol.sip.SipRequest;
 import com.gsma.rcs.core.ims.protocol.sip.SipTransactionContext;
+import com.gsma.rcs.core.ims.protocol.sip.SipTransactionContext.INotifySipResponse;
 import com.gsma.rcs.core.ims.service.SessionAuthenticationAgent;
 import com.gsma.rcs.core.ims.service.im.InstantMessagingService;
 import com.gsma.rcs.core.ims.service.im.chat.ChatUtils;
@@ -39,12 +40,15 @@ import com.gsma.rcs.core.ims.service.im.chat.cpim.CpimMessage;
 import com.gsma.rcs.provider.messaging.MessagingLog;
 import com.gsma.rcs.provider.settings.RcsSettings;
 import com.gsma.rcs.utils.FifoBuffer;
+import com.gsma.rcs.utils.FifoBuffer.DropPolicy;
 import com.gsma.rcs.utils.PhoneUtils;
 import com.gsma.rcs.utils.logger.Logger;
 import com.gsma.services.rcs.chat.ChatLog;
 import com.gsma.services.rcs.contact.ContactId;
 
 import java.text.ParseException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import javax2.sip.InvalidArgumentException;
 import javax2.sip.message.Response;
@@ -56,9 +60,29 @@ import javax2.sip.message.Response;
  */
 public class ImdnManager extends Thread {
 
+    /**
+     * Maximum number of delivery statuses waiting to be sent
+     */
+    private static final int MAX_PENDING_DELIVERY_STATUSES = 1024;
+
     private final InstantMessagingService mImService;
     private final MessagingLog mMessagingLog;
-    private FifoBuffer mBuffer = new FifoBuffer();
+    /**
+     * Buffer of delivery statuses, filled from the chat sessions and the SIP stack thread which
+     * must never wait: when full the new delivery statuses are dropped.
+     */
+    private FifoBuffer mBuffer = new FifoBuffer(MAX_PENDING_DELIVERY_STATUSES,
+            DropPolicy.DROP_NEWEST);
+    /**
+     * Display reports whose 200 OK has been received from the SIP stack thread, processed by the
+     * IMDN thread. They are not added to the buffer which may be full: their number is bounded by
+     * the delivery statuses taken from the buffer and being sent.
+     */
+    private final Queue<DeliveryStatus> mSentDisplayReports = new ConcurrentLinkedQueue<>();
+    /**
+     * Added to the buffer to wake up the IMDN thread when display reports have been sent
+     */
+    private static final Object WAKE_UP = new Object();
     private final RcsSettings mRcsSettings;
     private final static Logger sLogger = Logger.getLogger(ImdnManager.class.getSimpleName());
 
@@ -127,8 +151,16 @@ public class ImdnManager extends Thread {
 
     @Override
     public void run() {
-        DeliveryStatus delivery;
-        while ((delivery = (DeliveryStatus) mBuffer.getObject()) != null) {
+        Object object;
+        while ((object = mBuffer.getObject()) != null) {
+            DeliveryStatus sentDisplayReport;
+            while ((sentDisplayReport = mSentDisplayReports.poll()) != null) {
+                onDisplayReportSent(sentDisplayReport);
+            }
+            if (object == WAKE_UP) {
+                continue;
+            }
+            DeliveryStatus delivery = (DeliveryStatus) object;
             try {
                 boolean imdnDisplay = ImdnDocument.DeliveryStatus.DISPLAYED == delivery.getStatus();
                 String msgId = delivery.getMsgId();
@@ -146,15 +178,7 @@ public class ImdnManager extends Thread {
                         continue;
                     }
                 }
-                sendSipMessageDeliveryStatus(delivery, null); // TODO: add sip.instance
-                /*
-                 * Update rich messaging history when sending DISPLAYED report Since the requested
-                 * display report was now successfully send we mark this message as fully received
-                 */
-                if (imdnDisplay) {
-                    mImService.onChatMessageDisplayReportSent(delivery.getChatId(),
-                            delivery.getRemote(), msgId);
-                }
+                sendSipMessageDeliveryStatus(delivery, null, imdnDisplay); // TODO: add sip.instance
             } catch (PayloadException | RuntimeException e) {
                 sLogger.error("Failed to send delivery status for chatId: " + delivery.getChatId(),
                         e);
@@ -167,6 +191,22 @@ public class ImdnManager extends Thread {
         }
     }
 
+    /**
+     * Update rich messaging history when a DISPLAYED report has been sent: since the requested
+     * display report was now successfully sent we mark this message as fully received
+     * 
+     * @param delivery Delivery status
+     */
+    private void onDisplayReportSent(DeliveryStatus delivery) {
+        try {
+            mImService.onChatMessageDisplayReportSent(delivery.getChatId(), delivery.getRemote(),
+                    delivery.getMsgId());
+        } catch (RuntimeException e) {
+            sLogger.error("Failed to handle display report sent for chatId: "
+                    + delivery.getChatId(), e);
+        }
+    }
+
     /**
      * Send a message delivery status
      * 
@@ -180,11 +220,13 @@ public class ImdnManager extends Thread {
             ImdnDocument.DeliveryStatus status, long timestamp) {
         // Add request in the buffer for background processing
         DeliveryStatus delivery = new DeliveryStatus(chatId, remote, msgId, status, timestamp);
-        mBuffer.addObject(delivery);
+        if (!mBuffer.addObject(delivery)) {
+            sLogger.warn("Delivery status " + status + " for message " + msgId + " dropped!");
+        }
     }
 
     /**
-     * Send a message delivery status immediately
+     * Send a message delivery status immediately, without waiting for the response
      * 
      * @param chatId ChatId when targeting a group chat message, otherwise null
      * @param remote Remote contact
@@ -200,98 +242,139 @@ public class ImdnManager extends Thread {
             throws PayloadException, NetworkException {
         // Execute request in background
         final DeliveryStatus delivery = new DeliveryStatus(chatId, remote, msgId, status, timestamp);
-        sendSipMessageDeliveryStatus(delivery, remoteInstanceId);
-    }
-
-    private void analyzeSipResponse(SipTransactionContext ctx,
-            SessionAuthenticationAgent authenticationAgent, SipDialogPath dialogPath, String cpim)
-            throws NetworkException, PayloadException, InvalidArgumentException, ParseException {
-        int statusCode = ctx.getStatusCode();
-        switch (statusCode) {
-            case Response.PROXY_AUTHENTICATION_REQUIRED:
-                if (sLogger.isActivated()) {
-                    sLogger.info("407 response received");
-                }
-                /* Set the Proxy-Authorization header */
-                authenticationAgent.readProxyAuthenticateHeader(ctx.getSipResponse());
-                /* Increment the Cseq number of the dialog path */
-                dialogPath.incrementCseq();
-                /* Create a second MESSAGE request with the right token */
-                if (sLogger.isActivated()) {
-                    sLogger.info("Send second MESSAGE");
-                }
-                SipRequest msg = SipMessageFactory.createMessage(dialogPath,
-                        FeatureTags.FEATURE_OMA_IM, CpimMessage.MIME_TYPE, cpim.getBytes(UTF8));
-                /* Set the Authorization header */
-                authenticationAgent.setProxyAuthorizationHeader(msg);
-                ctx = mImService.getImsModule().getSipManager().sendSipMessageAndWait(msg);
-                analyzeSipResponse(ctx, authenticationAgent, dialogPath, cpim);
-                break;
-
-            case Response.OK:
-            case Response.ACCEPTED:
-                if (sLogger.isActivated()) {
-                    sLogger.info("20x OK response received");
-                }
-                break;
-
-            default:
-                throw new NetworkException("Delivery report has failed: " + statusCode
-                        + " response received");
-        }
+        sendSipMessageDeliveryStatus(delivery, remoteInstanceId, false);
     }
 
     /**
-     * Send message delivery status via SIP MESSAGE
+     * Send message delivery status via SIP MESSAGE, the response is handled from the SIP stack
+     * thread
      * 
      * @param deliveryStatus Delivery status
      * @param remoteInstanceId Remote SIP instance
+     * @param notifyDisplayReportSent True to notify the IM service once the report is sent
      * @throws PayloadException
      * @throws NetworkException
      */
-    private void sendSipMessageDeliveryStatus(DeliveryStatus deliveryStatus, String remoteInstanceId)
-            throws PayloadException, NetworkException {
-        try {
-            if (sLogger.isActivated()) {
-                sLogger.debug("Send delivery status " + deliveryStatus.getStatus()
-                        + " for message " + deliveryStatus.getMsgId());
-            }
-            // Create CPIM/IDMN document
-            String from = ChatUtils.ANONYMOUS_URI;
-            String to = ChatUtils.ANONYMOUS_URI;
-            /* Timestamp for IMDN datetime */
-            String imdn = ChatUtils.buildImdnDeliveryReport(deliveryStatus.getMsgId(),
-                    deliveryStatus.getStatus(), deliveryStatus.getTimestamp());
-            /* Timestamp for CPIM DateTime */
-            String cpim = ChatUtils.buildCpimDeliveryReport(from, to, imdn,
-                    System.currentTimeMillis());
-            // Create authentication agent
-            SessionAuthenticationAgent authenticationAgent = new SessionAuthenticationAgent(
-                    mImService.getImsModule());
-            // @FIXME: This should be an URI instead of String
-            String toUri = PhoneUtils.formatContactIdToUri(deliveryStatus.getRemote()).toString();
-            // Create a dialog path
-            SipDialogPath dialogPath = new SipDialogPath(mImService.getImsModule().getSipManager()
-                    .getSipStack(), mImService.getImsModule().getSipManager().getSipStack()
-                    .generateCallId(), 1, toUri, ImsModule.getImsUserProfile().getPublicUri(),
-                    toUri, mImService.getImsModule().getSipManager().getSipStack()
-                            .getServiceRoutePath(), mRcsSettings);
-            dialogPath.setRemoteSipInstance(remoteInstanceId);
-            // Create MESSAGE request
-            if (sLogger.isActivated()) {
-                sLogger.info("Send first MESSAGE");
+    private void sendSipMessageDeliveryStatus(DeliveryStatus deliveryStatus,
+            String remoteInstanceId, boolean notifyDisplayReportSent) throws PayloadException,
+            NetworkException {
+        if (sLogger.isActivated()) {
+            sLogger.debug("Send delivery status " + deliveryStatus.getStatus()
+                    + " for message " + deliveryStatus.getMsgId());
+        }
+        // Create CPIM/IDMN document
+        String from = ChatUtils.ANONYMOUS_URI;
+        String to = ChatUtils.ANONYMOUS_URI;
+        /* Timestamp for IMDN datetime */
+        String imdn = ChatUtils.buildImdnDeliveryReport(deliveryStatus.getMsgId(),
+                deliveryStatus.getStatus(), deliveryStatus.getTimestamp());
+        /* Timestamp for CPIM DateTime */
+        String cpim = ChatUtils.buildCpimDeliveryReport(from, to, imdn,
+                System.currentTimeMillis());
+        // Create authentication agent
+        SessionAuthenticationAgent authenticationAgent = new SessionAuthenticationAgent(
+                mImService.getImsModule());
+        // @FIXME: This should be an URI instead of String
+        String toUri = PhoneUtils.formatContactIdToUri(deliveryStatus.getRemote()).toString();
+        // Create a dialog path
+        SipDialogPath dialogPath = new SipDialogPath(mImService.getImsModule().getSipManager()
+                .getSipStack(), mImService.getImsModule().getSipManager().getSipStack()
+                .generateCallId(), 1, toUri, ImsModule.getImsUserProfile().getPublicUri(),
+                toUri, mImService.getImsModule().getSipManager().getSipStack()
+                        .getServiceRoutePath(), mRcsSettings);
+        dialogPath.setRemoteSipInstance(remoteInstanceId);
+        // Create MESSAGE request
+        if (sLogger.isActivated()) {
+            sLogger.info("Send first MESSAGE");
+        }
+        SipRequest msg = SipMessageFactory.createMessage(dialogPath,
+                FeatureTags.FEATURE_OMA_IM, CpimMessage.MIME_TYPE, cpim.getBytes(UTF8));
+        // Send MESSAGE request
+        new DeliveryStatusRequest(deliveryStatus, authenticationAgent, dialogPath, cpim,
+                notifyDisplayReportSent).send(msg);
+    }
+
+    /**
+     * Delivery status sent via SIP MESSAGE, handling the responses
+     */
+    private class DeliveryStatusRequest implements INotifySipResponse {
+        private final DeliveryStatus mDeliveryStatus;
+        private final SessionAuthenticationAgent mAuthenticationAgent;
+        private final SipDialogPath mDialogPath;
+        private final String mCpim;
+        private final boolean mNotifyDisplayReportSent;
+
+        public DeliveryStatusRequest(DeliveryStatus deliveryStatus,
+                SessionAuthenticationAgent authenticationAgent, SipDialogPath dialogPath,
+                String cpim, boolean notifyDisplayReportSent) {
+            mDeliveryStatus = deliveryStatus;
+            mAuthenticationAgent = authenticationAgent;
+            mDialogPath = dialogPath;
+            mCpim = cpim;
+            mNotifyDisplayReportSent = notifyDisplayReportSent;
+        }
+
+        public void send(SipRequest msg) throws NetworkException, PayloadException {
+            mImService.getImsModule().getSipManager().sendSipMessageAsync(msg, this);
+        }
+
+        @Override
+        public void handleSipResponse(SipTransactionContext ctx) {
+            try {
+                int statusCode = ctx.getStatusCode();
+                switch (statusCode) {
+                    case Response.PROXY_AUTHENTICATION_REQUIRED:
+                        if (sLogger.isActivated()) {
+                            sLogger.info("407 response received");
+                        }
+                        /* Set the Proxy-Authorization header */
+                        mAuthenticationAgent.readProxyAuthenticateHeader(ctx.getSipResponse());
+                        /* Increment the Cseq number of the dialog path */
+                        mDialogPath.incrementCseq();
+                        /* Create a second MESSAGE request with the right token */
+                        if (sLogger.isActivated()) {
+                            sLogger.info("Send second MESSAGE");
+                        }
+                        SipRequest msg = SipMessageFactory.createMessage(mDialogPath,
+                                FeatureTags.FEATURE_OMA_IM, CpimMessage.MIME_TYPE,
+                                mCpim.getBytes(UTF8));
+                        /* Set the Authorization header */
+                        mAuthenticationAgent.setProxyAuthorizationHeader(msg);
+                        send(msg);
+                        break;
+
+                    case Response.OK:
+                    case Response.ACCEPTED:
+                        if (sLogger.isActivated()) {
+                            sLogger.info("20x OK response received");
+                        }
+                        if (mNotifyDisplayReportSent) {
+                            /*
+                             * Processed by the IMDN thread. If the wake up is dropped because the
+                             * buffer is full, the thread processes it before the next object.
+                             */
+                            mSentDisplayReports.add(mDeliveryStatus);
+                            mBuffer.addObject(WAKE_UP);
+                        }
+                        break;
+
+                    default:
+                        if (sLogger.isActivated()) {
+                            sLogger.debug("Delivery report has failed: " + statusCode
+                                    + " response received");
+                        }
+                        break;
+                }
+            } catch (PayloadException | InvalidArgumentException | ParseException
+                    | RuntimeException e) {
+                sLogger.error("Failed to send delivery status for chatId: "
+                        + mDeliveryStatus.getChatId(), e);
+
+            } catch (NetworkException e) {
+                if (sLogger.isActivated()) {
+                    sLogger.debug(e.getMessage());
+                }
             }
-            SipRequest msg = SipMessageFactory.createMessage(dialogPath,
-                    FeatureTags.FEATURE_OMA_IM, CpimMessage.MIME_TYPE, cpim.getBytes(UTF8));
-            // Send MESSAGE request
-            SipTransactionContext ctx = mImService.getImsModule().getSipManager()
-                    .sendSipMessageAndWait(msg);
-            // Analyze received message
-            analyzeSipResponse(ctx, authenticationAgent, dialogPath, cpim);
-
-        } catch (InvalidArgumentException | ParseException e) {
-            throw new PayloadException("Unable to set authorization header for remoteInstanceId: "
-                    + remoteInstanceId, e);
         }
     }
 
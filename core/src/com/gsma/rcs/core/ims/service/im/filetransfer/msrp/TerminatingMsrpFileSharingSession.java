@@ -31,9 +31,11 @@ import com.gsma.rcs.core.ims.network.NetworkException;
 import com.gsma.rcs.core.ims.network.sip.SipMessageFactory;
 import com.gsma.rcs.core.ims.network.sip.SipUtils;
 import com.gsma.rcs.core.ims.protocol.PayloadException;
+import com.gsma.rcs.core.ims.protocol.msrp.FileReceiveSink;
 import com.gsma.rcs.core.ims.protocol.msrp.MsrpConstants;
 import com.gsma.rcs.core.ims.protocol.msrp.MsrpEventListener;
 import com.gsma.rcs.core.ims.protocol.msrp.MsrpManager;
+import com.gsma.rcs.core.ims.protocol.msrp.MsrpReceiveSink;
 import com.gsma.rcs.core.ims.protocol.msrp.MsrpSession;
 import com.gsma.rcs.core.ims.protocol.sdp.MediaAttribute;
 import com.gsma.rcs.core.ims.protocol.sdp.MediaDescription;
@@ -60,6 +62,7 @@ import com.gsma.rcs.utils.NetworkRessourceManager;
 import com.gsma.rcs.utils.logger.Logger;
 import com.gsma.services.rcs.contact.ContactId;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Vector;
@@ -313,6 +316,7 @@ public class TerminatingMsrpFileSharingSession extends ImsFileSharingSession imp
                 MsrpSession session = mMsrpMgr.createMsrpServerSession(remotePath, this);
                 /* Do not use right now the mapping to do not increase memory and cpu consumption */
                 session.setMapMsgIdFromTransationId(false);
+                session.setReceiveSink(createReceiveSink());
                 mMsrpMgr.openMsrpSession(ImsFileSharingSession.DEFAULT_SO_TIMEOUT);
                 mMsrpMgr.sendEmptyChunk();
             }
@@ -336,6 +340,7 @@ public class TerminatingMsrpFileSharingSession extends ImsFileSharingSession imp
                     MsrpSession session = mMsrpMgr.createMsrpClientSession(remoteHost, remotePort,
                             remotePath, this, fingerprint);
                     session.setMapMsgIdFromTransationId(false);
+                    session.setReceiveSink(createReceiveSink());
                     mMsrpMgr.openMsrpSession(ImsFileSharingSession.DEFAULT_SO_TIMEOUT);
                     mMsrpMgr.sendEmptyChunk();
                 }
@@ -389,7 +394,9 @@ public class TerminatingMsrpFileSharingSession extends ImsFileSharingSession imp
         MmContent file = getContent();
         Collection<ImsSessionListener> listeners = getListeners();
         try {
-            file.writeData2File(data);
+            if (data != null) {
+                file.writeData2File(data);
+            }
             file.closeFile();
             for (ImsSessionListener listener : listeners) {
                 ((FileSharingSessionListener) listener).onFileTransferred(file, contact,
@@ -418,7 +425,9 @@ public class TerminatingMsrpFileSharingSession extends ImsFileSharingSession imp
         ContactId contact = getRemoteContact();
         Collection<ImsSessionListener> listeners = getListeners();
         try {
-            getContent().writeData2File(data);
+            if (data != null) {
+                getContent().writeData2File(data);
+            }
             for (ImsSessionListener listener : listeners) {
                 ((FileSharingSessionListener) listener).onTransferProgress(contact, currentSize,
                         totalSize);
@@ -471,6 +480,15 @@ public class TerminatingMsrpFileSharingSession extends ImsFileSharingSession imp
         }
     }
 
+    /**
+     * Create the sink writing the received chunks directly to the file
+     * 
+     * @return Receive sink
+     */
+    private MsrpReceiveSink createReceiveSink() {
+        return new FileReceiveSink(new File(getContent().getUri().getPath()));
+    }
+
     /**
      * Delete file
      */
@@ -31,6 +31,7 @@ import com.gsma.rcs.core.ims.protocol.sip.SipDialogPath;
 import com.gsma.rcs.core.ims.protocol.sip.SipRequest;
 import com.gsma.rcs.core.ims.protocol.sip.SipResponse;
 import com.gsma.rcs.core.ims.protocol.sip.SipTransactionContext;
+import com.gsma.rcs.core.ims.protocol.sip.SipTransactionContext.INotifySipResponse;
 import com.gsma.rcs.core.ims.service.SessionAuthenticationAgent;
 import com.gsma.rcs.platform.registry.RegistryFactory;
 import com.gsma.rcs.provider.settings.RcsSettings;
@@ -81,6 +82,11 @@ public class PublishManager extends PeriodicRefresher {
 
     private boolean mPublished = false;
 
+    /**
+     * True while a publish procedure waits for a response, guarded by this
+     */
+    private boolean mPublishPending = false;
+
     private SessionAuthenticationAgent mAuthenticationAgent;
 
     private static final Logger sLogger = Logger.getLogger(PublishManager.class.getName());
@@ -158,7 +164,7 @@ public class PublishManager extends PeriodicRefresher {
     }
 
     /**
-     * Publish presence status
+     * Publish presence status and wait for the end of the procedure
      * 
      * @param info Presence info
      * @return Boolean
@@ -172,6 +178,7 @@ public class PublishManager extends PeriodicRefresher {
         SipRequest publish = SipMessageFactory.createPublish(mDialogPath, mExpirePeriod,
                 mEntityTag, info);
         sendPublish(publish);
+        waitEndOfPublish();
         return mPublished;
     }
 
@@ -193,13 +200,17 @@ public class PublishManager extends PeriodicRefresher {
     }
 
     /**
-     * Send PUBLISH message
+     * Send PUBLISH message, the response is handled from the SIP stack thread
      * 
      * @param publish SIP PUBLISH
      * @throws NetworkException
      * @throws PayloadException
      */
-    private void sendPublish(SipRequest publish) throws PayloadException, NetworkException {
+    private void sendPublish(final SipRequest publish) throws PayloadException, NetworkException {
+        synchronized (this) {
+            mPublishPending = true;
+        }
+        boolean sent = false;
         try {
             if (sLogger.isActivated()) {
                 sLogger.info(new StringBuilder("Send PUBLISH, expire=")
@@ -208,8 +219,36 @@ public class PublishManager extends PeriodicRefresher {
             if (mPublished) {
                 mAuthenticationAgent.setProxyAuthorizationHeader(publish);
             }
-            SipTransactionContext ctx = mImsModule.getSipManager().sendSipMessageAndWait(publish);
+            mImsModule.getSipManager().sendSipMessageAsync(publish, new INotifySipResponse() {
+
+                @Override
+                public void handleSipResponse(SipTransactionContext ctx) {
+                    handlePublishResponse(publish, ctx);
+                }
+            });
+            sent = true;
+        } catch (InvalidArgumentException e) {
+            throw new PayloadException("Publish has failed!", e);
+
+        } catch (ParseException e) {
+            throw new PayloadException("Publish has failed!", e);
 
+        } finally {
+            if (!sent) {
+                endOfPublish();
+            }
+        }
+    }
+
+    /**
+     * Handle the response of a PUBLISH request
+     * 
+     * @param publish SIP PUBLISH
+     * @param ctx SIP transaction context
+     */
+    private void handlePublishResponse(SipRequest publish, SipTransactionContext ctx) {
+        boolean pending = false;
+        try {
             if (ctx.isSipResponse()) {
                 final int statusCode = ctx.getStatusCode();
                 switch (statusCode) {
@@ -221,13 +260,13 @@ public class PublishManager extends PeriodicRefresher {
                         }
                         break;
                     case Response.PROXY_AUTHENTICATION_REQUIRED:
-                        handle407Authentication(ctx);
+                        pending = handle407Authentication(ctx);
                         break;
                     case Response.CONDITIONAL_REQUEST_FAILED:
-                        handle412ConditionalRequestFailed(ctx);
+                        pending = handle412ConditionalRequestFailed(ctx);
                         break;
                     case Response.INTERVAL_TOO_BRIEF:
-                        handle423IntervalTooBrief(ctx);
+                        pending = handle423IntervalTooBrief(ctx);
                         break;
                     default:
                         handleError(new PresenceError(PresenceError.PUBLISH_FAILED,
@@ -240,11 +279,41 @@ public class PublishManager extends PeriodicRefresher {
                 }
                 handleError(new PresenceError(PresenceError.PUBLISH_FAILED));
             }
-        } catch (InvalidArgumentException e) {
-            throw new PayloadException("Publish has failed!", e);
+        } catch (PayloadException | RuntimeException e) {
+            sLogger.error("Publish has failed!", e);
+            handleError(new PresenceError(PresenceError.PUBLISH_FAILED, e));
 
-        } catch (ParseException e) {
-            throw new PayloadException("Publish has failed!", e);
+        } catch (NetworkException e) {
+            if (sLogger.isActivated()) {
+                sLogger.debug(e.getMessage());
+            }
+            handleError(new PresenceError(PresenceError.PUBLISH_FAILED, e));
+
+        } finally {
+            if (!pending) {
+                endOfPublish();
+            }
+        }
+    }
+
+    /**
+     * End of the publish procedure
+     */
+    private synchronized void endOfPublish() {
+        mPublishPending = false;
+        notifyAll();
+    }
+
+    /**
+     * Wait for the end of the publish procedure
+     */
+    private synchronized void waitEndOfPublish() {
+        try {
+            while (mPublishPending) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            /* Thread has been interrupted */
         }
     }
 
@@ -296,10 +365,11 @@ public class PublishManager extends PeriodicRefresher {
      * Handle 407 response
      * 
      * @param ctx SIP transaction context
+     * @return True if a new request has been sent
      * @throws PayloadException
      * @throws NetworkException
      */
-    private void handle407Authentication(SipTransactionContext ctx) throws PayloadException,
+    private boolean handle407Authentication(SipTransactionContext ctx) throws PayloadException,
             NetworkException {
         try {
             // 407 response received
@@ -329,6 +399,8 @@ public class PublishManager extends PeriodicRefresher {
 
             // Send PUBLISH request
             sendPublish(publish);
+            return true;
+
         } catch (InvalidArgumentException e) {
             throw new PayloadException("Failed to handle 407 authentication response!", e);
 
@@ -341,10 +413,11 @@ public class PublishManager extends PeriodicRefresher {
      * Handle 412 response
      * 
      * @param ctx SIP transaction context
+     * @return True if a new request has been sent
      * @throws PayloadException
      * @throws NetworkException
      */
-    private void handle412ConditionalRequestFailed(SipTransactionContext ctx)
+    private boolean handle412ConditionalRequestFailed(SipTransactionContext ctx)
             throws PayloadException, NetworkException {
         // 412 response received
         if (sLogger.isActivated()) {
@@ -363,16 +436,18 @@ public class PublishManager extends PeriodicRefresher {
 
         // Send PUBLISH request
         sendPublish(publish);
+        return true;
     }
 
     /**
      * Handle 423 response
      * 
      * @param ctx SIP transaction context
+     * @return True if a new request has been sent
      * @throws PayloadException
      * @throws NetworkException
      */
-    private void handle423IntervalTooBrief(SipTransactionContext ctx) throws PayloadException,
+    private boolean handle423IntervalTooBrief(SipTransactionContext ctx) throws PayloadException,
             NetworkException {
         // 423 response received
         if (sLogger.isActivated()) {
@@ -392,7 +467,7 @@ public class PublishManager extends PeriodicRefresher {
             }
             handleError(new PresenceError(PresenceError.PUBLISH_FAILED,
                     "No Min-Expires value found"));
-            return;
+            return false;
         }
 
         // Save the min expire value in the terminal registry
@@ -407,6 +482,7 @@ public class PublishManager extends PeriodicRefresher {
 
         // Send a PUBLISH request
         sendPublish(publish);
+        return true;
     }
 
     /**
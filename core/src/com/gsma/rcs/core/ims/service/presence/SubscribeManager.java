@@ -30,6 +30,7 @@ import com.gsma.rcs.core.ims.protocol.sip.SipDialogPath;
 import com.gsma.rcs.core.ims.protocol.sip.SipRequest;
 import com.gsma.rcs.core.ims.protocol.sip.SipResponse;
 import com.gsma.rcs.core.ims.protocol.sip.SipTransactionContext;
+import com.gsma.rcs.core.ims.protocol.sip.SipTransactionContext.INotifySipResponse;
 import com.gsma.rcs.core.ims.service.SessionAuthenticationAgent;
 import com.gsma.rcs.platform.registry.RegistryFactory;
 import com.gsma.rcs.provider.settings.RcsSettings;
@@ -233,9 +234,9 @@ public abstract class SubscribeManager extends PeriodicRefresher {
     }
 
     /**
-     * Subscribe
+     * Subscribe, the response is handled from the SIP stack thread
      * 
-     * @return Boolean
+     * @return True if the SUBSCRIBE request has been sent
      */
     public synchronized boolean subscribe() {
         if (logger.isActivated()) {
@@ -274,14 +275,15 @@ public abstract class SubscribeManager extends PeriodicRefresher {
 
             // Send SUBSCRIBE request
             sendSubscribe(subscribe);
+            return true;
 
         } catch (Exception e) {
             if (logger.isActivated()) {
                 logger.error("Subscribe has failed", e);
             }
             handleError(new PresenceError(PresenceError.UNEXPECTED_EXCEPTION, e.getMessage()));
+            return false;
         }
-        return mSubscribed;
     }
 
     /**
@@ -348,13 +350,13 @@ public abstract class SubscribeManager extends PeriodicRefresher {
     }
 
     /**
-     * Send SUBSCRIBE message
+     * Send SUBSCRIBE message, the response is handled from the SIP stack thread
      * 
      * @param subscribe SIP SUBSCRIBE
      * @throws NetworkException
      * @throws PayloadException
      */
-    private void sendSubscribe(SipRequest subscribe) throws PayloadException,
+    private void sendSubscribe(final SipRequest subscribe) throws PayloadException,
             NetworkException {
         try {
             if (logger.isActivated()) {
@@ -366,7 +368,37 @@ public abstract class SubscribeManager extends PeriodicRefresher {
                 mAuthenticationAgent.setProxyAuthorizationHeader(subscribe);
             }
 
-            SipTransactionContext ctx = mImsModule.getSipManager().sendSipMessageAndWait(subscribe);
+            mImsModule.getSipManager().sendSipMessageAsync(subscribe, new INotifySipResponse() {
+
+                @Override
+                public void handleSipResponse(SipTransactionContext ctx) {
+                    handleSubscribeResponse(subscribe, ctx);
+                }
+            });
+        } catch (InvalidArgumentException e) {
+            throw new PayloadException("Can't send sip subscribe!", e);
+
+        } catch (ParseException e) {
+            throw new PayloadException("Can't send sip subscribe!", e);
+        }
+    }
+
+    /**
+     * Handle the response of a SUBSCRIBE request
+     * 
+     * @param subscribe SIP SUBSCRIBE
+     * @param ctx SIP transaction context
+     */
+    private synchronized void handleSubscribeResponse(SipRequest subscribe,
+            SipTransactionContext ctx) {
+        if (mDialogPath == null) {
+            /* Unsubscribed or failed meanwhile */
+            if (logger.isActivated()) {
+                logger.debug("Subscription is reset: response to SUBSCRIBE ignored");
+            }
+            return;
+        }
+        try {
             if (ctx.isSipResponse()) {
                 switch (ctx.getStatusCode()) {
                     case Response.OK:
@@ -395,11 +427,11 @@ public abstract class SubscribeManager extends PeriodicRefresher {
                 logger.debug("No response received for SUBSCRIBE");
             }
             handleError(new PresenceError(PresenceError.SUBSCRIBE_FAILED));
-        } catch (InvalidArgumentException e) {
-            throw new PayloadException("Can't send sip subscribe!", e);
-
-        } catch (ParseException e) {
-            throw new PayloadException("Can't send sip subscribe!", e);
+        } catch (PayloadException | NetworkException | RuntimeException e) {
+            if (logger.isActivated()) {
+                logger.error("Subscribe has failed", e);
+            }
+            handleError(new PresenceError(PresenceError.SUBSCRIBE_FAILED, e));
         }
     }
 
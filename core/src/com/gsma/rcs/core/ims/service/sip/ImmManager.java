@@ -34,6 +34,7 @@ import com.gsma.rcs.core.ims.protocol.sip.SipTransactionContext;
 import com.gsma.rcs.core.ims.service.SessionAuthenticationAgent;
 import com.gsma.rcs.provider.settings.RcsSettings;
 import com.gsma.rcs.utils.FifoBuffer;
+import com.gsma.rcs.utils.FifoBuffer.DropPolicy;
 import com.gsma.rcs.utils.PhoneUtils;
 import com.gsma.rcs.utils.logger.Logger;
 import com.gsma.services.rcs.contact.ContactId;
@@ -52,7 +53,16 @@ public class ImmManager extends Thread {
 
     private final SipService mSipService;
 
-    private FifoBuffer mBuffer = new FifoBuffer();
+    /**
+     * Maximum number of multimedia messages waiting to be sent
+     */
+    private static final int MAX_PENDING_MESSAGES = 256;
+
+    /**
+     * Buffer of multimedia messages, filled from the API threads which must not wait: when full
+     * the new messages are refused to the caller.
+     */
+    private FifoBuffer mBuffer = new FifoBuffer(MAX_PENDING_MESSAGES, DropPolicy.DROP_NEWEST);
 
     private final RcsSettings mRcsSettings;
 
@@ -106,12 +116,17 @@ public class ImmManager extends Thread {
      * @param featureTag Feature tag
      * @param content Message content
      * @param contentType Message content type
+     * @throws NetworkException
      */
-    public void sendMessage(ContactId remote, String featureTag, byte[] content, String contentType) {
+    public void sendMessage(ContactId remote, String featureTag, byte[] content, String contentType)
+            throws NetworkException {
         // Add request in the buffer for background processing
         InstantMultimediaMessage msg = new InstantMultimediaMessage(remote, featureTag, content,
                 contentType);
-        mBuffer.addObject(msg);
+        if (!mBuffer.addObject(msg)) {
+            throw new NetworkException(
+                    "Cannot send multimedia message: too many messages pending!");
+        }
     }
 
     private void analyzeSipResponse(SipTransactionContext ctx,
@@ -25,6 +25,7 @@ package com.gsma.rcs.core.ims.service.sip.streaming;
 import com.gsma.rcs.core.ims.protocol.rtp.media.MediaInput;
 import com.gsma.rcs.core.ims.protocol.rtp.media.MediaSample;
 import com.gsma.rcs.utils.FifoBuffer;
+import com.gsma.rcs.utils.FifoBuffer.DropPolicy;
 
 /**
  * Data player in charge of sending data payload to the network via the RTP protocol
@@ -32,6 +33,11 @@ import com.gsma.rcs.utils.FifoBuffer;
  * @author Jean-Marc AUFFRET
  */
 public class DataSender implements MediaInput {
+    /**
+     * Max number of frames waiting to be sent, the oldest ones are dropped above
+     */
+    private static final int FIFO_MAX_NUMBER = 100;
+
     /**
      * Received frames
      */
@@ -60,7 +66,7 @@ public class DataSender implements MediaInput {
      * Open the player
      */
     public void open() {
-        mFifo = new FifoBuffer();
+        mFifo = new FifoBuffer(FIFO_MAX_NUMBER, DropPolicy.DROP_OLDEST);
     }
 
     /**
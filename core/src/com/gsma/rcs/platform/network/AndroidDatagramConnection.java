@@ -28,6 +28,7 @@ import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.nio.ByteBuffer;
 
 /**
  * Android datagram server connection
@@ -45,6 +46,11 @@ public class AndroidDatagramConnection implements DatagramConnection {
      */
     private DatagramPacket packet = null;
 
+    /**
+     * Datagram Packet used to receive directly in the array of a caller buffer
+     */
+    private DatagramPacket bufferPacket = null;
+
     /**
      * Connection timeout
      */
@@ -120,6 +126,38 @@ public class AndroidDatagramConnection implements DatagramConnection {
         }
     }
 
+    /**
+     * Receive data in a buffer. A buffer backed by an array is filled in place, without any
+     * intermediate copy.
+     * 
+     * @param buffer Buffer
+     * @return Length of the received datagram
+     * @throws NetworkException
+     */
+    public int receive(ByteBuffer buffer) throws NetworkException {
+        try {
+            buffer.clear();
+            if (buffer.hasArray()) {
+                if (bufferPacket == null) {
+                    bufferPacket = new DatagramPacket(buffer.array(), buffer.arrayOffset(),
+                            buffer.capacity());
+                } else {
+                    bufferPacket.setData(buffer.array(), buffer.arrayOffset(), buffer.capacity());
+                }
+                connection.receive(bufferPacket);
+                buffer.limit(bufferPacket.getLength());
+            } else {
+                packet.setLength(DatagramConnection.DEFAULT_DATAGRAM_SIZE);
+                connection.receive(packet);
+                buffer.put(packet.getData(), 0, Math.min(packet.getLength(), buffer.remaining()));
+                buffer.flip();
+            }
+            return buffer.remaining();
+        } catch (IOException e) {
+            throw new NetworkException("Failed to receive datagram packet!", e);
+        }
+    }
+
     /**
      * Send data
      * 
@@ -140,6 +178,33 @@ public class AndroidDatagramConnection implements DatagramConnection {
 
     }
 
+    /**
+     * Send the remaining content of a buffer. A buffer backed by an array is sent in place,
+     * without any intermediate copy.
+     * 
+     * @param remoteAddr Remote address
+     * @param remotePort Remote port
+     * @param buffer Buffer
+     * @throws NetworkException
+     */
+    public void send(String remoteAddr, int remotePort, ByteBuffer buffer) throws NetworkException {
+        if (!buffer.hasArray()) {
+            byte[] data = new byte[buffer.remaining()];
+            buffer.duplicate().get(data);
+            send(remoteAddr, remotePort, data);
+            return;
+        }
+        try {
+            InetAddress address = InetAddress.getByName(remoteAddr);
+            DatagramPacket packet = new DatagramPacket(buffer.array(), buffer.arrayOffset()
+                    + buffer.position(), buffer.remaining(), address, remotePort);
+            connection.send(packet);
+        } catch (IOException e) {
+            throw new NetworkException(new StringBuilder("Failed to send data to remoteAddr : ")
+                    .append(remoteAddr).toString(), e);
+        }
+    }
+
     /**
      * Returns the local address
      * 
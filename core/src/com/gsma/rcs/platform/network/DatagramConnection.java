@@ -22,6 +22,7 @@ import com.gsma.rcs.core.ims.network.NetworkException;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * Datagram connection
@@ -66,6 +67,16 @@ public interface DatagramConnection extends Closeable {
      */
     public void send(String remoteAddr, int remotePort, byte[] data) throws NetworkException;
 
+    /**
+     * Send the remaining content of a buffer
+     * 
+     * @param remoteAddr Remote address
+     * @param remotePort Remote port
+     * @param buffer Buffer
+     * @throws NetworkException
+     */
+    public void send(String remoteAddr, int remotePort, ByteBuffer buffer) throws NetworkException;
+
     /**
      * Receive data
      * 
@@ -74,6 +85,16 @@ public interface DatagramConnection extends Closeable {
      */
     public byte[] receive() throws NetworkException;
 
+    /**
+     * Receive data in a buffer. The buffer is cleared before the reception and holds the received
+     * datagram from its position to its limit once the method returns.
+     * 
+     * @param buffer Buffer
+     * @return Length of the received datagram
+     * @throws NetworkException
+     */
+    public int receive(ByteBuffer buffer) throws NetworkException;
+
     /**
      * Returns the local address
      * 
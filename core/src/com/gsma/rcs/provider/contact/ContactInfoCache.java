@@ -0,0 +1,250 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.provider.contact;
+
+import com.gsma.rcs.core.ims.service.ContactInfo;
+import com.gsma.services.rcs.contact.ContactId;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of the contact infos. The cache is split in stripes, each one being a LRU map
+ * guarded by its own lock, so that concurrent accesses to different contacts seldom contend. The
+ * cache also provides striped locks to serialize the updates of a contact without blocking the
+ * readers of the cache.
+ */
+public class ContactInfoCache {
+
+    /**
+     * Number of stripes, must be a power of two
+     */
+    private static final int STRIPES = 16;
+
+    private final Stripe[] mStripes = new Stripe[STRIPES];
+
+    private final Object[] mLocks = new Object[STRIPES];
+
+    private final AtomicLong mHits = new AtomicLong();
+
+    private final AtomicLong mMisses = new AtomicLong();
+
+    private final AtomicLong mEvictions = new AtomicLong();
+
+    /**
+     * Constructor
+     * 
+     * @param capacity Maximum number of contact infos
+     */
+    public ContactInfoCache(int capacity) {
+        int stripeCapacity = Math.max(1, capacity / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            mStripes[i] = new Stripe(stripeCapacity);
+            mLocks[i] = new Object();
+        }
+    }
+
+    private static int getStripeIndex(ContactId contact) {
+        int hash = contact.hashCode();
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+
+    /**
+     * Returns the lock serializing the updates of a contact
+     * 
+     * @param contact Contact ID
+     * @return Lock
+     */
+    public Object getLock(ContactId contact) {
+        return mLocks[getStripeIndex(contact)];
+    }
+
+    /**
+     * Operation run while holding the locks of all the contacts
+     * 
+     * @param <E> Exception thrown by the operation
+     */
+    public interface ExclusiveOperation<E extends Exception> {
+        /**
+         * Run the operation
+         * 
+         * @throws E
+         */
+        void run() throws E;
+    }
+
+    /**
+     * Run an operation holding the update locks of all the stripes, so that no update of a single
+     * contact can be interleaved with it. The locks are taken in stripe order.
+     * 
+     * @param operation Operation
+     * @throws E
+     */
+    public <E extends Exception> void runExclusive(ExclusiveOperation<E> operation) throws E {
+        runExclusive(operation, 0);
+    }
+
+    private <E extends Exception> void runExclusive(ExclusiveOperation<E> operation, int index)
+            throws E {
+        if (index == STRIPES) {
+            operation.run();
+            return;
+        }
+        synchronized (mLocks[index]) {
+            runExclusive(operation, index + 1);
+        }
+    }
+
+    /**
+     * Get the info of a contact, the hit and miss counters are updated
+     * 
+     * @param contact Contact ID
+     * @return Contact info or null if not cached
+     */
+    public ContactInfo get(ContactId contact) {
+        ContactInfo info = peek(contact);
+        if (info != null) {
+            mHits.incrementAndGet();
+        } else {
+            mMisses.incrementAndGet();
+        }
+        return info;
+    }
+
+    /**
+     * Get the info of a contact without updating the counters
+     * 
+     * @param contact Contact ID
+     * @return Contact info or null if not cached
+     */
+    public ContactInfo peek(ContactId contact) {
+        Stripe stripe = mStripes[getStripeIndex(contact)];
+        synchronized (stripe) {
+            return stripe.get(contact);
+        }
+    }
+
+    /**
+     * Put the info of a contact, the least recently used info of the stripe is evicted if it is
+     * full
+     * 
+     * @param contact Contact ID
+     * @param info Contact info
+     */
+    public void put(ContactId contact, ContactInfo info) {
+        Stripe stripe = mStripes[getStripeIndex(contact)];
+        synchronized (stripe) {
+            stripe.put(contact, info);
+        }
+    }
+
+    /**
+     * Remove the info of a contact
+     * 
+     * @param contact Contact ID
+     */
+    public void remove(ContactId contact) {
+        Stripe stripe = mStripes[getStripeIndex(contact)];
+        synchronized (stripe) {
+            stripe.remove(contact);
+        }
+    }
+
+    /**
+     * Remove all the contact infos
+     */
+    public void clear() {
+        for (Stripe stripe : mStripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of cached contact infos
+     * 
+     * @return Size
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : mStripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the number of lookups which have found the contact info
+     * 
+     * @return Number of hits
+     */
+    public long getHits() {
+        return mHits.get();
+    }
+
+    /**
+     * Returns the number of lookups which have not found the contact info
+     * 
+     * @return Number of misses
+     */
+    public long getMisses() {
+        return mMisses.get();
+    }
+
+    /**
+     * Returns the number of contact infos evicted because the cache was full
+     * 
+     * @return Number of evictions
+     */
+    public long getEvictions() {
+        return mEvictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return new StringBuilder("ContactInfoCache{size=").append(size()).append(", hits=")
+                .append(getHits()).append(", misses=").append(getMisses())
+                .append(", evictions=").append(getEvictions()).append('}').toString();
+    }
+
+    private class Stripe extends LinkedHashMap<ContactId, ContactInfo> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int mCapacity;
+
+        private Stripe(int capacity) {
+            super(16, 0.75f, true);
+            mCapacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ContactId, ContactInfo> eldest) {
+            if (size() > mCapacity) {
+                mEvictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -426,7 +426,24 @@ public final class ContactManager {
 
     private final RcsSettings mRcsSettings;
 
-    private final Map<ContactId, ContactInfo> mContactInfoCache;
+    /**
+     * Maximum number of contact infos kept in cache
+     */
+    private static final int CONTACT_INFO_CACHE_SIZE = 1024;
+
+    private final ContactInfoCache mContactInfoCache;
+
+    /**
+     * Number of updated contacts from which the pending provider writes are applied
+     */
+    private static final int WRITE_BATCH_SIZE = 50;
+
+    /**
+     * Maximum delay in milliseconds before the pending provider writes are applied
+     */
+    private static final long WRITE_BATCH_DELAY = 1000;
+
+    private final ContactWriteBatch mWriteBatch;
 
     private static final Logger sLogger = Logger.getLogger(ContactManager.class.getSimpleName());
 
@@ -466,7 +483,9 @@ public final class ContactManager {
         mContext = context;
         mContentResolver = contentResolver;
         mLocalContentResolver = localContentResolver;
-        mContactInfoCache = new HashMap<>();
+        mContactInfoCache = new ContactInfoCache(CONTACT_INFO_CACHE_SIZE);
+        mWriteBatch = new ContactWriteBatch(localContentResolver, WRITE_BATCH_SIZE,
+                WRITE_BATCH_DELAY);
         mRcsSettings = rcsSettings;
     }
 
@@ -602,18 +621,19 @@ public final class ContactManager {
                 sLogger.info("Update RCS contact ".concat(contactNumber));
             }
             /* RCS contact already exists in provider: update RABP entry */
-            Uri uri = Uri.withAppendedPath(CONTENT_URI, contactNumber);
-            mLocalContentResolver.update(uri, values, null, null);
+            mWriteBatch.update(contact, values);
         } else {
             if (logActivated) {
                 sLogger.info("Insert new contact ".concat(contactNumber));
             }
             /* RCS contact does not exists in provider: insert entry in RABP */
-            mLocalContentResolver.insert(CONTENT_URI, values);
+            mWriteBatch.insert(contact, values);
         }
 
         /* Save presence photo content */
         if (photoIcon != null) {
+            /* The photo is stored in a file referenced by the contact entry */
+            mWriteBatch.flush();
             savePhotoIcon(photoIcon, contact);
         }
 
@@ -798,6 +818,8 @@ public final class ContactManager {
         infos.setBlockingState(BlockingState.NOT_BLOCKED);
         infos.setBlockingTimestamp(INVALID_TIME);
 
+        /* Make sure the pending writes are visible to the query */
+        mWriteBatch.flush();
         Cursor cursor = null;
         String contactNumber = contact.toString();
         Uri uri = Uri.withAppendedPath(CONTENT_URI, contactNumber);
@@ -912,7 +934,8 @@ public final class ContactManager {
 
     /**
      * Get contact info . This method is by choice not synchronized here since the methods invoking
-     * this will handle the synchronization and we would like to avoid double locks.
+     * this will handle the synchronization with the lock of the contact and we would like to avoid
+     * double locks.
      * 
      * @param contact the contact ID
      * @return ContactInfo
@@ -995,7 +1018,7 @@ public final class ContactManager {
         if (sLogger.isActivated()) {
             sLogger.info("Block contact ".concat(contact.toString()));
         }
-        synchronized (mContactInfoCache) {
+        synchronized (mContactInfoCache.getLock(contact)) {
             ContactInfo oldInfo = getContactInfoInternal(contact);
             ContactInfo newInfo = new ContactInfo(oldInfo);
             newInfo.setRcsStatus(RcsStatus.BLOCKED);
@@ -1003,17 +1026,28 @@ public final class ContactManager {
         }
     }
 
+    /**
+     * Apply the pending writes to the RCS contact provider
+     */
+    public void flushPendingWrites() {
+        mWriteBatch.flush();
+    }
+
     /**
      * Flush the RCS contact provider
      */
     public void flushRcsContactProvider() {
         if (sLogger.isActivated()) {
-            sLogger.debug("clear ContactInfo cache");
-        }
-        synchronized (mContactInfoCache) {
-            mContactInfoCache.clear();
-            mLocalContentResolver.delete(CONTENT_URI, null, null);
+            sLogger.debug("clear ".concat(mContactInfoCache.toString()));
         }
+        mContactInfoCache.runExclusive(new ContactInfoCache.ExclusiveOperation<RuntimeException>() {
+            @Override
+            public void run() {
+                mContactInfoCache.clear();
+                mWriteBatch.clear();
+                mLocalContentResolver.delete(CONTENT_URI, null, null);
+            }
+        });
     }
 
     /**
@@ -1024,15 +1058,14 @@ public final class ContactManager {
      * @param rcsStatus RCS status
      */
     public void updateRcsStatusOrCreateNewContact(ContactId contact, RcsStatus rcsStatus) {
-        synchronized (mContactInfoCache) {
+        synchronized (mContactInfoCache.getLock(contact)) {
             long currentTime = System.currentTimeMillis();
             ContentValues values = new ContentValues();
             values.put(KEY_PRESENCE_SHARING_STATUS, rcsStatus.toInt());
             values.put(KEY_TIMESTAMP_CONTACT_UPDATED, currentTime);
             if (isContactIdAssociatedWithRcsContactProvider(contact)) {
                 /* Contact already present, update. */
-                Uri uri = Uri.withAppendedPath(CONTENT_URI, contact.toString());
-                mLocalContentResolver.update(uri, values, null, null);
+                mWriteBatch.update(contact, values);
             } else {
                 /* Contact not present in provider, insert. */
                 values.put(KEY_CONTACT, contact.toString());
@@ -1059,7 +1092,7 @@ public final class ContactManager {
                 values.put(KEY_BLOCKING_TIMESTAMP, INVALID_TIME);
                 values.put(KEY_AUTOMATA, 0);
                 values.put(KEY_CAPABILITY_TIMESTAMP_LAST_RESPONSE, Capabilities.INVALID_TIMESTAMP);
-                mLocalContentResolver.insert(CONTENT_URI, values);
+                mWriteBatch.insert(contact, values);
             }
             getContactInfoInternal(contact).setRcsStatus(rcsStatus);
         }
@@ -1075,6 +1108,7 @@ public final class ContactManager {
         Set<ContactId> rcsNumbers = new HashSet<>();
         Cursor cursor = null;
         try {
+            mWriteBatch.flush();
             cursor = mLocalContentResolver.query(CONTENT_URI, PROJ_RCSCONTACT_CONTACT,
                     WHERE_RCS_STATUS_WITH_SOCIAL_PRESENCE, null, null);
             CursorUtil.assertCursorIsNotNull(cursor, CONTENT_URI);
@@ -1103,6 +1137,7 @@ public final class ContactManager {
         Set<ContactId> rcsNumbers = new HashSet<>();
         Cursor cursor = null;
         try {
+            mWriteBatch.flush();
             cursor = mLocalContentResolver.query(CONTENT_URI, PROJ_RCSCONTACT_CONTACT,
                     WHERE_RCS_STATUS_RCS, null, null);
             CursorUtil.assertCursorIsNotNull(cursor, CONTENT_URI);
@@ -1131,6 +1166,7 @@ public final class ContactManager {
         Set<ContactId> numbers = new HashSet<>();
         Cursor cursor = null;
         try {
+            mWriteBatch.flush();
             cursor = mLocalContentResolver.query(CONTENT_URI, PROJ_RCSCONTACT_CONTACT, null, null,
                     null);
             CursorUtil.assertCursorIsNotNull(cursor, CONTENT_URI);
@@ -1695,8 +1731,18 @@ public final class ContactManager {
      * @return Contact info
      */
     public ContactInfo getContactInfo(ContactId contact) {
-        synchronized (mContactInfoCache) {
-            return getContactInfoInternal(contact);
+        ContactInfo contactInfo = mContactInfoCache.get(contact);
+        if (contactInfo != null) {
+            return contactInfo;
+        }
+        synchronized (mContactInfoCache.getLock(contact)) {
+            /* Check if the contact info has been loaded meanwhile */
+            contactInfo = mContactInfoCache.peek(contact);
+            if (contactInfo == null) {
+                contactInfo = getContactInfoFromProvider(contact);
+                mContactInfoCache.put(contact, contactInfo);
+            }
+            return contactInfo;
         }
     }
 
@@ -1727,7 +1773,7 @@ public final class ContactManager {
     public void setContactCapabilities(ContactId contact, Capabilities capabilities,
             RcsStatus contactType, RegistrationState registrationState)
             throws ContactManagerException, FileAccessException {
-        synchronized (mContactInfoCache) {
+        synchronized (mContactInfoCache.getLock(contact)) {
             /* Get the current information on this contact */
             ContactInfo oldInfo = getContactInfoInternal(contact);
             ContactInfo newInfo = new ContactInfo(oldInfo);
@@ -1805,7 +1851,7 @@ public final class ContactManager {
     public void mergeContactCapabilities(ContactId contact, Capabilities capabilities,
             RcsStatus contactType, RegistrationState registrationState, String displayName)
             throws ContactManagerException, FileAccessException {
-        synchronized (mContactInfoCache) {
+        synchronized (mContactInfoCache.getLock(contact)) {
             /* Get the current information on this contact */
             ContactInfo oldInfo = getContactInfoInternal(contact);
             /* Merge the capabilities */
@@ -1816,51 +1862,7 @@ public final class ContactManager {
             } else {
                 capBuilder = new CapabilitiesBuilder();
             }
-            if (capabilities.isCsVideoSupported()) {
-                capBuilder.setCsVideo(true);
-            }
-            if (capabilities.isFileTransferMsrpSupported()) {
-                capBuilder.setFileTransferMsrp(true);
-            }
-            if (capabilities.isFileTransferHttpSupported()) {
-                capBuilder.setFileTransferHttp(true);
-            }
-            if (capabilities.isFileTransferStoreForwardSupported()) {
-                capBuilder.setFileTransferStoreForward(true);
-            }
-            if (capabilities.isFileTransferThumbnailSupported()) {
-                capBuilder.setFileTransferThumbnail(true);
-            }
-            if (capabilities.isGeolocationPushSupported()) {
-                capBuilder.setGeolocationPush(true);
-            }
-            if (capabilities.isGroupChatStoreForwardSupported()) {
-                capBuilder.setGroupChatStoreForward(true);
-            }
-            if (capabilities.isImSessionSupported()) {
-                capBuilder.setImSession(true);
-            }
-            if (capabilities.isImageSharingSupported()) {
-                capBuilder.setImageSharing(true);
-            }
-            if (capabilities.isIPVideoCallSupported()) {
-                capBuilder.setIpVideoCall(true);
-            }
-            if (capabilities.isIPVoiceCallSupported()) {
-                capBuilder.setIpVoiceCall(true);
-            }
-            if (capabilities.isPresenceDiscoverySupported()) {
-                capBuilder.setPresenceDiscovery(true);
-            }
-            if (capabilities.isSipAutomata()) {
-                capBuilder.setSipAutomata(true);
-            }
-            if (capabilities.isSocialPresenceSupported()) {
-                capBuilder.setSocialPresence(true);
-            }
-            if (capabilities.isVideoSharingSupported()) {
-                capBuilder.setVideoSharing(true);
-            }
+            capBuilder.addServices(capabilities);
             long timestampOfLastRequest = capabilities.getTimestampOfLastRequest();
             if (timestampOfLastRequest != Capabilities.INVALID_TIMESTAMP) {
                 capBuilder.setTimestampOfLastRequest(timestampOfLastRequest);
@@ -1924,7 +1926,7 @@ public final class ContactManager {
         if (sLogger.isActivated()) {
             sLogger.debug("Update time of last capabilities request for ".concat(contactNumber));
         }
-        synchronized (mContactInfoCache) {
+        synchronized (mContactInfoCache.getLock(contact)) {
             ContactInfo contactInfo = getContactInfoInternal(contact);
             Capabilities capabilities = contactInfo.getCapabilities();
             long now = System.currentTimeMillis();
@@ -1934,8 +1936,7 @@ public final class ContactManager {
             contactInfo.setCapabilities(capaBuilder.build());
             ContentValues values = new ContentValues();
             values.put(KEY_CAPABILITY_TIMESTAMP_LAST_REQUEST, now);
-            Uri uri = Uri.withAppendedPath(CONTENT_URI, contactNumber);
-            mLocalContentResolver.update(uri, values, null, null);
+            mWriteBatch.update(contact, values);
         }
     }
 
@@ -2265,6 +2266,9 @@ public final class ContactManager {
      * @return true if contact has an entry in the RCS contact provider, else false
      */
     public boolean isContactIdAssociatedWithRcsContactProvider(final ContactId contact) {
+        if (mWriteBatch.isPending(contact)) {
+            return true;
+        }
         Cursor cursor = null;
         Uri uri = Uri.withAppendedPath(CONTENT_URI, contact.toString());
         try {
@@ -2658,10 +2662,14 @@ public final class ContactManager {
      * @throws ContactManagerException
      */
     public void cleanRCSEntries() throws ContactManagerException {
-        synchronized (mContactInfoCache) {
-            cleanRCSRawContactsInAB();
-            cleanEntriesInRcsContactProvider();
-        }
+        mContactInfoCache
+                .runExclusive(new ContactInfoCache.ExclusiveOperation<ContactManagerException>() {
+                    @Override
+                    public void run() throws ContactManagerException {
+                        cleanRCSRawContactsInAB();
+                        cleanEntriesInRcsContactProvider();
+                    }
+                });
     }
 
     /**
@@ -2727,6 +2735,7 @@ public final class ContactManager {
         /* Get All contacts in RCS contact provider */
         Cursor cursor = null;
         try {
+            mWriteBatch.flush();
             cursor = mLocalContentResolver.query(CONTENT_URI, PROJ_RCSCONTACT_CONTACT, null, null,
                     null);
             CursorUtil.assertCursorIsNotNull(cursor, CONTENT_URI);
@@ -2761,15 +2770,19 @@ public final class ContactManager {
     public void deleteRCSEntries() {
         /* Delete Aggregation data */
         mLocalContentResolver.delete(AggregationData.CONTENT_URI, null, null);
-        synchronized (mContactInfoCache) {
-            /* Empty the cache */
-            if (sLogger.isActivated()) {
-                sLogger.debug("deleteRCSEntries");
+        mContactInfoCache.runExclusive(new ContactInfoCache.ExclusiveOperation<RuntimeException>() {
+            @Override
+            public void run() {
+                /* Empty the cache */
+                if (sLogger.isActivated()) {
+                    sLogger.debug("deleteRCSEntries");
+                }
+                mContactInfoCache.clear();
+                mWriteBatch.clear();
+                /* Delete presence data */
+                mLocalContentResolver.delete(CONTENT_URI, null, null);
             }
-            mContactInfoCache.clear();
-            /* Delete presence data */
-            mLocalContentResolver.delete(CONTENT_URI, null, null);
-        }
+        });
     }
 
     /**
@@ -2790,7 +2803,7 @@ public final class ContactManager {
      * @param displayName the display name
      */
     public void setContactDisplayName(ContactId contact, String displayName) {
-        synchronized (mContactInfoCache) {
+        synchronized (mContactInfoCache.getLock(contact)) {
             ContentValues values = new ContentValues();
             values.put(KEY_DISPLAY_NAME, displayName);
             /* Check if record exists and if so then update is required */
@@ -2801,9 +2814,8 @@ public final class ContactManager {
                     sLogger.debug("Update display name '" + displayName + "' for contact:"
                             + contact);
                 }
-                Uri uri = Uri.withAppendedPath(ContactData.CONTENT_URI, contact.toString());
                 /* Contact already present and display name is new, update */
-                mLocalContentResolver.update(uri, values, null, null);
+                mWriteBatch.update(contact, values);
 
                 getContactInfoInternal(contact).setDisplayName(displayName);
             }
@@ -2832,7 +2844,7 @@ public final class ContactManager {
             sLogger.debug("Update the time of last capabilities response for "
                     .concat(contactNumber));
         }
-        synchronized (mContactInfoCache) {
+        synchronized (mContactInfoCache.getLock(contact)) {
             ContactInfo contactInfo = getContactInfoInternal(contact);
             Capabilities capabilities = contactInfo.getCapabilities();
             /* Update the cache */
@@ -2841,8 +2853,7 @@ public final class ContactManager {
             contactInfo.setCapabilities(capaBuilder.build());
             ContentValues values = new ContentValues();
             values.put(KEY_CAPABILITY_TIMESTAMP_LAST_RESPONSE, timestampOfLastResponse);
-            Uri uri = Uri.withAppendedPath(CONTENT_URI, contactNumber);
-            mLocalContentResolver.update(uri, values, null, null);
+            mWriteBatch.update(contact, values);
         }
     }
 
@@ -2856,7 +2867,7 @@ public final class ContactManager {
      */
     public void setBlockingState(ContactId contact, BlockingState state)
             throws ContactManagerException, FileAccessException {
-        synchronized (mContactInfoCache) {
+        synchronized (mContactInfoCache.getLock(contact)) {
             /* Get the current information on this contact */
             ContactInfo oldInfo = getContactInfoInternal(contact);
             ContactInfo newInfo = new ContactInfo(oldInfo);
@@ -2942,7 +2953,7 @@ public final class ContactManager {
      */
     public void aggregateContactWithRcsRawContact(ContactInfo contactInfo)
             throws ContactManagerException, FileAccessException {
-        synchronized (mContactInfoCache) {
+        synchronized (mContactInfoCache.getLock(contactInfo.getContact())) {
             /*
              * if RCS contact does not exist, it will be created and RCS raw contact also. if RCS
              * contact already exists, it will enforce creation and association of RCS raw contact.
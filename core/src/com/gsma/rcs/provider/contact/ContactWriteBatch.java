@@ -0,0 +1,258 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.provider.contact;
+
+import static com.gsma.rcs.provider.contact.ContactData.CONTENT_URI;
+
+import com.gsma.rcs.provider.LocalContentResolver;
+import com.gsma.rcs.utils.logger.Logger;
+import com.gsma.services.rcs.contact.ContactId;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.net.Uri;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Write-behind batch of the contact provider updates. The updates of a contact are coalesced and
+ * applied with the other pending ones in a single provider transaction once enough contacts have
+ * been updated or after a delay, so that a capability synchronization of the whole address book does
+ * not perform a transaction per contact.
+ */
+/* package private */class ContactWriteBatch {
+
+    /**
+     * Number of attempts to apply a write which fails on its own before it is discarded
+     */
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final LocalContentResolver mLocalContentResolver;
+
+    private final int mMaxSize;
+
+    private final long mMaxDelay;
+
+    /**
+     * Pending writes per contact, in the order of their first update
+     */
+    private final Map<ContactId, PendingWrite> mPendingWrites = new LinkedHashMap<>();
+
+    private final Timer mTimer = new Timer(ContactWriteBatch.class.getSimpleName(), true);
+
+    private TimerTask mFlushTask;
+
+    private long mFlushes = 0;
+
+    private long mWrites = 0;
+
+    private static final Logger sLogger = Logger.getLogger(ContactWriteBatch.class
+            .getSimpleName());
+
+    /**
+     * Constructor
+     * 
+     * @param localContentResolver Local content resolver
+     * @param maxSize Number of pending contacts from which the batch is applied
+     * @param maxDelay Maximum delay in milliseconds before the batch is applied
+     */
+    /* package private */ContactWriteBatch(LocalContentResolver localContentResolver, int maxSize,
+            long maxDelay) {
+        mLocalContentResolver = localContentResolver;
+        mMaxSize = maxSize;
+        mMaxDelay = maxDelay;
+    }
+
+    /**
+     * Insert a contact
+     * 
+     * @param contact Contact ID
+     * @param values Values of the new row
+     */
+    /* package private */void insert(ContactId contact, ContentValues values) {
+        write(contact, values, true);
+    }
+
+    /**
+     * Update a contact
+     * 
+     * @param contact Contact ID
+     * @param values Updated values
+     */
+    /* package private */void update(ContactId contact, ContentValues values) {
+        write(contact, values, false);
+    }
+
+    private void write(ContactId contact, ContentValues values, boolean insert) {
+        boolean flush;
+        synchronized (this) {
+            mWrites++;
+            PendingWrite pendingWrite = mPendingWrites.get(contact);
+            if (pendingWrite != null) {
+                /* Coalesce with the pending write which keeps its type */
+                pendingWrite.mValues.putAll(values);
+            } else {
+                mPendingWrites.put(contact, new PendingWrite(insert, new ContentValues(values)));
+            }
+            flush = mPendingWrites.size() >= mMaxSize;
+            if (!flush) {
+                scheduleFlush();
+            }
+        }
+        if (flush) {
+            flush();
+        }
+    }
+
+    /**
+     * Schedule the flush of the pending writes after the maximum delay, must be called with the
+     * batch locked
+     */
+    private void scheduleFlush() {
+        if (mFlushTask != null) {
+            return;
+        }
+        mFlushTask = new TimerTask() {
+            @Override
+            public void run() {
+                try {
+                    flush();
+
+                } catch (RuntimeException e) {
+                    /*
+                     * Intentionally catch runtime exceptions as else it will abruptly end the timer
+                     * thread and no more writes would be applied.
+                     */
+                    sLogger.error("Failed to apply contact writes!", e);
+                }
+            }
+        };
+        mTimer.schedule(mFlushTask, mMaxDelay);
+    }
+
+    /**
+     * Is a write pending for a contact
+     * 
+     * @param contact Contact ID
+     * @return True if the contact has a pending write
+     */
+    /* package private */synchronized boolean isPending(ContactId contact) {
+        return mPendingWrites.containsKey(contact);
+    }
+
+    /**
+     * Apply the pending writes in a single transaction. The batch is locked meanwhile so that the
+     * provider is up to date for the callers checking the pending writes. If the transaction fails
+     * the writes are applied one by one, those still failing being kept for the next flush.
+     */
+    /* package private */synchronized void flush() {
+        if (mFlushTask != null) {
+            mFlushTask.cancel();
+            mFlushTask = null;
+        }
+        if (mPendingWrites.isEmpty()) {
+            return;
+        }
+        Map<ContactId, PendingWrite> writes = new LinkedHashMap<>(mPendingWrites);
+        mPendingWrites.clear();
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(writes.size());
+        for (Map.Entry<ContactId, PendingWrite> entry : writes.entrySet()) {
+            operations.add(entry.getValue().toOperation(entry.getKey()));
+        }
+        try {
+            mLocalContentResolver.applyBatch(CONTENT_URI, operations);
+            mFlushes++;
+            if (sLogger.isActivated()) {
+                sLogger.debug(new StringBuilder("Applied ").append(operations.size())
+                        .append(" contact writes, total writes=").append(mWrites)
+                        .append(", total transactions=").append(mFlushes).toString());
+            }
+            return;
+
+        } catch (OperationApplicationException | RuntimeException e) {
+            sLogger.warn("Failed to apply contact writes, apply them one by one", e);
+        }
+        for (Map.Entry<ContactId, PendingWrite> entry : writes.entrySet()) {
+            applyWrite(entry.getKey(), entry.getValue());
+        }
+        if (!mPendingWrites.isEmpty()) {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * Apply the write of a contact in its own transaction, the write is pending again if it fails
+     * and has not been attempted too many times. Must be called with the batch locked.
+     */
+    private void applyWrite(ContactId contact, PendingWrite pendingWrite) {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(1);
+        operations.add(pendingWrite.toOperation(contact));
+        try {
+            mLocalContentResolver.applyBatch(CONTENT_URI, operations);
+            mFlushes++;
+
+        } catch (OperationApplicationException | RuntimeException e) {
+            pendingWrite.mAttempts++;
+            if (pendingWrite.mAttempts < MAX_ATTEMPTS) {
+                sLogger.warn("Failed to write contact " + contact + ", retry later", e);
+                mPendingWrites.put(contact, pendingWrite);
+            } else {
+                sLogger.error("Failed to write contact " + contact + ", write is discarded", e);
+            }
+        }
+    }
+
+    /**
+     * Discard the pending writes, used when all the contacts are deleted
+     */
+    /* package private */synchronized void clear() {
+        if (mFlushTask != null) {
+            mFlushTask.cancel();
+            mFlushTask = null;
+        }
+        mPendingWrites.clear();
+    }
+
+    private static class PendingWrite {
+
+        private final boolean mInsert;
+
+        private final ContentValues mValues;
+
+        private int mAttempts = 0;
+
+        private PendingWrite(boolean insert, ContentValues values) {
+            mInsert = insert;
+            mValues = values;
+        }
+
+        private ContentProviderOperation toOperation(ContactId contact) {
+            if (mInsert) {
+                return ContentProviderOperation.newInsert(CONTENT_URI).withValues(mValues).build();
+            }
+            Uri uri = Uri.withAppendedPath(CONTENT_URI, contact.toString());
+            return ContentProviderOperation.newUpdate(uri).withValues(mValues).build();
+        }
+    }
+}
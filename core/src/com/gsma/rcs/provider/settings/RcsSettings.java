@@ -1116,6 +1116,60 @@ public class RcsSettings {
         return readLong(RcsSettingsData.MSRP_TRANSACTION_TIMEOUT);
     }
 
+    /**
+     * Is MSRP NIO transport mode activated
+     *
+     * @return Boolean
+     */
+    public boolean isMsrpNioTransportActivated() {
+        return readBoolean(RcsSettingsData.MSRP_NIO_TRANSPORT);
+    }
+
+    /**
+     * Get the maximum number of MSRP SEND requests waiting for their response
+     *
+     * @return Number of requests or 0 for no limit
+     */
+    public int getMsrpSendWindow() {
+        return readInteger(RcsSettingsData.MSRP_SEND_WINDOW);
+    }
+
+    /**
+     * Get the maximum size of the data chunks sent in MSRP SEND requests
+     *
+     * @return Size in bytes
+     */
+    public int getMsrpMaxChunkSize() {
+        return readInteger(RcsSettingsData.MSRP_MAX_CHUNK_SIZE);
+    }
+
+    /**
+     * Get the minimum number of bytes sent between two MSRP transfer progress notifications
+     *
+     * @return Size in bytes or 0 if only the coalescing period applies
+     */
+    public long getMsrpProgressCoalescingSize() {
+        return readLong(RcsSettingsData.MSRP_PROGRESS_COALESCING_SIZE);
+    }
+
+    /**
+     * Get the minimum period between two MSRP transfer progress notifications
+     *
+     * @return Period in milliseconds
+     */
+    public long getMsrpProgressCoalescingPeriod() {
+        return readLong(RcsSettingsData.MSRP_PROGRESS_COALESCING_PERIOD);
+    }
+
+    /**
+     * Is MSRP connection sharing activated
+     *
+     * @return Boolean
+     */
+    public boolean isMsrpConnectionSharingActivated() {
+        return readBoolean(RcsSettingsData.MSRP_CONNECTION_SHARING);
+    }
+
     /**
      * Get default expire period for REGISTER
      *
@@ -1613,6 +1667,15 @@ public class RcsSettings {
         return readBoolean(RcsSettingsData.SIP_KEEP_ALIVE);
     }
 
+    /**
+     * Are the SIP messages sent with the compact header names
+     *
+     * @return Boolean
+     */
+    public boolean isSipCompactHeadersActivated() {
+        return readBoolean(RcsSettingsData.SIP_COMPACT_HEADERS);
+    }
+
     /**
      * Get SIP keep-alive period
      *
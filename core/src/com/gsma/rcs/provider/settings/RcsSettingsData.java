@@ -878,6 +878,47 @@ public class RcsSettingsData {
     public static final String MSRP_TRANSACTION_TIMEOUT = "MsrpTransactionTimeout";
     /* package private */static final Long DEFAULT_MSRP_TRANSACTION_TIMEOUT = 5000L;
 
+    /**
+     * Activate or not the MSRP NIO transport mode multiplexing all MSRP connections on a single
+     * selector thread
+     */
+    public static final String MSRP_NIO_TRANSPORT = "MsrpNioTransport";
+    /* package private */static final Boolean DEFAULT_MSRP_NIO_TRANSPORT = false;
+
+    /**
+     * Maximum number of MSRP SEND requests waiting for their response when failure reports are
+     * requested, 0 for no limit
+     */
+    public static final String MSRP_SEND_WINDOW = "MsrpSendWindow";
+    /* package private */static final Integer DEFAULT_MSRP_SEND_WINDOW = 0;
+
+    /**
+     * Maximum size in bytes of the data chunks sent in MSRP SEND requests. Above 10240 bytes, the
+     * chunk size is adapted to the response latency when failure reports are requested.
+     */
+    public static final String MSRP_MAX_CHUNK_SIZE = "MsrpMaxChunkSize";
+    /* package private */static final Integer DEFAULT_MSRP_MAX_CHUNK_SIZE = 10240;
+
+    /**
+     * Minimum number of bytes sent between two MSRP transfer progress notifications, 0 to only
+     * rely on the coalescing period
+     */
+    public static final String MSRP_PROGRESS_COALESCING_SIZE = "MsrpProgressCoalescingSize";
+    /* package private */static final Long DEFAULT_MSRP_PROGRESS_COALESCING_SIZE = 0L;
+
+    /**
+     * Minimum period between two MSRP transfer progress notifications in milliseconds
+     */
+    public static final String MSRP_PROGRESS_COALESCING_PERIOD = "MsrpProgressCoalescingPeriod";
+    /* package private */static final Long DEFAULT_MSRP_PROGRESS_COALESCING_PERIOD = 500L;
+
+    /**
+     * Activate or not the sharing of a MSRP client connection between the sessions established
+     * through the same remote end point
+     */
+    public static final String MSRP_CONNECTION_SHARING = "MsrpConnectionSharing";
+    /* package private */static final Boolean DEFAULT_MSRP_CONNECTION_SHARING = false;
+
     /**
      * Registration expire period
      */
@@ -1214,6 +1255,12 @@ public class RcsSettingsData {
     public static final String SIP_KEEP_ALIVE = "SipKeepAlive";
     /* package private */static final Boolean DEFAULT_SIP_KEEP_ALIVE = true;
 
+    /**
+     * Send the SIP messages with the compact form of the header names
+     */
+    public static final String SIP_COMPACT_HEADERS = "SipCompactHeaders";
+    /* package private */static final Boolean DEFAULT_SIP_COMPACT_HEADERS = false;
+
     /**
      * SIP keep alive period
      */
@@ -1648,6 +1695,18 @@ public class RcsSettingsData {
                 RcsSettingsData.DEFAULT_RTP_DEFAULT_PORT);
         sSettingsKeyDefaultValue.put(RcsSettingsData.MSRP_TRANSACTION_TIMEOUT,
                 RcsSettingsData.DEFAULT_MSRP_TRANSACTION_TIMEOUT);
+        sSettingsKeyDefaultValue.put(RcsSettingsData.MSRP_NIO_TRANSPORT,
+                RcsSettingsData.DEFAULT_MSRP_NIO_TRANSPORT);
+        sSettingsKeyDefaultValue.put(RcsSettingsData.MSRP_SEND_WINDOW,
+                RcsSettingsData.DEFAULT_MSRP_SEND_WINDOW);
+        sSettingsKeyDefaultValue.put(RcsSettingsData.MSRP_MAX_CHUNK_SIZE,
+                RcsSettingsData.DEFAULT_MSRP_MAX_CHUNK_SIZE);
+        sSettingsKeyDefaultValue.put(RcsSettingsData.MSRP_PROGRESS_COALESCING_SIZE,
+                RcsSettingsData.DEFAULT_MSRP_PROGRESS_COALESCING_SIZE);
+        sSettingsKeyDefaultValue.put(RcsSettingsData.MSRP_PROGRESS_COALESCING_PERIOD,
+                RcsSettingsData.DEFAULT_MSRP_PROGRESS_COALESCING_PERIOD);
+        sSettingsKeyDefaultValue.put(RcsSettingsData.MSRP_CONNECTION_SHARING,
+                RcsSettingsData.DEFAULT_MSRP_CONNECTION_SHARING);
         sSettingsKeyDefaultValue.put(RcsSettingsData.REGISTER_EXPIRE_PERIOD,
                 RcsSettingsData.DEFAULT_REGISTER_EXPIRE_PERIOD);
         sSettingsKeyDefaultValue.put(RcsSettingsData.REGISTER_RETRY_BASE_TIME,
@@ -1714,6 +1773,8 @@ public class RcsSettingsData {
                 RcsSettingsData.DEFAULT_SIP_TIMER_T4);
         sSettingsKeyDefaultValue.put(RcsSettingsData.SIP_KEEP_ALIVE,
                 RcsSettingsData.DEFAULT_SIP_KEEP_ALIVE);
+        sSettingsKeyDefaultValue.put(RcsSettingsData.SIP_COMPACT_HEADERS,
+                RcsSettingsData.DEFAULT_SIP_COMPACT_HEADERS);
         sSettingsKeyDefaultValue.put(RcsSettingsData.SIP_KEEP_ALIVE_PERIOD,
                 RcsSettingsData.DEFAULT_SIP_KEEP_ALIVE_PERIOD);
         sSettingsKeyDefaultValue.put(RcsSettingsData.RCS_APN, RcsSettingsData.DEFAULT_RCS_APN);
@@ -18,89 +18,223 @@
 
 package com.gsma.rcs.utils;
 
-import java.util.Vector;
+import com.gsma.rcs.utils.logger.Logger;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
- * FIFO buffer
+ * FIFO buffer. Objects of a bounded buffer are stored in a ring whose slots are claimed with
+ * compare-and-set operations, so that adding and reading objects never locks unless a thread has to
+ * wait for an object or for a free slot. Objects of an unbounded buffer are stored in a concurrent
+ * linked queue and adding them never blocks. The buffer keeps its depth, drop and latency metrics.
  * 
  * @author JM. Auffret
  */
 public class FifoBuffer {
+
     /**
-     * Number of objects in the buffer
+     * Behavior when an object is added to a full buffer
      */
-    private int nbObjects = 0;
+    public enum DropPolicy {
+        /**
+         * Wait until a slot is freed by a reader
+         */
+        BLOCK,
+        /**
+         * Drop the oldest object of the buffer
+         */
+        DROP_OLDEST,
+        /**
+         * Drop the added object
+         */
+        DROP_NEWEST
+    }
+
+    private final int mMask;
+
+    private final Object[] mObjects;
 
     /**
-     * Buffer of objects
+     * Time at which each object has been added, in nanoseconds
      */
-    private Vector<Object> fifo = new Vector<>();
+    private final long[] mAddTimes;
 
     /**
-     * Add an object in the buffer
+     * Sequence of each slot: equal to the write position when the slot is free and to the write
+     * position plus one once it holds an object
+     */
+    private final AtomicLongArray mSequences;
+
+    /**
+     * Objects of an unbounded buffer, null if the buffer is bounded
+     */
+    private final ConcurrentLinkedQueue<Entry> mEntries;
+
+    private final AtomicLong mWritePosition = new AtomicLong();
+
+    private final AtomicLong mReadPosition = new AtomicLong();
+
+    private final DropPolicy mDropPolicy;
+
+    private volatile boolean mClosed = false;
+
+    /**
+     * Monitor used by the threads waiting for an object or a free slot
+     */
+    private final Object mLock = new Object();
+
+    private final AtomicInteger mWaiters = new AtomicInteger();
+
+    private final AtomicInteger mMaxSize = new AtomicInteger();
+
+    private final AtomicLong mDroppedObjects = new AtomicLong();
+
+    private final AtomicLong mReadObjects = new AtomicLong();
+
+    private final AtomicLong mTotalLatency = new AtomicLong();
+
+    private static final Logger sLogger = Logger.getLogger(FifoBuffer.class.getSimpleName());
+
+    /**
+     * Constructor of an unbounded buffer: objects are never dropped and the writers never block
+     */
+    public FifoBuffer() {
+        mMask = 0;
+        mObjects = null;
+        mAddTimes = null;
+        mSequences = null;
+        mEntries = new ConcurrentLinkedQueue<>();
+        mDropPolicy = DropPolicy.BLOCK;
+    }
+
+    /**
+     * Constructor
      * 
-     * @param obj Message
+     * @param capacity Maximum number of objects, rounded up to a power of two
+     * @param dropPolicy Behavior when an object is added to a full buffer
      */
-    public synchronized void addObject(Object obj) {
-        fifo.addElement(obj);
-        nbObjects++;
-        notifyAll();
+    public FifoBuffer(int capacity, DropPolicy dropPolicy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid FIFO capacity : " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        mMask = size - 1;
+        mObjects = new Object[size];
+        mAddTimes = new long[size];
+        mSequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            mSequences.set(i, i);
+        }
+        mEntries = null;
+        mDropPolicy = dropPolicy;
     }
 
     /**
-     * Read an object in the buffer. This is a blocking method until an object is read.
+     * Add an object in the buffer
      * 
-     * @return Object
+     * @param obj Message
+     * @return False if the object has been dropped or the buffer is closed
      */
-    public synchronized Object getObject() {
-        Object obj = null;
-        if (nbObjects == 0) {
-            try {
-                wait();
-            } catch (InterruptedException e) {
-                // Nothing to do
-            }
+    public boolean addObject(Object obj) {
+        boolean added;
+        switch (mDropPolicy) {
+            case DROP_NEWEST:
+                added = offer(obj);
+                if (!added) {
+                    mDroppedObjects.incrementAndGet();
+                }
+                break;
+
+            case DROP_OLDEST:
+                while (!(added = offer(obj)) && !mClosed) {
+                    if (poll() != null) {
+                        mDroppedObjects.incrementAndGet();
+                    }
+                }
+                break;
+
+            default:
+                added = offer(obj);
+                if (!added) {
+                    added = waitForSlot(obj);
+                }
+                break;
         }
-        if (nbObjects != 0) {
-            obj = fifo.elementAt(0);
-            fifo.removeElementAt(0);
-            nbObjects--;
-            notifyAll();
+        if (added) {
+            updateMaxSize();
+            signalWaiters();
         }
-        return obj;
+        return added;
     }
 
     /**
-     * Read an object in the buffer. This is a blocking method until a timeout occurs or an object
-     * is read.
+     * Read an object in the buffer. This is a blocking method until an object is read or the
+     * buffer is closed.
      * 
-     * @param timeout Timeout
-     * @return Message
+     * @return Object or null if the buffer is closed
      */
-    public synchronized Object getObject(int timeout) {
-        Object obj = null;
-        if (nbObjects == 0) {
-            try {
-                wait(timeout);
-            } catch (InterruptedException e) {
-                // Nothing to do
+    public Object getObject() {
+        return getObject(0);
+    }
+
+    /**
+     * Read an object in the buffer. This is a blocking method until a timeout occurs, an object is
+     * read or the buffer is closed.
+     * 
+     * @param timeout Timeout in milliseconds, 0 for no timeout
+     * @return Object or null if no object has been read
+     */
+    public Object getObject(int timeout) {
+        Object obj = poll();
+        if (obj == null) {
+            long deadline = System.currentTimeMillis() + timeout;
+            synchronized (mLock) {
+                mWaiters.incrementAndGet();
+                try {
+                    while ((obj = poll()) == null && !mClosed) {
+                        if (timeout == 0) {
+                            mLock.wait();
+                        } else {
+                            long delay = deadline - System.currentTimeMillis();
+                            if (delay <= 0) {
+                                break;
+                            }
+                            mLock.wait(delay);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    // Nothing to do
+                } finally {
+                    mWaiters.decrementAndGet();
+                }
             }
         }
-        if (nbObjects != 0) {
-            obj = fifo.elementAt(0);
-            fifo.removeElementAt(0);
-            nbObjects--;
-            notifyAll();
+        if (obj != null && mEntries == null && mDropPolicy == DropPolicy.BLOCK) {
+            signalWaiters();
         }
         return obj;
     }
 
     /**
-     * Close the buffer
+     * Close the buffer: blocked threads are released and objects can not be added anymore
      */
-    public synchronized void close() {
-        // Free the semaphore
-        this.notifyAll();
+    public void close() {
+        mClosed = true;
+        synchronized (mLock) {
+            mLock.notifyAll();
+        }
+        if (sLogger.isActivated()) {
+            sLogger.debug(new StringBuilder("FIFO closed: capacity=").append(getCapacity())
+                    .append(", max size=").append(getMaxSize()).append(", dropped=")
+                    .append(getDroppedObjects()).append(", average latency=")
+                    .append(getAverageLatency()).append("us").toString());
+        }
     }
 
     /**
@@ -109,19 +243,166 @@ public class FifoBuffer {
      * @return size of the FIFO
      */
     public int size() {
-        return fifo.size();
+        long size = mWritePosition.get() - mReadPosition.get();
+        return (int) Math.max(0, Math.min(size, getCapacity()));
     }
 
     /**
-     * clean FIFO
+     * Get FIFO capacity
+     * 
+     * @return Maximum number of objects or Integer.MAX_VALUE if the FIFO is unbounded
+     */
+    public int getCapacity() {
+        return (mEntries != null) ? Integer.MAX_VALUE : mObjects.length;
+    }
+
+    /**
+     * Get the highest size reached by the FIFO
+     * 
+     * @return Number of objects
+     */
+    public int getMaxSize() {
+        return mMaxSize.get();
+    }
+
+    /**
+     * Get the number of objects dropped because the FIFO was full
+     * 
+     * @return Number of objects
+     */
+    public long getDroppedObjects() {
+        return mDroppedObjects.get();
+    }
+
+    /**
+     * Get the average time spent by the objects in the FIFO
+     * 
+     * @return Latency in microseconds
+     */
+    public long getAverageLatency() {
+        long readObjects = mReadObjects.get();
+        if (readObjects == 0) {
+            return 0;
+        }
+        return mTotalLatency.get() / readObjects / 1000;
+    }
+
+    private boolean offer(Object obj) {
+        if (mClosed) {
+            return false;
+        }
+        if (mEntries != null) {
+            mEntries.add(new Entry(obj, System.nanoTime()));
+            mWritePosition.incrementAndGet();
+            return true;
+        }
+        long position = mWritePosition.get();
+        while (true) {
+            int index = (int) position & mMask;
+            long available = mSequences.get(index) - position;
+            if (available == 0) {
+                if (mWritePosition.compareAndSet(position, position + 1)) {
+                    mObjects[index] = obj;
+                    mAddTimes[index] = System.nanoTime();
+                    /* Publish the object to the readers */
+                    mSequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (available < 0) {
+                /* Full */
+                return false;
+            }
+            position = mWritePosition.get();
+        }
+    }
+
+    private Object poll() {
+        if (mEntries != null) {
+            Entry entry = mEntries.poll();
+            if (entry == null) {
+                return null;
+            }
+            mReadPosition.incrementAndGet();
+            mReadObjects.incrementAndGet();
+            mTotalLatency.addAndGet(System.nanoTime() - entry.mAddTime);
+            return entry.mObject;
+        }
+        long position = mReadPosition.get();
+        while (true) {
+            int index = (int) position & mMask;
+            long available = mSequences.get(index) - (position + 1);
+            if (available == 0) {
+                if (mReadPosition.compareAndSet(position, position + 1)) {
+                    Object obj = mObjects[index];
+                    long latency = System.nanoTime() - mAddTimes[index];
+                    mObjects[index] = null;
+                    /* Free the slot for the next round of writers */
+                    mSequences.set(index, position + mMask + 1);
+                    mReadObjects.incrementAndGet();
+                    mTotalLatency.addAndGet(latency);
+                    return obj;
+                }
+            } else if (available < 0) {
+                /* Empty */
+                return null;
+            }
+            position = mReadPosition.get();
+        }
+    }
+
+    private boolean waitForSlot(Object obj) {
+        synchronized (mLock) {
+            mWaiters.incrementAndGet();
+            try {
+                while (!mClosed) {
+                    if (offer(obj)) {
+                        return true;
+                    }
+                    mLock.wait();
+                }
+            } catch (InterruptedException e) {
+                // Nothing to do
+            } finally {
+                mWaiters.decrementAndGet();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Wake up the waiting threads. The monitor is only taken when a thread has registered itself
+     * as waiter, which it does before checking the buffer a last time.
      */
-    public void clean(int size) {
-        if (fifo.size() > size) {
-            while (size > 0) {
-                fifo.removeElementAt(0);
-                nbObjects--;
-                size--;
+    private void signalWaiters() {
+        if (mWaiters.get() > 0) {
+            synchronized (mLock) {
+                mLock.notifyAll();
             }
         }
     }
+
+    private void updateMaxSize() {
+        int size = size();
+        int maxSize;
+        while (size > (maxSize = mMaxSize.get())) {
+            if (mMaxSize.compareAndSet(maxSize, size)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Object of an unbounded buffer with the time at which it has been added
+     */
+    private static class Entry {
+
+        private final Object mObject;
+
+        private final long mAddTime;
+
+        private Entry(Object object, long addTime) {
+            mObject = object;
+            mAddTime = addTime;
+        }
+    }
 }
@@ -25,52 +25,35 @@ package com.gsma.rcs.utils;
 import com.gsma.rcs.core.Core;
 import com.gsma.rcs.core.ims.network.NetworkException;
 import com.gsma.rcs.core.ims.protocol.PayloadException;
-import com.gsma.rcs.platform.AndroidFactory;
 import com.gsma.rcs.provider.contact.ContactManagerException;
+import com.gsma.rcs.utils.TimerWheel.Timeout;
 import com.gsma.rcs.utils.logger.Logger;
 
-import android.app.AlarmManager;
-import android.app.PendingIntent;
-import android.content.BroadcastReceiver;
-import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
-
 /**
- * Periodic refresher
+ * Periodic refresher. The timers of all the refreshers are handled by the {@link TimerService}:
+ * each timer may expire within a tolerance of its period so that the timers due at about the same
+ * time are fired by a single device wake-up.
  * 
  * @author JM. Auffret
  */
 public abstract class PeriodicRefresher {
 
     /**
-     * Keep alive manager
+     * Ratio of the period used as tolerance on the timer expiration
      */
-    private final KeepAlive mAlarmReceiver = new KeepAlive();
+    private static final int TOLERANCE_RATIO = 20;
 
-    private final PendingIntent mAlarmIntent;
+    /**
+     * Maximum tolerance on the timer expiration in milliseconds
+     */
+    private static final long MAX_TOLERANCE = 10000;
 
-    private final String mAction;
+    private Timeout mTimeout;
 
     private boolean mTimerStarted = false;
 
-    private final Context mContext;
-
-    private final AlarmManager mAlarmManager;
-
     private static final Logger sLogger = Logger.getLogger(PeriodicRefresher.class.getName());
 
-    /**
-     * Constructor
-     */
-    public PeriodicRefresher() {
-        mContext = AndroidFactory.getApplicationContext();
-        mAlarmManager = (AlarmManager) mContext.getSystemService(Context.ALARM_SERVICE);
-        /* Create a unique pending intent */
-        mAction = getClass().getName() + '_' + System.currentTimeMillis(); /* Unique action ID */
-        mAlarmIntent = PendingIntent.getBroadcast(mContext, 0, new Intent(mAction), 0);
-    }
-
     /**
      * Periodic processing
      * 
@@ -92,7 +75,9 @@ public abstract class PeriodicRefresher {
     }
 
     /**
-     * Start the timer
+     * Start the timer. When the delta is lower than 1, the timer refreshes a state before its
+     * expiration and may expire slightly before the period. Otherwise it checks an expiration and
+     * may expire slightly after the period.
      * 
      * @param currentTime Time from when the timer has to be started
      * @param expirePeriod Expiration period in milliseconds
@@ -114,8 +99,19 @@ public abstract class PeriodicRefresher {
             sLogger.debug("Start timer at period=" + pollingPeriod + "ms (expiration="
                     + expirePeriod + "ms)");
         }
-        mContext.registerReceiver(mAlarmReceiver, new IntentFilter(mAction));
-        TimerUtils.setExactTimer(mAlarmManager, currentTime + pollingPeriod, mAlarmIntent);
+        TimerService timerService = TimerService.getInstance();
+        if (mTimeout != null) {
+            timerService.cancel(mTimeout);
+        }
+        long expirationTime = currentTime + pollingPeriod;
+        long tolerance = Math.min(pollingPeriod / TOLERANCE_RATIO, MAX_TOLERANCE);
+        RefreshTask task = new RefreshTask();
+        if (delta < 1.0) {
+            mTimeout = timerService.schedule(task, expirationTime - tolerance, expirationTime);
+        } else {
+            mTimeout = timerService.schedule(task, expirationTime, expirationTime + tolerance);
+        }
+        task.mTimeout = mTimeout;
         mTimerStarted = true;
     }
 
@@ -131,20 +127,27 @@ public abstract class PeriodicRefresher {
         }
         /* The timer is stopped */
         mTimerStarted = false;
-        mAlarmManager.cancel(mAlarmIntent);
-
-        try {
-            mContext.unregisterReceiver(mAlarmReceiver);
-        } catch (IllegalArgumentException e) {
-            // Nothing to do
+        if (mTimeout != null) {
+            TimerService.getInstance().cancel(mTimeout);
+            mTimeout = null;
         }
     }
 
     /**
-     * Keep alive manager
+     * Refresh task, ignored if the timer has been stopped or restarted once expired
      */
-    private class KeepAlive extends BroadcastReceiver {
-        public void onReceive(Context context, Intent intent) {
+    private class RefreshTask implements Runnable {
+
+        private Timeout mTimeout;
+
+        @Override
+        public void run() {
+            synchronized (PeriodicRefresher.this) {
+                if (PeriodicRefresher.this.mTimeout != mTimeout) {
+                    return;
+                }
+                PeriodicRefresher.this.mTimeout = null;
+            }
             Core.getInstance().scheduleCoreOperation(new Runnable() {
                 @Override
                 public void run() {
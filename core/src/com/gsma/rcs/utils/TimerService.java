@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.utils;
+
+import com.gsma.rcs.platform.AndroidFactory;
+import com.gsma.rcs.utils.TimerWheel.Timeout;
+import com.gsma.rcs.utils.logger.Logger;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+
+import java.util.List;
+
+/**
+ * Timer service shared by the periodic refreshers: the timeouts are kept in a {@link TimerWheel}
+ * and a single exact alarm is set at the next time the wheel has to be expired, so that the
+ * timeouts due within their tolerance are fired by the same device wake-up.
+ */
+public class TimerService {
+
+    /**
+     * Duration of a tick of the wheel in milliseconds
+     */
+    private static final long TICK_DURATION = 1000;
+
+    /**
+     * Number of buckets of the wheel
+     */
+    private static final int WHEEL_SIZE = 512;
+
+    private static TimerService sInstance;
+
+    private final TimerWheel mWheel = new TimerWheel(TICK_DURATION, WHEEL_SIZE);
+
+    private final AlarmManager mAlarmManager;
+
+    private final PendingIntent mAlarmIntent;
+
+    /**
+     * Time at which the alarm is set, Long.MAX_VALUE if no alarm is set
+     */
+    private long mAlarmTime = Long.MAX_VALUE;
+
+    private long mWakeUps = 0;
+
+    private long mExpiredTimeouts = 0;
+
+    private static final Logger sLogger = Logger.getLogger(TimerService.class.getSimpleName());
+
+    private TimerService(Context context) {
+        mAlarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        String action = TimerService.class.getName() + '_' + System.currentTimeMillis();
+        mAlarmIntent = PendingIntent.getBroadcast(context, 0, new Intent(action), 0);
+        context.registerReceiver(new AlarmReceiver(), new IntentFilter(action));
+    }
+
+    /**
+     * Returns the timer service instance
+     * 
+     * @return Timer service
+     */
+    public static synchronized TimerService getInstance() {
+        if (sInstance == null) {
+            sInstance = new TimerService(AndroidFactory.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Schedule a task
+     * 
+     * @param task Task executed on the main thread at expiration
+     * @param earliestTime Time from which the task may be executed in milliseconds
+     * @param latestTime Time at which the task must be executed in milliseconds
+     * @return Timeout to be cancelled
+     */
+    public Timeout schedule(Runnable task, long earliestTime, long latestTime) {
+        Timeout timeout = mWheel.schedule(task, earliestTime, latestTime);
+        synchronized (this) {
+            if (timeout.getLatestTime() < mAlarmTime) {
+                setAlarm(timeout.getLatestTime());
+            }
+        }
+        return timeout;
+    }
+
+    /**
+     * Cancel a task, the alarm is kept and simply rescheduled at its expiration
+     * 
+     * @param timeout Timeout
+     * @return False if the task has already been executed or cancelled
+     */
+    public boolean cancel(Timeout timeout) {
+        return mWheel.cancel(timeout);
+    }
+
+    private void setAlarm(long time) {
+        mAlarmTime = time;
+        TimerUtils.setExactTimer(mAlarmManager, time, mAlarmIntent);
+    }
+
+    private void onAlarm() {
+        List<Timeout> expired = mWheel.expire(System.currentTimeMillis());
+        synchronized (this) {
+            mWakeUps++;
+            mExpiredTimeouts += expired.size();
+            long next = mWheel.getNextExpirationTime();
+            if (next == Long.MAX_VALUE) {
+                mAlarmTime = Long.MAX_VALUE;
+                mAlarmManager.cancel(mAlarmIntent);
+            } else {
+                setAlarm(next);
+            }
+            if (sLogger.isActivated()) {
+                sLogger.debug(new StringBuilder("Timer wake-up: expired=").append(expired.size())
+                        .append(", scheduled=").append(mWheel.size()).append(", total wake-ups=")
+                        .append(mWakeUps).append(", total expired=").append(mExpiredTimeouts)
+                        .toString());
+            }
+        }
+        for (Timeout timeout : expired) {
+            timeout.getTask().run();
+        }
+    }
+
+    private class AlarmReceiver extends BroadcastReceiver {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            onAlarm();
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.utils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Hashed timing wheel. Each timeout is given a window in which it may expire and is hashed in the
+ * bucket of the tick of its latest expiration time, so that scheduling and cancelling are done in
+ * constant time. Expiring the wheel at a given time fires all the timeouts whose window has
+ * started, which coalesces the timeouts due within their tolerance.
+ */
+public class TimerWheel {
+
+    /**
+     * Timeout scheduled in the wheel
+     */
+    public static class Timeout {
+
+        private final Runnable mTask;
+
+        private final long mEarliestTime;
+
+        private final long mLatestTime;
+
+        private int mBucket = -1;
+
+        private Timeout(Runnable task, long earliestTime, long latestTime) {
+            mTask = task;
+            mEarliestTime = earliestTime;
+            mLatestTime = latestTime;
+        }
+
+        /**
+         * Returns the task executed at expiration
+         * 
+         * @return Task
+         */
+        public Runnable getTask() {
+            return mTask;
+        }
+
+        /**
+         * Returns the time from which the timeout may expire
+         * 
+         * @return Time in milliseconds
+         */
+        public long getEarliestTime() {
+            return mEarliestTime;
+        }
+
+        /**
+         * Returns the time at which the timeout must expire
+         * 
+         * @return Time in milliseconds
+         */
+        public long getLatestTime() {
+            return mLatestTime;
+        }
+    }
+
+    private final long mTickDuration;
+
+    private final List<Set<Timeout>> mBuckets;
+
+    private long mCurrentTick = -1;
+
+    /**
+     * Largest window of the scheduled timeouts
+     */
+    private long mMaxWindow = 0;
+
+    private int mSize = 0;
+
+    /**
+     * Constructor
+     * 
+     * @param tickDuration Duration of a tick in milliseconds
+     * @param wheelSize Number of buckets
+     */
+    public TimerWheel(long tickDuration, int wheelSize) {
+        mTickDuration = tickDuration;
+        mBuckets = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            mBuckets.add(new HashSet<Timeout>());
+        }
+    }
+
+    /**
+     * Schedule a timeout
+     * 
+     * @param task Task executed at expiration
+     * @param earliestTime Time from which the timeout may expire in milliseconds
+     * @param latestTime Time at which the timeout must expire in milliseconds
+     * @return Timeout
+     */
+    public synchronized Timeout schedule(Runnable task, long earliestTime, long latestTime) {
+        Timeout timeout = new Timeout(task, earliestTime, Math.max(earliestTime, latestTime));
+        /* Timeouts already late are hashed in the current tick which is the next to be expired */
+        long tick = Math.max(timeout.mLatestTime / mTickDuration, mCurrentTick);
+        timeout.mBucket = (int) (tick % mBuckets.size());
+        mBuckets.get(timeout.mBucket).add(timeout);
+        mMaxWindow = Math.max(mMaxWindow, timeout.mLatestTime - timeout.mEarliestTime);
+        mSize++;
+        return timeout;
+    }
+
+    /**
+     * Cancel a timeout
+     * 
+     * @param timeout Timeout
+     * @return False if the timeout has already expired or been cancelled
+     */
+    public synchronized boolean cancel(Timeout timeout) {
+        if (timeout.mBucket == -1) {
+            return false;
+        }
+        mBuckets.get(timeout.mBucket).remove(timeout);
+        timeout.mBucket = -1;
+        mSize--;
+        return true;
+    }
+
+    /**
+     * Remove the timeouts whose window has started
+     * 
+     * @param now Current time in milliseconds
+     * @return Expired timeouts
+     */
+    public synchronized List<Timeout> expire(long now) {
+        List<Timeout> expired = new ArrayList<>();
+        long nowTick = now / mTickDuration;
+        long firstTick = (mCurrentTick == -1) ? nowTick : Math.min(mCurrentTick, nowTick);
+        long lastTick = (now + mMaxWindow) / mTickDuration;
+        /* A whole turn of the wheel visits all the buckets */
+        lastTick = Math.min(lastTick, firstTick + mBuckets.size() - 1);
+        for (long tick = firstTick; tick <= lastTick && mSize > 0; tick++) {
+            Iterator<Timeout> iterator = mBuckets.get((int) (tick % mBuckets.size())).iterator();
+            while (iterator.hasNext()) {
+                Timeout timeout = iterator.next();
+                if (timeout.mEarliestTime <= now) {
+                    iterator.remove();
+                    timeout.mBucket = -1;
+                    mSize--;
+                    expired.add(timeout);
+                }
+            }
+        }
+        mCurrentTick = nowTick;
+        if (mSize == 0) {
+            mMaxWindow = 0;
+        }
+        return expired;
+    }
+
+    /**
+     * Returns the time at which the wheel has to be expired next
+     * 
+     * @return Time in milliseconds or Long.MAX_VALUE if there is no scheduled timeout
+     */
+    public synchronized long getNextExpirationTime() {
+        long next = Long.MAX_VALUE;
+        if (mSize == 0) {
+            return next;
+        }
+        for (Set<Timeout> bucket : mBuckets) {
+            for (Timeout timeout : bucket) {
+                next = Math.min(next, timeout.mLatestTime);
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Returns the number of scheduled timeouts
+     * 
+     * @return Number of timeouts
+     */
+    public synchronized int size() {
+        return mSize;
+    }
+}
@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.contact;
+
+import com.gsma.rcs.core.ims.service.ContactInfo;
+import com.gsma.rcs.provider.contact.ContactInfoCache;
+import com.gsma.rcs.utils.ContactUtilMockContext;
+import com.gsma.services.rcs.RcsPermissionDeniedException;
+import com.gsma.services.rcs.contact.ContactId;
+import com.gsma.services.rcs.contact.ContactUtil;
+
+import android.test.AndroidTestCase;
+
+public class ContactInfoCacheTest extends AndroidTestCase {
+
+    private static final int CAPACITY = 32;
+
+    private ContactUtil mContactUtil;
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContactUtil = ContactUtil.getInstance(new ContactUtilMockContext(getContext()));
+    }
+
+    private ContactInfo createContactInfo(int index) throws RcsPermissionDeniedException {
+        ContactId contact = mContactUtil.formatContact("+336331" + (10000 + index));
+        ContactInfo info = new ContactInfo();
+        info.setContact(contact);
+        return info;
+    }
+
+    public void testHitAndMiss() throws RcsPermissionDeniedException {
+        ContactInfoCache cache = new ContactInfoCache(CAPACITY);
+        ContactInfo info = createContactInfo(0);
+        assertNull(cache.get(info.getContact()));
+        cache.put(info.getContact(), info);
+        assertSame(info, cache.get(info.getContact()));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        cache.remove(info.getContact());
+        assertNull(cache.peek(info.getContact()));
+        assertEquals(1, cache.getMisses());
+    }
+
+    public void testBounded() throws RcsPermissionDeniedException {
+        ContactInfoCache cache = new ContactInfoCache(CAPACITY);
+        int count = CAPACITY * 10;
+        for (int i = 0; i < count; i++) {
+            ContactInfo info = createContactInfo(i);
+            cache.put(info.getContact(), info);
+        }
+        assertTrue(cache.size() <= CAPACITY);
+        assertEquals(count - cache.size(), cache.getEvictions());
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    public void testLockPerContact() throws RcsPermissionDeniedException {
+        ContactInfoCache cache = new ContactInfoCache(CAPACITY);
+        ContactInfo info = createContactInfo(0);
+        assertSame(cache.getLock(info.getContact()),
+                cache.getLock(createContactInfo(0).getContact()));
+    }
+
+    public void testRunExclusiveHoldsAllLocks() throws RcsPermissionDeniedException {
+        final ContactInfoCache cache = new ContactInfoCache(CAPACITY);
+        final ContactId[] contacts = new ContactId[CAPACITY];
+        for (int i = 0; i < contacts.length; i++) {
+            contacts[i] = createContactInfo(i).getContact();
+        }
+        cache.runExclusive(new ContactInfoCache.ExclusiveOperation<RuntimeException>() {
+            @Override
+            public void run() {
+                for (ContactId contact : contacts) {
+                    assertTrue(Thread.holdsLock(cache.getLock(contact)));
+                }
+            }
+        });
+        assertFalse(Thread.holdsLock(cache.getLock(contacts[0])));
+    }
+}
@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.msrp;
+
+import com.gsma.rcs.core.FileAccessException;
+import com.gsma.rcs.core.ims.protocol.msrp.FileReceiveSink;
+
+import android.test.AndroidTestCase;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+public class FileReceiveSinkTest extends AndroidTestCase {
+
+    private static final byte[] sContent = "0123456789abcdef".getBytes();
+
+    private File mFile;
+
+    private FileReceiveSink mSink;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mFile = File.createTempFile("FileReceiveSinkTest", ".tmp");
+        mSink = new FileReceiveSink(mFile);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mSink.close();
+        mFile.delete();
+        super.tearDown();
+    }
+
+    private byte[] readFile() throws IOException {
+        byte[] data = new byte[(int) mFile.length()];
+        FileInputStream in = new FileInputStream(mFile);
+        try {
+            int read = 0;
+            while (read < data.length) {
+                read += in.read(data, read, data.length - read);
+            }
+        } finally {
+            in.close();
+        }
+        return data;
+    }
+
+    private void assertContent(int length) throws IOException {
+        byte[] data = readFile();
+        assertEquals(length, data.length);
+        for (int i = 0; i < length; i++) {
+            assertEquals(sContent[i], data[i]);
+        }
+    }
+
+    private void assertRejected(long position, int offset, int length) {
+        try {
+            mSink.write(position, sContent, offset, length);
+            fail("FileAccessException expected");
+        } catch (FileAccessException e) {
+            /* Expected */
+        }
+    }
+
+    public void testWriteChunksInOrder() throws FileAccessException, IOException {
+        assertEquals(0, mSink.getContiguousSize());
+        mSink.write(0, sContent, 0, 5);
+        assertEquals(5, mSink.getContiguousSize());
+        mSink.write(5, sContent, 5, 6);
+        mSink.write(11, sContent, 11, 5);
+        assertEquals(sContent.length, mSink.getContiguousSize());
+        mSink.flush();
+        assertContent(sContent.length);
+        mSink.close();
+        assertContent(sContent.length);
+    }
+
+    public void testWriteChunksOutOfOrder() throws FileAccessException, IOException {
+        mSink.write(8, sContent, 8, 8);
+        assertEquals(0, mSink.getContiguousSize());
+        mSink.write(4, sContent, 4, 4);
+        assertEquals(0, mSink.getContiguousSize());
+        mSink.write(0, sContent, 0, 4);
+        assertEquals(sContent.length, mSink.getContiguousSize());
+        mSink.flush();
+        assertContent(sContent.length);
+    }
+
+    public void testFillGapBetweenRanges() throws FileAccessException, IOException {
+        mSink.write(0, sContent, 0, 4);
+        mSink.write(12, sContent, 12, 4);
+        assertEquals(4, mSink.getContiguousSize());
+        mSink.write(4, sContent, 4, 4);
+        assertEquals(8, mSink.getContiguousSize());
+        mSink.write(8, sContent, 8, 4);
+        assertEquals(sContent.length, mSink.getContiguousSize());
+        mSink.flush();
+        assertContent(sContent.length);
+    }
+
+    public void testWriteOverlappingChunks() throws FileAccessException, IOException {
+        mSink.write(0, sContent, 0, 8);
+        mSink.write(6, sContent, 6, 6);
+        assertEquals(12, mSink.getContiguousSize());
+        mSink.write(10, sContent, 10, 6);
+        assertEquals(sContent.length, mSink.getContiguousSize());
+        mSink.flush();
+        assertContent(sContent.length);
+    }
+
+    public void testWriteChunkSpanningSeveralRanges() throws FileAccessException, IOException {
+        mSink.write(2, sContent, 2, 2);
+        mSink.write(6, sContent, 6, 2);
+        mSink.write(10, sContent, 10, 2);
+        assertEquals(0, mSink.getContiguousSize());
+        mSink.write(0, sContent, 0, 14);
+        assertEquals(14, mSink.getContiguousSize());
+        mSink.write(14, sContent, 14, 2);
+        assertEquals(sContent.length, mSink.getContiguousSize());
+        mSink.flush();
+        assertContent(sContent.length);
+    }
+
+    public void testWriteDuplicatedChunks() throws FileAccessException, IOException {
+        mSink.write(0, sContent, 0, 8);
+        mSink.write(0, sContent, 0, 8);
+        mSink.write(4, sContent, 4, 4);
+        assertEquals(8, mSink.getContiguousSize());
+        mSink.write(8, sContent, 8, 8);
+        mSink.write(8, sContent, 8, 8);
+        assertEquals(sContent.length, mSink.getContiguousSize());
+        mSink.flush();
+        assertContent(sContent.length);
+    }
+
+    public void testFlushBeforeFirstChunk() throws FileAccessException {
+        mSink.flush();
+        assertEquals(0, mSink.getContiguousSize());
+    }
+
+    public void testCloseAfterPartialTransfer() throws FileAccessException, IOException {
+        mSink.write(0, sContent, 0, 6);
+        mSink.write(10, sContent, 10, 6);
+        mSink.close();
+        assertEquals(6, mSink.getContiguousSize());
+        byte[] data = readFile();
+        assertEquals(sContent.length, data.length);
+        for (int i = 0; i < 6; i++) {
+            assertEquals(sContent[i], data[i]);
+        }
+        assertRejected(6, 6, 4);
+        /* Data already received may still be retransmitted */
+        mSink.write(0, sContent, 0, 6);
+        /* Closing again is harmless */
+        mSink.close();
+        assertEquals(6, mSink.getContiguousSize());
+    }
+
+    public void testDuplicatedChunkAfterClose() throws FileAccessException, IOException {
+        mSink.write(0, sContent, 0, sContent.length);
+        mSink.flush();
+        mSink.close();
+        mSink.write(8, sContent, 8, 8);
+        assertEquals(sContent.length, mSink.getContiguousSize());
+        assertContent(sContent.length);
+    }
+}
@@ -0,0 +1,285 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.msrp;
+
+import static com.gsma.rcs.utils.StringUtils.UTF8;
+
+import com.gsma.rcs.core.ims.protocol.PayloadException;
+import com.gsma.rcs.core.ims.protocol.msrp.MsrpBufferPool;
+import com.gsma.rcs.core.ims.protocol.msrp.MsrpConstants;
+import com.gsma.rcs.core.ims.protocol.msrp.MsrpFrame;
+import com.gsma.rcs.core.ims.protocol.msrp.MsrpFrameDecoder;
+
+import android.test.AndroidTestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class MsrpFrameDecoderTest extends AndroidTestCase {
+    // @formatter:off
+    private static final String sSendRequest =
+            "MSRP a786hjs2 SEND\r\n" +
+            "To-Path: msrp://10.102.192.68:20000/1375944013409;tcp\r\n" +
+            "From-Path: msrp://10.108.25.89:19494/n02s00i2t0+519;tcp\r\n" +
+            "Message-ID: MID-3BCqcBUXKA\r\n" +
+            "Byte-Range: 1-5/10\r\n" +
+            "Content-Type: text/plain\r\n" +
+            "\r\n" +
+            "Hello\r\n" +
+            "-------a786hjs2+\r\n";
+
+    private static final String sResponse =
+            "MSRP b276bb5b 200 OK\r\n" +
+            "To-Path: msrp://10.102.192.68:20000/1375944013409;tcp\r\n" +
+            "From-Path: msrp://10.108.25.89:19494/n02s00i2t0+519;tcp\r\n" +
+            "-------b276bb5b$\r\n";
+
+    private static final String sSendRequestWithUnknownRange =
+            "MSRP c3 SEND\r\n" +
+            "To-Path: msrp://10.102.192.68:20000/1375944013409;tcp\r\n" +
+            "Byte-Range: 1-*/0\r\n" +
+            "\r\n" +
+            "ab\r\n-------c\r\ncd\r\n" +
+            "-------c3$\r\n";
+    // @formatter:on
+
+    private List<MsrpFrame> decode(byte[] data, int step) throws PayloadException {
+        MsrpFrameDecoder decoder = new MsrpFrameDecoder();
+        List<MsrpFrame> frames = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        MsrpFrame frame = new MsrpFrame();
+        for (int i = 0; i < data.length; i += step) {
+            buffer.put(data, i, Math.min(step, data.length - i));
+            buffer.flip();
+            while (decoder.decode(buffer, frame)) {
+                frames.add(frame);
+                frame = new MsrpFrame();
+                /* Decoded frames reference the buffer: continue with a copy of the remaining bytes */
+                ByteBuffer remaining = ByteBuffer.allocate(buffer.capacity());
+                remaining.put(buffer);
+                remaining.flip();
+                buffer = remaining;
+            }
+            buffer.compact();
+        }
+        return frames;
+    }
+
+    public void testDecodeFramesReceivedByPieces() throws PayloadException {
+        byte[] data = (sSendRequest + sResponse + sSendRequestWithUnknownRange).getBytes(UTF8);
+        for (int step = 1; step <= data.length; step++) {
+            List<MsrpFrame> frames = decode(data, step);
+            assertEquals(3, frames.size());
+
+            MsrpFrame send = frames.get(0);
+            assertEquals("a786hjs2", send.getTransactionId());
+            assertEquals(MsrpConstants.METHOD_SEND, send.getMethod());
+            assertFalse(send.isResponse());
+            assertTrue(send.isMethod(MsrpConstants.METHOD_SEND));
+            assertEquals("MID-3BCqcBUXKA", send.getHeader(MsrpConstants.HEADER_MESSAGE_ID));
+            assertEquals("MID-3BCqcBUXKA", send.getHeaders().get(MsrpConstants.HEADER_MESSAGE_ID));
+            assertTrue(send.isHeaderValue("content-type", "TEXT/PLAIN"));
+            assertNull(send.getHeader(MsrpConstants.HEADER_FAILURE_REPORT));
+            assertEquals("Hello", new String(send.getDataArray(), send.getDataOffset(),
+                    send.getDataLength(), UTF8));
+            assertEquals("Hello", new String(send.getData(), UTF8));
+            assertEquals(1, send.getFirstByte());
+            assertEquals(5, send.getLastByte());
+            assertEquals(MsrpConstants.FLAG_MORE_CHUNK, send.getContinuationFlag());
+            assertEquals(10, send.getTotalSize());
+
+            MsrpFrame response = frames.get(1);
+            assertTrue(response.isResponse());
+            assertEquals(200, response.getResponseCode());
+            assertNull(response.getData());
+            assertEquals(MsrpConstants.FLAG_LAST_CHUNK, response.getContinuationFlag());
+
+            MsrpFrame lastSend = frames.get(2);
+            assertEquals("ab\r\n-------c\r\ncd", new String(lastSend.getData(), UTF8));
+            assertEquals(-1, lastSend.getLastByte());
+            assertEquals(0, lastSend.getTotalSize());
+            assertEquals(MsrpConstants.FLAG_LAST_CHUNK, lastSend.getContinuationFlag());
+        }
+    }
+
+    public void testDecodeIncompleteFrame() throws PayloadException {
+        byte[] data = sSendRequest.getBytes(UTF8);
+        ByteBuffer buffer = ByteBuffer.wrap(data, 0, data.length - 1);
+        assertFalse(new MsrpFrameDecoder().decode(buffer, new MsrpFrame()));
+        assertEquals(0, buffer.position());
+    }
+
+    public void testDecodeNotMsrpMessage() {
+        try {
+            new MsrpFrameDecoder().decode(ByteBuffer.wrap("HTTP/1.1 200 OK\r\n\r\n"
+                    .getBytes(UTF8)), new MsrpFrame());
+            fail("PayloadException expected");
+        } catch (PayloadException e) {
+            /* Expected */
+        }
+    }
+
+    private static byte[] createContent(int size) {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) ('a' + i % 26);
+        }
+        return content;
+    }
+
+    private static byte[] createSendRequest(String byteRange, byte[] content, char flag) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        String head = "MSRP d4 SEND\r\n"
+                + "To-Path: msrp://10.102.192.68:20000/1375944013409;tcp\r\n"
+                + "Message-ID: MID-large\r\n"
+                + (byteRange != null ? "Byte-Range: " + byteRange + "\r\n" : "")
+                + "Content-Type: application/octet-stream\r\n" + "\r\n";
+        byte[] headBytes = head.getBytes(UTF8);
+        out.write(headBytes, 0, headBytes.length);
+        out.write(content, 0, content.length);
+        byte[] end = ("\r\n-------d4" + flag + "\r\n").getBytes(UTF8);
+        out.write(end, 0, end.length);
+        return out.toByteArray();
+    }
+
+    /**
+     * Decode the data received by reads of the given size into a receive buffer of the pool size,
+     * the data of each frame being copied as the buffer is reused
+     */
+    private List<MsrpFrame> decodeStream(byte[] data, int step, ByteArrayOutputStream content)
+            throws PayloadException {
+        MsrpFrameDecoder decoder = new MsrpFrameDecoder();
+        List<MsrpFrame> frames = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(MsrpBufferPool.BUFFER_SIZE);
+        for (int i = 0; i < data.length; i += step) {
+            int length = Math.min(step, data.length - i);
+            assertTrue("Receive buffer is full", buffer.remaining() >= length);
+            buffer.put(data, i, length);
+            buffer.flip();
+            MsrpFrame frame = new MsrpFrame();
+            while (decoder.decode(buffer, frame)) {
+                assertEquals(MsrpConstants.METHOD_SEND, frame.getMethod());
+                assertEquals("d4", frame.getTransactionId());
+                assertEquals("MID-large", frame.getHeader(MsrpConstants.HEADER_MESSAGE_ID));
+                assertEquals(content.size() + 1, frame.getFirstByte());
+                content.write(frame.getDataArray(), frame.getDataOffset(), frame.getDataLength());
+                frames.add(frame);
+                frame = new MsrpFrame();
+            }
+            buffer.compact();
+        }
+        return frames;
+    }
+
+    public void testStreamLargeDataChunk() throws PayloadException {
+        byte[] content = createContent(MsrpBufferPool.BUFFER_SIZE * 5 + 123);
+        byte[] data = createSendRequest("1-" + content.length + "/" + content.length, content,
+                '$');
+        for (int step : new int[] {
+                1000, 4096, MsrpBufferPool.BUFFER_SIZE / 2
+        }) {
+            ByteArrayOutputStream received = new ByteArrayOutputStream();
+            List<MsrpFrame> frames = decodeStream(data, step, received);
+            assertTrue(frames.size() > 1);
+            for (int i = 0; i < frames.size() - 1; i++) {
+                MsrpFrame frame = frames.get(i);
+                assertTrue(frame.isPartial());
+                assertEquals(frame.getFirstByte() + frame.getDataLength() - 1,
+                        frame.getLastByte());
+                assertEquals(content.length, frame.getTotalSize());
+            }
+            MsrpFrame last = frames.get(frames.size() - 1);
+            assertFalse(last.isPartial());
+            assertEquals(MsrpConstants.FLAG_LAST_CHUNK, last.getContinuationFlag());
+            assertEquals(content.length, last.getLastByte());
+            assertEquals(content.length, last.getTotalSize());
+            assertTrue(Arrays.equals(content, received.toByteArray()));
+        }
+    }
+
+    public void testStreamLargeDataChunkWithoutByteRange() throws PayloadException {
+        byte[] content = createContent(MsrpBufferPool.BUFFER_SIZE * 3);
+        byte[] data = createSendRequest(null, content, '$');
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        List<MsrpFrame> frames = decodeStream(data, 3000, received);
+        assertTrue(frames.size() > 1);
+        assertTrue(frames.get(0).isPartial());
+        MsrpFrame last = frames.get(frames.size() - 1);
+        assertFalse(last.isPartial());
+        assertEquals(content.length, last.getTotalSize());
+        assertTrue(Arrays.equals(content, received.toByteArray()));
+    }
+
+    public void testStreamDataChunkFollowedByFrame() throws PayloadException {
+        byte[] content = createContent(MsrpBufferPool.BUFFER_SIZE * 2);
+        byte[] large = createSendRequest("1-*/" + content.length, content, '+');
+        byte[] next = createSendRequest("1-4/4", "abcd".getBytes(UTF8), '$');
+        byte[] data = Arrays.copyOf(large, large.length + next.length);
+        System.arraycopy(next, 0, data, large.length, next.length);
+        MsrpFrameDecoder decoder = new MsrpFrameDecoder();
+        ByteBuffer buffer = ByteBuffer.allocate(MsrpBufferPool.BUFFER_SIZE);
+        int offset = 0;
+        int dataLength = 0;
+        List<Integer> flags = new ArrayList<>();
+        while (offset < data.length) {
+            int length = Math.min(buffer.remaining(), data.length - offset);
+            buffer.put(data, offset, length);
+            offset += length;
+            buffer.flip();
+            MsrpFrame frame = new MsrpFrame();
+            while (decoder.decode(buffer, frame)) {
+                dataLength += frame.getDataLength();
+                flags.add(frame.isPartial() ? 0 : frame.getContinuationFlag());
+                frame = new MsrpFrame();
+            }
+            buffer.compact();
+        }
+        assertEquals(MsrpConstants.FLAG_LAST_CHUNK, (int) flags.get(flags.size() - 1));
+        assertEquals(MsrpConstants.FLAG_MORE_CHUNK, (int) flags.get(flags.size() - 2));
+        assertEquals(content.length + 4, dataLength);
+    }
+
+    public void testSmallChunkIsNotStreamed() throws PayloadException {
+        byte[] content = createContent(MsrpConstants.CHUNK_MAX_SIZE);
+        byte[] data = createSendRequest("1-" + content.length + "/" + content.length, content,
+                '$');
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        List<MsrpFrame> frames = decodeStream(data, 100, received);
+        assertEquals(1, frames.size());
+        assertFalse(frames.get(0).isPartial());
+        assertTrue(Arrays.equals(content, received.toByteArray()));
+    }
+
+    public void testDecodeHeadersTooLarge() {
+        StringBuilder head = new StringBuilder("MSRP e5 SEND\r\n");
+        while (head.length() <= MsrpFrameDecoder.MAX_HEADERS_SIZE) {
+            head.append("X-Padding: 0123456789\r\n");
+        }
+        try {
+            new MsrpFrameDecoder().decode(ByteBuffer.wrap(head.toString().getBytes(UTF8)),
+                    new MsrpFrame());
+            fail("PayloadException expected");
+        } catch (PayloadException e) {
+            /* Expected */
+        }
+    }
+}
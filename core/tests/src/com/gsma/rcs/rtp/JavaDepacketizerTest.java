@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.rtp;
+
+import com.gsma.rcs.core.ims.protocol.rtp.codec.Codec;
+import com.gsma.rcs.core.ims.protocol.rtp.codec.video.h264.H264FramePool;
+import com.gsma.rcs.core.ims.protocol.rtp.codec.video.h264.H264RtpHeaders;
+import com.gsma.rcs.core.ims.protocol.rtp.codec.video.h264.JavaDepacketizer;
+import com.gsma.rcs.core.ims.protocol.rtp.util.Buffer;
+
+import android.os.Debug;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class JavaDepacketizerTest extends AndroidTestCase {
+
+    private static final String TAG = "JavaDepacketizerTest";
+
+    /**
+     * Size of the RTP header in front of the payload of the captured packets
+     */
+    private static final int RTP_HEADER_SIZE = 12;
+
+    private static final int FRAGMENT_SIZE = 1400;
+
+    private static final int CAPTURE_FRAMES = 300;
+
+    private final Random mRandom = new Random(1);
+
+    /**
+     * Bytes allocated per frame once the pooled buffers have reached their size, the previous
+     * implementation allocated more than 50 KB per frame
+     */
+    private static final int MAX_ALLOCATION_PER_FRAME = 1024;
+
+    private int mSeqnum = 65500;
+
+    private byte[] createFrame(int size) {
+        byte[] frame = new byte[size];
+        mRandom.nextBytes(frame);
+        // Non IDR slice NAL header
+        frame[0] = 0x41;
+        return frame;
+    }
+
+    /**
+     * Split a frame into FU-A packets as received from the network, the payload following the RTP
+     * header of each packet
+     */
+    private List<Buffer> packetize(byte[] frame, long timestamp) {
+        List<Buffer> packets = new ArrayList<>();
+        int position = 1;
+        while (position < frame.length) {
+            int size = Math.min(FRAGMENT_SIZE, frame.length - position);
+            byte[] packet = new byte[RTP_HEADER_SIZE + 2 + size];
+            packet[RTP_HEADER_SIZE] = (byte) ((frame[0] & 0xe0) | H264RtpHeaders.AVC_NALTYPE_FUA);
+            packet[RTP_HEADER_SIZE + 1] = (byte) (frame[0] & 0x1f);
+            if (position == 1) {
+                packet[RTP_HEADER_SIZE + 1] |= 0x80;
+            }
+            if (position + size == frame.length) {
+                packet[RTP_HEADER_SIZE + 1] |= 0x40;
+            }
+            System.arraycopy(frame, position, packet, RTP_HEADER_SIZE + 2, size);
+            position += size;
+
+            Buffer buffer = new Buffer();
+            buffer.setData(packet);
+            buffer.setOffset(RTP_HEADER_SIZE);
+            buffer.setLength(packet.length - RTP_HEADER_SIZE);
+            buffer.setTimestamp(timestamp);
+            buffer.setSequenceNumber(mSeqnum++);
+            packets.add(buffer);
+        }
+        return packets;
+    }
+
+    /**
+     * Feed the packets to the depacketizer and release the output frame as the renderer does
+     *
+     * @return Reassembled frame or null
+     */
+    private static byte[] depacketize(JavaDepacketizer depacketizer, List<Buffer> packets,
+            boolean release) {
+        byte[] frame = null;
+        Buffer output = new Buffer();
+        for (Buffer packet : packets) {
+            output.setDiscard(false);
+            int result = depacketizer.process(packet, output);
+            if (result == Codec.BUFFER_PROCESSED_OK && !output.isDiscard()) {
+                assertTrue((output.getFlags() & Buffer.FLAG_POOLED) != 0);
+                frame = Arrays.copyOf((byte[]) output.getData(), output.getLength());
+                if (release) {
+                    H264FramePool.release((byte[]) output.getData());
+                }
+            }
+        }
+        return frame;
+    }
+
+    public void testFrameLargerThan32Packets() {
+        assertTrue(100 * 1024 <= JavaDepacketizer.MAX_H264_FRAME_SIZE);
+        JavaDepacketizer depacketizer = new JavaDepacketizer();
+        byte[] frame = createFrame(100 * 1024);
+        List<Buffer> packets = packetize(frame, 3000);
+        assertTrue(packets.size() > 32);
+        assertTrue(Arrays.equals(frame, depacketize(depacketizer, packets, true)));
+    }
+
+    public void testReorderedFragments() {
+        JavaDepacketizer depacketizer = new JavaDepacketizer();
+        for (int i = 0; i < 3; i++) {
+            byte[] frame = createFrame(20000 + i * 5000);
+            List<Buffer> packets = packetize(frame, 3000 * (i + 1));
+            Collections.shuffle(packets, mRandom);
+            assertTrue(Arrays.equals(frame, depacketize(depacketizer, packets, true)));
+        }
+    }
+
+    /**
+     * Benchmark feeding a synthetic capture through the depacketizer: checks the number of bytes
+     * allocated per frame once the pooled buffers have reached their size
+     */
+    public void testAllocationsPerFrame() {
+        JavaDepacketizer depacketizer = new JavaDepacketizer();
+        List<List<Buffer>> capture = new ArrayList<>();
+        List<byte[]> frames = new ArrayList<>();
+        for (int i = 0; i < CAPTURE_FRAMES; i++) {
+            // An IDR-sized frame every 30 frames, smaller ones in between
+            byte[] frame = createFrame((i % 30 == 0) ? 40000 : 4000 + mRandom.nextInt(8000));
+            frames.add(frame);
+            capture.add(packetize(frame, 3000L * (i + 1)));
+        }
+
+        // Warm up the pool and the assemblers with the first GOP
+        for (int i = 0; i < 30; i++) {
+            assertTrue(Arrays.equals(frames.get(i), depacketize(depacketizer, capture.get(i),
+                    true)));
+        }
+
+        Buffer output = new Buffer();
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        for (int i = 30; i < CAPTURE_FRAMES; i++) {
+            for (Buffer packet : capture.get(i)) {
+                output.setDiscard(false);
+                if (depacketizer.process(packet, output) == Codec.BUFFER_PROCESSED_OK
+                        && !output.isDiscard()) {
+                    H264FramePool.release((byte[]) output.getData());
+                }
+            }
+        }
+        Debug.stopAllocCounting();
+        int measuredFrames = CAPTURE_FRAMES - 30;
+        int allocatedPerFrame = Debug.getThreadAllocSize() / measuredFrames;
+        Log.i(TAG, "Allocations per frame: " + Debug.getThreadAllocCount() / measuredFrames
+                + " objects, " + allocatedPerFrame + " bytes");
+        assertTrue(allocatedPerFrame < MAX_ALLOCATION_PER_FRAME);
+    }
+}
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.rtp;
+
+import com.gsma.rcs.core.ims.protocol.rtp.core.JitterBuffer;
+import com.gsma.rcs.core.ims.protocol.rtp.core.RtpPacket;
+import com.gsma.rcs.core.ims.protocol.rtp.core.RtpStatisticsReceiver;
+import com.gsma.rcs.core.ims.protocol.rtp.format.Format;
+
+import android.test.AndroidTestCase;
+
+public class JitterBufferTest extends AndroidTestCase {
+
+    private static final long NOW = 1000000L;
+
+    private RtpStatisticsReceiver mStats;
+
+    private JitterBuffer mJitterBuffer;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mStats = new RtpStatisticsReceiver();
+        mJitterBuffer = new JitterBuffer(Format.DEFAULT_CLOCK_RATE, mStats);
+    }
+
+    private static RtpPacket createPacket(int seqnum, long timestamp) {
+        RtpPacket packet = new RtpPacket();
+        packet.seqnum = seqnum;
+        packet.timestamp = timestamp;
+        return packet;
+    }
+
+    public void testReorder() {
+        assertTrue(mJitterBuffer.put(createPacket(10, 0), NOW));
+        assertTrue(mJitterBuffer.put(createPacket(12, 0), NOW));
+        assertTrue(mJitterBuffer.put(createPacket(11, 0), NOW));
+        assertEquals(1, mStats.numReorderedRtpPkts);
+        assertEquals(3, mStats.jitterBufferDepth);
+
+        assertNull(mJitterBuffer.poll(NOW));
+        long playout = NOW + mJitterBuffer.getWaitTime(NOW);
+        assertEquals(10, mJitterBuffer.poll(playout).seqnum);
+        assertEquals(11, mJitterBuffer.poll(playout).seqnum);
+        assertEquals(12, mJitterBuffer.poll(playout).seqnum);
+        assertNull(mJitterBuffer.poll(playout));
+        assertEquals(-1, mJitterBuffer.getWaitTime(playout));
+    }
+
+    public void testLateAndDuplicate() {
+        assertTrue(mJitterBuffer.put(createPacket(20, 0), NOW));
+        assertTrue(mJitterBuffer.put(createPacket(22, 0), NOW));
+        assertFalse(mJitterBuffer.put(createPacket(22, 0), NOW));
+        long playout = NOW + mJitterBuffer.getWaitTime(NOW);
+        assertEquals(20, mJitterBuffer.poll(playout).seqnum);
+        assertEquals(22, mJitterBuffer.poll(playout).seqnum);
+        assertFalse(mJitterBuffer.put(createPacket(21, 0), playout));
+        assertEquals(2, mStats.numLateRtpPkts);
+    }
+
+    public void testWrapAround() {
+        // Extended sequence numbers and RTP timestamps crossing their wrap around
+        long timestamp = 0xffffffffL - 2999;
+        assertTrue(mJitterBuffer.put(createPacket(65535, timestamp), NOW));
+        assertTrue(mJitterBuffer.put(createPacket(65537, timestamp + 6000), NOW + 66));
+        assertTrue(mJitterBuffer.put(createPacket(65536, (timestamp + 3000) & 0xffffffffL),
+                NOW + 70));
+        // Packets are played out every 3000 timestamp units, i.e. 33 ms
+        long playout = NOW + mJitterBuffer.getWaitTime(NOW);
+        assertEquals(65535, mJitterBuffer.poll(playout).seqnum);
+        assertNull(mJitterBuffer.poll(playout));
+        assertEquals(33, mJitterBuffer.getWaitTime(playout));
+        playout += 33;
+        assertEquals(65536, mJitterBuffer.poll(playout).seqnum);
+        assertEquals(33, mJitterBuffer.getWaitTime(playout));
+        playout += 33;
+        assertEquals(65537, mJitterBuffer.poll(playout).seqnum);
+    }
+
+    public void testBackwardJump() {
+        // The sender restarts: the extended sequence numbers jump backwards
+        assertTrue(mJitterBuffer.put(createPacket(70000, 0), NOW));
+        long playout = NOW + mJitterBuffer.getWaitTime(NOW);
+        assertEquals(70000, mJitterBuffer.poll(playout).seqnum);
+        assertTrue(mJitterBuffer.put(createPacket(100, 0), playout));
+        assertTrue(mJitterBuffer.put(createPacket(101, 3000), playout));
+        playout += mJitterBuffer.getWaitTime(playout);
+        assertEquals(100, mJitterBuffer.poll(playout).seqnum);
+        assertEquals(0, mStats.numLateRtpPkts);
+        // Late packets within the buffer span are still discarded
+        assertFalse(mJitterBuffer.put(createPacket(99, 0), playout));
+    }
+
+    public void testDelayFollowsJitter() {
+        assertEquals(JitterBuffer.MIN_DELAY, mJitterBuffer.getDelay());
+        for (int i = 0; i < 100; i++) {
+            // 20 ms frames arriving with +/- 40 ms of jitter
+            long arrival = NOW + i * 20 + ((i % 2 == 0) ? 40 : -40);
+            mJitterBuffer.put(createPacket(i, i * 1800L), arrival);
+            while (mJitterBuffer.poll(arrival) != null) {
+            }
+        }
+        assertTrue(mJitterBuffer.getDelay() > JitterBuffer.MIN_DELAY);
+        assertTrue(mJitterBuffer.getDelay() <= JitterBuffer.MAX_DELAY);
+    }
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.rtp;
+
+import com.gsma.rcs.core.ims.protocol.rtp.core.ReceptionReport;
+import com.gsma.rcs.core.ims.protocol.rtp.core.RtcpPacket;
+import com.gsma.rcs.core.ims.protocol.rtp.core.RtcpPacketReader;
+import com.gsma.rcs.core.ims.protocol.rtp.core.RtcpPacketUtils;
+import com.gsma.rcs.core.ims.protocol.rtp.core.RtcpPacketWriter;
+import com.gsma.rcs.core.ims.protocol.rtp.core.RtcpSdesBlock;
+
+import android.test.AndroidTestCase;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class RtcpPacketTest extends AndroidTestCase {
+
+    private static final int SSRC = 0x12345678;
+
+    private static final byte[] CNAME = "user@10.0.0.1".getBytes();
+
+    private final RtcpPacketWriter mWriter = new RtcpPacketWriter();
+
+    private final RtcpPacketReader mReader = new RtcpPacketReader();
+
+    private static ReceptionReport createReport() {
+        ReceptionReport report = new ReceptionReport(0x0badcafe);
+        report.setFractionLost(64);
+        report.setCumulativeNumberOfPacketsLost(1000);
+        report.setExtendedHighestSequenceNumberReceived(0x1fffe);
+        report.setInterarrivalJitter(450);
+        report.setLastSenderReport(0xdeadbeefL);
+        report.setDelaySinceLastSenderReport(65536);
+        return report;
+    }
+
+    public void testCompoundPacket() throws IOException {
+        long ntpTimestamp = RtcpPacketUtils.toNtpTimestamp(1500000000500L);
+        byte[] appData = new byte[] {
+                1, 2, 3, 4, 5, 6, 7, 8
+        };
+        mWriter.reset();
+        mWriter.writeSenderReport(SSRC, ntpTimestamp, 0xfffffff0L, 1200, 1000000, createReport());
+        mWriter.writeSdes(SSRC, CNAME);
+        mWriter.writeApp(SSRC, 3, 0x54455354, appData, 0, appData.length);
+        mWriter.writeBye(SSRC, "end".getBytes());
+        ByteBuffer packet = mWriter.getPacket();
+        assertEquals(0, packet.remaining() % 4);
+
+        mReader.reset(packet);
+        assertTrue(mReader.next());
+        assertEquals(RtcpPacket.RTCP_SR, mReader.getType());
+        assertEquals(1, mReader.getCount());
+        assertEquals(SSRC, mReader.getSsrc());
+        assertEquals(ntpTimestamp, mReader.getNtpTimestamp());
+        assertEquals(0xfffffff0L, mReader.getRtpTimestamp());
+        assertEquals(1200, mReader.getPacketCount());
+        assertEquals(1000000, mReader.getOctetCount());
+        assertEquals(0x0badcafe, mReader.getReportSsrc(0));
+        assertEquals(64, mReader.getReportFractionLost(0));
+        assertEquals(1000, mReader.getReportPacketsLost(0));
+        assertEquals(0x1fffe, mReader.getReportLastSeq(0));
+        assertEquals(450, mReader.getReportJitter(0));
+        assertEquals(0xdeadbeefL, mReader.getReportLsr(0));
+        assertEquals(65536, mReader.getReportDlsr(0));
+
+        assertTrue(mReader.next());
+        assertEquals(RtcpPacket.RTCP_SDES, mReader.getType());
+        RtcpSdesBlock[] blocks = mReader.getSdesBlocks();
+        assertEquals(1, blocks.length);
+        assertEquals(SSRC, blocks[0].ssrc);
+        assertEquals(1, blocks[0].items.length);
+        assertTrue(Arrays.equals(CNAME, blocks[0].items[0].data));
+
+        assertTrue(mReader.next());
+        assertEquals(RtcpPacket.RTCP_APP, mReader.getType());
+        assertEquals(3, mReader.getCount());
+        assertEquals(0x54455354, mReader.getAppName());
+        assertTrue(Arrays.equals(appData, mReader.getAppData()));
+
+        assertTrue(mReader.next());
+        assertEquals(RtcpPacket.RTCP_BYE, mReader.getType());
+        assertEquals(SSRC, mReader.getByeSsrc(0));
+        assertTrue(Arrays.equals("end".getBytes(), mReader.getByeReason()));
+
+        assertFalse(mReader.next());
+    }
+
+    public void testBufferIsReused() {
+        mWriter.reset();
+        mWriter.writeReceiverReport(SSRC, createReport());
+        ByteBuffer first = mWriter.getPacket();
+        assertEquals(32, first.remaining());
+
+        mWriter.reset();
+        mWriter.writeReceiverReport(SSRC, null);
+        ByteBuffer second = mWriter.getPacket();
+        assertSame(first.array(), second.array());
+        assertEquals(8, second.remaining());
+    }
+
+    public void testMalformedPacket() {
+        mWriter.reset();
+        mWriter.writeSdes(SSRC, CNAME);
+        ByteBuffer packet = mWriter.getPacket();
+        // Truncate the compound packet in the middle of the SDES
+        packet.limit(packet.limit() - 4);
+        mReader.reset(packet);
+        try {
+            mReader.next();
+            fail("Truncated packet accepted");
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+}
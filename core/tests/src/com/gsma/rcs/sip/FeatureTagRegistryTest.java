@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.sip;
+
+import com.gsma.rcs.core.ims.network.sip.FeatureTagRegistry;
+import com.gsma.rcs.core.ims.network.sip.FeatureTags;
+
+import android.test.AndroidTestCase;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+public class FeatureTagRegistryTest extends AndroidTestCase {
+
+    public void testWholeTag() {
+        assertEquals(FeatureTagRegistry.OMA_IM,
+                FeatureTagRegistry.getBits(FeatureTags.FEATURE_OMA_IM));
+        assertEquals(FeatureTagRegistry.NONE, FeatureTagRegistry.getBits("+g.oma.sip-im.large"));
+        assertEquals(FeatureTagRegistry.NONE, FeatureTagRegistry.getBits("+g.unknown"));
+    }
+
+    public void testQuotedValue() {
+        assertEquals(FeatureTagRegistry.CHAT, FeatureTagRegistry.getBits(FeatureTags.FEATURE_RCSE
+                + "=\"" + FeatureTags.FEATURE_RCSE_CHAT + "\""));
+        assertEquals(FeatureTagRegistry.IMAGE_SHARE_3GPP | FeatureTagRegistry.IMAGE_SHARE,
+                FeatureTagRegistry.getBits(FeatureTags.FEATURE_3GPP_IMAGE_SHARE));
+        assertEquals(FeatureTagRegistry.IP_VOICE_CALL_3GPP, FeatureTagRegistry
+                .getBits(FeatureTags.FEATURE_3GPP + "=\"" + FeatureTags.FEATURE_3GPP_IP_VOICE_CALL
+                        + "\""));
+    }
+
+    public void testMask() {
+        long mask = FeatureTagRegistry.getMask(new HashSet<>(Arrays.asList(
+                FeatureTags.FEATURE_OMA_IM, FeatureTags.FEATURE_RCSE_IP_VOICE_CALL,
+                FeatureTags.FEATURE_RCSE + "=\"" + FeatureTags.FEATURE_RCSE_FT_HTTP + "\"")));
+        assertEquals(FeatureTagRegistry.OMA_IM | FeatureTagRegistry.IP_VOICE_CALL
+                | FeatureTagRegistry.FT_HTTP, mask);
+    }
+}
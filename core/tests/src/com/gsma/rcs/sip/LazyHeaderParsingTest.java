@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.sip;
+
+import gov2.nist.javax2.sip.message.SIPMessage;
+import gov2.nist.javax2.sip.parser.StringMsgParser;
+
+import android.test.AndroidTestCase;
+
+import java.text.ParseException;
+
+public class LazyHeaderParsingTest extends AndroidTestCase {
+
+    private static final String MESSAGE = "INVITE sip:bob@example.com SIP/2.0\r\n"
+            + "Via: SIP/2.0/TCP 10.0.0.1:5060;branch=z9hG4bK776asdhds\r\n"
+            + "Route: <sip:p1.example.com;lr>\r\n" + "Max-Forwards: 70\r\n"
+            + "Route: <sip:p2.example.com;lr>\r\n"
+            + "From: <sip:alice@example.com>;tag=1928301774\r\n"
+            + "Contact: <sip:alice@10.0.0.1>\r\n" + "To: <sip:bob@example.com>\r\n"
+            + "Call-ID: a84b4c76e66710\r\n" + "CSeq: 1 INVITE\r\n" + "Subject: hello\r\n"
+            + "Content-Length: 0\r\n\r\n";
+
+    @Override
+    protected void tearDown() throws Exception {
+        StringMsgParser.setLazyHeaderParsing(false);
+        super.tearDown();
+    }
+
+    private SIPMessage parse(boolean lazy) throws ParseException {
+        StringMsgParser.setLazyHeaderParsing(lazy);
+        return new StringMsgParser().parseSIPMessage(MESSAGE.getBytes());
+    }
+
+    public void testEncodeWithoutAccess() throws ParseException {
+        assertEquals(parse(false).encode(), parse(true).encode());
+    }
+
+    public void testEncodeAfterAccess() throws ParseException {
+        String expected = parse(false).encode();
+        SIPMessage message = parse(true);
+        assertEquals("Subject: hello", message.getHeader("Subject").toString().trim());
+        assertEquals("Route: <sip:p1.example.com;lr>", message.getHeader("Route").toString()
+                .trim());
+        assertEquals(expected, message.encode());
+        assertEquals(expected, new String(message.encodeAsBytes("TCP")));
+    }
+
+    public void testRemoveHeaderNotParsed() throws ParseException {
+        SIPMessage message = parse(true);
+        message.removeHeader("Route");
+        assertFalse(message.encode().contains("Route"));
+        assertNull(message.getHeader("Route"));
+    }
+}
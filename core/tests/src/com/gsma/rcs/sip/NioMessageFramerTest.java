@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.sip;
+
+import gov2.nist.javax2.sip.parser.NioMessageFramer;
+
+import android.test.AndroidTestCase;
+
+import java.nio.ByteBuffer;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class NioMessageFramerTest extends AndroidTestCase {
+
+    private static final String HEADERS = "MESSAGE sip:bob@example.com SIP/2.0\r\n"
+            + "Via: SIP/2.0/TCP 10.0.0.1:5060;branch=z9hG4bK776asdhds\r\n"
+            + "Call-ID: a84b4c76e66710\r\n" + "CSeq: 1 MESSAGE\r\n";
+
+    private static final String BODY = "Hello Bob";
+
+    private static final String MESSAGE = HEADERS + "Content-Length: " + BODY.length()
+            + "\r\n\r\n" + BODY;
+
+    private static final String EMPTY_MESSAGE = HEADERS + "Content-Length: 0\r\n\r\n";
+
+    private final NioMessageFramer mFramer = new NioMessageFramer(0);
+
+    /**
+     * Receive buffer handled like the one of the connection: filled by the reads, then framed
+     * and compacted
+     */
+    private final ByteBuffer mBuffer = ByteBuffer.allocate(4096);
+
+    private List<String> read(String data) throws ParseException {
+        mBuffer.put(data.getBytes());
+        mBuffer.flip();
+        List<String> messages = new ArrayList<String>();
+        byte[] message;
+        while ((message = mFramer.nextMessage(mBuffer)) != null) {
+            messages.add(new String(message));
+        }
+        mBuffer.compact();
+        return messages;
+    }
+
+    /**
+     * Receive a stream in reads split at the given positions
+     */
+    private List<String> readSplit(String stream, int... splits) throws ParseException {
+        List<String> messages = new ArrayList<String>();
+        int start = 0;
+        for (int split : splits) {
+            messages.addAll(read(stream.substring(start, split)));
+            start = split;
+        }
+        messages.addAll(read(stream.substring(start)));
+        return messages;
+    }
+
+    public void testMessageSplitAcrossReads() throws ParseException {
+        List<String> messages = new ArrayList<String>();
+        for (int i = 0; i < MESSAGE.length(); i += 7) {
+            messages.addAll(read(MESSAGE.substring(i, Math.min(MESSAGE.length(), i + 7))));
+            if (i + 7 < MESSAGE.length()) {
+                assertTrue(messages.isEmpty());
+            }
+        }
+        assertEquals(1, messages.size());
+        assertEquals(MESSAGE, messages.get(0));
+        assertEquals(0, mBuffer.position());
+    }
+
+    public void testSeveralMessagesInOneRead() throws ParseException {
+        List<String> messages = read(MESSAGE + EMPTY_MESSAGE + MESSAGE);
+        assertEquals(3, messages.size());
+        assertEquals(MESSAGE, messages.get(0));
+        assertEquals(EMPTY_MESSAGE, messages.get(1));
+        assertEquals(MESSAGE, messages.get(2));
+    }
+
+    public void testSplitInHeaders() throws ParseException {
+        // Inside a header line, then between the CR and the LF of the empty line
+        int emptyLine = MESSAGE.indexOf("\r\n\r\n");
+        List<String> messages = readSplit(MESSAGE, 20, emptyLine + 3);
+        assertEquals(1, messages.size());
+        assertEquals(MESSAGE, messages.get(0));
+    }
+
+    public void testSplitAtContentLengthBoundary() throws ParseException {
+        // Headers complete without the body, then the body without its last byte
+        String stream = MESSAGE + MESSAGE;
+        int bodyStart = MESSAGE.indexOf("\r\n\r\n") + 4;
+        assertTrue(read(stream.substring(0, bodyStart)).isEmpty());
+        assertEquals(MESSAGE.length(), mFramer.getMessageLength());
+        assertTrue(read(stream.substring(bodyStart, MESSAGE.length() - 1)).isEmpty());
+        // The last byte of the body completes the first message only
+        List<String> messages = read(stream.substring(MESSAGE.length() - 1, MESSAGE.length() + 1));
+        assertEquals(1, messages.size());
+        assertEquals(MESSAGE, messages.get(0));
+        messages = read(stream.substring(MESSAGE.length() + 1));
+        assertEquals(1, messages.size());
+        assertEquals(MESSAGE, messages.get(0));
+    }
+
+    public void testEmptyBody() throws ParseException {
+        List<String> messages = readSplit(EMPTY_MESSAGE, EMPTY_MESSAGE.length() - 1);
+        assertEquals(1, messages.size());
+        assertEquals(EMPTY_MESSAGE, messages.get(0));
+
+        // Compact form and no Content-Length header at all
+        String compact = HEADERS + "l: 0\r\n\r\n";
+        String noLength = HEADERS + "\r\n";
+        messages = read("\r\n\r\n" + compact + noLength);
+        assertEquals(2, messages.size());
+        assertEquals(compact, messages.get(0));
+        assertEquals(noLength, messages.get(1));
+    }
+
+    public void testBadContentLength() {
+        try {
+            read(HEADERS + "Content-Length: abc\r\n\r\n");
+            fail("Bad Content-Length accepted");
+        } catch (ParseException e) {
+            // Expected
+        }
+    }
+}
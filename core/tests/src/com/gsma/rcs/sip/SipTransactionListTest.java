@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.sip;
+
+import com.gsma.rcs.core.ims.protocol.sip.SipTransactionContext;
+import com.gsma.rcs.core.ims.protocol.sip.SipTransactionList;
+
+import gov2.nist.javax2.sip.message.MessageFactoryImpl;
+
+import android.test.AndroidTestCase;
+
+import java.text.ParseException;
+import java.util.List;
+
+import javax2.sip.message.Request;
+import javax2.sip.message.Response;
+
+public class SipTransactionListTest extends AndroidTestCase {
+
+    public void testPutGetRemove() {
+        SipTransactionList list = new SipTransactionList();
+        SipTransactionContext ctx = new SipTransactionContext(null);
+        assertNull(list.put("call-1", ctx));
+        assertEquals(1, list.size());
+        assertSame(ctx, list.get("call-1"));
+        assertNull(list.get("call-2"));
+        assertSame(ctx, list.remove("call-1"));
+        assertNull(list.remove("call-1"));
+        assertEquals(0, list.size());
+    }
+
+    public void testExpire() {
+        SipTransactionList list = new SipTransactionList(60000);
+        SipTransactionContext ctx = new SipTransactionContext(null);
+        list.put("call-1", ctx);
+        long now = System.currentTimeMillis();
+        assertTrue(list.expire(now).isEmpty());
+        List<SipTransactionContext> expired = list.expire(now + 120000);
+        assertEquals(1, expired.size());
+        assertSame(ctx, expired.get(0));
+        assertEquals(0, list.size());
+        assertEquals(1, list.getExpiredContexts());
+    }
+
+    public void testExpireOnPut() throws InterruptedException {
+        SipTransactionList list = new SipTransactionList(10);
+        SipTransactionContext orphan = new SipTransactionContext(null);
+        list.put("call-1", orphan);
+        Thread.sleep(50);
+        List<SipTransactionContext> expired = list.put("call-2",
+                new SipTransactionContext(null));
+        assertEquals(1, expired.size());
+        assertSame(orphan, expired.get(0));
+        assertEquals(1, list.size());
+        assertNotNull(list.get("call-2"));
+    }
+
+    public void testRemoveAll() {
+        SipTransactionList list = new SipTransactionList();
+        list.put("call-1", new SipTransactionContext(null));
+        list.put("call-2", new SipTransactionContext(null));
+        assertEquals(2, list.removeAll().size());
+        assertEquals(0, list.size());
+        assertEquals(0, list.getExpiredContexts());
+    }
+
+    public void testConcurrentTransactionsOfADialog() throws ParseException {
+        MessageFactoryImpl factory = new MessageFactoryImpl();
+        Request reInvite = factory.createRequest(createRequest("INVITE", 2, "z9hG4bK-1"));
+        Request info = factory.createRequest(createRequest("INFO", 3, "z9hG4bK-2"));
+        SipTransactionList list = new SipTransactionList();
+        SipTransactionContext reInviteCtx = new SipTransactionContext(null);
+        SipTransactionContext infoCtx = new SipTransactionContext(null);
+        list.put(SipTransactionContext.getTransactionContextId(reInvite), reInviteCtx);
+        list.put(SipTransactionContext.getTransactionContextId(info), infoCtx);
+        assertEquals(2, list.size());
+
+        Response infoResponse = factory.createResponse(Response.OK, info);
+        assertSame(infoCtx,
+                list.remove(SipTransactionContext.getTransactionContextId(infoResponse)));
+        Response reInviteResponse = factory.createResponse(Response.OK, reInvite);
+        assertSame(reInviteCtx,
+                list.get(SipTransactionContext.getTransactionContextId(reInviteResponse)));
+
+        /* The ACK is associated to the INVITE transaction it acknowledges */
+        Request ack = factory.createRequest(createRequest("ACK", 2, "z9hG4bK-3"));
+        assertSame(reInviteCtx, list.remove(SipTransactionContext.getTransactionContextId(ack)));
+        assertEquals(0, list.size());
+    }
+
+    private static String createRequest(String method, int cseq, String branch) {
+        return new StringBuilder(method).append(" sip:bob@example.com SIP/2.0\r\n")
+                .append("Via: SIP/2.0/TCP 10.0.0.1:5060;branch=").append(branch).append("\r\n")
+                .append("From: <sip:alice@example.com>;tag=1234\r\n")
+                .append("To: <sip:bob@example.com>;tag=5678\r\n")
+                .append("Call-ID: dialog-1@10.0.0.1\r\n").append("CSeq: ").append(cseq)
+                .append(' ').append(method).append("\r\n").append("Max-Forwards: 70\r\n")
+                .append("Content-Length: 0\r\n\r\n").toString();
+    }
+}
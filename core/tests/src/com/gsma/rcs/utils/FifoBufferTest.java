@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.utils;
+
+import com.gsma.rcs.utils.FifoBuffer.DropPolicy;
+
+import android.test.AndroidTestCase;
+
+public class FifoBufferTest extends AndroidTestCase {
+
+    public void testOrder() {
+        FifoBuffer fifo = new FifoBuffer(4, DropPolicy.BLOCK);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(fifo.addObject(i));
+        }
+        assertEquals(4, fifo.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i, fifo.getObject());
+        }
+        assertEquals(0, fifo.size());
+        assertEquals(4, fifo.getMaxSize());
+    }
+
+    public void testDropOldest() {
+        FifoBuffer fifo = new FifoBuffer(4, DropPolicy.DROP_OLDEST);
+        for (int i = 0; i < 6; i++) {
+            assertTrue(fifo.addObject(i));
+        }
+        assertEquals(2, fifo.getDroppedObjects());
+        assertEquals(2, fifo.getObject());
+    }
+
+    public void testDropNewest() {
+        FifoBuffer fifo = new FifoBuffer(4, DropPolicy.DROP_NEWEST);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(fifo.addObject(i));
+        }
+        assertFalse(fifo.addObject(4));
+        assertEquals(1, fifo.getDroppedObjects());
+        assertEquals(0, fifo.getObject());
+    }
+
+    public void testUnbounded() {
+        FifoBuffer fifo = new FifoBuffer();
+        assertEquals(Integer.MAX_VALUE, fifo.getCapacity());
+        for (int i = 0; i < 5000; i++) {
+            assertTrue(fifo.addObject(i));
+        }
+        assertEquals(5000, fifo.size());
+        assertEquals(0, fifo.getDroppedObjects());
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(i, fifo.getObject());
+        }
+        assertEquals(0, fifo.size());
+        assertEquals(5000, fifo.getMaxSize());
+        assertNull(fifo.getObject(10));
+    }
+
+    public void testTimeout() {
+        FifoBuffer fifo = new FifoBuffer();
+        long start = System.currentTimeMillis();
+        assertNull(fifo.getObject(50));
+        assertTrue(System.currentTimeMillis() - start >= 50);
+    }
+
+    public void testCloseReleasesReader() throws InterruptedException {
+        final FifoBuffer fifo = new FifoBuffer();
+        final Object[] result = new Object[] {
+            fifo
+        };
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                result[0] = fifo.getObject();
+            }
+        };
+        reader.start();
+        Thread.sleep(50);
+        fifo.close();
+        reader.join(1000);
+        assertFalse(reader.isAlive());
+        assertNull(result[0]);
+        assertFalse(fifo.addObject(1));
+    }
+
+    public void testConcurrentWriters() throws InterruptedException {
+        final FifoBuffer fifo = new FifoBuffer(16, DropPolicy.BLOCK);
+        final int writers = 4;
+        final int objects = 10000;
+        Thread[] threads = new Thread[writers];
+        for (int i = 0; i < writers; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < objects; j++) {
+                        fifo.addObject(j);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        long sum = 0;
+        for (int i = 0; i < writers * objects; i++) {
+            Integer obj = (Integer) fifo.getObject(1000);
+            assertNotNull(obj);
+            sum += obj;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals((long) writers * objects * (objects - 1) / 2, sum);
+        assertNull(fifo.getObject(10));
+    }
+}
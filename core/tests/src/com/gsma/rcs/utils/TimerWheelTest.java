@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.gsma.rcs.utils;
+
+import com.gsma.rcs.utils.TimerWheel.Timeout;
+
+import android.test.AndroidTestCase;
+
+import java.util.List;
+
+public class TimerWheelTest extends AndroidTestCase {
+
+    private static final Runnable TASK = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    public void testExpireInWindow() {
+        TimerWheel wheel = new TimerWheel(1000, 64);
+        wheel.expire(0);
+        Timeout timeout = wheel.schedule(TASK, 10000, 12000);
+        assertEquals(12000, wheel.getNextExpirationTime());
+        assertTrue(wheel.expire(9999).isEmpty());
+        List<Timeout> expired = wheel.expire(10000);
+        assertEquals(1, expired.size());
+        assertSame(timeout, expired.get(0));
+        assertEquals(0, wheel.size());
+        assertEquals(Long.MAX_VALUE, wheel.getNextExpirationTime());
+    }
+
+    public void testCoalescing() {
+        TimerWheel wheel = new TimerWheel(1000, 64);
+        wheel.expire(0);
+        wheel.schedule(TASK, 10000, 15000);
+        wheel.schedule(TASK, 14000, 19000);
+        wheel.schedule(TASK, 16000, 21000);
+        assertEquals(15000, wheel.getNextExpirationTime());
+        /* Woken up for the first timeout, the second one is within its window */
+        assertEquals(2, wheel.expire(15000).size());
+        assertEquals(21000, wheel.getNextExpirationTime());
+    }
+
+    public void testCancel() {
+        TimerWheel wheel = new TimerWheel(1000, 64);
+        wheel.expire(0);
+        Timeout timeout = wheel.schedule(TASK, 1000, 1000);
+        assertTrue(wheel.cancel(timeout));
+        assertFalse(wheel.cancel(timeout));
+        assertTrue(wheel.expire(2000).isEmpty());
+    }
+
+    public void testRounds() {
+        TimerWheel wheel = new TimerWheel(1000, 8);
+        wheel.expire(0);
+        /* Hashed in the same bucket as a timeout of the current round */
+        wheel.schedule(TASK, 9000, 9000);
+        wheel.schedule(TASK, 1000, 1000);
+        assertEquals(1, wheel.expire(1000).size());
+        assertEquals(9000, wheel.getNextExpirationTime());
+        assertTrue(wheel.expire(8000).isEmpty());
+        assertEquals(1, wheel.expire(9500).size());
+    }
+
+    public void testLateTimeout() {
+        TimerWheel wheel = new TimerWheel(1000, 8);
+        wheel.expire(50000);
+        wheel.schedule(TASK, 20000, 20000);
+        assertEquals(1, wheel.expire(50100).size());
+    }
+}
@@ -0,0 +1,153 @@
+/*
+* Conditions Of Use
+*
+* This software was developed by employees of the National Institute of
+* Standards and Technology (NIST), an agency of the Federal Government.
+* Pursuant to title 15 Untied States Code Section 105, works of NIST
+* employees are not subject to copyright protection in the United States
+* and are considered to be in the public domain.  As a result, a formal
+* license is not needed to use the software.
+*
+* This software is provided by NIST as a service and is expressly
+* provided "AS IS."  NIST MAKES NO WARRANTY OF ANY KIND, EXPRESS, IMPLIED
+* OR STATUTORY, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTY OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, NON-INFRINGEMENT
+* AND DATA ACCURACY.  NIST does not warrant or make any representations
+* regarding the use of the software or the results thereof, including but
+* not limited to the correctness, accuracy, reliability or usefulness of
+* the software.
+*
+* Permission to use this software is contingent upon your acceptance
+* of the terms of this agreement
+*
+* .
+*
+*/
+package gov2.nist.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable keyword table of a lexer. Keywords are matched ignoring the case
+ * in an open addressing table so that a lookup neither allocates nor locks.
+ *
+ * @version 1.2
+ */
+public final class KeywordTable {
+
+    /**
+     * Value returned when the keyword is not in the table
+     */
+    public static final int NOT_FOUND = -1;
+
+    /**
+     * Table without any keyword
+     */
+    public static final KeywordTable EMPTY = new Builder().build();
+
+    private final String[] keys;
+
+    private final int[] values;
+
+    private final int mask;
+
+    private KeywordTable(String[] keys, int[] values) {
+        this.keys = keys;
+        this.values = values;
+        this.mask = keys.length - 1;
+    }
+
+    /**
+     * Get the token type of a keyword.
+     *
+     * @param keyword keyword, in any case
+     * @return the token type or NOT_FOUND
+     */
+    public int get(String keyword) {
+        int length = keyword.length();
+        int index = hash(keyword) & mask;
+        String key;
+        while ((key = keys[index]) != null) {
+            if (key.length() == length && key.regionMatches(true, 0, keyword, 0, length)) {
+                return values[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Add the keywords of the table to a symbol table.
+     *
+     * @param symbols keyword of each token type, only completed with the
+     *            token types not yet known
+     */
+    void addSymbols(Map<Integer, String> symbols) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                Integer value = Integer.valueOf(values[i]);
+                if (!symbols.containsKey(value)) {
+                    symbols.put(value, keys[i]);
+                }
+            }
+        }
+    }
+
+    private static int hash(String keyword) {
+        int h = 0;
+        for (int i = 0; i < keyword.length(); i++) {
+            char c = keyword.charAt(i);
+            if (c >= 'a' && c <= 'z') {
+                c -= 'a' - 'A';
+            }
+            h = 31 * h + c;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Builder of a keyword table.
+     */
+    public static final class Builder {
+
+        private final LinkedHashMap<String, Integer> keywords =
+                new LinkedHashMap<String, Integer>();
+
+        /**
+         * Add a keyword, replacing its previous token type if any.
+         *
+         * @param keyword keyword
+         * @param value token type
+         * @return this builder
+         */
+        public Builder add(String keyword, int value) {
+            keywords.put(keyword.toUpperCase(), Integer.valueOf(value));
+            return this;
+        }
+
+        /**
+         * Build the table, with a load factor of at most one half.
+         *
+         * @return the keyword table
+         */
+        public KeywordTable build() {
+            int capacity = 4;
+            while (capacity < 2 * keywords.size()) {
+                capacity <<= 1;
+            }
+            String[] keys = new String[capacity];
+            int[] values = new int[capacity];
+            int mask = capacity - 1;
+            for (Map.Entry<String, Integer> entry : keywords.entrySet()) {
+                int index = hash(entry.getKey()) & mask;
+                while (keys[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = entry.getKey();
+                values[index] = entry.getValue().intValue();
+            }
+            return new KeywordTable(keys, values);
+        }
+    }
+}
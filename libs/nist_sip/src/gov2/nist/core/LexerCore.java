@@ -82,44 +82,32 @@ public class LexerCore extends StringTokenizer {
     public static final int AND = (int) '&';
     public static final int UNDERSCORE = (int) '_';
 
-    protected static final Hashtable globalSymbolTable;
-    protected static final Hashtable lexerTables;
-    protected Hashtable currentLexer;
+    protected static final Hashtable<Integer, String> globalSymbolTable;
+    protected KeywordTable currentLexer;
     protected String currentLexerName;
     protected Token currentMatch;
 
     static {
-        globalSymbolTable = new Hashtable();
-        lexerTables = new Hashtable();
+        globalSymbolTable = new Hashtable<Integer, String>();
     }
 
-    protected void addKeyword(String name, int value) {
-        // System.out.println("addKeyword " + name + " value = " + value);
-        // new Exception().printStackTrace();
-        Integer val = Integer.valueOf(value);
-        currentLexer.put(name, val);
-        if (!globalSymbolTable.containsKey(val))
-            globalSymbolTable.put(val, name);
+    /** Register the keywords of a lexer table for the token lookup. The
+     * tables are built once, when the lexer class is initialized.
+     */
+    protected static KeywordTable addLexer(KeywordTable keywords) {
+        keywords.addSymbols(globalSymbolTable);
+        return keywords;
     }
 
     public String lookupToken(int value) {
         if (value > START) {
-            return (String) globalSymbolTable.get(Integer.valueOf(value));
+            return globalSymbolTable.get(Integer.valueOf(value));
         } else {
             Character ch = Character.valueOf((char) value);
             return ch.toString();
         }
     }
 
-    protected Hashtable addLexer(String lexerName) {
-        currentLexer = (Hashtable) lexerTables.get(lexerName);
-        if (currentLexer == null) {
-            currentLexer = new Hashtable();
-            lexerTables.put(lexerName, currentLexer);
-        }
-        return currentLexer;
-    }
-
     //public abstract void selectLexer(String lexerName);
 
     public void selectLexer(String lexerName) {
@@ -127,7 +115,7 @@ public class LexerCore extends StringTokenizer {
     }
 
     protected LexerCore() {
-        this.currentLexer = new Hashtable();
+        this.currentLexer = KeywordTable.EMPTY;
         this.currentLexerName = "charLexer";
     }
 
@@ -135,6 +123,7 @@ public class LexerCore extends StringTokenizer {
      */
     public LexerCore(String lexerName, String buffer) {
         super(buffer);
+        this.currentLexer = KeywordTable.EMPTY;
         this.currentLexerName = lexerName;
     }
 
@@ -175,10 +164,9 @@ public class LexerCore extends StringTokenizer {
             if (startsId()) {
                 String id = ttoken();
                 tok.tokenValue = id;
-                String idUppercase = id.toUpperCase();
-                if (currentLexer.containsKey(idUppercase)) {
-                    Integer type = (Integer) currentLexer.get(idUppercase);
-                    tok.tokenType = type.intValue();
+                int type = currentLexer.get(id);
+                if (type != KeywordTable.NOT_FOUND) {
+                    tok.tokenType = type;
                 } else
                     tok.tokenType = ID;
             } else {
@@ -223,9 +211,9 @@ public class LexerCore extends StringTokenizer {
                 this.currentMatch.tokenType = SAFE;
             } else {
                 String nexttok = getNextId();
-                Integer cur = (Integer) currentLexer.get(nexttok.toUpperCase());
+                int cur = currentLexer.get(nexttok);
 
-                if (cur == null || cur.intValue() != tok)
+                if (cur != tok)
                     throw new ParseException(
                         buffer + "\nUnexpected Token : " + nexttok,
                         ptr);
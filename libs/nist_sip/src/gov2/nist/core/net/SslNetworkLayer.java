@@ -62,6 +62,8 @@ public class SslNetworkLayer implements NetworkLayer {
 
     private SSLServerSocketFactory sslServerSocketFactory;
 
+    private SSLContext sslContext;
+
     public SslNetworkLayer() throws IOException, GeneralSecurityException {
     	        this(null, null, null, null);
     }
@@ -69,7 +71,6 @@ public class SslNetworkLayer implements NetworkLayer {
 	public SslNetworkLayer(String trustStoreFile, String keyStoreFile,
 			char[] keyStorePassword, String keyStoreType)
 			throws GeneralSecurityException, FileNotFoundException, IOException {
-		SSLContext sslContext;
 		sslContext = SSLContext.getInstance("TLS");
 		String algorithm = KeyManagerFactory.getDefaultAlgorithm();
 		TrustManagerFactory tmFactory = TrustManagerFactory
@@ -103,6 +104,16 @@ public class SslNetworkLayer implements NetworkLayer {
 		sslSocketFactory = sslContext.getSocketFactory();
 	}
 
+    /**
+     * Returns the SSL context of the network layer, to create the SSL
+     * engines of the non-blocking TLS connections.
+     *
+     * @return the SSL context
+     */
+    public SSLContext getSSLContext() {
+        return sslContext;
+    }
+
     public ServerSocket createServerSocket(int port, int backlog,
             InetAddress bindAddress) throws IOException {
         return new ServerSocket(port, backlog, bindAddress);
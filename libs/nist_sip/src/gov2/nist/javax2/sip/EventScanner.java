@@ -26,8 +26,10 @@
 package gov2.nist.javax2.sip;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax2.sip.*;
+import javax2.sip.header.CallIdHeader;
 import javax2.sip.message.*;
 
 import gov2.nist.core.ThreadAuditor;
@@ -39,25 +41,31 @@ import gov2.nist.javax2.sip.stack.*;
 /**
  * Event Scanner to deliver events to the Listener.
  *
+ * The events are delivered by lanes, each one a queue drained by its own
+ * thread. With a single lane (the default) all the events of the stack are
+ * delivered in sequence. With several lanes, the events are hashed on the
+ * lanes by Call-ID: the events of a dialog or of a transaction are still
+ * delivered in order, while a listener slow to handle one dialog does not
+ * delay the others. The threads are started with the first event.
+ *
  * @version 1.2 $Revision: 1.41 $ $Date: 2009/11/18 02:35:17 $
  *
  * @author M. Ranganathan <br/>
  *
  *
  */
-class EventScanner implements Runnable {
+class EventScanner {
 
-    private boolean isStopped;
+    private volatile boolean isStopped;
 
     private int refCount;
 
-    // SIPquest: Fix for deadlocks
-    private LinkedList pendingEvents = new LinkedList();
-
     private int[] eventMutex = { 0 };
 
     private SipStackImpl sipStack;
 
+    private volatile Lane[] lanes;
+
     public void incrementRefcount() {
         synchronized (eventMutex) {
             this.refCount++;
@@ -65,37 +73,119 @@ class EventScanner implements Runnable {
     }
 
     public EventScanner(SipStackImpl sipStackImpl) {
-        this.pendingEvents = new LinkedList();
-        Thread myThread = new Thread(this);
-        // This needs to be set to false else the
-        // main thread mysteriously exits.
-        myThread.setDaemon(false);
-
         this.sipStack = sipStackImpl;
-
-        myThread.setName("EventScannerThread");
-
-        myThread.start();
-
     }
 
     public void addEvent(EventWrapper eventWrapper) {
     	if (sipStack.isLoggingEnabled())
     		sipStack.getStackLogger().logDebug("addEvent " + eventWrapper);
-        synchronized (this.eventMutex) {
+        Lane[] lanes = getLanes();
+        Lane lane = lanes[0];
+        if (lanes.length > 1) {
+            String callId = getCallId(eventWrapper);
+            if (callId != null) {
+                lane = lanes[(callId.hashCode() & Integer.MAX_VALUE) % lanes.length];
+            }
+        }
+        lane.addEvent(eventWrapper);
+    }
 
-            pendingEvents.add(eventWrapper);
+    private Lane[] getLanes() {
+        Lane[] lanes = this.lanes;
+        if (lanes == null) {
+            synchronized (eventMutex) {
+                lanes = this.lanes;
+                if (lanes == null) {
+                    int laneCount = Math.max(1, sipStack.getEventLaneCount());
+                    lanes = new Lane[laneCount];
+                    for (int i = 0; i < laneCount; i++) {
+                        lanes[i] = new Lane(laneCount == 1 ? "EventScannerThread"
+                                : "EventScannerThread-" + i);
+                    }
+                    this.lanes = lanes;
+                }
+            }
+        }
+        return lanes;
+    }
 
-            // Add the event into the pending events list
+    /**
+     * Get the Call-ID on which an event is ordered, or null for the events
+     * not related to a dialog.
+     */
+    private static String getCallId(EventWrapper eventWrapper) {
+        EventObject sipEvent = eventWrapper.sipEvent;
+        SIPTransaction transaction = eventWrapper.transaction;
+        if (transaction == null) {
+            if (sipEvent instanceof TimeoutEvent) {
+                TimeoutEvent timeoutEvent = (TimeoutEvent) sipEvent;
+                transaction = (SIPTransaction) (timeoutEvent.isServerTransaction() ? timeoutEvent
+                        .getServerTransaction() : timeoutEvent.getClientTransaction());
+            } else if (sipEvent instanceof TransactionTerminatedEvent) {
+                TransactionTerminatedEvent terminatedEvent = (TransactionTerminatedEvent) sipEvent;
+                transaction = (SIPTransaction) (terminatedEvent.isServerTransaction() ? terminatedEvent
+                        .getServerTransaction() : terminatedEvent.getClientTransaction());
+            }
+        }
+        if (transaction != null && transaction.getCallId() != null) {
+            return transaction.getCallId().getCallId();
+        }
+        Message message = null;
+        if (sipEvent instanceof RequestEvent) {
+            message = ((RequestEvent) sipEvent).getRequest();
+        } else if (sipEvent instanceof ResponseEvent) {
+            message = ((ResponseEvent) sipEvent).getResponse();
+        }
+        if (message != null) {
+            CallIdHeader callId = ((SIPMessage) message).getCallId();
+            return callId == null ? null : callId.getCallId();
+        }
+        Dialog dialog = null;
+        if (sipEvent instanceof DialogTerminatedEvent) {
+            dialog = ((DialogTerminatedEvent) sipEvent).getDialog();
+        } else if (sipEvent instanceof DialogTimeoutEvent) {
+            dialog = ((DialogTimeoutEvent) sipEvent).getDialog();
+        }
+        if (dialog != null && dialog.getCallId() != null) {
+            return dialog.getCallId().getCallId();
+        }
+        return null;
+    }
 
-            eventMutex.notify();
+    /**
+     * Get the number of events waiting for delivery or being delivered on
+     * each lane.
+     *
+     * @return the queue depth of each lane
+     */
+    public int[] getQueueDepths() {
+        Lane[] lanes = this.lanes;
+        int[] depths = new int[Math.max(1, sipStack.getEventLaneCount())];
+        for (int i = 0; lanes != null && i < lanes.length; i++) {
+            depths[i] = lanes[i].queueDepth.get();
         }
+        return depths;
+    }
 
+    /**
+     * Get the highest queue depth reached on each lane.
+     *
+     * @return the maximum queue depth of each lane
+     */
+    public int[] getMaxQueueDepths() {
+        Lane[] lanes = this.lanes;
+        int[] depths = new int[Math.max(1, sipStack.getEventLaneCount())];
+        for (int i = 0; lanes != null && i < lanes.length; i++) {
+            synchronized (lanes[i]) {
+                depths[i] = lanes[i].maxQueueDepth;
+            }
+        }
+        return depths;
     }
 
     /**
      * Stop the event scanner. Decrement the reference count and exit the
-     * scanner thread if the ref count goes to 0.
+     * scanner threads if the ref count goes to 0.
      */
 
     public void stop() {
@@ -106,8 +196,7 @@ class EventScanner implements Runnable {
 
             if (this.refCount == 0) {
                 isStopped = true;
-                eventMutex.notify();
-
+                wakeUpLanes();
             }
         }
     }
@@ -121,11 +210,22 @@ class EventScanner implements Runnable {
         synchronized (this.eventMutex) {
             this.isStopped = true;
             this.refCount = 0;
-            this.eventMutex.notify();
+            wakeUpLanes();
         }
 
     }
 
+    private void wakeUpLanes() {
+        Lane[] lanes = this.lanes;
+        if (lanes != null) {
+            for (Lane lane : lanes) {
+                synchronized (lane) {
+                    lane.notify();
+                }
+            }
+        }
+    }
+
     public void deliverEvent(EventWrapper eventWrapper) {
         EventObject sipEvent = eventWrapper.sipEvent;
         if (sipStack.isLoggingEnabled())
@@ -457,78 +557,108 @@ class EventScanner implements Runnable {
 
     /**
      * For the non-re-entrant listener this delivers the events to the listener
-     * from a single queue. If the listener is re-entrant, then the stack just
-     * calls the deliverEvent method above.
+     * from the queue of a lane. If the listener is re-entrant, then the stack
+     * just calls the deliverEvent method above.
      */
+    private final class Lane implements Runnable {
 
-    public void run() {
-        try {
-            // Ask the auditor to monitor this thread
-            ThreadAuditor.ThreadHandle threadHandle = sipStack.getThreadAuditor().addCurrentThread();
-
-            while (true) {
-                EventWrapper eventWrapper = null;
-
-                LinkedList eventsToDeliver;
-                synchronized (this.eventMutex) {
-                    // First, wait for some events to become available.
-                    while (pendingEvents.isEmpty()) {
-                        // There's nothing in the list, check to make sure we
-                        // haven't
-                        // been stopped. If we have, then let the thread die.
-                        if (this.isStopped) {
-                            if (sipStack.isLoggingEnabled())
-                                sipStack.getStackLogger().logDebug(
-                                        "Stopped event scanner!!");
-                            return;
-                        }
+        private LinkedList<EventWrapper> pendingEvents = new LinkedList<EventWrapper>();
 
-                        // We haven't been stopped, and the event list is indeed
-                        // rather empty. Wait for some events to come along.
-                        try {
-                            // Send a heartbeat to the thread auditor
-                            threadHandle.ping();
-
-                            // Wait for events (with a timeout)
-                            eventMutex.wait(threadHandle.getPingIntervalInMillisecs());
-                        } catch (InterruptedException ex) {
-                            // Let the thread die a normal death
-                        	if (sipStack.isLoggingEnabled())
-                        		sipStack.getStackLogger().logDebug("Interrupted!");
-                            return;
+        /*
+         * Events added and not delivered yet.
+         */
+        private final AtomicInteger queueDepth = new AtomicInteger();
+
+        private int maxQueueDepth;
+
+        private Lane(String name) {
+            Thread myThread = new Thread(this);
+            // This needs to be set to false else the
+            // main thread mysteriously exits.
+            myThread.setDaemon(false);
+            myThread.setName(name);
+            myThread.start();
+        }
+
+        private synchronized void addEvent(EventWrapper eventWrapper) {
+            // Add the event into the pending events list
+            pendingEvents.add(eventWrapper);
+            int depth = queueDepth.incrementAndGet();
+            if (depth > maxQueueDepth) {
+                maxQueueDepth = depth;
+            }
+            notify();
+        }
+
+        public void run() {
+            try {
+                // Ask the auditor to monitor this thread
+                ThreadAuditor.ThreadHandle threadHandle = sipStack.getThreadAuditor().addCurrentThread();
+
+                while (true) {
+                    LinkedList<EventWrapper> eventsToDeliver;
+                    synchronized (this) {
+                        // First, wait for some events to become available.
+                        while (pendingEvents.isEmpty()) {
+                            // There's nothing in the list, check to make sure
+                            // we haven't been stopped. If we have, then let
+                            // the thread die.
+                            if (isStopped) {
+                                if (sipStack.isLoggingEnabled())
+                                    sipStack.getStackLogger().logDebug(
+                                            "Stopped event scanner!!");
+                                return;
+                            }
+
+                            // We haven't been stopped, and the event list is
+                            // indeed rather empty. Wait for some events to
+                            // come along.
+                            try {
+                                // Send a heartbeat to the thread auditor
+                                threadHandle.ping();
+
+                                // Wait for events (with a timeout)
+                                wait(threadHandle.getPingIntervalInMillisecs());
+                            } catch (InterruptedException ex) {
+                                // Let the thread die a normal death
+                                if (sipStack.isLoggingEnabled())
+                                    sipStack.getStackLogger().logDebug("Interrupted!");
+                                return;
+                            }
                         }
-                    }
 
-                    // There are events in the 'pending events list' that need
-                    // processing. Hold onto the old 'pending Events' list, but
-                    // make a new one for the other methods to operate on. This
-                    // tap-dancing is to avoid deadlocks and also to ensure that
-                    // the list is not modified while we are iterating over it.
-                    eventsToDeliver = pendingEvents;
-                    pendingEvents = new LinkedList();
-                }
-                ListIterator iterator = eventsToDeliver.listIterator();
-                while (iterator.hasNext()) {
-                    eventWrapper = (EventWrapper) iterator.next();
-                    if (sipStack.isLoggingEnabled()) {
-                        sipStack.getStackLogger().logDebug(
-                                "Processing " + eventWrapper + "nevents "
-                                        + eventsToDeliver.size());
+                        // There are events in the 'pending events list' that
+                        // need processing. Hold onto the old 'pending Events'
+                        // list, but make a new one for the other methods to
+                        // operate on. This tap-dancing is to avoid deadlocks
+                        // and also to ensure that the list is not modified
+                        // while we are iterating over it.
+                        eventsToDeliver = pendingEvents;
+                        pendingEvents = new LinkedList<EventWrapper>();
                     }
-                    try {
-                        deliverEvent(eventWrapper);
-                    } catch (Exception e) {
+                    for (EventWrapper eventWrapper : eventsToDeliver) {
                         if (sipStack.isLoggingEnabled()) {
-                            sipStack.getStackLogger().logError(
-                                    "Unexpected exception caught while delivering event -- carrying on bravely", e);
+                            sipStack.getStackLogger().logDebug(
+                                    "Processing " + eventWrapper + "nevents "
+                                            + eventsToDeliver.size());
+                        }
+                        try {
+                            deliverEvent(eventWrapper);
+                        } catch (Exception e) {
+                            if (sipStack.isLoggingEnabled()) {
+                                sipStack.getStackLogger().logError(
+                                        "Unexpected exception caught while delivering event -- carrying on bravely", e);
+                            }
+                        } finally {
+                            queueDepth.decrementAndGet();
                         }
                     }
-                }
-            } // end While
-        } finally {
-            if (sipStack.isLoggingEnabled()) {
-                if (!this.isStopped) {
-                    sipStack.getStackLogger().logFatalError("Event scanner exited abnormally");
+                } // end While
+            } finally {
+                if (sipStack.isLoggingEnabled()) {
+                    if (!isStopped) {
+                        sipStack.getStackLogger().logFatalError("Event scanner exited abnormally");
+                    }
                 }
             }
         }
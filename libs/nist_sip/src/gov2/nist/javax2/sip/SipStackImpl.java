@@ -34,6 +34,8 @@ import gov2.nist.javax2.sip.clientauthutils.AccountManager;
 import gov2.nist.javax2.sip.clientauthutils.AuthenticationHelper;
 import gov2.nist.javax2.sip.clientauthutils.AuthenticationHelperImpl;
 import gov2.nist.javax2.sip.clientauthutils.SecureAccountManager;
+import gov2.nist.javax2.sip.message.CompactHeaders;
+import gov2.nist.javax2.sip.message.SIPMessage;
 import gov2.nist.javax2.sip.parser.StringMsgParser;
 import gov2.nist.javax2.sip.stack.DefaultMessageLogFactory;
 import gov2.nist.javax2.sip.stack.DefaultRouter;
@@ -49,6 +51,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.net.InetAddress;
 import java.util.Hashtable;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.Properties;
 import java.util.StringTokenizer;
 import java.util.concurrent.Semaphore;
@@ -239,6 +242,14 @@ import javax2.sip.message.Request;
  * multithreaded machine write your listener to be re-entrant and set this
  * property to be true </b></li>
  * 
+ * <li><b>gov2.nist.javax2.sip.EVENT_LANES = integer </b> <br/>
+ * Default is 1. Number of threads delivering the events to a listener which
+ * is not re-entrant. The events are hashed on the threads by Call-ID, so the
+ * events of a dialog are delivered in order by the same thread while a
+ * listener slow to handle a dialog does not delay the other dialogs. The
+ * listener has to be written with this in mind. The queue depth of each
+ * thread is given by getEventQueueDepths.</li>
+ * 
  * <li><b>gov2.nist.javax2.sip.MAX_CONNECTIONS = integer </b> <br/>
  * Max number of simultaneous TCP connections handled by stack.</li>
  * 
@@ -329,6 +340,24 @@ import javax2.sip.message.Request;
  * parameter in the Message. Otherwise, it will use the content length supplied
  * and generate a parse exception if the content is truncated.
  * 
+ * <li><b>gov2.nist.javax2.sip.LAZY_HEADER_PARSING = [true|false] </b> <br/>
+ * Default is <it>false</it>. If set to <it>true</it>, only the Via, From, To,
+ * Call-ID, CSeq, Content-Length and Max-Forwards headers are parsed with the
+ * message. The other headers are kept as raw lines and parsed when first
+ * accessed, a bad one then being kept as an unparsed header.</li>
+ * 
+ * <li><b>gov2.nist.javax2.sip.USE_NIO = [true|false] </b> <br/>
+ * Default is <it>false</it>. If set to <it>true</it>, the TCP and TLS
+ * transports are handled by a single selector thread per listening point,
+ * instead of a reader and a parser thread per connection. TLS then relies on
+ * an SSLEngine created from the SSL context of the network layer.</li>
+ * 
+ * <li><b>gov2.nist.javax2.sip.COMPACT_HEADERS = [true|false] </b> <br/>
+ * Default is <it>false</it>. If set to <it>true</it>, the messages are sent
+ * with the compact form of the header names which have one (Via is sent as
+ * v, Accept-Contact as a...). The bytes saved per method are given by
+ * getCompactHeaderBytesSaved.</li>
+ * 
  * <li><b>gov2.nist.javax2.sip.CANCEL_CLIENT_TRANSACTION_CHECKED = [true|false]
  * </b> <br/>
  * Default is <it>true</it>. This flag is added in support of load balancers or
@@ -437,6 +466,9 @@ public class SipStackImpl extends SIPTransactionStack implements
 
 	private EventScanner eventScanner;
 
+	// Number of threads delivering the events to a non re-entrant listener.
+	private int eventLaneCount = 1;
+
 	private Hashtable<String, ListeningPointImpl> listeningPoints;
 
 	private LinkedList<SipProviderImpl> sipProviders;
@@ -919,6 +951,18 @@ public class SipStackImpl extends SIPTransactionStack implements
 				.getProperty("gov2.nist.javax2.sip.REENTRANT_LISTENER");
 		this.reEntrantListener = (rel != null && "true".equalsIgnoreCase(rel));
 
+		String eventLanes = configurationProperties
+				.getProperty("gov2.nist.javax2.sip.EVENT_LANES");
+		if (eventLanes != null) {
+			try {
+				this.eventLaneCount = Math.max(1, Integer.parseInt(eventLanes.trim()));
+			} catch (NumberFormatException ex) {
+				if (isLoggingEnabled())
+					getStackLogger().logError(
+						"event lanes - bad value " + ex.getMessage());
+			}
+		}
+
 		// Check if a thread audit interval is specified
 		String interval = configurationProperties
 				.getProperty("gov2.nist.javax2.sip.THREAD_AUDIT_INTERVAL_IN_MILLISECS");
@@ -976,6 +1020,19 @@ public class SipStackImpl extends SIPTransactionStack implements
 		StringMsgParser
 				.setComputeContentLengthFromMessage(computeContentLength);
 
+		boolean lazyHeaderParsing = configurationProperties.getProperty(
+				"gov2.nist.javax2.sip.LAZY_HEADER_PARSING",
+				"false").equalsIgnoreCase("true");
+		StringMsgParser.setLazyHeaderParsing(lazyHeaderParsing);
+
+		super.useNio = configurationProperties.getProperty(
+				"gov2.nist.javax2.sip.USE_NIO", "false").equalsIgnoreCase("true");
+
+		boolean compactHeaders = configurationProperties.getProperty(
+				"gov2.nist.javax2.sip.COMPACT_HEADERS",
+				"false").equalsIgnoreCase("true");
+		SIPMessage.setCompactHeaderEncoding(compactHeaders);
+
 		String tlsClientProtocols = configurationProperties.getProperty(
 				"gov2.nist.javax2.sip.TLS_CLIENT_PROTOCOLS");
 		if (tlsClientProtocols != null)
@@ -1366,6 +1423,47 @@ public class SipStackImpl extends SIPTransactionStack implements
 		return eventScanner;
 	}
 
+	/**
+	 * Get the number of threads delivering the events to a non re-entrant
+	 * listener.
+	 * 
+	 * @return the number of event lanes
+	 */
+	public int getEventLaneCount() {
+		return eventLaneCount;
+	}
+
+	/**
+	 * Get the number of events waiting for delivery, or being delivered, on
+	 * each event lane.
+	 * 
+	 * @return the queue depth of each lane, empty if the stack is stopped
+	 */
+	public int[] getEventQueueDepths() {
+		EventScanner eventScanner = this.eventScanner;
+		return eventScanner == null ? new int[0] : eventScanner.getQueueDepths();
+	}
+
+	/**
+	 * Get the highest number of events queued on each event lane.
+	 * 
+	 * @return the maximum queue depth of each lane, empty if the stack is
+	 *         stopped
+	 */
+	public int[] getMaxEventQueueDepths() {
+		EventScanner eventScanner = this.eventScanner;
+		return eventScanner == null ? new int[0] : eventScanner.getMaxQueueDepths();
+	}
+
+	/**
+	 * Get the number of bytes saved by sending the compact header names.
+	 * 
+	 * @return the saved bytes, keyed by method
+	 */
+	public Map<String, Long> getCompactHeaderBytesSaved() {
+		return CompactHeaders.getBytesSaved();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -0,0 +1,155 @@
+/*
+* Conditions Of Use
+*
+* This software was developed by employees of the National Institute of
+* Standards and Technology (NIST), an agency of the Federal Government.
+* Pursuant to title 15 Untied States Code Section 105, works of NIST
+* employees are not subject to copyright protection in the United States
+* and are considered to be in the public domain.  As a result, a formal
+* license is not needed to use the software.
+*
+* This software is provided by NIST as a service and is expressly
+* provided "AS IS."  NIST MAKES NO WARRANTY OF ANY KIND, EXPRESS, IMPLIED
+* OR STATUTORY, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTY OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, NON-INFRINGEMENT
+* AND DATA ACCURACY.  NIST does not warrant or make any representations
+* regarding the use of the software or the results thereof, including but
+* not limited to the correctness, accuracy, reliability or usefulness of
+* the software.
+*
+* Permission to use this software is contingent upon your acceptance
+* of the terms of this agreement
+*
+* .
+*
+*/
+package gov2.nist.javax2.sip.message;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rewriting of the encoded header names to their compact form (RFC 3261
+ * section 7.3.3 and the extensions defining one), with the count of bytes
+ * saved per method.
+ *
+ * @version 1.2
+ */
+public final class CompactHeaders {
+
+    /**
+     * Full and compact names, only for the compact forms the parser of the
+     * stack expands, plus Accept-Contact
+     */
+    private static final String[][] NAMES = {
+            { "Accept-Contact", "a" },
+            { "Allow-Events", "u" },
+            { "Call-ID", "i" },
+            { "Contact", "m" },
+            { "Content-Encoding", "e" },
+            { "Content-Length", "l" },
+            { "Content-Type", "c" },
+            { "Event", "o" },
+            { "From", "f" },
+            { "Referred-By", "b" },
+            { "Refer-To", "r" },
+            { "Session-Expires", "x" },
+            { "Subject", "s" },
+            { "Supported", "k" },
+            { "To", "t" },
+            { "Via", "v" }
+    };
+
+    private static final ConcurrentHashMap<String, AtomicLong> bytesSaved = new ConcurrentHashMap<String, AtomicLong>();
+
+    private CompactHeaders() {
+    }
+
+    /**
+     * Rewrite the names of the header lines encoded in the buffer from the
+     * given offset.
+     *
+     * @param buffer encoded message
+     * @param start offset of the first header line
+     * @param method method of the message, or of its CSeq for a response
+     */
+    static void compact(StringBuffer buffer, int start, String method) {
+        int saved = 0;
+        int lineStart = start;
+        while (lineStart < buffer.length()) {
+            int colon = -1;
+            int lineEnd = lineStart;
+            int length = buffer.length();
+            while (lineEnd < length && buffer.charAt(lineEnd) != '\n') {
+                if (colon < 0 && buffer.charAt(lineEnd) == ':') {
+                    colon = lineEnd;
+                }
+                lineEnd++;
+            }
+            if (colon > lineStart + 1) {
+                String compactName = getCompactName(buffer, lineStart, colon);
+                if (compactName != null) {
+                    buffer.replace(lineStart, colon, compactName);
+                    int removed = colon - lineStart - compactName.length();
+                    saved += removed;
+                    lineEnd -= removed;
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        if (saved > 0 && method != null) {
+            AtomicLong counter = bytesSaved.get(method);
+            if (counter == null) {
+                AtomicLong newCounter = new AtomicLong();
+                counter = bytesSaved.putIfAbsent(method, newCounter);
+                if (counter == null) {
+                    counter = newCounter;
+                }
+            }
+            counter.addAndGet(saved);
+        }
+    }
+
+    private static String getCompactName(StringBuffer buffer, int start, int end) {
+        int length = end - start;
+        for (String[] names : NAMES) {
+            String name = names[0];
+            if (name.length() != length) {
+                continue;
+            }
+            int i = 0;
+            while (i < length
+                    && Character.toLowerCase(buffer.charAt(start + i)) == Character
+                            .toLowerCase(name.charAt(i))) {
+                i++;
+            }
+            if (i == length) {
+                return names[1];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the number of bytes saved by the compact header names, per method.
+     *
+     * @return a snapshot of the saved bytes, keyed by method
+     */
+    public static Map<String, Long> getBytesSaved() {
+        Map<String, Long> snapshot = new HashMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> entry : bytesSaved.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().get());
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    /**
+     * Reset the counts of saved bytes.
+     */
+    public static void resetBytesSaved() {
+        bytesSaved.clear();
+    }
+}
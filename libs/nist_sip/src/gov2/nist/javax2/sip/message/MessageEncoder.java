@@ -0,0 +1,169 @@
+/*
+* Conditions Of Use
+*
+* This software was developed by employees of the National Institute of
+* Standards and Technology (NIST), an agency of the Federal Government.
+* Pursuant to title 15 Untied States Code Section 105, works of NIST
+* employees are not subject to copyright protection in the United States
+* and are considered to be in the public domain.  As a result, a formal
+* license is not needed to use the software.
+*
+* This software is provided by NIST as a service and is expressly
+* provided "AS IS."  NIST MAKES NO WARRANTY OF ANY KIND, EXPRESS, IMPLIED
+* OR STATUTORY, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTY OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, NON-INFRINGEMENT
+* AND DATA ACCURACY.  NIST does not warrant or make any representations
+* regarding the use of the software or the results thereof, including but
+* not limited to the correctness, accuracy, reliability or usefulness of
+* the software.
+*
+* Permission to use this software is contingent upon your acceptance
+* of the terms of this agreement
+*
+* .
+*
+*/
+package gov2.nist.javax2.sip.message;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Per thread encoder of the SIP messages. The headers are appended to a
+ * reusable buffer which is then written, with the content, to a single byte
+ * array of the exact size of the message.
+ *
+ * @version 1.2
+ */
+final class MessageEncoder {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Capacity above which a buffer is not kept for the next message, so that
+     * a large message does not retain memory for the lifetime of the thread
+     */
+    private static final int MAX_RETAINED_CAPACITY = 8192;
+
+    private static final String UTF_8 = "UTF-8";
+
+    private static final ThreadLocal<MessageEncoder> encoders = new ThreadLocal<MessageEncoder>() {
+        @Override
+        protected MessageEncoder initialValue() {
+            return new MessageEncoder();
+        }
+    };
+
+    private StringBuffer buffer = new StringBuffer(INITIAL_CAPACITY);
+
+    private char[] chars = new char[INITIAL_CAPACITY];
+
+    private MessageEncoder() {
+    }
+
+    /**
+     * Get the encoder of the current thread
+     */
+    static MessageEncoder getInstance() {
+        return encoders.get();
+    }
+
+    /**
+     * Get the buffer to which the start line and the headers are appended.
+     */
+    StringBuffer getBuffer() {
+        if (buffer.capacity() > MAX_RETAINED_CAPACITY) {
+            buffer = new StringBuffer(INITIAL_CAPACITY);
+        } else {
+            buffer.setLength(0);
+        }
+        return buffer;
+    }
+
+    /**
+     * Encode the buffer and the content to bytes.
+     *
+     * @param charset charset of the headers
+     * @param content raw content or null
+     * @return the encoded message
+     */
+    byte[] toBytes(String charset, byte[] content) throws UnsupportedEncodingException {
+        int length = buffer.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, 2 * chars.length)];
+        }
+        buffer.getChars(0, length, chars, 0);
+        if (chars.length > MAX_RETAINED_CAPACITY) {
+            char[] encoded = chars;
+            chars = new char[INITIAL_CAPACITY];
+            return toBytes(encoded, length, charset, content);
+        }
+        return toBytes(chars, length, charset, content);
+    }
+
+    private static byte[] toBytes(char[] chars, int length, String charset, byte[] content)
+            throws UnsupportedEncodingException {
+        int contentLength = content == null ? 0 : content.length;
+        if (!UTF_8.equalsIgnoreCase(charset)) {
+            byte[] headers = new String(chars, 0, length).getBytes(charset);
+            byte[] message = new byte[headers.length + contentLength];
+            System.arraycopy(headers, 0, message, 0, headers.length);
+            if (contentLength > 0) {
+                System.arraycopy(content, 0, message, headers.length, contentLength);
+            }
+            return message;
+        }
+        byte[] message = new byte[utf8Length(chars, length) + contentLength];
+        int offset = 0;
+        for (int i = 0; i < length; i++) {
+            char c = chars[i];
+            if (c < 0x80) {
+                message[offset++] = (byte) c;
+            } else if (c < 0x800) {
+                message[offset++] = (byte) (0xc0 | (c >> 6));
+                message[offset++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(chars[i + 1])) {
+                int codePoint = Character.toCodePoint(c, chars[++i]);
+                message[offset++] = (byte) (0xf0 | (codePoint >> 18));
+                message[offset++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                message[offset++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                message[offset++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else if (isSurrogate(c)) {
+                // Unpaired surrogate, replaced as String.getBytes does
+                message[offset++] = (byte) '?';
+            } else {
+                message[offset++] = (byte) (0xe0 | (c >> 12));
+                message[offset++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                message[offset++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        if (contentLength > 0) {
+            System.arraycopy(content, 0, message, offset, contentLength);
+        }
+        return message;
+    }
+
+    private static boolean isSurrogate(char c) {
+        return c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE;
+    }
+
+    private static int utf8Length(char[] chars, int length) {
+        int utf8Length = length;
+        for (int i = 0; i < length; i++) {
+            char c = chars[i];
+            if (c >= 0x80) {
+                if (c < 0x800) {
+                    utf8Length += 1;
+                } else if (Character.isHighSurrogate(c) && i + 1 < length
+                        && Character.isLowSurrogate(chars[i + 1])) {
+                    // Two chars encoded in 4 bytes
+                    utf8Length += 2;
+                    i++;
+                } else if (!isSurrogate(c)) {
+                    utf8Length += 2;
+                }
+            }
+        }
+        return utf8Length;
+    }
+}
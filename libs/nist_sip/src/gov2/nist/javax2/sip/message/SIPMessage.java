@@ -77,11 +77,16 @@ import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Field;
 import java.text.ParseException;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Hashtable;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 import javax2.sip.InvalidArgumentException;
@@ -129,6 +134,11 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
 	// JvB: use static here?
     private String contentEncodingCharset = MessageFactoryImpl.getDefaultContentEncodingCharset();
     
+    /*
+     * True if the messages sent are encoded with the compact header names.
+     */
+    private static boolean compactHeaderEncoding = false;
+
     /*
      * True if this is a null request.
      */
@@ -172,6 +182,12 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
     // Table of headers indexed by name.
     private Hashtable<String, SIPHeader> nameTable;
 
+    /**
+     * Placeholders of the raw header lines indexed by lower case header name, which are only
+     * parsed when the header is first accessed (null if the message was not parsed lazily).
+     */
+    private Map<String, List<LazyHeader>> lazyHeaders;
+
     /**
      * The application data pointer. This is un-interpreted by the stack. This is provided as a
      * convenient way of keeping book-keeping data for applications.
@@ -214,6 +230,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      *         canonical form.
      */
     public LinkedList<String> getMessageAsEncodedStrings() {
+        parseLazyHeaders();
         LinkedList<String> retval = new LinkedList<String>();
         Iterator<SIPHeader> li = headers.iterator();
         while (li.hasNext()) {
@@ -235,6 +252,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      * @return a string with all the headers encoded.
      */
     protected String encodeSIPHeaders() {
+        parseLazyHeaders();
         StringBuffer encoding = new StringBuffer();
         Iterator<SIPHeader> it = this.headers.iterator();
 
@@ -331,6 +349,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
         if (!template.getClass().equals(this.getClass()))
             throw new IllegalArgumentException("Bad class " + template.getClass());
         SIPMessage templateMessage = (SIPMessage) template;
+        templateMessage.parseLazyHeaders();
         Object[] templateHeaders = templateMessage.headers.toArray();
         for (int i = 0; i < templateHeaders.length; i++) {
             SIPHeader hdr = (SIPHeader) templateHeaders[i];
@@ -358,6 +377,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      *         representation of the SDP payload if it exists).
      */
     public String encode() {
+        parseLazyHeaders();
         StringBuffer encoding = new StringBuffer();
         Iterator<SIPHeader> it = this.headers.iterator();
 
@@ -418,7 +438,11 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
             InternalErrorHandler.handleException(e);
         }
 
-        StringBuffer encoding = new StringBuffer();
+        parseLazyHeaders();
+        MessageEncoder encoder = MessageEncoder.getInstance();
+        StringBuffer encoding = encoder.getBuffer();
+        encodeFirstLine(encoding);
+        int headersStart = encoding.length();
         synchronized (this.headers) {
             Iterator<SIPHeader> it = this.headers.iterator();
 
@@ -430,35 +454,40 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
             }
         }
         contentLengthHeader.encode(encoding);
+        if (compactHeaderEncoding) {
+            CompactHeaders.compact(encoding, headersStart,
+                    cSeqHeader == null ? null : cSeqHeader.getMethod());
+        }
         encoding.append(NEWLINE);
 
+        // Written with the content to a single array, without intermediate strings
         byte[] retval = null;
-        byte[] content = this.getRawContent();
-        if (content != null) {
-            // Append the content
-
-            byte[] msgarray = null;
-            try {
-                msgarray = encoding.toString().getBytes( getCharset() );
-            } catch (UnsupportedEncodingException ex) {
-                InternalErrorHandler.handleException(ex);
-            }
-
-            retval = new byte[msgarray.length + content.length];
-            System.arraycopy(msgarray, 0, retval, 0, msgarray.length);
-            System.arraycopy(content, 0, retval, msgarray.length, content.length);
-        } else {
-            // Message content does not exist.
-
-            try {
-                retval = encoding.toString().getBytes( getCharset() );
-            } catch (UnsupportedEncodingException ex) {
-                InternalErrorHandler.handleException(ex);
-            }
+        try {
+            retval = encoder.toBytes(getCharset(), this.getRawContent());
+        } catch (UnsupportedEncodingException ex) {
+            InternalErrorHandler.handleException(ex);
         }
         return retval;
     }
 
+    /**
+     * Set whether the messages sent are encoded with the compact form of the header names which
+     * have one. Only the encoding on the wire is affected, not the encode and toString methods.
+     * 
+     * @param compactHeaderEncoding true to send the compact header names
+     */
+    public static void setCompactHeaderEncoding(boolean compactHeaderEncoding) {
+        SIPMessage.compactHeaderEncoding = compactHeaderEncoding;
+    }
+
+    /**
+     * Encode the request line or the status line at the start of the encoded message.
+     * 
+     * @param buffer the buffer of the encoded message
+     */
+    protected void encodeFirstLine(StringBuffer buffer) {
+    }
+
     /**
      * clone this message (create a new deep physical copy). All headers in the message are
      * cloned. You can modify the cloned copy without affecting the original. The content is
@@ -470,7 +499,9 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      * @return A cloned copy of this object.
      */
     public Object clone() {
+        parseLazyHeaders();
         SIPMessage retval = (SIPMessage) super.clone();
+        retval.lazyHeaders = null;
         retval.nameTable = new Hashtable<String, SIPHeader>();
         retval.fromHeader = null;
         retval.toHeader = null;
@@ -521,6 +552,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
             InternalErrorHandler.handleException(ex);
         }
 
+        parseLazyHeaders();
         sprint("List of headers : ");
         sprint(headers.toString());
         sprint("messageContent = ");
@@ -644,6 +676,9 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
 
         SIPHeader h;
 
+        // Keep the order of the headers of the same name which are not parsed yet
+        parseLazyHeader(SIPHeaderNamesCache.toLowerCase(header.getName()));
+
         if (ListMap.hasList(header) && !SIPHeaderList.class.isAssignableFrom(header.getClass())) {
             SIPHeaderList<SIPHeader> hdrList = ListMap.getList(header);
             hdrList.add(header);
@@ -723,6 +758,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
     public void removeHeader(String headerName, boolean top) {
 
         String headerNameLowerCase = SIPHeaderNamesCache.toLowerCase(headerName);
+        parseLazyHeader(headerNameLowerCase);
         SIPHeader toRemove = (SIPHeader) nameTable.get(headerNameLowerCase);
         // nothing to do then we are done.
         if (toRemove == null)
@@ -781,6 +817,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
         if (headerName == null)
             throw new NullPointerException("null arg");
         String headerNameLowerCase = SIPHeaderNamesCache.toLowerCase(headerName);
+        discardLazyHeader(headerNameLowerCase);
         SIPHeader removed = (SIPHeader) nameTable.remove(headerNameLowerCase);
         // nothing to do then we are done.
         if (removed == null)
@@ -901,6 +938,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      * @return an Iterator for the headers of this message.
      */
     public Iterator<SIPHeader> getHeaders() {
+        parseLazyHeaders();
         return headers.iterator();
     }
 
@@ -916,6 +954,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
     private Header getHeaderLowerCase(String lowerCaseHeaderName) {
         if (lowerCaseHeaderName == null)
             throw new NullPointerException("bad name");
+        parseLazyHeader(lowerCaseHeaderName);
         SIPHeader sipHeader = (SIPHeader) nameTable.get(lowerCaseHeaderName);
         if (sipHeader instanceof SIPHeaderList)
             return (Header) ((SIPHeaderList) sipHeader).getFirst();
@@ -1386,8 +1425,9 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
     public ListIterator<SIPHeader> getHeaders(String headerName) {
         if (headerName == null)
             throw new NullPointerException("null headerName");
-        SIPHeader sipHeader = (SIPHeader) nameTable.get(SIPHeaderNamesCache
-                .toLowerCase(headerName));
+        String lowerCaseHeaderName = SIPHeaderNamesCache.toLowerCase(headerName);
+        parseLazyHeader(lowerCaseHeaderName);
+        SIPHeader sipHeader = (SIPHeader) nameTable.get(lowerCaseHeaderName);
         // empty iterator
         if (sipHeader == null)
             return new LinkedList<SIPHeader>().listIterator();
@@ -1407,6 +1447,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      */
     public String getHeaderAsFormattedString(String name) {
         String lowerCaseName = name.toLowerCase();
+        parseLazyHeader(lowerCaseName);
         if (this.nameTable.containsKey(lowerCaseName)) {
             return this.nameTable.get(lowerCaseName).toString();
         } else {
@@ -1415,6 +1456,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
     }
 
     private SIPHeader getSIPHeaderListLowerCase(String lowerCaseHeaderName) {
+        parseLazyHeader(lowerCaseHeaderName);
         return nameTable.get(lowerCaseHeaderName);
     }
 
@@ -1426,8 +1468,9 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      */
     @SuppressWarnings("unchecked")
     private List<SIPHeader> getHeaderList(String headerName) {
-        SIPHeader sipHeader = (SIPHeader) nameTable.get(SIPHeaderNamesCache
-                .toLowerCase(headerName));
+        String lowerCaseHeaderName = SIPHeaderNamesCache.toLowerCase(headerName);
+        parseLazyHeader(lowerCaseHeaderName);
+        SIPHeader sipHeader = (SIPHeader) nameTable.get(lowerCaseHeaderName);
         if (sipHeader == null)
             return null;
         else if (sipHeader instanceof SIPHeaderList)
@@ -1446,7 +1489,9 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      * @return true if the header is present in the message
      */
     public boolean hasHeader(String headerName) {
-        return nameTable.containsKey(SIPHeaderNamesCache.toLowerCase(headerName));
+        String lowerCaseHeaderName = SIPHeaderNamesCache.toLowerCase(headerName);
+        parseLazyHeader(lowerCaseHeaderName);
+        return nameTable.containsKey(lowerCaseHeaderName);
     }
 
     /**
@@ -1547,6 +1592,159 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
         this.unrecognizedHeaders.add(unparsed);
     }
 
+    /**
+     * Add a header line which is parsed when the header is first accessed. Called by the parser.
+     * A placeholder keeps the position of the line in the list of headers, so that the parsed
+     * header is encoded at the same place as the other headers.
+     * 
+     * @param lowerCaseHeaderName -- lower case name of the header (compact form expanded).
+     * @param header -- header line, without the end of line.
+     */
+    public void addLazyHeader(String lowerCaseHeaderName, String header) {
+        if (lazyHeaders == null) {
+            lazyHeaders = new LinkedHashMap<String, List<LazyHeader>>();
+        }
+        synchronized (lazyHeaders) {
+            List<LazyHeader> placeholders = lazyHeaders.get(lowerCaseHeaderName);
+            if (placeholders == null) {
+                placeholders = new ArrayList<LazyHeader>(1);
+                lazyHeaders.put(lowerCaseHeaderName, placeholders);
+            }
+            LazyHeader placeholder = new LazyHeader(lowerCaseHeaderName, header);
+            placeholders.add(placeholder);
+            headers.add(placeholder);
+        }
+    }
+
+    /**
+     * Parse the header lines of the given name which are not parsed yet. The lock is held while
+     * the headers are attached so that a concurrent reader does not miss them.
+     */
+    private void parseLazyHeader(String lowerCaseHeaderName) {
+        Map<String, List<LazyHeader>> lazy = lazyHeaders;
+        if (lazy == null) {
+            return;
+        }
+        synchronized (lazy) {
+            List<LazyHeader> placeholders = lazy.remove(lowerCaseHeaderName);
+            if (placeholders != null) {
+                parseLazyHeaders(Collections.singletonList(placeholders));
+            }
+        }
+    }
+
+    /**
+     * Parse all the header lines which are not parsed yet.
+     */
+    private void parseLazyHeaders() {
+        Map<String, List<LazyHeader>> lazy = lazyHeaders;
+        if (lazy == null) {
+            return;
+        }
+        synchronized (lazy) {
+            if (lazy.isEmpty()) {
+                return;
+            }
+            List<List<LazyHeader>> all = new ArrayList<List<LazyHeader>>(lazy.values());
+            lazy.clear();
+            parseLazyHeaders(all);
+        }
+    }
+
+    private void discardLazyHeader(String lowerCaseHeaderName) {
+        Map<String, List<LazyHeader>> lazy = lazyHeaders;
+        if (lazy != null) {
+            synchronized (lazy) {
+                List<LazyHeader> placeholders = lazy.remove(lowerCaseHeaderName);
+                if (placeholders != null) {
+                    for (LazyHeader placeholder : placeholders) {
+                        headers.remove(placeholder);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Parse the placeholders of some header names, then replace the first placeholder of each
+     * name by the parsed header (or header list) and drop the others, as an eagerly parsed
+     * message has a header list where its first header is.
+     */
+    private void parseLazyHeaders(List<List<LazyHeader>> placeholderLists) {
+        Map<SIPHeader, SIPHeader> replacements = new IdentityHashMap<SIPHeader, SIPHeader>();
+        for (List<LazyHeader> placeholders : placeholderLists) {
+            String lowerCaseHeaderName = placeholders.get(0).getName();
+            boolean present = nameTable.containsKey(lowerCaseHeaderName);
+            for (LazyHeader placeholder : placeholders) {
+                placeholder.parsed = true;
+                try {
+                    SIPHeader sipHeader = ParserFactory.createParser(placeholder.line + "\n")
+                            .parse();
+                    attachHeader(sipHeader, false);
+                } catch (SIPDuplicateHeaderException ex) {
+                    // Ignored as when the header is parsed with the message
+                } catch (ParseException ex) {
+                    // Same as the stack does for a bad header which is not mandatory
+                    addUnparsed(placeholder.line);
+                }
+            }
+            SIPHeader attached = nameTable.get(lowerCaseHeaderName);
+            if (!present && attached != null) {
+                replacements.put(placeholders.get(0), attached);
+            }
+        }
+        // The attached headers have been added at the end: move them to their placeholder
+        ConcurrentLinkedQueue<SIPHeader> reordered = new ConcurrentLinkedQueue<SIPHeader>();
+        for (SIPHeader sipHeader : headers) {
+            if (sipHeader instanceof LazyHeader && ((LazyHeader) sipHeader).parsed) {
+                SIPHeader replacement = replacements.get(sipHeader);
+                if (replacement != null) {
+                    reordered.add(replacement);
+                }
+            } else if (!replacements.containsValue(sipHeader)) {
+                reordered.add(sipHeader);
+            }
+        }
+        headers = reordered;
+    }
+
+    /**
+     * Placeholder of a header line not parsed yet in the list of headers, encoded as the original
+     * line.
+     */
+    private static final class LazyHeader extends SIPHeader {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String line;
+
+        /*
+         * Set once the line is parsed, guarded by the lock of the lazy headers.
+         */
+        private boolean parsed;
+
+        private LazyHeader(String lowerCaseHeaderName, String line) {
+            super(lowerCaseHeaderName);
+            this.line = line;
+        }
+
+        public StringBuffer encode(StringBuffer buffer) {
+            return buffer.append(line).append(NEWLINE);
+        }
+
+        protected String encodeBody() {
+            return line.substring(line.indexOf(':') + 1).trim();
+        }
+
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+
     /**
      * Add a SIP header.
      * 
@@ -1570,6 +1768,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      * @return a linked list containing unrecongnized headers.
      */
     public ListIterator<String> getUnrecognizedHeaders() {
+        parseLazyHeaders();
         return this.unrecognizedHeaders.listIterator();
     }
 
@@ -1580,6 +1779,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      *         are present in the message.
      */
     public ListIterator<String> getHeaderNames() {
+        parseLazyHeaders();
         Iterator<SIPHeader> li = this.headers.iterator();
         LinkedList<String> retval = new LinkedList<String>();
         while (li.hasNext()) {
@@ -1600,6 +1800,8 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
             return false;
         }
         SIPMessage otherMessage = (SIPMessage) other;
+        parseLazyHeaders();
+        otherMessage.parseLazyHeaders();
         Collection<SIPHeader> values = this.nameTable.values();
         Iterator<SIPHeader> it = values.iterator();
         if (nameTable.size() != otherMessage.nameTable.size()) {
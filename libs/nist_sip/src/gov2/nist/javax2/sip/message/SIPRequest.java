@@ -33,7 +33,6 @@ import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.LinkedList;
 import java.util.Set;
-import java.io.UnsupportedEncodingException;
 import java.util.Iterator;
 
 import java.text.ParseException;
@@ -624,19 +623,11 @@ public final class SIPRequest extends SIPMessage implements javax2.sip.message.R
             return new byte[0];
         }
 
-        byte[] rlbytes = null;
-        if (requestLine != null) {
-            try {
-                rlbytes = requestLine.encode().getBytes("UTF-8");
-            } catch (UnsupportedEncodingException ex) {
-                InternalErrorHandler.handleException(ex);
-            }
-        }
-        byte[] superbytes = super.encodeAsBytes(transport);
-        byte[] retval = new byte[rlbytes.length + superbytes.length];
-        System.arraycopy(rlbytes, 0, retval, 0, rlbytes.length);
-        System.arraycopy(superbytes, 0, retval, rlbytes.length, superbytes.length);
-        return retval;
+        return super.encodeAsBytes(transport);
+    }
+
+    protected void encodeFirstLine(StringBuffer buffer) {
+        requestLine.encode(buffer);
     }
 
     /**
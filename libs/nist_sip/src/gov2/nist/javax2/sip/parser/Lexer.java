@@ -33,7 +33,6 @@ import gov2.nist.javax2.sip.header.ims.*;
 
 import javax2.sip.header.*;
 
-import java.util.Hashtable;
 
 /**
  * Lexer class for the parser.
@@ -89,234 +88,259 @@ public class Lexer extends LexerCore {
         return headerValue;
     }
 
-    public void selectLexer(String lexerName) {
-        synchronized (lexerTables) {
-            // Synchronization Bug fix by Robert Rosen.
-            currentLexer = (Hashtable) lexerTables.get(lexerName);
-            this.currentLexerName = lexerName;
-            if (currentLexer == null) {
-                addLexer(lexerName);
-                if (lexerName.equals("method_keywordLexer")) {
-                    addKeyword(TokenNames.REGISTER, TokenTypes.REGISTER);
-                    addKeyword(TokenNames.ACK, TokenTypes.ACK);
-                    addKeyword(TokenNames.OPTIONS, TokenTypes.OPTIONS);
-                    addKeyword(TokenNames.BYE, TokenTypes.BYE);
-                    addKeyword(TokenNames.INVITE, TokenTypes.INVITE);
-                    addKeyword(TokenNames.SIP.toUpperCase(), TokenTypes.SIP);
-                    addKeyword(TokenNames.SIPS.toUpperCase(), TokenTypes.SIPS);
-                    addKeyword(TokenNames.SUBSCRIBE, TokenTypes.SUBSCRIBE);
-                    addKeyword(TokenNames.NOTIFY, TokenTypes.NOTIFY);
-                    addKeyword(TokenNames.MESSAGE, TokenTypes.MESSAGE);
+    /**
+     * Keywords of the method lexer
+     */
+    private static final KeywordTable METHOD_KEYWORDS = addLexer(new KeywordTable.Builder()
+            .add(TokenNames.REGISTER, TokenTypes.REGISTER)
+            .add(TokenNames.ACK, TokenTypes.ACK)
+            .add(TokenNames.OPTIONS, TokenTypes.OPTIONS)
+            .add(TokenNames.BYE, TokenTypes.BYE)
+            .add(TokenNames.INVITE, TokenTypes.INVITE)
+            .add(TokenNames.SIP.toUpperCase(), TokenTypes.SIP)
+            .add(TokenNames.SIPS.toUpperCase(), TokenTypes.SIPS)
+            .add(TokenNames.SUBSCRIBE, TokenTypes.SUBSCRIBE)
+            .add(TokenNames.NOTIFY, TokenTypes.NOTIFY)
+            .add(TokenNames.MESSAGE, TokenTypes.MESSAGE)
+
+            // JvB: added to support RFC3903
+            .add(TokenNames.PUBLISH, TokenTypes.PUBLISH)
+            .build());
 
-                    // JvB: added to support RFC3903
-                    addKeyword(TokenNames.PUBLISH, TokenTypes.PUBLISH);
+    /**
+     * Keywords of the header name lexer
+     */
+    private static final KeywordTable COMMAND_KEYWORDS = addLexer(new KeywordTable.Builder()
+            .add(ErrorInfoHeader.NAME.toUpperCase(),
+                    TokenTypes.ERROR_INFO)
+            .add(AllowEventsHeader.NAME.toUpperCase(),
+                    TokenTypes.ALLOW_EVENTS)
+            .add(AuthenticationInfoHeader.NAME.toUpperCase(),
+                    TokenTypes.AUTHENTICATION_INFO)
+            .add(EventHeader.NAME.toUpperCase(), TokenTypes.EVENT)
+            .add(MinExpiresHeader.NAME.toUpperCase(),
+                    TokenTypes.MIN_EXPIRES)
+            .add(RSeqHeader.NAME.toUpperCase(), TokenTypes.RSEQ)
+            .add(RAckHeader.NAME.toUpperCase(), TokenTypes.RACK)
+            .add(ReasonHeader.NAME.toUpperCase(),
+                    TokenTypes.REASON)
+            .add(ReplyToHeader.NAME.toUpperCase(),
+                    TokenTypes.REPLY_TO)
+            .add(SubscriptionStateHeader.NAME.toUpperCase(),
+                    TokenTypes.SUBSCRIPTION_STATE)
+            .add(TimeStampHeader.NAME.toUpperCase(),
+                    TokenTypes.TIMESTAMP)
+            .add(InReplyToHeader.NAME.toUpperCase(),
+                    TokenTypes.IN_REPLY_TO)
+            .add(MimeVersionHeader.NAME.toUpperCase(),
+                    TokenTypes.MIME_VERSION)
+            .add(AlertInfoHeader.NAME.toUpperCase(),
+                    TokenTypes.ALERT_INFO)
+            .add(FromHeader.NAME.toUpperCase(), TokenTypes.FROM)
+            .add(ToHeader.NAME.toUpperCase(), TokenTypes.TO)
+            .add(ReferToHeader.NAME.toUpperCase(),
+                    TokenTypes.REFER_TO)
+            .add(ViaHeader.NAME.toUpperCase(), TokenTypes.VIA)
+            .add(UserAgentHeader.NAME.toUpperCase(),
+                    TokenTypes.USER_AGENT)
+            .add(ServerHeader.NAME.toUpperCase(),
+                    TokenTypes.SERVER)
+            .add(AcceptEncodingHeader.NAME.toUpperCase(),
+                    TokenTypes.ACCEPT_ENCODING)
+            .add(AcceptHeader.NAME.toUpperCase(),
+                    TokenTypes.ACCEPT)
+            .add(AllowHeader.NAME.toUpperCase(), TokenTypes.ALLOW)
+            .add(RouteHeader.NAME.toUpperCase(), TokenTypes.ROUTE)
+            .add(AuthorizationHeader.NAME.toUpperCase(),
+                    TokenTypes.AUTHORIZATION)
+            .add(ProxyAuthorizationHeader.NAME.toUpperCase(),
+                    TokenTypes.PROXY_AUTHORIZATION)
+            .add(RetryAfterHeader.NAME.toUpperCase(),
+                    TokenTypes.RETRY_AFTER)
+            .add(ProxyRequireHeader.NAME.toUpperCase(),
+                    TokenTypes.PROXY_REQUIRE)
+            .add(ContentLanguageHeader.NAME.toUpperCase(),
+                    TokenTypes.CONTENT_LANGUAGE)
+            .add(UnsupportedHeader.NAME.toUpperCase(),
+                    TokenTypes.UNSUPPORTED)
+            .add(SupportedHeader.NAME.toUpperCase(),
+                    TokenTypes.SUPPORTED)
+            .add(WarningHeader.NAME.toUpperCase(),
+                    TokenTypes.WARNING)
+            .add(MaxForwardsHeader.NAME.toUpperCase(),
+                    TokenTypes.MAX_FORWARDS)
+            .add(DateHeader.NAME.toUpperCase(), TokenTypes.DATE)
+            .add(PriorityHeader.NAME.toUpperCase(),
+                    TokenTypes.PRIORITY)
+            .add(ProxyAuthenticateHeader.NAME.toUpperCase(),
+                    TokenTypes.PROXY_AUTHENTICATE)
+            .add(ContentEncodingHeader.NAME.toUpperCase(),
+                    TokenTypes.CONTENT_ENCODING)
+            .add(ContentLengthHeader.NAME.toUpperCase(),
+                    TokenTypes.CONTENT_LENGTH)
+            .add(SubjectHeader.NAME.toUpperCase(),
+                    TokenTypes.SUBJECT)
+            .add(ContentTypeHeader.NAME.toUpperCase(),
+                    TokenTypes.CONTENT_TYPE)
+            .add(ContactHeader.NAME.toUpperCase(),
+                    TokenTypes.CONTACT)
+            .add(CallIdHeader.NAME.toUpperCase(),
+                    TokenTypes.CALL_ID)
+            .add(RequireHeader.NAME.toUpperCase(),
+                    TokenTypes.REQUIRE)
+            .add(ExpiresHeader.NAME.toUpperCase(),
+                    TokenTypes.EXPIRES)
+            .add(RecordRouteHeader.NAME.toUpperCase(),
+                    TokenTypes.RECORD_ROUTE)
+            .add(OrganizationHeader.NAME.toUpperCase(),
+                    TokenTypes.ORGANIZATION)
+            .add(CSeqHeader.NAME.toUpperCase(), TokenTypes.CSEQ)
+            .add(AcceptLanguageHeader.NAME.toUpperCase(),
+                    TokenTypes.ACCEPT_LANGUAGE)
+            .add(WWWAuthenticateHeader.NAME.toUpperCase(),
+                    TokenTypes.WWW_AUTHENTICATE)
+            .add(CallInfoHeader.NAME.toUpperCase(),
+                    TokenTypes.CALL_INFO)
+            .add(ContentDispositionHeader.NAME.toUpperCase(),
+                    TokenTypes.CONTENT_DISPOSITION)
+            // And now the dreaded short forms....
+            .add(TokenNames.K.toUpperCase(), TokenTypes.SUPPORTED)
+            .add(TokenNames.C.toUpperCase(),
+                    TokenTypes.CONTENT_TYPE)
+            .add(TokenNames.E.toUpperCase(),
+                    TokenTypes.CONTENT_ENCODING)
+            .add(TokenNames.F.toUpperCase(), TokenTypes.FROM)
+            .add(TokenNames.I.toUpperCase(), TokenTypes.CALL_ID)
+            .add(TokenNames.M.toUpperCase(), TokenTypes.CONTACT)
+            .add(TokenNames.L.toUpperCase(),
+                    TokenTypes.CONTENT_LENGTH)
+            .add(TokenNames.S.toUpperCase(), TokenTypes.SUBJECT)
+            .add(TokenNames.T.toUpperCase(), TokenTypes.TO)
+            .add(TokenNames.U.toUpperCase(),
+                    TokenTypes.ALLOW_EVENTS) // JvB: added
+            .add(TokenNames.V.toUpperCase(), TokenTypes.VIA)
+            .add(TokenNames.R.toUpperCase(), TokenTypes.REFER_TO)
+            .add(TokenNames.O.toUpperCase(), TokenTypes.EVENT) // Bug fix by Mario Mantak
+            .add(TokenNames.X.toUpperCase(), TokenTypes.SESSIONEXPIRES_TO) // Bug fix by Jozef Saniga
 
-                } else if (lexerName.equals("command_keywordLexer")) {
-                    addKeyword(ErrorInfoHeader.NAME.toUpperCase(),
-                            TokenTypes.ERROR_INFO);
-                    addKeyword(AllowEventsHeader.NAME.toUpperCase(),
-                            TokenTypes.ALLOW_EVENTS);
-                    addKeyword(AuthenticationInfoHeader.NAME.toUpperCase(),
-                            TokenTypes.AUTHENTICATION_INFO);
-                    addKeyword(EventHeader.NAME.toUpperCase(), TokenTypes.EVENT);
-                    addKeyword(MinExpiresHeader.NAME.toUpperCase(),
-                            TokenTypes.MIN_EXPIRES);
-                    addKeyword(RSeqHeader.NAME.toUpperCase(), TokenTypes.RSEQ);
-                    addKeyword(RAckHeader.NAME.toUpperCase(), TokenTypes.RACK);
-                    addKeyword(ReasonHeader.NAME.toUpperCase(),
-                            TokenTypes.REASON);
-                    addKeyword(ReplyToHeader.NAME.toUpperCase(),
-                            TokenTypes.REPLY_TO);
-                    addKeyword(SubscriptionStateHeader.NAME.toUpperCase(),
-                            TokenTypes.SUBSCRIPTION_STATE);
-                    addKeyword(TimeStampHeader.NAME.toUpperCase(),
-                            TokenTypes.TIMESTAMP);
-                    addKeyword(InReplyToHeader.NAME.toUpperCase(),
-                            TokenTypes.IN_REPLY_TO);
-                    addKeyword(MimeVersionHeader.NAME.toUpperCase(),
-                            TokenTypes.MIME_VERSION);
-                    addKeyword(AlertInfoHeader.NAME.toUpperCase(),
-                            TokenTypes.ALERT_INFO);
-                    addKeyword(FromHeader.NAME.toUpperCase(), TokenTypes.FROM);
-                    addKeyword(ToHeader.NAME.toUpperCase(), TokenTypes.TO);
-                    addKeyword(ReferToHeader.NAME.toUpperCase(),
-                            TokenTypes.REFER_TO);
-                    addKeyword(ViaHeader.NAME.toUpperCase(), TokenTypes.VIA);
-                    addKeyword(UserAgentHeader.NAME.toUpperCase(),
-                            TokenTypes.USER_AGENT);
-                    addKeyword(ServerHeader.NAME.toUpperCase(),
-                            TokenTypes.SERVER);
-                    addKeyword(AcceptEncodingHeader.NAME.toUpperCase(),
-                            TokenTypes.ACCEPT_ENCODING);
-                    addKeyword(AcceptHeader.NAME.toUpperCase(),
-                            TokenTypes.ACCEPT);
-                    addKeyword(AllowHeader.NAME.toUpperCase(), TokenTypes.ALLOW);
-                    addKeyword(RouteHeader.NAME.toUpperCase(), TokenTypes.ROUTE);
-                    addKeyword(AuthorizationHeader.NAME.toUpperCase(),
-                            TokenTypes.AUTHORIZATION);
-                    addKeyword(ProxyAuthorizationHeader.NAME.toUpperCase(),
-                            TokenTypes.PROXY_AUTHORIZATION);
-                    addKeyword(RetryAfterHeader.NAME.toUpperCase(),
-                            TokenTypes.RETRY_AFTER);
-                    addKeyword(ProxyRequireHeader.NAME.toUpperCase(),
-                            TokenTypes.PROXY_REQUIRE);
-                    addKeyword(ContentLanguageHeader.NAME.toUpperCase(),
-                            TokenTypes.CONTENT_LANGUAGE);
-                    addKeyword(UnsupportedHeader.NAME.toUpperCase(),
-                            TokenTypes.UNSUPPORTED);
-                    addKeyword(SupportedHeader.NAME.toUpperCase(),
-                            TokenTypes.SUPPORTED);
-                    addKeyword(WarningHeader.NAME.toUpperCase(),
-                            TokenTypes.WARNING);
-                    addKeyword(MaxForwardsHeader.NAME.toUpperCase(),
-                            TokenTypes.MAX_FORWARDS);
-                    addKeyword(DateHeader.NAME.toUpperCase(), TokenTypes.DATE);
-                    addKeyword(PriorityHeader.NAME.toUpperCase(),
-                            TokenTypes.PRIORITY);
-                    addKeyword(ProxyAuthenticateHeader.NAME.toUpperCase(),
-                            TokenTypes.PROXY_AUTHENTICATE);
-                    addKeyword(ContentEncodingHeader.NAME.toUpperCase(),
-                            TokenTypes.CONTENT_ENCODING);
-                    addKeyword(ContentLengthHeader.NAME.toUpperCase(),
-                            TokenTypes.CONTENT_LENGTH);
-                    addKeyword(SubjectHeader.NAME.toUpperCase(),
-                            TokenTypes.SUBJECT);
-                    addKeyword(ContentTypeHeader.NAME.toUpperCase(),
-                            TokenTypes.CONTENT_TYPE);
-                    addKeyword(ContactHeader.NAME.toUpperCase(),
-                            TokenTypes.CONTACT);
-                    addKeyword(CallIdHeader.NAME.toUpperCase(),
-                            TokenTypes.CALL_ID);
-                    addKeyword(RequireHeader.NAME.toUpperCase(),
-                            TokenTypes.REQUIRE);
-                    addKeyword(ExpiresHeader.NAME.toUpperCase(),
-                            TokenTypes.EXPIRES);
-                    addKeyword(RecordRouteHeader.NAME.toUpperCase(),
-                            TokenTypes.RECORD_ROUTE);
-                    addKeyword(OrganizationHeader.NAME.toUpperCase(),
-                            TokenTypes.ORGANIZATION);
-                    addKeyword(CSeqHeader.NAME.toUpperCase(), TokenTypes.CSEQ);
-                    addKeyword(AcceptLanguageHeader.NAME.toUpperCase(),
-                            TokenTypes.ACCEPT_LANGUAGE);
-                    addKeyword(WWWAuthenticateHeader.NAME.toUpperCase(),
-                            TokenTypes.WWW_AUTHENTICATE);
-                    addKeyword(CallInfoHeader.NAME.toUpperCase(),
-                            TokenTypes.CALL_INFO);
-                    addKeyword(ContentDispositionHeader.NAME.toUpperCase(),
-                            TokenTypes.CONTENT_DISPOSITION);
-                    // And now the dreaded short forms....
-                    addKeyword(TokenNames.K.toUpperCase(), TokenTypes.SUPPORTED);
-                    addKeyword(TokenNames.C.toUpperCase(),
-                            TokenTypes.CONTENT_TYPE);
-                    addKeyword(TokenNames.E.toUpperCase(),
-                            TokenTypes.CONTENT_ENCODING);
-                    addKeyword(TokenNames.F.toUpperCase(), TokenTypes.FROM);
-                    addKeyword(TokenNames.I.toUpperCase(), TokenTypes.CALL_ID);
-                    addKeyword(TokenNames.M.toUpperCase(), TokenTypes.CONTACT);
-                    addKeyword(TokenNames.L.toUpperCase(),
-                            TokenTypes.CONTENT_LENGTH);
-                    addKeyword(TokenNames.S.toUpperCase(), TokenTypes.SUBJECT);
-                    addKeyword(TokenNames.T.toUpperCase(), TokenTypes.TO);
-                    addKeyword(TokenNames.U.toUpperCase(),
-                            TokenTypes.ALLOW_EVENTS); // JvB: added
-                    addKeyword(TokenNames.V.toUpperCase(), TokenTypes.VIA);
-                    addKeyword(TokenNames.R.toUpperCase(), TokenTypes.REFER_TO);
-                    addKeyword(TokenNames.O.toUpperCase(), TokenTypes.EVENT); // Bug fix by Mario Mantak
-                    addKeyword(TokenNames.X.toUpperCase(), TokenTypes.SESSIONEXPIRES_TO); // Bug fix by Jozef Saniga
-                    
-                    // JvB: added to support RFC3903
-                    addKeyword(SIPETagHeader.NAME.toUpperCase(),
-                            TokenTypes.SIP_ETAG);
-                    addKeyword(SIPIfMatchHeader.NAME.toUpperCase(),
-                            TokenTypes.SIP_IF_MATCH);
+            // JvB: added to support RFC3903
+            .add(SIPETagHeader.NAME.toUpperCase(),
+                    TokenTypes.SIP_ETAG)
+            .add(SIPIfMatchHeader.NAME.toUpperCase(),
+                    TokenTypes.SIP_IF_MATCH)
 
-                    // pmusgrave: Add RFC4028 and ReferredBy
-                    addKeyword(SessionExpiresHeader.NAME.toUpperCase(),
-                            TokenTypes.SESSIONEXPIRES_TO);
-                    addKeyword(MinSEHeader.NAME.toUpperCase(),
-                            TokenTypes.MINSE_TO);
-                    addKeyword(ReferredByHeader.NAME.toUpperCase(), TokenTypes.REFERREDBY_TO);
-                    addKeyword(TokenNames.B.toUpperCase(), TokenTypes.REFERREDBY_TO); // Bug fix OrangeLabs, AUFFRET Jean-Marc
+            // pmusgrave: Add RFC4028 and ReferredBy
+            .add(SessionExpiresHeader.NAME.toUpperCase(),
+                    TokenTypes.SESSIONEXPIRES_TO)
+            .add(MinSEHeader.NAME.toUpperCase(),
+                    TokenTypes.MINSE_TO)
+            .add(ReferredByHeader.NAME.toUpperCase(), TokenTypes.REFERREDBY_TO)
+            .add(TokenNames.B.toUpperCase(), TokenTypes.REFERREDBY_TO) // Bug fix OrangeLabs, AUFFRET Jean-Marc
 
 
-                    // pmusgrave RFC3891
-                    addKeyword(ReplacesHeader.NAME.toUpperCase(),
-                            TokenTypes.REPLACES_TO);
-                    //jean deruelle RFC3911
-                    addKeyword(JoinHeader.NAME.toUpperCase(),
-                            TokenTypes.JOIN_TO);
+            // pmusgrave RFC3891
+            .add(ReplacesHeader.NAME.toUpperCase(),
+                    TokenTypes.REPLACES_TO)
+            //jean deruelle RFC3911
+            .add(JoinHeader.NAME.toUpperCase(),
+                    TokenTypes.JOIN_TO)
 
-                    // IMS Headers
-                    addKeyword(PathHeader.NAME.toUpperCase(), TokenTypes.PATH);
-                    addKeyword(ServiceRouteHeader.NAME.toUpperCase(),
-                            TokenTypes.SERVICE_ROUTE);
-                    addKeyword(PAssertedIdentityHeader.NAME.toUpperCase(),
-                            TokenTypes.P_ASSERTED_IDENTITY);
-                    addKeyword(PPreferredIdentityHeader.NAME.toUpperCase(),
-                            TokenTypes.P_PREFERRED_IDENTITY);
-                    addKeyword(PrivacyHeader.NAME.toUpperCase(),
-                            TokenTypes.PRIVACY);
+            // IMS Headers
+            .add(PathHeader.NAME.toUpperCase(), TokenTypes.PATH)
+            .add(ServiceRouteHeader.NAME.toUpperCase(),
+                    TokenTypes.SERVICE_ROUTE)
+            .add(PAssertedIdentityHeader.NAME.toUpperCase(),
+                    TokenTypes.P_ASSERTED_IDENTITY)
+            .add(PPreferredIdentityHeader.NAME.toUpperCase(),
+                    TokenTypes.P_PREFERRED_IDENTITY)
+            .add(PrivacyHeader.NAME.toUpperCase(),
+                    TokenTypes.PRIVACY)
 
-                    // issued by Miguel Freitas
-                    addKeyword(PCalledPartyIDHeader.NAME.toUpperCase(),
-                            TokenTypes.P_CALLED_PARTY_ID);
-                    addKeyword(PAssociatedURIHeader.NAME.toUpperCase(),
-                            TokenTypes.P_ASSOCIATED_URI);
-                    addKeyword(PVisitedNetworkIDHeader.NAME.toUpperCase(),
-                            TokenTypes.P_VISITED_NETWORK_ID);
-                    addKeyword(PChargingFunctionAddressesHeader.NAME
-                            .toUpperCase(),
-                            TokenTypes.P_CHARGING_FUNCTION_ADDRESSES);
-                    addKeyword(PChargingVectorHeader.NAME.toUpperCase(),
-                            TokenTypes.P_VECTOR_CHARGING);
-                    addKeyword(PAccessNetworkInfoHeader.NAME.toUpperCase(),
-                            TokenTypes.P_ACCESS_NETWORK_INFO);
-                    addKeyword(PMediaAuthorizationHeader.NAME.toUpperCase(),
-                            TokenTypes.P_MEDIA_AUTHORIZATION);
+            // issued by Miguel Freitas
+            .add(PCalledPartyIDHeader.NAME.toUpperCase(),
+                    TokenTypes.P_CALLED_PARTY_ID)
+            .add(PAssociatedURIHeader.NAME.toUpperCase(),
+                    TokenTypes.P_ASSOCIATED_URI)
+            .add(PVisitedNetworkIDHeader.NAME.toUpperCase(),
+                    TokenTypes.P_VISITED_NETWORK_ID)
+            .add(PChargingFunctionAddressesHeader.NAME
+                    .toUpperCase(),
+                    TokenTypes.P_CHARGING_FUNCTION_ADDRESSES)
+            .add(PChargingVectorHeader.NAME.toUpperCase(),
+                    TokenTypes.P_VECTOR_CHARGING)
+            .add(PAccessNetworkInfoHeader.NAME.toUpperCase(),
+                    TokenTypes.P_ACCESS_NETWORK_INFO)
+            .add(PMediaAuthorizationHeader.NAME.toUpperCase(),
+                    TokenTypes.P_MEDIA_AUTHORIZATION)
 
-                    addKeyword(SecurityServerHeader.NAME.toUpperCase(),
-                            TokenTypes.SECURITY_SERVER);
-                    addKeyword(SecurityVerifyHeader.NAME.toUpperCase(),
-                            TokenTypes.SECURITY_VERIFY);
-                    addKeyword(SecurityClientHeader.NAME.toUpperCase(),
-                            TokenTypes.SECURITY_CLIENT);
+            .add(SecurityServerHeader.NAME.toUpperCase(),
+                    TokenTypes.SECURITY_SERVER)
+            .add(SecurityVerifyHeader.NAME.toUpperCase(),
+                    TokenTypes.SECURITY_VERIFY)
+            .add(SecurityClientHeader.NAME.toUpperCase(),
+                    TokenTypes.SECURITY_CLIENT)
 
-                    // added by aayush@rancore
-                    addKeyword(PUserDatabaseHeader.NAME.toUpperCase(),
-                            TokenTypes.P_USER_DATABASE);
+            // added by aayush@rancore
+            .add(PUserDatabaseHeader.NAME.toUpperCase(),
+                    TokenTypes.P_USER_DATABASE)
 
-                    // added by aayush@rancore
-                    addKeyword(PProfileKeyHeader.NAME.toUpperCase(),
-                            TokenTypes.P_PROFILE_KEY);
+            // added by aayush@rancore
+            .add(PProfileKeyHeader.NAME.toUpperCase(),
+                    TokenTypes.P_PROFILE_KEY)
 
-                    // added by aayush@rancore
-                    addKeyword(PServedUserHeader.NAME.toUpperCase(),
-                            TokenTypes.P_SERVED_USER);
+            // added by aayush@rancore
+            .add(PServedUserHeader.NAME.toUpperCase(),
+                    TokenTypes.P_SERVED_USER)
 
-                    // added by aayush@rancore
-                    addKeyword(PPreferredServiceHeader.NAME.toUpperCase(),
-                            TokenTypes.P_PREFERRED_SERVICE);
+            // added by aayush@rancore
+            .add(PPreferredServiceHeader.NAME.toUpperCase(),
+                    TokenTypes.P_PREFERRED_SERVICE)
 
-                    // added by aayush@rancore
-                    addKeyword(PAssertedServiceHeader.NAME.toUpperCase(),
-                            TokenTypes.P_ASSERTED_SERVICE);
-                    
-                    // added References header
-                    addKeyword(ReferencesHeader.NAME.toUpperCase(),TokenTypes.REFERENCES);
+            // added by aayush@rancore
+            .add(PAssertedServiceHeader.NAME.toUpperCase(),
+                    TokenTypes.P_ASSERTED_SERVICE)
 
-                    // end //
+            // added References header
+            .add(ReferencesHeader.NAME.toUpperCase(),TokenTypes.REFERENCES)
 
+            // end //
+            .build());
+
+    /**
+     * Keywords of the status line and request line lexers
+     */
+    private static final KeywordTable SIP_KEYWORDS = addLexer(new KeywordTable.Builder()
+            .add(TokenNames.SIP.toUpperCase(), TokenTypes.SIP)
+            .build());
+
+    /**
+     * Keywords of the SIP URL lexer
+     */
+    private static final KeywordTable SIP_URL_KEYWORDS = addLexer(new KeywordTable.Builder()
+            .add(TokenNames.TEL.toUpperCase(), TokenTypes.TEL)
+            .add(TokenNames.SIP.toUpperCase(), TokenTypes.SIP)
+            .add(TokenNames.SIPS.toUpperCase(), TokenTypes.SIPS)
+            .build());
+
+    public void selectLexer(String lexerName) {
+        // The keyword tables are immutable and shared without locking
+        this.currentLexer = getKeywords(lexerName);
+        this.currentLexerName = lexerName;
+    }
 
-                } else if (lexerName.equals("status_lineLexer")) {
-                    addKeyword(TokenNames.SIP.toUpperCase(), TokenTypes.SIP);
-                } else if (lexerName.equals("request_lineLexer")) {
-                    addKeyword(TokenNames.SIP.toUpperCase(), TokenTypes.SIP);
-                } else if (lexerName.equals("sip_urlLexer")) {
-                    addKeyword(TokenNames.TEL.toUpperCase(), TokenTypes.TEL);
-                    addKeyword(TokenNames.SIP.toUpperCase(), TokenTypes.SIP);
-                    addKeyword(TokenNames.SIPS.toUpperCase(), TokenTypes.SIPS);
-                }
-            }
+    private static KeywordTable getKeywords(String lexerName) {
+        switch (lexerName) {
+            case "command_keywordLexer":
+                return COMMAND_KEYWORDS;
+            case "method_keywordLexer":
+                return METHOD_KEYWORDS;
+            case "status_lineLexer":
+            case "request_lineLexer":
+                return SIP_KEYWORDS;
+            case "sip_urlLexer":
+                return SIP_URL_KEYWORDS;
+            default:
+                return KeywordTable.EMPTY;
         }
     }
 }
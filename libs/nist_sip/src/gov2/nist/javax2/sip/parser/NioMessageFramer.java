@@ -0,0 +1,222 @@
+/*
+* Conditions Of Use
+*
+* This software was developed by employees of the National Institute of
+* Standards and Technology (NIST), an agency of the Federal Government.
+* Pursuant to title 15 Untied States Code Section 105, works of NIST
+* employees are not subject to copyright protection in the United States
+* and are considered to be in the public domain.  As a result, a formal
+* license is not needed to use the software.
+*
+* This software is provided by NIST as a service and is expressly
+* provided "AS IS."  NIST MAKES NO WARRANTY OF ANY KIND, EXPRESS, IMPLIED
+* OR STATUTORY, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTY OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, NON-INFRINGEMENT
+* AND DATA ACCURACY.  NIST does not warrant or make any representations
+* regarding the use of the software or the results thereof, including but
+* not limited to the correctness, accuracy, reliability or usefulness of
+* the software.
+*
+* Permission to use this software is contingent upon your acceptance
+* of the terms of this agreement
+*
+* .
+*
+*/
+package gov2.nist.javax2.sip.parser;
+
+import java.nio.ByteBuffer;
+import java.text.ParseException;
+
+/**
+ * Extracts the SIP messages received on a stream from the receive buffer of
+ * the connection. The end of the headers and the Content-Length header are
+ * located on the raw bytes, so a message is handed to the parser as a single
+ * array once it is complete, without copying the stream into a pipe nor
+ * blocking a thread per connection. The scan resumes where it stopped when
+ * a message is received in several reads. Leading CRLFs (keep-alives) are
+ * skipped.
+ *
+ * @version 1.2
+ *
+ * @see PipelinedMsgParser
+ */
+public final class NioMessageFramer {
+
+    private static final byte CR = '\r';
+
+    private static final byte LF = '\n';
+
+    private static final String CONTENT_LENGTH = "content-length";
+
+    private static final String CONTENT_LENGTH_COMPACT = "l";
+
+    private final int maxMessageSize;
+
+    /*
+     * Number of bytes of the current message already scanned for the end of
+     * the headers.
+     */
+    private int scanOffset;
+
+    /*
+     * Length of the headers of the current message, empty line included, or
+     * -1 while the end of the headers has not been received.
+     */
+    private int headerLength = -1;
+
+    private int contentLength;
+
+    /**
+     * Constructor
+     *
+     * @param maxMessageSize
+     *            maximum size of a message, 0 for no limit
+     */
+    public NioMessageFramer(int maxMessageSize) {
+        this.maxMessageSize = maxMessageSize;
+    }
+
+    /**
+     * Extract the next complete message from a buffer. The position of the
+     * buffer is moved past the message, or past the leading CRLFs if the
+     * message is not complete yet. The remaining bytes are kept by the caller
+     * and presented again with the next received ones.
+     *
+     * @param buffer
+     *            buffer of the received bytes, ready to be read
+     * @return the bytes of the message, or null if it is not complete
+     * @throws ParseException
+     *             if the message is too large or its Content-Length is bad;
+     *             the stream can't be framed any more.
+     */
+    public byte[] nextMessage(ByteBuffer buffer) throws ParseException {
+        if (headerLength < 0) {
+            int start = buffer.position();
+            int limit = buffer.limit();
+            if (scanOffset == 0) {
+                while (start < limit
+                        && (buffer.get(start) == CR || buffer.get(start) == LF)) {
+                    start++;
+                }
+                buffer.position(start);
+            }
+            for (int i = start + scanOffset; i < limit; i++) {
+                if (buffer.get(i) != LF || i == start) {
+                    continue;
+                }
+                if (buffer.get(i - 1) == LF
+                        || (i - 2 >= start && buffer.get(i - 1) == CR && buffer
+                                .get(i - 2) == LF)) {
+                    headerLength = i + 1 - start;
+                    break;
+                }
+            }
+            if (headerLength < 0) {
+                scanOffset = limit - start;
+                if (maxMessageSize > 0 && scanOffset > maxMessageSize) {
+                    throw new ParseException("Max message size exceeded", 0);
+                }
+                return null;
+            }
+            contentLength = getContentLength(buffer, start, start
+                    + headerLength);
+            if (maxMessageSize > 0
+                    && headerLength + contentLength > maxMessageSize) {
+                throw new ParseException("Max message size exceeded", 0);
+            }
+        }
+        int messageLength = headerLength + contentLength;
+        if (buffer.remaining() < messageLength) {
+            return null;
+        }
+        byte[] message = new byte[messageLength];
+        buffer.get(message);
+        scanOffset = 0;
+        headerLength = -1;
+        contentLength = 0;
+        return message;
+    }
+
+    /**
+     * Returns the length of the message being received, so that the receive
+     * buffer can be sized for it.
+     *
+     * @return length of the message, or 0 while its headers are incomplete
+     */
+    public int getMessageLength() {
+        return headerLength < 0 ? 0 : headerLength + contentLength;
+    }
+
+    /*
+     * Get the value of the Content-Length header, in its long or compact
+     * form, from the headers between start and end. A message without the
+     * header has no body.
+     */
+    private static int getContentLength(ByteBuffer buffer, int start, int end)
+            throws ParseException {
+        int lineStart = start;
+        while (lineStart < end) {
+            int lineEnd = lineStart;
+            while (lineEnd < end && buffer.get(lineEnd) != LF) {
+                lineEnd++;
+            }
+            int colon = lineStart;
+            while (colon < lineEnd && buffer.get(colon) != ':') {
+                colon++;
+            }
+            if (colon < lineEnd
+                    && (isHeaderName(buffer, lineStart, colon, CONTENT_LENGTH) || isHeaderName(
+                            buffer, lineStart, colon, CONTENT_LENGTH_COMPACT))) {
+                return parseLength(buffer, colon + 1, lineEnd);
+            }
+            lineStart = lineEnd + 1;
+        }
+        return 0;
+    }
+
+    /*
+     * Case insensitive match of a header name, possibly followed by blanks
+     * before the colon.
+     */
+    private static boolean isHeaderName(ByteBuffer buffer, int start,
+            int colon, String name) {
+        int end = colon;
+        while (end > start
+                && (buffer.get(end - 1) == ' ' || buffer.get(end - 1) == '\t')) {
+            end--;
+        }
+        if (end - start != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (Character.toLowerCase((char) buffer.get(start + i)) != name
+                    .charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int parseLength(ByteBuffer buffer, int start, int end)
+            throws ParseException {
+        long length = 0;
+        int digits = 0;
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                length = length * 10 + (b - '0');
+                if (length > Integer.MAX_VALUE) {
+                    throw new ParseException("Bad Content-Length", i - start);
+                }
+                digits++;
+            } else if (b != ' ' && b != '\t' && b != CR) {
+                throw new ParseException("Bad Content-Length", i - start);
+            }
+        }
+        if (digits == 0) {
+            throw new ParseException("Bad Content-Length", 0);
+        }
+        return (int) length;
+    }
+}
@@ -79,6 +79,8 @@ public class StringMsgParser {
 
     private static boolean computeContentLengthFromMessage = false;
 
+    private static boolean lazyHeaderParsing = false;
+
     /**
      * @since v0.9
      */
@@ -391,6 +393,18 @@ public class StringMsgParser {
         if (header == null || header.length() == 0)
             return;
 
+        if (lazyHeaderParsing) {
+            int colon = header.indexOf(':');
+            if (colon >= 1) {
+                String headerName = ParserFactory.expandCompactName(SIPHeaderNamesCache
+                        .toLowerCase(header.substring(0, colon).trim()));
+                if (!isParsedEagerly(headerName)) {
+                    message.addLazyHeader(headerName, header);
+                    return;
+                }
+            }
+        }
+
         HeaderParser headerParser = null;
         try {
             headerParser = ParserFactory.createParser(header + "\n");
@@ -616,6 +630,36 @@ public class StringMsgParser {
         StringMsgParser.computeContentLengthFromMessage = computeContentLengthFromMessage;
     }
 
+    /**
+     * Only parse the headers used to match the transactions when a message is
+     * parsed, the other headers being parsed when first accessed.
+     *
+     * @param lazyHeaderParsing true to parse the headers lazily
+     */
+    public static void setLazyHeaderParsing(boolean lazyHeaderParsing) {
+        StringMsgParser.lazyHeaderParsing = lazyHeaderParsing;
+    }
+
+    /**
+     * The headers used to match the transactions and to read the body are
+     * parsed with the message, so that a bad one is reported to the parse
+     * exception listener.
+     */
+    private static boolean isParsedEagerly(String lowerCaseHeaderName) {
+        switch (lowerCaseHeaderName) {
+            case "via":
+            case "from":
+            case "to":
+            case "call-id":
+            case "cseq":
+            case "content-length":
+            case "max-forwards":
+                return true;
+            default:
+                return false;
+        }
+    }
+
 
 
     /**
@@ -412,7 +412,7 @@ class IOHandler {
      * @param localAddress the local address
      * @param message the SIP message to be updated
      */
-    private void updateViaHeaderPort(int localPort, InetAddress localAddress, SIPMessage message) {
+    protected void updateViaHeaderPort(int localPort, InetAddress localAddress, SIPMessage message) {
 		if (localAddress == null) {
 			return;
 		}
@@ -443,7 +443,7 @@ class IOHandler {
      * @param localPort the local port
      * @param message the SIP message to be updated
      */
-    private void updateContactHeaderPort(int localPort, SIPMessage message) {
+    protected void updateContactHeaderPort(int localPort, SIPMessage message) {
         if (message != null && message.getContactHeader() != null) {
             ContactHeader contactHeader = message.getContactHeader();
             Address contactAddress = contactHeader.getAddress();
@@ -0,0 +1,806 @@
+/*
+* Conditions Of Use
+*
+* This software was developed by employees of the National Institute of
+* Standards and Technology (NIST), an agency of the Federal Government.
+* Pursuant to title 15 Untied States Code Section 105, works of NIST
+* employees are not subject to copyright protection in the United States
+* and are considered to be in the public domain.  As a result, a formal
+* license is not needed to use the software.
+*
+* This software is provided by NIST as a service and is expressly
+* provided "AS IS."  NIST MAKES NO WARRANTY OF ANY KIND, EXPRESS, IMPLIED
+* OR STATUTORY, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTY OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, NON-INFRINGEMENT
+* AND DATA ACCURACY.  NIST does not warrant or make any representations
+* regarding the use of the software or the results thereof, including but
+* not limited to the correctness, accuracy, reliability or usefulness of
+* the software.
+*
+* Permission to use this software is contingent upon your acceptance
+* of the terms of this agreement
+*
+* .
+*
+*/
+package gov2.nist.javax2.sip.stack;
+
+import gov2.nist.core.InternalErrorHandler;
+import gov2.nist.core.ServerLogger;
+import gov2.nist.javax2.sip.header.CSeq;
+import gov2.nist.javax2.sip.header.CallID;
+import gov2.nist.javax2.sip.header.From;
+import gov2.nist.javax2.sip.header.RequestLine;
+import gov2.nist.javax2.sip.header.StatusLine;
+import gov2.nist.javax2.sip.header.To;
+import gov2.nist.javax2.sip.header.Via;
+import gov2.nist.javax2.sip.header.ViaList;
+import gov2.nist.javax2.sip.message.SIPMessage;
+import gov2.nist.javax2.sip.message.SIPRequest;
+import gov2.nist.javax2.sip.message.SIPResponse;
+import gov2.nist.javax2.sip.parser.NioMessageFramer;
+import gov2.nist.javax2.sip.parser.SIPMessageListener;
+import gov2.nist.javax2.sip.parser.StringMsgParser;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.text.ParseException;
+import java.util.LinkedList;
+
+import javax2.sip.address.Hop;
+
+/**
+ * Message channel of a non-blocking TCP connection. The reads and the writes
+ * which could not complete at once are performed by the selector thread of
+ * the {@link NioTcpMessageProcessor}. The received bytes are accumulated in
+ * a buffer from which a {@link NioMessageFramer} extracts the complete
+ * messages, which are then parsed and handed over to a worker thread of the
+ * processor which processes them like on a {@link TCPMessageChannel}, one at
+ * a time and in their order of reception. A message is sent by the calling thread as long
+ * as the socket accepts it, the rest being queued for the selector thread.
+ *
+ * @version 1.2
+ *
+ * @see NioTcpMessageProcessor
+ */
+public class NioTcpMessageChannel extends MessageChannel implements
+        SIPMessageListener, RawMessageChannel {
+
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+
+    // ***###*** DTAG, AS 2012-09-10; work around Android issue 34727 (large TCP packets from or to port 5060 not send)
+    private static final int SMALL_CHUNK_SIZE = 512;
+
+    protected final SocketChannel socketChannel;
+
+    protected SIPTransactionStack sipStack;
+
+    protected NioTcpMessageProcessor nioTcpMessageProcessor;
+
+    protected String key;
+
+    protected boolean isCached;
+
+    protected String myAddress;
+
+    protected int myPort;
+
+    protected InetAddress peerAddress;
+
+    protected int peerPort;
+
+    protected String peerProtocol;
+
+    private final boolean smallChunks;
+
+    private final NioMessageFramer framer;
+
+    /*
+     * Received bytes not framed yet, only accessed by the selector thread.
+     */
+    private ByteBuffer readBuffer;
+
+    private final LinkedList<ByteBuffer> writeQueue = new LinkedList<ByteBuffer>();
+
+    /*
+     * Parsed messages waiting for a worker thread, in their order of
+     * reception.
+     */
+    private final LinkedList<SIPMessage> receivedMessages = new LinkedList<SIPMessage>();
+
+    /*
+     * True while a worker thread is processing the received messages,
+     * guarded by receivedMessages.
+     */
+    private boolean dispatching;
+
+    private SelectionKey selectionKey;
+
+    private volatile boolean closed;
+
+    /**
+     * Constructor - gets called from the message processor with a connection
+     * it has accepted.
+     *
+     * @param socketChannel accepted connection.
+     * @param sipStack Ptr to SIP Stack
+     * @param msgProcessor message processor which accepted the connection.
+     */
+    protected NioTcpMessageChannel(SocketChannel socketChannel,
+            SIPTransactionStack sipStack, NioTcpMessageProcessor msgProcessor)
+            throws IOException {
+        if (sipStack.isLoggingEnabled()) {
+            sipStack.getStackLogger().logDebug(
+                    "creating new " + getClass().getSimpleName());
+        }
+        Socket socket = socketChannel.socket();
+        this.socketChannel = socketChannel;
+        this.sipStack = sipStack;
+        this.nioTcpMessageProcessor = msgProcessor;
+        super.messageProcessor = msgProcessor;
+        this.peerAddress = socket.getInetAddress();
+        this.peerPort = socket.getPort();
+        this.peerProtocol = getTransport();
+        this.myAddress = msgProcessor.getIpAddress().getHostAddress();
+        this.myPort = msgProcessor.getPort();
+        this.smallChunks = socket.getLocalPort() == 5060 || peerPort == 5060;
+        this.framer = new NioMessageFramer(sipStack.getMaxMessageSize());
+        this.readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        socketChannel.configureBlocking(false);
+    }
+
+    /**
+     * Constructor - connects to the given inet address.
+     *
+     * @param inetAddr inet address to connect to.
+     * @param port port to connect to.
+     * @param sipStack is the sip sipStack from which we are created.
+     * @param msgProcessor message processor of the connection.
+     * @throws IOException if we cannot connect.
+     */
+    protected NioTcpMessageChannel(InetAddress inetAddr, int port,
+            SIPTransactionStack sipStack, NioTcpMessageProcessor msgProcessor)
+            throws IOException {
+        this(connect(inetAddr, port, msgProcessor), sipStack, msgProcessor);
+    }
+
+    private static SocketChannel connect(InetAddress inetAddr, int port,
+            NioTcpMessageProcessor msgProcessor) throws IOException {
+        SocketChannel socketChannel = SocketChannel.open();
+        try {
+            socketChannel.socket().bind(
+                    new InetSocketAddress(msgProcessor.getIpAddress(), 0));
+            socketChannel.connect(new InetSocketAddress(inetAddr, port));
+            return socketChannel;
+        } catch (IOException ex) {
+            socketChannel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Register the connection with the selector, from the selector thread.
+     */
+    void register(Selector selector) {
+        try {
+            selectionKey = socketChannel.register(selector,
+                    SelectionKey.OP_READ, this);
+            updateInterestOps();
+        } catch (ClosedChannelException ex) {
+            close();
+        }
+    }
+
+    /**
+     * Select the writes as long as some are pending, from the selector
+     * thread.
+     */
+    void updateInterestOps() {
+        SelectionKey key = selectionKey;
+        if (key == null || !key.isValid()) {
+            return;
+        }
+        synchronized (writeQueue) {
+            key.interestOps(writeQueue.isEmpty() ? SelectionKey.OP_READ
+                    : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * Read the available bytes, from the selector thread, and process the
+     * messages they complete.
+     *
+     * @throws IOException if the connection is broken or closed by the peer.
+     */
+    protected void readData() throws IOException {
+        if (socketChannel.read(getReadBuffer(0)) < 0) {
+            throw new EOFException("Connection closed by peer");
+        }
+        processReadBuffer();
+    }
+
+    /**
+     * Get the buffer of the received bytes, ready to be filled.
+     *
+     * @param minRemaining space which must be left in the buffer
+     * @return the buffer
+     */
+    protected ByteBuffer getReadBuffer(int minRemaining) {
+        // Room for the whole message being received, once its length is known
+        int needed = Math.max(Math.max(minRemaining, 1), framer.getMessageLength()
+                - readBuffer.position());
+        if (readBuffer.remaining() < needed) {
+            int capacity = Math.max(readBuffer.capacity() * 2,
+                    readBuffer.position() + needed);
+            ByteBuffer buffer = ByteBuffer.allocate(capacity);
+            readBuffer.flip();
+            buffer.put(readBuffer);
+            readBuffer = buffer;
+        }
+        return readBuffer;
+    }
+
+    /**
+     * Process the complete messages of the buffer of the received bytes.
+     *
+     * @throws IOException if the stream can't be framed any more.
+     */
+    protected void processReadBuffer() throws IOException {
+        readBuffer.flip();
+        try {
+            byte[] message;
+            while (!closed && (message = framer.nextMessage(readBuffer)) != null) {
+                parseMessage(message);
+            }
+        } catch (ParseException ex) {
+            throw new IOException(ex.getMessage());
+        } finally {
+            readBuffer.compact();
+        }
+    }
+
+    private void parseMessage(byte[] message) {
+        StringMsgParser parser = new StringMsgParser(this);
+        SIPMessage sipMessage;
+        try {
+            sipMessage = parser.parseSIPMessage(message);
+        } catch (ParseException ex) {
+            // Just ignore the parse exception.
+            if (sipStack.isLoggingEnabled())
+                sipStack.getStackLogger().logError("Detected a parse error", ex);
+            return;
+        }
+        if (sipMessage == null) {
+            return;
+        }
+        dispatchMessage(sipMessage);
+    }
+
+    /**
+     * Hand a parsed message over to a worker thread, as its processing may
+     * wait for its transaction and must not hold the selector thread.
+     */
+    private void dispatchMessage(SIPMessage sipMessage) {
+        synchronized (receivedMessages) {
+            receivedMessages.addLast(sipMessage);
+            if (dispatching) {
+                // Processed after the messages received before it
+                return;
+            }
+            dispatching = true;
+        }
+        boolean executed = nioTcpMessageProcessor.execute(new Runnable() {
+            public void run() {
+                processReceivedMessages();
+            }
+        });
+        if (!executed) {
+            synchronized (receivedMessages) {
+                receivedMessages.clear();
+                dispatching = false;
+            }
+        }
+    }
+
+    /**
+     * Process the received messages until none is left, from a worker
+     * thread.
+     */
+    private void processReceivedMessages() {
+        while (true) {
+            SIPMessage sipMessage;
+            synchronized (receivedMessages) {
+                if (closed) {
+                    receivedMessages.clear();
+                }
+                sipMessage = receivedMessages.poll();
+                if (sipMessage == null) {
+                    dispatching = false;
+                    return;
+                }
+            }
+            try {
+                processMessage(sipMessage);
+            } catch (Exception ex) {
+                // fatal error in processing - close the connection.
+                if (sipStack.isLoggingEnabled())
+                    sipStack.getStackLogger().logException(ex);
+                close();
+            }
+        }
+    }
+
+    /**
+     * Write the pending data, from the selector thread.
+     *
+     * @throws IOException if the connection is broken.
+     */
+    void writeData() throws IOException {
+        synchronized (writeQueue) {
+            while (!writeQueue.isEmpty()) {
+                ByteBuffer data = writeQueue.getFirst();
+                writeBuffer(data);
+                if (data.hasRemaining()) {
+                    return;
+                }
+                writeQueue.removeFirst();
+            }
+            selectionKey.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * Write data on the connection, or queue what the socket can't accept
+     * for the selector thread.
+     *
+     * @param data data to write, not to be modified by the caller afterwards.
+     * @throws IOException if the connection is closed or broken.
+     */
+    protected void queueData(ByteBuffer data) throws IOException {
+        synchronized (writeQueue) {
+            if (closed) {
+                throw new ClosedChannelException();
+            }
+            if (writeQueue.isEmpty()) {
+                writeBuffer(data);
+                if (!data.hasRemaining()) {
+                    return;
+                }
+            }
+            writeQueue.addLast(data);
+        }
+        nioTcpMessageProcessor.updateInterestOps(this);
+    }
+
+    private void writeBuffer(ByteBuffer data) throws IOException {
+        int limit = data.limit();
+        try {
+            while (data.hasRemaining()) {
+                if (smallChunks) {
+                    data.limit(Math.min(limit, data.position() + SMALL_CHUNK_SIZE));
+                }
+                if (socketChannel.write(data) == 0) {
+                    return;
+                }
+                data.limit(limit);
+            }
+        } finally {
+            data.limit(limit);
+        }
+    }
+
+    /**
+     * Write the bytes of an encoded message.
+     *
+     * @param message message encoded in the bytes.
+     * @param bytes encoded message.
+     * @throws IOException if the connection is closed or broken.
+     */
+    protected void sendBytes(SIPMessage message, byte[] bytes) throws IOException {
+        queueData(ByteBuffer.wrap(bytes));
+    }
+
+    private void writeMessage(SIPMessage message) throws IOException {
+        if (sipStack.isLoggingEnabled()) {
+            sipStack.getStackLogger().logDebug(
+                    "sendBytes " + getTransport() + " inAddr "
+                            + peerAddress.getHostAddress() + " port = " + peerPort);
+        }
+        Socket socket = socketChannel.socket();
+        // Update Via header to reflect local port
+        sipStack.ioHandler.updateViaHeaderPort(socket.getLocalPort(),
+                socket.getLocalAddress(), message);
+        // Update Contact header to reflect local port
+        sipStack.ioHandler.updateContactHeaderPort(socket.getLocalPort(), message);
+        sendBytes(message, message.encodeAsBytes(getTransport()));
+    }
+
+    /**
+     * Returns "true" as this is a reliable transport.
+     */
+    public boolean isReliable() {
+        return true;
+    }
+
+    /**
+     * Returns true until the channel is closed.
+     */
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    /**
+     * Close the message channel.
+     */
+    public void close() {
+        synchronized (writeQueue) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            writeQueue.clear();
+        }
+        try {
+            socketChannel.close();
+            if (sipStack.isLoggingEnabled())
+                sipStack.getStackLogger().logDebug("Closing message Channel " + this);
+        } catch (IOException ex) {
+            if (sipStack.isLoggingEnabled())
+                sipStack.getStackLogger().logDebug("Error closing socket " + ex);
+        }
+        nioTcpMessageProcessor.remove(this);
+    }
+
+    /**
+     * Get my SIP Stack.
+     *
+     * @return The SIP Stack for this message channel.
+     */
+    public SIPTransactionStack getSIPStack() {
+        return sipStack;
+    }
+
+    /**
+     * get the transport string.
+     *
+     * @return "TCP" in this case.
+     */
+    public String getTransport() {
+        return "TCP";
+    }
+
+    /**
+     * get the address of the client that sent the data to us.
+     *
+     * @return Address of the client that sent us data that resulted in this
+     *         channel being created.
+     */
+    public String getPeerAddress() {
+        if (peerAddress != null) {
+            return peerAddress.getHostAddress();
+        } else
+            return getHost();
+    }
+
+    protected InetAddress getPeerInetAddress() {
+        return peerAddress;
+    }
+
+    public String getPeerProtocol() {
+        return this.peerProtocol;
+    }
+
+    /**
+     * Return a formatted message to the client. We try to re-connect with the
+     * peer on the other end if possible.
+     *
+     * @param sipMessage Message to send.
+     * @throws IOException If there is an error sending the message
+     */
+    public void sendMessage(SIPMessage sipMessage) throws IOException {
+        long time = System.currentTimeMillis();
+
+        // JvB: also retry for responses, if the connection is gone we should
+        // try to reconnect
+        this.sendMessage(sipMessage, peerAddress, peerPort, true);
+
+        if (this.sipStack.getStackLogger().isLoggingEnabled(ServerLogger.TRACE_MESSAGES))
+            logMessage(sipMessage, peerAddress, peerPort, time);
+    }
+
+    /**
+     * Send a message to a specified address, on this connection if it is
+     * still open and connected to it, else on the connection of the message
+     * processor to the address.
+     *
+     * @param message message to send.
+     * @param receiverAddress Address to send it to.
+     * @param receiverPort Receiver port.
+     * @param retry reconnect once if the connection turns out to be broken.
+     * @throws IOException If there is a problem connecting or sending.
+     */
+    public void sendMessage(SIPMessage message, InetAddress receiverAddress,
+            int receiverPort, boolean retry) throws IOException {
+        if (message == null || receiverAddress == null)
+            throw new IllegalArgumentException("Null argument");
+        NioTcpMessageChannel channel = getMessageChannel(receiverAddress,
+                receiverPort);
+        try {
+            channel.writeMessage(message);
+        } catch (IOException ex) {
+            if (!retry) {
+                throw ex;
+            }
+            if (sipStack.isLoggingEnabled())
+                sipStack.getStackLogger().logDebug(
+                        "IOException occured, reconnecting " + ex);
+            // old connection is bad.
+            channel.close();
+            getMessageChannel(receiverAddress, receiverPort).writeMessage(message);
+        }
+    }
+
+    private NioTcpMessageChannel getMessageChannel(InetAddress receiverAddress,
+            int receiverPort) throws IOException {
+        if (!closed && receiverPort == peerPort
+                && receiverAddress.equals(peerAddress)) {
+            return this;
+        }
+        return (NioTcpMessageChannel) nioTcpMessageProcessor.createMessageChannel(
+                receiverAddress, receiverPort);
+    }
+
+    /**
+     * Exception processor for exceptions detected from the parser. (This is
+     * invoked by the parser when an error is detected).
+     *
+     * @param sipMessage -- the message that incurred the error.
+     * @param ex -- parse exception detected by the parser.
+     * @param header -- header that caused the error.
+     * @throws ParseException Thrown if we want to reject the message.
+     */
+    public void handleException(ParseException ex, SIPMessage sipMessage,
+            Class hdrClass, String header, String message) throws ParseException {
+        if (sipStack.isLoggingEnabled())
+            sipStack.getStackLogger().logException(ex);
+        // Log the bad message for later reference.
+        if ((hdrClass != null)
+                && (hdrClass.equals(From.class) || hdrClass.equals(To.class)
+                        || hdrClass.equals(CSeq.class) || hdrClass.equals(Via.class)
+                        || hdrClass.equals(CallID.class)
+                        || hdrClass.equals(RequestLine.class) || hdrClass
+                        .equals(StatusLine.class))) {
+            if (sipStack.isLoggingEnabled()) {
+                sipStack.getStackLogger().logDebug(
+                        "Encountered Bad Message \n" + sipMessage.toString());
+            }
+
+            // JvB: send a 400 response for requests (except ACK)
+            String msgString = sipMessage.toString();
+            if (!msgString.startsWith("SIP/") && !msgString.startsWith("ACK ")) {
+
+                SIPMessage badReqRes = createBadReqRes(msgString, ex);
+                if (badReqRes != null) {
+                    if (sipStack.isLoggingEnabled()) {
+                        sipStack.getStackLogger().logDebug(
+                                "Sending automatic 400 Bad Request:");
+                        sipStack.getStackLogger().logDebug(msgString);
+                    }
+                    try {
+                        this.sendMessage(badReqRes, this.getPeerInetAddress(),
+                                this.getPeerPort(), false);
+                    } catch (IOException e) {
+                        if (sipStack.isLoggingEnabled())
+                            this.sipStack.getStackLogger().logException(e);
+                    }
+                } else {
+                    if (sipStack.isLoggingEnabled()) {
+                        sipStack.getStackLogger().logDebug(
+                                "Could not formulate automatic 400 Bad Request");
+                    }
+                }
+            }
+
+            throw ex;
+        } else {
+            sipMessage.addUnparsed(header);
+        }
+    }
+
+    /**
+     * Gets invoked on a worker thread for each message parsed from the
+     * connection, in the order of reception.
+     *
+     * @param sipMessage Mesage to process (this calls the application for
+     *        processing the message).
+     */
+    public void processMessage(SIPMessage sipMessage) throws Exception {
+        if (sipMessage.getFrom() == null || sipMessage.getTo() == null
+                || sipMessage.getCallId() == null || sipMessage.getCSeq() == null
+                || sipMessage.getViaHeaders() == null) {
+            String badmsg = sipMessage.encode();
+            if (sipStack.isLoggingEnabled()) {
+                sipStack.getStackLogger().logDebug(">>> Dropped Bad Msg");
+                sipStack.getStackLogger().logDebug(badmsg);
+            }
+            return;
+        }
+
+        ViaList viaList = sipMessage.getViaHeaders();
+        // For a request first via header tells where the message is coming
+        // from. For response, this has already been recorded in the outgoing
+        // message.
+        if (sipMessage instanceof SIPRequest) {
+            Via v = (Via) viaList.getFirst();
+            Hop hop = sipStack.addressResolver.resolveAddress(v.getHop());
+            this.peerProtocol = v.getTransport();
+            try {
+                // JvB: if sender added 'rport', must always set received
+                if (v.hasParameter(Via.RPORT)
+                        || !hop.getHost().equals(this.peerAddress.getHostAddress())) {
+                    v.setParameter(Via.RECEIVED, this.peerAddress.getHostAddress());
+                }
+                v.setParameter(Via.RPORT, Integer.toString(this.peerPort));
+            } catch (java.text.ParseException ex) {
+                InternalErrorHandler.handleException(ex, sipStack.getStackLogger());
+            }
+            // Use this for outgoing messages as well.
+            if (!this.isCached) {
+                nioTcpMessageProcessor.cacheMessageChannel(this);
+                this.isCached = true;
+            }
+        }
+
+        long receptionTime = System.currentTimeMillis();
+
+        if (sipMessage instanceof SIPRequest) {
+            // This is a request - process the request.
+            SIPRequest sipRequest = (SIPRequest) sipMessage;
+            if (sipStack.isLoggingEnabled()) {
+                sipStack.getStackLogger().logDebug("----Processing Message---");
+            }
+            if (this.sipStack.getStackLogger().isLoggingEnabled(ServerLogger.TRACE_MESSAGES)) {
+                sipStack.serverLogger.logMessage(sipMessage, this.getPeerHostPort().toString(),
+                        this.getMessageProcessor().getIpAddress().getHostAddress() + ":"
+                                + this.getMessageProcessor().getPort(), false, receptionTime);
+            }
+            // Check for reasonable size - reject message if it is too long.
+            if (sipStack.getMaxMessageSize() > 0
+                    && sipRequest.getSize()
+                            + (sipRequest.getContentLength() == null ? 0 : sipRequest
+                                    .getContentLength().getContentLength()) > sipStack
+                            .getMaxMessageSize()) {
+                SIPResponse sipResponse = sipRequest
+                        .createResponse(SIPResponse.MESSAGE_TOO_LARGE);
+                this.sendMessage(sipResponse, peerAddress, peerPort, false);
+                throw new Exception("Message size exceeded");
+            }
+
+            ServerRequestInterface sipServerRequest = sipStack.newSIPServerRequest(
+                    sipRequest, this);
+            if (sipServerRequest != null) {
+                try {
+                    sipServerRequest.processRequest(sipRequest, this);
+                } finally {
+                    if (sipServerRequest instanceof SIPTransaction) {
+                        SIPServerTransaction sipServerTx = (SIPServerTransaction) sipServerRequest;
+                        if (!sipServerTx.passToListener())
+                            ((SIPTransaction) sipServerRequest).releaseSem();
+                    }
+                }
+            } else {
+                if (sipStack.isLoggingEnabled())
+                    this.sipStack.getStackLogger().logWarning(
+                            "Dropping request -- could not acquire semaphore in 10 sec");
+            }
+
+        } else {
+            SIPResponse sipResponse = (SIPResponse) sipMessage;
+            try {
+                sipResponse.checkHeaders();
+            } catch (ParseException ex) {
+                if (sipStack.isLoggingEnabled())
+                    sipStack.getStackLogger().logError(
+                            "Dropping Badly formatted response message >>> " + sipResponse);
+                return;
+            }
+            // Check the size of the response. If it is too large dump it
+            // silently.
+            if (sipStack.getMaxMessageSize() > 0
+                    && sipResponse.getSize()
+                            + (sipResponse.getContentLength() == null ? 0 : sipResponse
+                                    .getContentLength().getContentLength()) > sipStack
+                            .getMaxMessageSize()) {
+                if (sipStack.isLoggingEnabled())
+                    this.sipStack.getStackLogger().logDebug("Message size exceeded");
+                return;
+            }
+            ServerResponseInterface sipServerResponse = sipStack.newSIPServerResponse(
+                    sipResponse, this);
+            if (sipServerResponse != null) {
+                try {
+                    if (sipServerResponse instanceof SIPClientTransaction
+                            && !((SIPClientTransaction) sipServerResponse)
+                                    .checkFromTag(sipResponse)) {
+                        if (sipStack.isLoggingEnabled())
+                            sipStack.getStackLogger().logError(
+                                    "Dropping response message with invalid tag >>> "
+                                            + sipResponse);
+                        return;
+                    }
+
+                    sipServerResponse.processResponse(sipResponse, this);
+                } finally {
+                    if (sipServerResponse instanceof SIPTransaction
+                            && !((SIPTransaction) sipServerResponse).passToListener())
+                        ((SIPTransaction) sipServerResponse).releaseSem();
+                }
+            } else {
+                sipStack.getStackLogger().logWarning(
+                        "Application is blocked -- could not acquire semaphore -- dropping response");
+            }
+        }
+    }
+
+    /**
+     * Get an identifying key. This key is used to cache the connection and
+     * re-use it if necessary.
+     */
+    public String getKey() {
+        if (this.key == null) {
+            this.key = MessageChannel.getKey(this.peerAddress, this.peerPort,
+                    getTransport());
+        }
+        return this.key;
+    }
+
+    /**
+     * Get the host to assign to outgoing messages.
+     *
+     * @return the host to assign to the via header.
+     */
+    public String getViaHost() {
+        return myAddress;
+    }
+
+    /**
+     * Get the port for outgoing messages sent from the channel.
+     *
+     * @return the port to assign to the via header.
+     */
+    public int getViaPort() {
+        return myPort;
+    }
+
+    /**
+     * Get the port of the peer to whom we are sending messages.
+     *
+     * @return the peer port.
+     */
+    public int getPeerPort() {
+        return peerPort;
+    }
+
+    public int getPeerPacketSourcePort() {
+        return this.peerPort;
+    }
+
+    public InetAddress getPeerPacketSourceAddress() {
+        return this.peerAddress;
+    }
+
+    /**
+     * TCP Is not a secure protocol.
+     */
+    public boolean isSecure() {
+        return false;
+    }
+}
@@ -0,0 +1,475 @@
+/*
+* Conditions Of Use
+*
+* This software was developed by employees of the National Institute of
+* Standards and Technology (NIST), an agency of the Federal Government.
+* Pursuant to title 15 Untied States Code Section 105, works of NIST
+* employees are not subject to copyright protection in the United States
+* and are considered to be in the public domain.  As a result, a formal
+* license is not needed to use the software.
+*
+* This software is provided by NIST as a service and is expressly
+* provided "AS IS."  NIST MAKES NO WARRANTY OF ANY KIND, EXPRESS, IMPLIED
+* OR STATUTORY, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTY OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, NON-INFRINGEMENT
+* AND DATA ACCURACY.  NIST does not warrant or make any representations
+* regarding the use of the software or the results thereof, including but
+* not limited to the correctness, accuracy, reliability or usefulness of
+* the software.
+*
+* Permission to use this software is contingent upon your acceptance
+* of the terms of this agreement
+*
+* .
+*
+*/
+package gov2.nist.javax2.sip.stack;
+
+import gov2.nist.core.HostPort;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking TCP message processor. A single selector thread accepts the
+ * incoming connections and performs the reads and the pending writes of all
+ * the connections of the processor, where the {@link TCPMessageProcessor}
+ * runs a reader thread and a parser thread per connection. The received
+ * messages are framed directly from the receive buffer of the connection and
+ * parsed on the selector thread, then processed by a pool of worker threads,
+ * in their order of reception on each connection, so that a message waiting
+ * for its transaction never holds the I/O of the other connections. An
+ * outgoing connection is established by the thread sending the first message
+ * to the peer.
+ *
+ * @version 1.2
+ *
+ * @see NioTcpMessageChannel
+ */
+public class NioTcpMessageProcessor extends MessageProcessor {
+
+    protected int nConnections;
+
+    private volatile boolean isRunning;
+
+    private Selector selector;
+
+    private ServerSocketChannel serverSocketChannel;
+
+    private Thread selectorThread;
+
+    private final ConcurrentHashMap<String, NioTcpMessageChannel> messageChannels;
+
+    private final Set<NioTcpMessageChannel> incomingMessageChannels;
+
+    /*
+     * Changes of the registrations requested by the other threads, applied by
+     * the selector thread before selecting.
+     */
+    private final ConcurrentLinkedQueue<Runnable> pendingChanges;
+
+    /*
+     * Workers processing the received messages, created with the selector
+     * thread.
+     */
+    private volatile ExecutorService workers;
+
+    /**
+     * Constructor.
+     *
+     * @param ipAddress address where this message processor listens.
+     * @param sipStack SIPStack structure.
+     * @param port port where this message processor listens.
+     */
+    protected NioTcpMessageProcessor(InetAddress ipAddress,
+            SIPTransactionStack sipStack, int port) {
+        this(ipAddress, sipStack, port, "tcp");
+    }
+
+    protected NioTcpMessageProcessor(InetAddress ipAddress,
+            SIPTransactionStack sipStack, int port, String transport) {
+        super(ipAddress, port, transport, sipStack);
+        this.sipStack = sipStack;
+        this.messageChannels = new ConcurrentHashMap<String, NioTcpMessageChannel>();
+        this.incomingMessageChannels = Collections
+                .newSetFromMap(new ConcurrentHashMap<NioTcpMessageChannel, Boolean>());
+        this.pendingChanges = new ConcurrentLinkedQueue<Runnable>();
+    }
+
+    /**
+     * Start the processor.
+     */
+    public void start() throws IOException {
+        this.selector = Selector.open();
+        this.serverSocketChannel = ServerSocketChannel.open();
+        try {
+            serverSocketChannel.socket().bind(
+                    new InetSocketAddress(getIpAddress(), getPort()));
+            serverSocketChannel.configureBlocking(false);
+            serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException ex) {
+            serverSocketChannel.close();
+            selector.close();
+            throw ex;
+        }
+        if (getIpAddress().getHostAddress().equals(IN_ADDR_ANY)
+                || getIpAddress().getHostAddress().equals(IN6_ADDR_ANY)) {
+            // Store the address to which we are actually bound
+            super.setIpAddress(serverSocketChannel.socket().getInetAddress());
+        }
+        this.isRunning = true;
+        workers = Executors.newCachedThreadPool(new WorkerThreadFactory(
+                "Nio" + getTransport().toUpperCase() + "MessageWorker-"));
+        selectorThread = new Thread(this);
+        selectorThread.setName("Nio" + getTransport().toUpperCase()
+                + "MessageProcessorThread");
+        selectorThread.setPriority(Thread.MAX_PRIORITY);
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+
+    /**
+     * Run method of the selector thread: accept the new connections and
+     * perform the I/O of the ready ones.
+     */
+    public void run() {
+        try {
+            while (this.isRunning) {
+                try {
+                    Runnable change;
+                    while ((change = pendingChanges.poll()) != null) {
+                        change.run();
+                    }
+                    selector.select();
+                    Iterator<SelectionKey> keys = selector.selectedKeys()
+                            .iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            processReadyChannel(key);
+                        }
+                    }
+                } catch (ClosedSelectorException ex) {
+                    break;
+                } catch (IOException ex) {
+                    if (sipStack.isLoggingEnabled())
+                        sipStack.getStackLogger().logException(ex);
+                }
+            }
+        } finally {
+            try {
+                selector.close();
+            } catch (IOException ex) {
+            }
+        }
+    }
+
+    private void processReadyChannel(SelectionKey key) {
+        NioTcpMessageChannel channel = (NioTcpMessageChannel) key.attachment();
+        try {
+            if (key.isReadable()) {
+                channel.readData();
+            }
+            if (key.isValid() && key.isWritable()) {
+                channel.writeData();
+            }
+        } catch (IOException ex) {
+            if (sipStack.isLoggingEnabled())
+                sipStack.getStackLogger().logDebug(
+                        "IOException closing channel " + channel.getKey() + " "
+                                + ex);
+            channel.close();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel socketChannel = serverSocketChannel.accept();
+        if (socketChannel == null) {
+            return;
+        }
+        // sipStack.maxConnections == -1 means we are willing to handle an
+        // "infinite" number of simultaneous connections.
+        if (sipStack.maxConnections != -1
+                && this.nConnections >= sipStack.maxConnections) {
+            if (sipStack.isLoggingEnabled())
+                sipStack.getStackLogger().logWarning(
+                        "Max connections reached, rejecting connection");
+            socketChannel.close();
+            return;
+        }
+        if (sipStack.isLoggingEnabled()) {
+            sipStack.getStackLogger().logDebug("Accepting new connection!");
+        }
+        NioTcpMessageChannel channel;
+        try {
+            channel = newIncomingChannel(socketChannel);
+        } catch (IOException ex) {
+            socketChannel.close();
+            throw ex;
+        }
+        this.nConnections++;
+        incomingMessageChannels.add(channel);
+        register(channel);
+    }
+
+    /**
+     * Create the message channel of an accepted connection.
+     *
+     * @param socketChannel the accepted connection
+     * @return the message channel
+     */
+    protected NioTcpMessageChannel newIncomingChannel(SocketChannel socketChannel)
+            throws IOException {
+        return new NioTcpMessageChannel(socketChannel, sipStack, this);
+    }
+
+    /**
+     * Connect a new message channel to a peer.
+     *
+     * @param host address of the peer
+     * @param port port of the peer
+     * @return the connected message channel
+     */
+    protected NioTcpMessageChannel newOutgoingChannel(InetAddress host, int port)
+            throws IOException {
+        return new NioTcpMessageChannel(host, port, sipStack, this);
+    }
+
+    /**
+     * Register a channel with the selector.
+     */
+    protected void register(final NioTcpMessageChannel channel) {
+        runOnSelectorThread(new Runnable() {
+            public void run() {
+                channel.register(selector);
+            }
+        });
+    }
+
+    /**
+     * Update the interest of the selector in the writes of a channel, as its
+     * queue of pending writes became empty or not.
+     */
+    protected void updateInterestOps(final NioTcpMessageChannel channel) {
+        runOnSelectorThread(new Runnable() {
+            public void run() {
+                channel.updateInterestOps();
+            }
+        });
+    }
+
+    /**
+     * Process received messages on a worker thread.
+     *
+     * @param task task processing the messages
+     * @return false if the processor is stopped
+     */
+    protected boolean execute(Runnable task) {
+        ExecutorService workers = this.workers;
+        if (workers == null) {
+            return false;
+        }
+        try {
+            workers.execute(task);
+            return true;
+        } catch (RejectedExecutionException ex) {
+            return false;
+        }
+    }
+
+    private void runOnSelectorThread(Runnable change) {
+        if (Thread.currentThread() == selectorThread) {
+            change.run();
+        } else {
+            pendingChanges.add(change);
+            Selector selector = this.selector;
+            if (selector != null) {
+                selector.wakeup();
+            }
+        }
+    }
+
+    /**
+     * Return the transport string.
+     *
+     * @return the transport string
+     */
+    public String getTransport() {
+        return this.transport;
+    }
+
+    /**
+     * Returns the stack.
+     *
+     * @return my sip stack.
+     */
+    public SIPTransactionStack getSIPStack() {
+        return sipStack;
+    }
+
+    /**
+     * Stop the message processor and close its connections.
+     */
+    public void stop() {
+        isRunning = false;
+        try {
+            if (serverSocketChannel != null) {
+                serverSocketChannel.close();
+            }
+        } catch (IOException e) {
+            if (sipStack.isLoggingEnabled())
+                sipStack.getStackLogger().logException(e);
+        }
+        if (selector != null) {
+            selector.wakeup();
+        }
+        if (workers != null) {
+            workers.shutdown();
+        }
+        for (NioTcpMessageChannel channel : new ArrayList<NioTcpMessageChannel>(
+                messageChannels.values())) {
+            channel.close();
+        }
+        for (NioTcpMessageChannel channel : new ArrayList<NioTcpMessageChannel>(
+                incomingMessageChannels)) {
+            channel.close();
+        }
+    }
+
+    protected void remove(NioTcpMessageChannel messageChannel) {
+        String key = messageChannel.getKey();
+        if (sipStack.isLoggingEnabled()) {
+            sipStack.getStackLogger().logDebug(
+                    Thread.currentThread() + " removing " + key);
+        }
+        /** May have been removed already */
+        messageChannels.remove(key, messageChannel);
+        if (incomingMessageChannels.remove(messageChannel)) {
+            runOnSelectorThread(new Runnable() {
+                public void run() {
+                    nConnections--;
+                }
+            });
+        }
+    }
+
+    public MessageChannel createMessageChannel(HostPort targetHostPort)
+            throws IOException {
+        try {
+            return createMessageChannel(targetHostPort.getInetAddress(),
+                    targetHostPort.getPort());
+        } catch (UnknownHostException ex) {
+            throw new IOException(ex.getMessage());
+        }
+    }
+
+    public MessageChannel createMessageChannel(InetAddress host, int port)
+            throws IOException {
+        String key = MessageChannel.getKey(host, port, getTransport());
+        NioTcpMessageChannel channel = messageChannels.get(key);
+        if (channel != null && channel.isOpen()) {
+            return channel;
+        }
+        synchronized (this) {
+            channel = messageChannels.get(key);
+            if (channel != null && channel.isOpen()) {
+                return channel;
+            }
+            if (!isRunning) {
+                throw new IOException("Message processor stopped");
+            }
+            channel = newOutgoingChannel(host, port);
+            channel.isCached = true;
+            messageChannels.put(key, channel);
+            register(channel);
+            if (sipStack.isLoggingEnabled()) {
+                sipStack.getStackLogger().logDebug("key " + key);
+                sipStack.getStackLogger().logDebug("Creating " + channel);
+            }
+            return channel;
+        }
+    }
+
+    protected void cacheMessageChannel(NioTcpMessageChannel messageChannel) {
+        String key = messageChannel.getKey();
+        NioTcpMessageChannel currentChannel = messageChannels.put(key,
+                messageChannel);
+        if (currentChannel != null && currentChannel != messageChannel) {
+            if (sipStack.isLoggingEnabled())
+                sipStack.getStackLogger().logDebug("Closing " + key);
+            currentChannel.close();
+        }
+        if (sipStack.isLoggingEnabled())
+            sipStack.getStackLogger().logDebug("Caching " + key);
+    }
+
+    /**
+     * TCP can handle an unlimited number of bytes.
+     */
+    public int getMaximumMessageSize() {
+        return Integer.MAX_VALUE;
+    }
+
+    public boolean inUse() {
+        return !messageChannels.isEmpty() || !incomingMessageChannels.isEmpty();
+    }
+
+    /**
+     * Default target port for TCP
+     */
+    public int getDefaultTargetPort() {
+        return 5060;
+    }
+
+    /**
+     * TCP is not a secure protocol.
+     */
+    public boolean isSecure() {
+        return false;
+    }
+
+    /**
+     * Creates the daemon worker threads.
+     */
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        private final String namePrefix;
+
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        WorkerThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
+
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, namePrefix
+                    + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
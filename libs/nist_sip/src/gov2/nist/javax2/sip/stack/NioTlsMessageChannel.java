@@ -0,0 +1,346 @@
+/*
+* Conditions Of Use
+*
+* This software was developed by employees of the National Institute of
+* Standards and Technology (NIST), an agency of the Federal Government.
+* Pursuant to title 15 Untied States Code Section 105, works of NIST
+* employees are not subject to copyright protection in the United States
+* and are considered to be in the public domain.  As a result, a formal
+* license is not needed to use the software.
+*
+* This software is provided by NIST as a service and is expressly
+* provided "AS IS."  NIST MAKES NO WARRANTY OF ANY KIND, EXPRESS, IMPLIED
+* OR STATUTORY, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTY OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, NON-INFRINGEMENT
+* AND DATA ACCURACY.  NIST does not warrant or make any representations
+* regarding the use of the software or the results thereof, including but
+* not limited to the correctness, accuracy, reliability or usefulness of
+* the software.
+*
+* Permission to use this software is contingent upon your acceptance
+* of the terms of this agreement
+*
+* .
+*
+*/
+package gov2.nist.javax2.sip.stack;
+
+import gov2.nist.javax2.sip.message.SIPMessage;
+import gov2.nist.javax2.sip.message.SIPResponse;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSession;
+
+/**
+ * Message channel of a non-blocking TLS connection. The messages are
+ * encrypted into TLS records by the sending thread and written like on a
+ * {@link NioTcpMessageChannel}; the records are decrypted by the selector
+ * thread into the buffer from which the messages are framed. The handshake
+ * records are exchanged the same way, the messages sent before the end of the
+ * handshake being held until it completes. If the handshake fails, the
+ * transactions of the held messages get an IO exception event.
+ *
+ * @version 1.2
+ *
+ * @see NioTlsMessageProcessor
+ */
+public class NioTlsMessageChannel extends NioTcpMessageChannel {
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final SSLEngine sslEngine;
+
+    /*
+     * Received TLS records not decrypted yet, only accessed by the selector
+     * thread.
+     */
+    private ByteBuffer netInBuffer;
+
+    private ByteBuffer netOutBuffer;
+
+    /*
+     * Messages waiting for the handshake, guarded by the engine.
+     */
+    private final LinkedList<PendingMessage> pendingAppData = new LinkedList<PendingMessage>();
+
+    private volatile boolean handshakeCompleted;
+
+    /**
+     * Constructor - gets called from the message processor with a connection
+     * it has accepted.
+     *
+     * @param socketChannel accepted connection.
+     * @param sipStack Ptr to SIP Stack
+     * @param msgProcessor message processor which accepted the connection.
+     */
+    protected NioTlsMessageChannel(SocketChannel socketChannel,
+            SIPTransactionStack sipStack, NioTlsMessageProcessor msgProcessor)
+            throws IOException {
+        super(socketChannel, sipStack, msgProcessor);
+        this.sslEngine = msgProcessor.createSSLEngine(false, peerAddress, peerPort);
+        init();
+    }
+
+    /**
+     * Constructor - connects to the given inet address.
+     *
+     * @param inetAddr inet address to connect to.
+     * @param port port to connect to.
+     * @param sipStack is the sip sipStack from which we are created.
+     * @param msgProcessor message processor of the connection.
+     * @throws IOException if we cannot connect.
+     */
+    protected NioTlsMessageChannel(InetAddress inetAddr, int port,
+            SIPTransactionStack sipStack, NioTlsMessageProcessor msgProcessor)
+            throws IOException {
+        super(inetAddr, port, sipStack, msgProcessor);
+        this.sslEngine = msgProcessor.createSSLEngine(true, peerAddress, peerPort);
+        init();
+    }
+
+    private void init() throws SSLException {
+        SSLSession session = sslEngine.getSession();
+        this.netInBuffer = ByteBuffer.allocate(session.getPacketBufferSize());
+        this.netOutBuffer = ByteBuffer.allocate(session.getPacketBufferSize());
+        sslEngine.beginHandshake();
+    }
+
+    protected void readData() throws IOException {
+        if (!netInBuffer.hasRemaining()) {
+            ByteBuffer buffer = ByteBuffer.allocate(netInBuffer.capacity()
+                    + sslEngine.getSession().getPacketBufferSize());
+            netInBuffer.flip();
+            buffer.put(netInBuffer);
+            netInBuffer = buffer;
+        }
+        try {
+            if (socketChannel.read(netInBuffer) < 0) {
+                throw new EOFException("Connection closed by peer");
+            }
+            synchronized (sslEngine) {
+                processRecords(true);
+            }
+        } catch (IOException ex) {
+            // Handshake failure or connection lost: fail the held messages
+            close();
+            throw ex;
+        }
+        processReadBuffer();
+    }
+
+    protected void sendBytes(SIPMessage message, byte[] bytes) throws IOException {
+        PendingMessage pending = new PendingMessage(message, ByteBuffer.wrap(bytes));
+        try {
+            synchronized (sslEngine) {
+                pendingAppData.addLast(pending);
+                processRecords(false);
+            }
+        } catch (IOException ex) {
+            // The caller gets the exception for its own message, the
+            // transactions of the other held messages are notified
+            synchronized (sslEngine) {
+                pendingAppData.remove(pending);
+            }
+            close();
+            throw ex;
+        }
+    }
+
+    /*
+     * Run the engine as far as possible: handshake, decryption of the
+     * received records if called from the selector thread, then encryption of
+     * the pending messages once the handshake is done.
+     */
+    private void processRecords(boolean canUnwrap) throws IOException {
+        while (true) {
+            switch (sslEngine.getHandshakeStatus()) {
+                case NEED_TASK:
+                    Runnable task;
+                    while ((task = sslEngine.getDelegatedTask()) != null) {
+                        task.run();
+                    }
+                    break;
+
+                case NEED_WRAP:
+                    wrap(EMPTY);
+                    break;
+
+                case NEED_UNWRAP:
+                    if (!canUnwrap || !unwrap()) {
+                        return;
+                    }
+                    break;
+
+                default:
+                    if (canUnwrap && netInBuffer.position() > 0 && unwrap()) {
+                        break;
+                    }
+                    if (pendingAppData.isEmpty()) {
+                        return;
+                    }
+                    ByteBuffer data = pendingAppData.getFirst().data;
+                    wrap(data);
+                    if (!data.hasRemaining()) {
+                        pendingAppData.removeFirst();
+                    }
+                    break;
+            }
+        }
+    }
+
+    private boolean unwrap() throws IOException {
+        ByteBuffer appBuffer = getReadBuffer(sslEngine.getSession()
+                .getApplicationBufferSize());
+        SSLEngineResult result;
+        netInBuffer.flip();
+        try {
+            result = sslEngine.unwrap(netInBuffer, appBuffer);
+        } finally {
+            netInBuffer.compact();
+        }
+        checkHandshake(result);
+        switch (result.getStatus()) {
+            case BUFFER_UNDERFLOW:
+                return false;
+
+            case CLOSED:
+                throw new EOFException("TLS connection closed by peer");
+
+            default:
+                return result.bytesConsumed() > 0 || result.bytesProduced() > 0;
+        }
+    }
+
+    private void wrap(ByteBuffer src) throws IOException {
+        netOutBuffer.clear();
+        SSLEngineResult result = sslEngine.wrap(src, netOutBuffer);
+        checkHandshake(result);
+        switch (result.getStatus()) {
+            case BUFFER_OVERFLOW:
+                netOutBuffer = ByteBuffer.allocate(netOutBuffer.capacity()
+                        + sslEngine.getSession().getPacketBufferSize());
+                return;
+
+            case CLOSED:
+                if (result.bytesProduced() == 0) {
+                    throw new EOFException("TLS connection closed");
+                }
+                break;
+
+            default:
+                break;
+        }
+        netOutBuffer.flip();
+        if (netOutBuffer.hasRemaining()) {
+            ByteBuffer data = ByteBuffer.allocate(netOutBuffer.remaining());
+            data.put(netOutBuffer);
+            data.flip();
+            queueData(data);
+        }
+    }
+
+    private void checkHandshake(SSLEngineResult result) {
+        if (result.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.FINISHED) {
+            handshakeCompleted = true;
+            if (sipStack.isLoggingEnabled())
+                sipStack.getStackLogger().logDebug(
+                        "Handshake completed with " + getKey() + " using "
+                                + sslEngine.getSession().getCipherSuite());
+        }
+    }
+
+    /**
+     * Returns the SSL session of the connection once the handshake has
+     * completed.
+     *
+     * @return the SSL session or null
+     */
+    public SSLSession getSSLSession() {
+        return handshakeCompleted ? sslEngine.getSession() : null;
+    }
+
+    /**
+     * Close the message channel, after an attempt to notify the peer. The
+     * messages still waiting for the handshake are not sent.
+     */
+    public void close() {
+        List<PendingMessage> aborted = null;
+        if (isOpen()) {
+            synchronized (sslEngine) {
+                sslEngine.closeOutbound();
+                try {
+                    wrap(EMPTY);
+                } catch (IOException ex) {
+                    // Best effort
+                }
+                if (!pendingAppData.isEmpty()) {
+                    aborted = new ArrayList<PendingMessage>(pendingAppData);
+                    pendingAppData.clear();
+                }
+            }
+        }
+        super.close();
+        if (aborted != null) {
+            abortMessages(aborted);
+        }
+    }
+
+    /*
+     * Report the messages which will never be sent to their transactions, so
+     * that they fail at once instead of timing out.
+     */
+    private void abortMessages(List<PendingMessage> aborted) {
+        if (sipStack.isLoggingEnabled())
+            sipStack.getStackLogger().logDebug(
+                    "Aborting " + aborted.size() + " messages held for the handshake with "
+                            + getKey());
+        for (PendingMessage pending : aborted) {
+            SIPTransaction transaction = sipStack.findTransaction(pending.message,
+                    pending.message instanceof SIPResponse);
+            if (transaction != null) {
+                transaction.raiseIOExceptionEvent();
+            }
+        }
+    }
+
+    /**
+     * get the transport string.
+     *
+     * @return "TLS" in this case.
+     */
+    public String getTransport() {
+        return "TLS";
+    }
+
+    /**
+     * TLS is a secure protocol.
+     */
+    public boolean isSecure() {
+        return true;
+    }
+
+    /*
+     * Message held until the end of the handshake.
+     */
+    private static class PendingMessage {
+        final SIPMessage message;
+
+        final ByteBuffer data;
+
+        PendingMessage(SIPMessage message, ByteBuffer data) {
+            this.message = message;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+* Conditions Of Use
+*
+* This software was developed by employees of the National Institute of
+* Standards and Technology (NIST), an agency of the Federal Government.
+* Pursuant to title 15 Untied States Code Section 105, works of NIST
+* employees are not subject to copyright protection in the United States
+* and are considered to be in the public domain.  As a result, a formal
+* license is not needed to use the software.
+*
+* This software is provided by NIST as a service and is expressly
+* provided "AS IS."  NIST MAKES NO WARRANTY OF ANY KIND, EXPRESS, IMPLIED
+* OR STATUTORY, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTY OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, NON-INFRINGEMENT
+* AND DATA ACCURACY.  NIST does not warrant or make any representations
+* regarding the use of the software or the results thereof, including but
+* not limited to the correctness, accuracy, reliability or usefulness of
+* the software.
+*
+* Permission to use this software is contingent upon your acceptance
+* of the terms of this agreement
+*
+* .
+*
+*/
+package gov2.nist.javax2.sip.stack;
+
+import gov2.nist.core.net.NetworkLayer;
+import gov2.nist.core.net.SslNetworkLayer;
+import gov2.nist.javax2.sip.SipStackImpl;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.channels.SocketChannel;
+import java.security.NoSuchAlgorithmException;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+
+/**
+ * Non-blocking TLS message processor. The connections are handled like by the
+ * {@link NioTcpMessageProcessor}, the TLS records being wrapped and unwrapped
+ * by an {@link SSLEngine} per connection. The engines are created from the
+ * SSL context of the {@link SslNetworkLayer} of the stack when there is one,
+ * else from the default SSL context.
+ *
+ * @version 1.2
+ *
+ * @see NioTlsMessageChannel
+ */
+public class NioTlsMessageProcessor extends NioTcpMessageProcessor {
+
+    private SSLContext sslContext;
+
+    /**
+     * Constructor.
+     *
+     * @param ipAddress address where this message processor listens.
+     * @param sipStack SIPStack structure.
+     * @param port port where this message processor listens.
+     */
+    protected NioTlsMessageProcessor(InetAddress ipAddress,
+            SIPTransactionStack sipStack, int port) {
+        super(ipAddress, sipStack, port, "tls");
+    }
+
+    /**
+     * Start the processor.
+     */
+    public void start() throws IOException {
+        NetworkLayer networkLayer = sipStack.getNetworkLayer();
+        if (networkLayer instanceof SslNetworkLayer) {
+            sslContext = ((SslNetworkLayer) networkLayer).getSSLContext();
+        } else {
+            try {
+                sslContext = SSLContext.getDefault();
+            } catch (NoSuchAlgorithmException ex) {
+                throw new IOException("No SSL context: " + ex.getMessage());
+            }
+        }
+        super.start();
+    }
+
+    /**
+     * Create the SSL engine of a connection.
+     *
+     * @param clientMode true for an outgoing connection
+     * @param peerAddress address of the peer
+     * @param peerPort port of the peer
+     * @return the SSL engine
+     */
+    protected SSLEngine createSSLEngine(boolean clientMode,
+            InetAddress peerAddress, int peerPort) {
+        SSLEngine sslEngine = sslContext.createSSLEngine(
+                peerAddress.getHostAddress(), peerPort);
+        sslEngine.setUseClientMode(clientMode);
+        if (clientMode) {
+            sslEngine.setEnabledProtocols(((SipStackImpl) sipStack)
+                    .getEnabledProtocols());
+        } else {
+            sslEngine.setWantClientAuth(true);
+            sslEngine.setEnabledCipherSuites(((SipStackImpl) sipStack)
+                    .getEnabledCipherSuites());
+        }
+        return sslEngine;
+    }
+
+    protected NioTcpMessageChannel newIncomingChannel(SocketChannel socketChannel)
+            throws IOException {
+        return new NioTlsMessageChannel(socketChannel, sipStack, this);
+    }
+
+    protected NioTcpMessageChannel newOutgoingChannel(InetAddress host, int port)
+            throws IOException {
+        return new NioTlsMessageChannel(host, port, sipStack, this);
+    }
+
+    /**
+     * Default target port for TLS
+     */
+    public int getDefaultTargetPort() {
+        return 5061;
+    }
+
+    /**
+     * TLS is a secure protocol.
+     */
+    public boolean isSecure() {
+        return true;
+    }
+}
@@ -47,7 +47,6 @@ import java.io.IOException;
 import java.security.cert.X509Certificate;
 import java.text.ParseException;
 import java.util.ListIterator;
-import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
 
 import javax.net.ssl.SSLPeerUnverifiedException;
@@ -230,13 +229,7 @@ public class SIPClientTransaction extends SIPTransaction implements ServerRespon
 
                 sipStack.removeTransaction(clientTransaction);
 
-                try {
-                    this.cancel();
-
-                } catch (IllegalStateException ex) {
-                    if (!sipStack.isAlive())
-                        return;
-                }
+                clientTransaction.cancelTransactionTimer();
 
                 // Client transaction terminated. Kill connection if
                 // this is a TCP after the linger timer has expired.
@@ -248,9 +241,11 @@ public class SIPClientTransaction extends SIPTransaction implements ServerRespon
                     if (newUseCount <= 0) {
                         // Let the connection linger for a while and then close
                         // it.
-                        TimerTask myTimer = new LingerTimer();
-                        sipStack.getTimer().schedule(myTimer,
-                                SIPTransactionStack.CONNECTION_LINGER_TIME * 1000);
+                        TimerWheel timerWheel = sipStack.getTimerWheel();
+                        if (timerWheel != null) {
+                            timerWheel.schedule(new LingerTimer(),
+                                    SIPTransactionStack.CONNECTION_LINGER_TIME * 1000);
+                        }
                     }
 
                 } else {
@@ -267,8 +262,10 @@ public class SIPClientTransaction extends SIPTransaction implements ServerRespon
             } else {
                 // If this transaction has not
                 // terminated,
-                // Fire the transaction timer.
+                // Fire the transaction timer and schedule it
+                // at the next deadline.
                 clientTransaction.fireTimer();
+                clientTransaction.scheduleTransactionTimer();
 
             }
 
@@ -1305,10 +1302,7 @@ public class SIPClientTransaction extends SIPTransaction implements ServerRespon
      */
     protected  void startTransactionTimer() {
         if (this.transactionTimerStarted.compareAndSet(false, true)) {
-	        TimerTask myTimer = new TransactionTimer();
-	        if ( sipStack.getTimer() != null ) {
-	            sipStack.getTimer().schedule(myTimer, BASE_TIMER_INTERVAL, BASE_TIMER_INTERVAL);
-	        }
+            startTransactionTimer(new TransactionTimer());
         }
     }
 
@@ -41,7 +41,6 @@ import gov2.nist.javax2.sip.message.SIPResponse;
 
 import java.io.IOException;
 import java.text.ParseException;
-import java.util.TimerTask;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
@@ -375,28 +374,25 @@ public class SIPServerTransaction extends SIPTransaction implements ServerReques
                 // to catch the incoming ACK -- this is needed for tcp only.
                 // Note that the transaction record is actually removed in
                 // the connection linger timer.
-                try {
-                    this.cancel();
-                } catch (IllegalStateException ex) {
-                    if (!sipStack.isAlive())
-                        return;
-                }
+                cancelTransactionTimer();
 
                 // Oneshot timer that garbage collects the SeverTransaction
                 // after a scheduled amount of time. The linger timer allows
                 // the client side of the tx to use the same connection to
                 // send an ACK and prevents a race condition for creation
                 // of new server tx
-                TimerTask myTimer = new LingerTimer();
-
-                sipStack.getTimer().schedule(myTimer,
-                        SIPTransactionStack.CONNECTION_LINGER_TIME * 1000);
+                TimerWheel timerWheel = sipStack.getTimerWheel();
+                if (timerWheel != null) {
+                    timerWheel.schedule(new LingerTimer(),
+                            SIPTransactionStack.CONNECTION_LINGER_TIME * 1000);
+                }
 
             } else {
                 // Add to the fire list -- needs to be moved
                 // outside the synchronized block to prevent
                 // deadlock.
                 fireTimer();
+                scheduleTransactionTimer();
 
             }
         }
@@ -1471,13 +1467,8 @@ public class SIPServerTransaction extends SIPTransaction implements ServerReques
      */
     protected void startTransactionTimer() {
         if (this.transactionTimerStarted.compareAndSet(false, true)) {
-        	if (sipStack.getTimer() != null) {
-                // The timer is set to null when the Stack is
-                // shutting down.
-                TimerTask myTimer = new TransactionTimer();
-                sipStack.getTimer().schedule(myTimer, BASE_TIMER_INTERVAL, BASE_TIMER_INTERVAL);
-            }
-        }        
+            startTransactionTimer(new TransactionTimer());
+        }
     }
 
     public boolean equals(Object other) {
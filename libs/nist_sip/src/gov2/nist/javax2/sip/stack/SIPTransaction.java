@@ -51,6 +51,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLSession;
 import javax2.sip.Dialog;
 import javax2.sip.IOExceptionEvent;
 import javax2.sip.ServerTransaction;
@@ -231,11 +232,15 @@ public abstract class SIPTransaction extends MessageChannel implements
     // Number of ticks the retransmission timer was set to last
     private transient int retransmissionTimerLastTickCount;
 
-    // Number of ticks before the message is retransmitted
-    private transient int retransmissionTimerTicksLeft;
+    // Elapsed realtime by when the message is retransmitted, -1 if disabled
+    private transient long retransmissionTimerDeadline = -1;
 
-    // Number of ticks before the transaction times out
-    protected int timeoutTimerTicksLeft;
+    // Elapsed realtime by when the transaction times out, -1 if disabled
+    private long timeoutTimerDeadline = -1;
+
+    // Timeout of the transaction timer on the timer wheel of the stack, set
+    // when the transaction timer is started
+    private transient volatile TimerWheel.Timeout transactionTimeout;
 
     // List of event listeners for this transaction
     private transient Set<SIPTransactionEventListener> eventListeners;
@@ -266,12 +271,6 @@ public abstract class SIPTransaction extends MessageChannel implements
 
     private boolean terminatedEventDelivered;
 
-    // Timestamps by when timer tasks and retransmission tasks are considered outdated
-    // Rational: As the timer tick mechanism may not work as timely as expected if the device is sleeping
-    // timer tasks may be outdated even though ticks are still left
-    private long timerOutdatedTime;
-    private long retransmissionOutdatedTime;
-
     public String getBranchId() {
         return this.branch;
     }
@@ -546,11 +545,17 @@ public abstract class SIPTransaction extends MessageChannel implements
             if (newState != TransactionState.TERMINATED)
                 newState = TransactionState.CONFIRMED;
         }
+        boolean terminated = currentState != TransactionState.TERMINATED
+                && newState == TransactionState.TERMINATED;
         if (currentState != TransactionState.TERMINATED)
             currentState = newState;
         else
             newState = currentState;
         // END OF PATCH
+        if (terminated) {
+            // Let the transaction timer remove the transaction
+            scheduleTransactionTimer();
+        }
         if (sipStack.isLoggingEnabled()) {
             sipStack.getStackLogger().logDebug("Transaction:setState " + newState
                     + " " + this + " branchID = " + this.getBranch()
@@ -585,26 +590,27 @@ public abstract class SIPTransaction extends MessageChannel implements
      *            occurs.
      */
     protected final void enableRetransmissionTimer(int tickCount) {
+        int ticks;
         // For INVITE Client transactions, double interval each time
         if (isInviteTransaction() && (this instanceof SIPClientTransaction)) {
-            retransmissionTimerTicksLeft = tickCount;
+            ticks = tickCount;
         } else {
             // non-INVITE transactions and 3xx-6xx responses are capped at T2
-            retransmissionTimerTicksLeft = Math.min(tickCount,
+            ticks = Math.min(tickCount,
                     MAXIMUM_RETRANSMISSION_TICK_COUNT);
         }
-        retransmissionTimerLastTickCount = retransmissionTimerTicksLeft;
-
-        // set the timestamp by when the retransmission timer is considered outdated no matter
-        // how many ticks are still left
-        retransmissionOutdatedTime = SystemClock.elapsedRealtime() + retransmissionTimerTicksLeft * BASE_TIMER_INTERVAL;
+        retransmissionTimerDeadline = SystemClock.elapsedRealtime()
+                + ticks * BASE_TIMER_INTERVAL;
+        retransmissionTimerLastTickCount = ticks;
+        scheduleTransactionTimer();
     }
 
     /**
      * Turns off retransmission events for this transaction.
      */
     protected final void disableRetransmissionTimer() {
-        retransmissionTimerTicksLeft = -1;
+        retransmissionTimerDeadline = -1;
+        scheduleTransactionTimer();
     }
 
     /**
@@ -617,51 +623,119 @@ public abstract class SIPTransaction extends MessageChannel implements
     protected final void enableTimeoutTimer(int tickCount) {
         if (sipStack.isLoggingEnabled())
             sipStack.getStackLogger().logDebug("enableTimeoutTimer " + this
-                    + " tickCount " + tickCount + " currentTickCount = "
-                    + timeoutTimerTicksLeft);
-
-        timeoutTimerTicksLeft = tickCount;
+                    + " tickCount " + tickCount);
 
-        // set the timestamp by when the timer is considered outdated no matter how many
-        // ticks are still left
-        timerOutdatedTime = SystemClock.elapsedRealtime() + tickCount * BASE_TIMER_INTERVAL;
+        timeoutTimerDeadline = SystemClock.elapsedRealtime() + tickCount * BASE_TIMER_INTERVAL;
+        scheduleTransactionTimer();
     }
 
     /**
      * Disabled the timeout timer.
      */
     protected final void disableTimeoutTimer() {
-        timeoutTimerTicksLeft = -1;
+        timeoutTimerDeadline = -1;
+        scheduleTransactionTimer();
     }
 
     /**
-     * Fired after each timer tick. Checks the retransmission and timeout timers
-     * of this transaction, and fired these events if necessary.
+     * Fired when the transaction timer expires. Checks the retransmission and
+     * timeout timers of this transaction, and fired these events if necessary.
      */
     final void fireTimer() {
-        // If the timeout timer is enabled,
-
-        if (timeoutTimerTicksLeft != -1) {
-            // Count down the timer, and if it has run out,
-            // (or time limit has exceeded (e.g. due to timer thread was sleeping too long))
-            if (--timeoutTimerTicksLeft == 0 || SystemClock.elapsedRealtime() > timerOutdatedTime) {
-                // Fire the timeout timer
-                fireTimeoutTimer();
+        long now = SystemClock.elapsedRealtime();
+        // If the timeout timer is enabled and has run out,
+        long deadline = timeoutTimerDeadline;
+        if (deadline != -1 && now >= deadline) {
+            // The timeout timer fires once unless it is enabled again
+            timeoutTimerDeadline = -1;
+            // Fire the timeout timer
+            fireTimeoutTimer();
+        }
+
+        // If the retransmission timer is enabled and has run out,
+        deadline = retransmissionTimerDeadline;
+        if (deadline != -1 && now >= deadline) {
+            // Enable this timer to fire again after
+            // twice the original time
+            enableRetransmissionTimer(retransmissionTimerLastTickCount * 2);
+            // Fire the timeout timer
+            fireRetransmissionTimer();
+        }
+    }
+
+    /**
+     * Creates the timeout of the transaction timer on the timer wheel of the
+     * stack and schedules it.
+     *
+     * @param task task run when the transaction timer expires
+     */
+    final void startTransactionTimer(Runnable task) {
+        transactionTimeout = new TimerWheel.Timeout(task);
+        scheduleTransactionTimer();
+    }
+
+    /**
+     * Schedules the transaction timer at the next deadline of the
+     * retransmission and timeout timers, or one tick after the transaction
+     * has terminated. The transaction timer is cancelled when none of these
+     * timers is enabled, so that an idle transaction costs no wake-up.
+     */
+    final void scheduleTransactionTimer() {
+        TimerWheel.Timeout timeout = transactionTimeout;
+        if (timeout == null) {
+            // Timer not started yet
+            return;
+        }
+        TimerWheel timerWheel = getSIPStack().getTimerWheel();
+        if (timerWheel == null) {
+            // The timer wheel is set to null when the stack is stopped
+            return;
+        }
+        // Serialize the schedulers so that the last one sees the last deadlines
+        synchronized (timeout) {
+            if (transactionTimeout != timeout) {
+                // Cancelled meanwhile
+                return;
+            }
+            long now = SystemClock.elapsedRealtime();
+            long deadline;
+            if (isTerminated()) {
+                deadline = now + BASE_TIMER_INTERVAL;
+            } else {
+                long timeoutDeadline = timeoutTimerDeadline;
+                long retransmissionDeadline = retransmissionTimerDeadline;
+                if (timeoutDeadline == -1) {
+                    deadline = retransmissionDeadline;
+                } else if (retransmissionDeadline == -1) {
+                    deadline = timeoutDeadline;
+                } else {
+                    deadline = Math.min(timeoutDeadline, retransmissionDeadline);
+                }
+            }
+            if (deadline == -1) {
+                timerWheel.cancel(timeout);
+            } else {
+                timerWheel.schedule(timeout, deadline - now);
             }
         }
+    }
 
-        // If the retransmission timer is enabled,
-        if (retransmissionTimerTicksLeft != -1) {
-            // Count down the timer, and if it has run out,
-            // (or time limit has exceeded (e.g. due to timer thread was sleeping too long))
-            if (--retransmissionTimerTicksLeft == 0 || SystemClock.elapsedRealtime() > retransmissionOutdatedTime) {
-                // Enable this timer to fire again after
-                // twice the original time
-                enableRetransmissionTimer(retransmissionTimerLastTickCount * 2);
-                // Fire the timeout timer
-                fireRetransmissionTimer();
+    /**
+     * Cancels the transaction timer for good, it is no longer scheduled by
+     * the changes of the timers.
+     */
+    final void cancelTransactionTimer() {
+        TimerWheel.Timeout timeout = transactionTimeout;
+        if (timeout == null) {
+            return;
+        }
+        synchronized (timeout) {
+            transactionTimeout = null;
+            TimerWheel timerWheel = getSIPStack().getTimerWheel();
+            if (timerWheel != null) {
+                timerWheel.cancel(timeout);
             }
-        } 
+        }
     }
 
     /**
@@ -921,6 +995,13 @@ public abstract class SIPTransaction extends MessageChannel implements
         return this.transactionId;
     }
 
+    /**
+     * Get the Call-ID of the transaction, kept when the requests are released.
+     */
+    public CallID getCallId() {
+        return this.callId;
+    }
+
     /**
      * Hashcode method for fast hashtable lookup.
      */
@@ -1273,6 +1354,9 @@ public abstract class SIPTransaction extends MessageChannel implements
             else if ( ((TLSMessageChannel) this.getMessageChannel()).getHandshakeCompletedListener().getHandshakeCompletedEvent() == null)
                 return null;
             else return ((TLSMessageChannel) this.getMessageChannel()).getHandshakeCompletedListener().getHandshakeCompletedEvent().getCipherSuite();
+        } else if (this.getMessageChannel() instanceof NioTlsMessageChannel) {
+            SSLSession session = ((NioTlsMessageChannel) this.getMessageChannel()).getSSLSession();
+            return session == null ? null : session.getCipherSuite();
         } else throw new UnsupportedOperationException("Not a TLS channel");
 
     }
@@ -1285,6 +1369,9 @@ public abstract class SIPTransaction extends MessageChannel implements
             else if ( ((TLSMessageChannel) this.getMessageChannel()).getHandshakeCompletedListener().getHandshakeCompletedEvent() == null)
                 return null;
             else return ((TLSMessageChannel) this.getMessageChannel()).getHandshakeCompletedListener().getHandshakeCompletedEvent().getLocalCertificates();
+        } else if (this.getMessageChannel() instanceof NioTlsMessageChannel) {
+            SSLSession session = ((NioTlsMessageChannel) this.getMessageChannel()).getSSLSession();
+            return session == null ? null : session.getLocalCertificates();
         } else throw new UnsupportedOperationException("Not a TLS channel");
     }
 
@@ -1296,6 +1383,9 @@ public abstract class SIPTransaction extends MessageChannel implements
             else if ( ((TLSMessageChannel) this.getMessageChannel()).getHandshakeCompletedListener().getHandshakeCompletedEvent() == null)
                 return null;
             else return ((TLSMessageChannel) this.getMessageChannel()).getHandshakeCompletedListener().getHandshakeCompletedEvent().getPeerCertificates();
+        } else if (this.getMessageChannel() instanceof NioTlsMessageChannel) {
+            SSLSession session = ((NioTlsMessageChannel) this.getMessageChannel()).getSSLSession();
+            return session == null ? null : session.getPeerCertificates();
         } else throw new UnsupportedOperationException("Not a TLS channel");
 
     }
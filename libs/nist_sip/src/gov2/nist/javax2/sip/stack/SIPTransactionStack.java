@@ -128,6 +128,10 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
 
     private Timer timer;
 
+    // Timer wheel of the transaction and linger timers.
+
+    private TimerWheel timerWheel;
+
     // List of pending server transactions
     private ConcurrentHashMap<String, SIPServerTransaction> pendingTransactions;
 
@@ -272,6 +276,11 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
      */
     protected boolean cacheClientConnections;
 
+    /*
+     * Use the non-blocking processors for the TCP and TLS transports.
+     */
+    protected boolean useNio;
+
     /*
      * Use the user supplied router for all out of dialog requests.
      */
@@ -477,6 +486,7 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
         // Start the timer event thread.
 
         this.timer = new Timer();
+        this.timerWheel = new TimerWheel("SIPTimerWheel");
         this.pendingTransactions = new ConcurrentHashMap<String, SIPServerTransaction>();
         
         
@@ -513,6 +523,7 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
         this.forkedClientTransactionTable = new ConcurrentHashMap<String,SIPClientTransaction>();
 
         this.timer = new Timer();
+        this.timerWheel = new TimerWheel("SIPTimerWheel");
 
         this.activeClientTransactionCount = new AtomicInteger(0);
 
@@ -1658,6 +1669,9 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
 
         // JvB: set it to null, SIPDialog tries to schedule things after stop
         timer = null;
+        if (this.timerWheel != null)
+            this.timerWheel.stop();
+        timerWheel = null;
         this.pendingTransactions.clear();
         this.toExit = true;
         synchronized (this) {
@@ -1994,12 +2008,22 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
             this.addMessageProcessor(udpMessageProcessor);
             this.udpFlag = true;
             return udpMessageProcessor;
+        } else if (transport.equalsIgnoreCase("tcp") && useNio) {
+            NioTcpMessageProcessor nioTcpMessageProcessor = new NioTcpMessageProcessor(ipAddress,
+                    this, port);
+            this.addMessageProcessor(nioTcpMessageProcessor);
+            return nioTcpMessageProcessor;
         } else if (transport.equalsIgnoreCase("tcp")) {
             TCPMessageProcessor tcpMessageProcessor = new TCPMessageProcessor(ipAddress, this,
                     port);
             this.addMessageProcessor(tcpMessageProcessor);
             // this.tcpFlag = true;
             return tcpMessageProcessor;
+        } else if (transport.equalsIgnoreCase("tls") && useNio) {
+            NioTlsMessageProcessor nioTlsMessageProcessor = new NioTlsMessageProcessor(ipAddress,
+                    this, port);
+            this.addMessageProcessor(nioTlsMessageProcessor);
+            return nioTlsMessageProcessor;
         } else if (transport.equalsIgnoreCase("tls")) {
             TLSMessageProcessor tlsMessageProcessor = new TLSMessageProcessor(ipAddress, this,
                     port);
@@ -2457,6 +2481,13 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
         return timer;
     }
 
+    /**
+     * @return the timer wheel of the transaction timers, null after shutdown
+     */
+    TimerWheel getTimerWheel() {
+        return timerWheel;
+    }
+
     
     /**
      * Size of the receive UDP buffer. This property affects performance under load. Bigger buffer
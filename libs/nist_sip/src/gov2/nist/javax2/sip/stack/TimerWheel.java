@@ -0,0 +1,268 @@
+/*
+* Conditions Of Use
+*
+* This software was developed by employees of the National Institute of
+* Standards and Technology (NIST), an agency of the Federal Government.
+* Pursuant to title 15 Untied States Code Section 105, works of NIST
+* employees are not subject to copyright protection in the United States
+* and are considered to be in the public domain.  As a result, a formal
+* license is not needed to use the software.
+*
+* This software is provided by NIST as a service and is expressly
+* provided "AS IS."  NIST MAKES NO WARRANTY OF ANY KIND, EXPRESS, IMPLIED
+* OR STATUTORY, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTY OF
+* MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, NON-INFRINGEMENT
+* AND DATA ACCURACY.  NIST does not warrant or make any representations
+* regarding the use of the software or the results thereof, including but
+* not limited to the correctness, accuracy, reliability or usefulness of
+* the software.
+*
+* Permission to use this software is contingent upon your acceptance
+* of the terms of this agreement
+*
+* .
+*
+*/
+package gov2.nist.javax2.sip.stack;
+
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+
+/**
+ * Hashed timing wheel running the transaction timers of a stack. A timeout is
+ * hashed on the slot of its expiration tick, so that scheduling and
+ * cancelling it are O(1) whatever the number of pending timeouts. A timeout
+ * may be rescheduled any number of times without allocating. The worker
+ * thread only wakes up on the ticks of the occupied slots and sleeps while
+ * the wheel is empty.
+ *
+ * @version 1.2
+ */
+final class TimerWheel implements Runnable {
+
+    /**
+     * Duration of a tick in milliseconds
+     */
+    static final int TICK_DURATION = 100;
+
+    private static final int WHEEL_SIZE = 512;
+
+    private static final int MASK = WHEEL_SIZE - 1;
+
+    /**
+     * Timeout of the wheel, i.e. a task and its expiration tick.
+     */
+    static final class Timeout {
+
+        private final Runnable task;
+
+        private Timeout prev;
+
+        private Timeout next;
+
+        private long expirationTick = -1;
+
+        /**
+         * Constructor
+         *
+         * @param task task run when the timeout expires
+         */
+        Timeout(Runnable task) {
+            this.task = task;
+        }
+    }
+
+    private final String name;
+
+    private final long startTime;
+
+    // Heads of the timeout lists of each slot
+    private final Timeout[] slots = new Timeout[WHEEL_SIZE];
+
+    // Next tick to be processed
+    private long tick;
+
+    // Tick the worker thread is waiting for
+    private long wakeUpTick = Long.MAX_VALUE;
+
+    private int size;
+
+    private Thread worker;
+
+    private boolean stopped;
+
+    /**
+     * Constructor
+     *
+     * @param name name of the worker thread
+     */
+    TimerWheel(String name) {
+        this.name = name;
+        this.startTime = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Schedule a task.
+     *
+     * @param task task to run
+     * @param delay delay in milliseconds before the task is run
+     * @return the timeout of the task
+     */
+    Timeout schedule(Runnable task, long delay) {
+        Timeout timeout = new Timeout(task);
+        schedule(timeout, delay);
+        return timeout;
+    }
+
+    /**
+     * Schedule a timeout, replacing its previous expiration if any.
+     *
+     * @param timeout timeout to schedule
+     * @param delay delay in milliseconds before the timeout expires
+     */
+    synchronized void schedule(Timeout timeout, long delay) {
+        if (stopped) {
+            return;
+        }
+        unlink(timeout);
+        long elapsed = SystemClock.elapsedRealtime() - startTime + Math.max(delay, 0);
+        // Round up so that a timeout never expires before its delay
+        long expirationTick = Math.max((elapsed + TICK_DURATION - 1) / TICK_DURATION, tick);
+        int slot = (int) (expirationTick & MASK);
+        timeout.expirationTick = expirationTick;
+        timeout.next = slots[slot];
+        if (timeout.next != null) {
+            timeout.next.prev = timeout;
+        }
+        slots[slot] = timeout;
+        size++;
+        if (worker == null) {
+            worker = new Thread(this, name);
+            worker.setDaemon(true);
+            worker.start();
+        } else if (expirationTick < wakeUpTick) {
+            wakeUpTick = expirationTick;
+            notify();
+        }
+    }
+
+    /**
+     * Cancel a timeout. Nothing is done if it is not scheduled.
+     *
+     * @param timeout timeout to cancel
+     */
+    synchronized void cancel(Timeout timeout) {
+        unlink(timeout);
+    }
+
+    /**
+     * Stop the wheel. The pending timeouts are discarded and the scheduling
+     * of new ones is ignored.
+     */
+    synchronized void stop() {
+        stopped = true;
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            Timeout timeout = slots[i];
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                timeout.prev = null;
+                timeout.next = null;
+                timeout.expirationTick = -1;
+                timeout = next;
+            }
+            slots[i] = null;
+        }
+        size = 0;
+        notify();
+    }
+
+    public void run() {
+        ArrayList<Timeout> expired = new ArrayList<Timeout>();
+        try {
+            while (awaitExpired(expired)) {
+                for (int i = 0; i < expired.size(); i++) {
+                    try {
+                        expired.get(i).task.run();
+                    } catch (Throwable e) {
+                        System.out.println("SIP stack timer task failed due to exception:");
+                        e.printStackTrace();
+                    }
+                }
+                expired.clear();
+            }
+        } catch (InterruptedException e) {
+            // Stop the worker
+        }
+    }
+
+    private synchronized boolean awaitExpired(ArrayList<Timeout> expired)
+            throws InterruptedException {
+        while (!stopped) {
+            long elapsed = SystemClock.elapsedRealtime() - startTime;
+            long currentTick = elapsed / TICK_DURATION;
+            if (currentTick >= tick) {
+                // After a long sleep each slot is only visited once
+                long lastTick = Math.min(currentTick, tick + MASK);
+                for (long t = tick; t <= lastTick; t++) {
+                    expireSlot((int) (t & MASK), currentTick, expired);
+                }
+                tick = currentTick + 1;
+                if (!expired.isEmpty()) {
+                    wakeUpTick = Long.MAX_VALUE;
+                    return true;
+                }
+            }
+            if (size == 0) {
+                wakeUpTick = Long.MAX_VALUE;
+                wait();
+            } else {
+                wakeUpTick = nextOccupiedTick();
+                long delay = wakeUpTick * TICK_DURATION - elapsed;
+                if (delay > 0) {
+                    wait(delay);
+                }
+            }
+        }
+        return false;
+    }
+
+    private void expireSlot(int slot, long currentTick, ArrayList<Timeout> expired) {
+        Timeout timeout = slots[slot];
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.expirationTick <= currentTick) {
+                unlink(timeout);
+                expired.add(timeout);
+            }
+            timeout = next;
+        }
+    }
+
+    private long nextOccupiedTick() {
+        for (long t = tick; t < tick + WHEEL_SIZE; t++) {
+            if (slots[(int) (t & MASK)] != null) {
+                return t;
+            }
+        }
+        return tick + WHEEL_SIZE;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.expirationTick == -1) {
+            return;
+        }
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            slots[(int) (timeout.expirationTick & MASK)] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.expirationTick = -1;
+        size--;
+    }
+}
@@ -19,7 +19,9 @@
 package com.orangelabs.rcs.core.ims.protocol.rtp;
 
 import com.orangelabs.rcs.core.ims.protocol.rtp.codec.Codec;
+import com.orangelabs.rcs.core.ims.protocol.rtp.core.BitrateListener;
 import com.orangelabs.rcs.core.ims.protocol.rtp.format.Format;
+import com.orangelabs.rcs.core.ims.protocol.rtp.format.video.VideoFormat;
 import com.orangelabs.rcs.core.ims.protocol.rtp.media.MediaInput;
 import com.orangelabs.rcs.core.ims.protocol.rtp.stream.RtpInputStream;
 import com.orangelabs.rcs.core.ims.protocol.rtp.stream.RtpOutputStream;
@@ -32,6 +34,21 @@ import com.orangelabs.rcs.core.ims.protocol.rtp.stream.VideoCaptureStream;
  * @author hlxn7157
  */
 public class VideoRtpSender extends MediaRtpSender {
+    /**
+     * Maximum bitrate, 0 if the bitrate is not adapted
+     */
+    private int maxBitrate = 0;
+
+    /**
+     * Maximum frame rate
+     */
+    private float maxFrameRate;
+
+    /**
+     * Bitrate listener
+     */
+    private BitrateListener bitrateListener;
+
     /**
      * Constructor
      * 
@@ -41,6 +58,30 @@ public class VideoRtpSender extends MediaRtpSender {
         super(format, localRtpPort);
     }
 
+    /**
+     * Adapt the bitrate and the frame rate to the RTCP reports received from the remote. Must be
+     * called before the session is prepared.
+     * 
+     * @param maxBitrate Configured bitrate of the encoder in bits per second
+     * @param maxFrameRate Configured frame rate of the encoder
+     * @param listener Listener applying the target bitrate and frame rate to the encoder
+     */
+    public void setBitrateAdaptation(int maxBitrate, float maxFrameRate, BitrateListener listener) {
+        this.maxBitrate = maxBitrate;
+        this.maxFrameRate = maxFrameRate;
+        this.bitrateListener = listener;
+    }
+
+    /**
+     * Enable the bitrate adaptation on the opened output stream if requested
+     */
+    private void enableBitrateAdaptation() {
+        if (maxBitrate > 0) {
+            outputStream.enableBitrateAdaptation(VideoFormat.CLOCK_RATE, maxBitrate, maxFrameRate,
+                    bitrateListener);
+        }
+    }
+
     /**
      * Prepare the RTP session
      * 
@@ -63,6 +104,7 @@ public class VideoRtpSender extends MediaRtpSender {
                     RtpOutputStream.RTCP_SOCKET_TIMEOUT);
             outputStream.addRtpStreamListener(rtpStreamListener);
             outputStream.open();
+            enableBitrateAdaptation();
 
             // Create the codec chain
             Codec[] codecChain = MediaRegistry.generateEncodingCodecChain(format.getCodec());
@@ -99,6 +141,7 @@ public class VideoRtpSender extends MediaRtpSender {
             outputStream = new RtpOutputStream(remoteAddress, remotePort, rtpStream);
             outputStream.addRtpStreamListener(rtpStreamListener);
             outputStream.open();
+            enableBitrateAdaptation();
 
             // Create the codec chain
             Codec[] codecChain = MediaRegistry.generateEncodingCodecChain(format.getCodec());
@@ -60,12 +60,31 @@ public class H264RtpHeaders {
      * @param rtpPacketData
      */
     public H264RtpHeaders(byte[] rtpPacketData) {
+        parse(rtpPacketData);
+    }
+
+    /**
+     * Constructor of headers filled later by {@link #parse(byte[])}
+     */
+    public H264RtpHeaders() {
+    }
+
+    /**
+     * Parse the headers of a RTP payload, so that an instance is reused for successive packets
+     * 
+     * @param rtpPacketData
+     */
+    public void parse(byte[] rtpPacketData) {
         // Get FU indicator
         byte data_FUI = rtpPacketData[0];
         this.FUI_F = ((data_FUI >> 7) & 0x01) != 0;
         this.FUI_NRI = ((data_FUI >> 5) & 0x07);
         this.FUI_TYPE = (byte) (data_FUI & 0x1f);
         this.hasFUHeader = false;
+        this.FUH_S = false;
+        this.FUH_E = false;
+        this.FUH_R = false;
+        this.FUH_TYPE = 0;
 
         if (FUI_TYPE == AVC_NALTYPE_FUA) {
             // Get FU header
@@ -23,6 +23,8 @@ import com.orangelabs.rcs.core.ims.protocol.rtp.format.Format;
 import com.orangelabs.rcs.core.ims.protocol.rtp.format.video.VideoOrientation;
 import com.orangelabs.rcs.core.ims.protocol.rtp.util.Buffer;
 
+import java.util.Arrays;
+
 /**
  * Reassembles H264 RTP packets into H264 frames, as per RFC 3984 Complete frames are sent to
  * decoder once reassembled
@@ -38,19 +40,25 @@ public class JavaDepacketizer extends VideoCodec {
     private FrameAssemblerCollection assemblersCollection = new FrameAssemblerCollection();
 
     /**
-     * Max frame size to give for next module, as some decoder have frame size limits
+     * Default frame packet size
      */
-    private static final int MAX_H264_FRAME_SIZE = 8192;
+    public static int H264_FRAME_PACKET_SIZE = 1500;
 
     /**
-     * Default frame packet size
+     * Video decoder max payloads chunks mask: a frame is made of up to 256 fragments
      */
-    public static int H264_FRAME_PACKET_SIZE = 1500;
+    private static final int VIDEO_DECODER_MAX_PAYLOADS_CHUNKS_MASK = 0xFF;
+
+    /**
+     * Max number of fragments of a frame
+     */
+    private static final int MAX_FRAME_CHUNKS = VIDEO_DECODER_MAX_PAYLOADS_CHUNKS_MASK + 1;
 
     /**
-     * Video decoder max payloads chunks mask
+     * Max frame size to give for next module: the largest frame held by the fragments of a frame.
+     * Bigger frames are discarded.
      */
-    private static final byte VIDEO_DECODER_MAX_PAYLOADS_CHUNKS_MASK = 0x1F;
+    public static final int MAX_H264_FRAME_SIZE = MAX_FRAME_CHUNKS * 1500;
 
     /**
      * Packet NalUnitHeader
@@ -218,17 +226,23 @@ public class JavaDepacketizer extends VideoCodec {
     }
 
     /**
-     * Used to assemble fragments with the same timestamp into a single frame.
+     * Used to assemble fragments with the same timestamp into a single frame. The fragments are
+     * appended in their arrival order to a data array which is kept from one frame to the next,
+     * and copied in sequence order into the frame once it is complete.
      */
     public static class FrameAssembler {
-        private byte[][] reassembledData = null; // Frame sequence chunks
-        private int[] reassembledDataSize = null; // Sequence chunk size
+        private byte[] chunksData = new byte[16 * H264_FRAME_PACKET_SIZE]; // Received chunks
+        private int chunksDataSize = 0; // Used size of the chunks data
+        private int[] chunkOffset = new int[MAX_FRAME_CHUNKS]; // Sequence chunk position
+        private int[] reassembledDataSize = new int[MAX_FRAME_CHUNKS]; // Sequence chunk size
         private int reassembledDataFullSize = 0; // Frame sequence chunks full size
         private boolean reassembledDataHasStart = false; // Has start chunk
         private boolean reassembledDataHasEnd = false; // Has end chunk
         private int reassembledDataPosSeqStart = Integer.MAX_VALUE; // Pos seq start
         private int reassembledDataPosSeqEnd = Integer.MIN_VALUE; // Pos seq end
         private byte reassembledDataNALHeader = 0; // Final frame NAL header
+        private boolean started = false; // Has received a chunk of the frame
+        private H264RtpHeaders h264RtpHeaders = new H264RtpHeaders();
         private long timeStamp = -1;
         private Format format = null;
         private long seqNumber = -1;
@@ -248,14 +262,14 @@ public class JavaDepacketizer extends VideoCodec {
             }
 
             byte[] currentRtpPacketData = ((byte[]) buffer.getData());
-            H264RtpHeaders h264RtpHeaders = new H264RtpHeaders(currentRtpPacketData);
+            h264RtpHeaders.parse(currentRtpPacketData);
 
             // Forbidden zero bit, must be zero for a valid stream
             if (h264RtpHeaders.getFUI_F()) {
                 return;
             }
 
-            if (reassembledData == null) {
+            if (!started) {
                 // First packet
                 timeStamp = buffer.getTimeStamp();
                 format = buffer.getFormat();
@@ -264,15 +278,21 @@ public class JavaDepacketizer extends VideoCodec {
                 // Get NAL header
                 reassembledDataNALHeader = h264RtpHeaders.getNALHeader();
 
-                // Copy packet data to reassembledData
-                reassembledData = new byte[JavaPacketizer.H264_MAX_RTP_PKTS][H264_FRAME_PACKET_SIZE];
-                reassembledDataSize = new int[JavaPacketizer.H264_MAX_RTP_PKTS];
+                // Reuse the chunks data of the previous frame
+                Arrays.fill(reassembledDataSize, 0);
+                chunksDataSize = 0;
+                reassembledDataFullSize = 0;
                 reassembledDataHasStart = false;
                 reassembledDataHasEnd = false;
+                started = true;
             }
 
             // Sequence position on frame
             int posSeq = (int) (buffer.getSequenceNumber() & VIDEO_DECODER_MAX_PAYLOADS_CHUNKS_MASK);
+            if (reassembledDataSize[posSeq] > 0) {
+                // Duplicated chunk
+                return;
+            }
 
             // Exclude header size
             int payloadStartPosition = h264RtpHeaders.getHeaderSize();
@@ -296,15 +316,23 @@ public class JavaDepacketizer extends VideoCodec {
                         : reassembledDataPosSeqEnd);
             }
 
-            // Sequence chuck size
+            // Grow the chunks data when the frame is bigger than the previous ones
+            if (chunksDataSize + payloadLength > chunksData.length) {
+                chunksData = Arrays.copyOf(chunksData,
+                        Math.max(chunksDataSize + payloadLength, chunksData.length * 2));
+            }
+
+            // Sequence chuck position and size
+            chunkOffset[posSeq] = chunksDataSize;
             reassembledDataSize[posSeq] = payloadLength;
 
             // Sum chucks total sizes
             reassembledDataFullSize += payloadLength;
 
             // Copy data
-            System.arraycopy(currentRtpPacketData, payloadStartPosition, reassembledData[posSeq],
-                    0, payloadLength);
+            System.arraycopy(currentRtpPacketData, payloadStartPosition, chunksData,
+                    chunksDataSize, payloadLength);
+            chunksDataSize += payloadLength;
             videoOrientation = buffer.getVideoOrientation();
         }
 
@@ -358,7 +386,7 @@ public class JavaDepacketizer extends VideoCodec {
                     posSeq = posCurrent & VIDEO_DECODER_MAX_PAYLOADS_CHUNKS_MASK;
 
                     // Copy data
-                    System.arraycopy(reassembledData[posSeq], 0, finalData, finalDataPos,
+                    System.arraycopy(chunksData, chunkOffset[posSeq], finalData, finalDataPos,
                             reassembledDataSize[posSeq]);
                     finalDataPos += reassembledDataSize[posSeq];
 
@@ -366,24 +394,26 @@ public class JavaDepacketizer extends VideoCodec {
                 }
 
                 // Copy last chunk data
-                System.arraycopy(reassembledData[reassembledDataPosSeqEnd], 0, finalData,
+                System.arraycopy(chunksData, chunkOffset[reassembledDataPosSeqEnd], finalData,
                         finalDataPos, reassembledDataSize[reassembledDataPosSeqEnd]);
 
                 // If the frame data can be processed by native module, ie
                 // reassembled frame size not too big
                 // Set buffer
                 bDest.setData(finalData);
-                bDest.setLength(reassembledDataSize[reassembledDataPosSeqEnd]);
+                bDest.setLength(finalData.length);
                 bDest.setOffset(0);
                 bDest.setTimeStamp(timeStamp);
                 bDest.setFormat(format);
                 bDest.setFlags(Buffer.FLAG_RTP_MARKER | Buffer.FLAG_RTP_TIME);
                 bDest.setVideoOrientation(videoOrientation);
                 bDest.setSequenceNumber(seqNumber);
+            } else {
+                bDest.setDiscard(true);
             }
 
-            // Set reassembledData to null
-            reassembledData = null;
+            // The chunks data is reused by the next frame
+            started = false;
         }
 
         /**
@@ -392,8 +422,8 @@ public class JavaDepacketizer extends VideoCodec {
          * Package Instead of Private Access with Private Inner Classes
          */
         private void reset() {
-            reassembledData = null;
-            reassembledDataSize = null;
+            started = false;
+            chunksDataSize = 0;
             reassembledDataFullSize = 0;
             reassembledDataHasStart = false;
             reassembledDataHasEnd = false;
@@ -526,18 +556,18 @@ public class JavaDepacketizer extends VideoCodec {
          * @param timeStamp
          */
         public void removeOldestThan(long timeStamp) {
-            // Find spot from which to remove
-            int spot = numberOfAssemblers - 1;
+            // Keep the assemblers of newer timestamps on the left, in their order, and move the
+            // removed ones to the right so that they are reused
+            int kept = 0;
             for (int i = 0; i < numberOfAssemblers; i++) {
-                if (timeStamp <= assemblers[i].getTimeStamp()) {
-                    spot = i;
+                FrameAssembler assembler = assemblers[i];
+                if (assembler.getTimeStamp() > timeStamp) {
+                    assemblers[i] = assemblers[kept];
+                    assemblers[kept] = assembler;
+                    kept++;
                 }
             }
-            // remove all assemblers with oldest timeStamp to the left
-            for (int i = numberOfAssemblers - 1; i > spot; i--) {
-                assemblers[i - 1] = assemblers[i];
-            }
-            numberOfAssemblers -= spot + 1;
+            numberOfAssemblers = kept;
         }
     }
 }
@@ -0,0 +1,311 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.protocol.rtp.core;
+
+import com.orangelabs.rcs.core.ims.protocol.rtp.event.RtcpEvent;
+import com.orangelabs.rcs.core.ims.protocol.rtp.event.RtcpEventListener;
+import com.orangelabs.rcs.core.ims.protocol.rtp.event.RtcpReceiverReportEvent;
+import com.orangelabs.rcs.core.ims.protocol.rtp.event.RtcpSenderReportEvent;
+
+/**
+ * Sender bitrate controller driven by the reception reports sent back by the remote. The target
+ * bitrate is decreased multiplicatively on packet loss or when the round trip time grows above its
+ * minimum, i.e. when packets start to queue in the network, and is increased step by step while
+ * the path is clean. The frame rate follows the bitrate once it drops below half of the maximum.
+ */
+public class BitrateController implements RtcpEventListener {
+    /**
+     * Loss ratio above which the bitrate is decreased
+     */
+    private static final double LOSS_HIGH = 0.10;
+
+    /**
+     * Loss ratio under which the bitrate may be increased
+     */
+    private static final double LOSS_LOW = 0.02;
+
+    /**
+     * Queuing delay in milliseconds above which the bitrate is decreased
+     */
+    private static final long DELAY_HIGH = 150;
+
+    /**
+     * Queuing delay in milliseconds under which the bitrate may be increased
+     */
+    private static final long DELAY_LOW = 50;
+
+    /**
+     * Jitter increase in milliseconds above which the bitrate is not increased
+     */
+    private static final long JITTER_HIGH = 30;
+
+    /**
+     * Round trip times above this value in milliseconds are discarded
+     */
+    private static final long MAX_RTT = 10000;
+
+    /**
+     * Decrease factor on queuing delay
+     */
+    private static final double DECREASE_FACTOR = 0.85;
+
+    /**
+     * Increase factor on clean reports
+     */
+    private static final double INCREASE_FACTOR = 1.08;
+
+    /**
+     * Ratio between the maximum and the minimum bitrate
+     */
+    private static final int MAX_REDUCTION = 8;
+
+    /**
+     * Minimum frame rate
+     */
+    private static final float MIN_FRAME_RATE = 5;
+
+    /**
+     * Ratio between the pacing rate and the target bitrate, leaving room for the frame size
+     * variations of the encoder
+     */
+    private static final double PACING_FACTOR = 2.0;
+
+    /**
+     * RTCP Session
+     */
+    private RtcpSession rtcpSession;
+
+    /**
+     * RTP transmitter
+     */
+    private RtpPacketTransmitter rtpTransmitter;
+
+    /**
+     * RTP clock rate of the stream
+     */
+    private int clockRate;
+
+    /**
+     * Maximum bitrate
+     */
+    private int maxBitrate;
+
+    /**
+     * Minimum bitrate
+     */
+    private int minBitrate;
+
+    /**
+     * Maximum frame rate
+     */
+    private float maxFrameRate;
+
+    /**
+     * Bitrate listener
+     */
+    private BitrateListener listener;
+
+    /**
+     * Target bitrate
+     */
+    private int targetBitrate;
+
+    /**
+     * Target frame rate
+     */
+    private float targetFrameRate;
+
+    /**
+     * Extended highest sequence number of the previous report
+     */
+    private long lastSeq = -1;
+
+    /**
+     * Cumulative number of packets lost of the previous report
+     */
+    private int packetsLost;
+
+    /**
+     * Number of packets sent at the previous report
+     */
+    private long packetCount;
+
+    /**
+     * Minimum round trip time in milliseconds
+     */
+    private long minRtt = Long.MAX_VALUE;
+
+    /**
+     * Minimum jitter in milliseconds
+     */
+    private long minJitter = Long.MAX_VALUE;
+
+    /**
+     * Constructor
+     * 
+     * @param rtcpSession RTCP session of the sender
+     * @param rtpTransmitter RTP transmitter to pace
+     * @param clockRate RTP clock rate of the stream
+     * @param maxBitrate Maximum bitrate in bits per second
+     * @param maxFrameRate Maximum frame rate
+     * @param listener Bitrate listener
+     */
+    public BitrateController(RtcpSession rtcpSession, RtpPacketTransmitter rtpTransmitter,
+            int clockRate, int maxBitrate, float maxFrameRate, BitrateListener listener) {
+        this.rtcpSession = rtcpSession;
+        this.rtpTransmitter = rtpTransmitter;
+        this.clockRate = clockRate;
+        this.maxBitrate = maxBitrate;
+        this.minBitrate = maxBitrate / MAX_REDUCTION;
+        this.maxFrameRate = maxFrameRate;
+        this.listener = listener;
+        this.targetBitrate = maxBitrate;
+        this.targetFrameRate = maxFrameRate;
+
+        rtpTransmitter.setPacingRate((int) (maxBitrate * PACING_FACTOR));
+    }
+
+    /**
+     * Returns the target bitrate
+     * 
+     * @return Bits per second
+     */
+    public int getTargetBitrate() {
+        return targetBitrate;
+    }
+
+    /**
+     * Returns the target frame rate
+     * 
+     * @return Frames per second
+     */
+    public float getTargetFrameRate() {
+        return targetFrameRate;
+    }
+
+    @Override
+    public void receiveRtcpEvent(RtcpEvent event) {
+        if (event instanceof RtcpReceiverReportEvent) {
+            receiveReports(((RtcpReceiverReportPacket) event.getPacket()).reports);
+        } else if (event instanceof RtcpSenderReportEvent) {
+            receiveReports(((RtcpSenderReportPacket) event.getPacket()).reports);
+        }
+    }
+
+    @Override
+    public void connectionTimeout() {
+        // Nothing to do
+    }
+
+    /**
+     * Update the target bitrate from the report blocks of a SR or a RR
+     * 
+     * @param reports Report blocks
+     */
+    private void receiveReports(RtcpReport[] reports) {
+        RtcpReport report = findReport(reports);
+        if (report == null) {
+            return;
+        }
+
+        // Loss over the report interval, from the cumulative counters when the previous report is
+        // known since reports may be lost too
+        double loss = report.fractionlost / 256.0;
+        long sent = rtcpSession.packetCount;
+        if (lastSeq != -1) {
+            long expected = report.lastseq - lastSeq;
+            if (expected > 0) {
+                loss = Math.max(loss, (report.packetslost - packetsLost) / (double) expected);
+            } else if (sent > packetCount) {
+                // Nothing received by the remote while packets were sent
+                loss = 1;
+            }
+        }
+        lastSeq = report.lastseq;
+        packetsLost = report.packetslost;
+        packetCount = sent;
+
+        // Jitter growth, the jitter of a video stream being never null because of the frames
+        // spread over several packets
+        long jitter = ((long) report.jitter * 1000) / clockRate;
+        minJitter = Math.min(minJitter, jitter);
+        boolean jitterHigh = (jitter - minJitter) > JITTER_HIGH;
+
+        // Queuing delay, from the round trip time computed as described in RFC 3550 6.4.1. The
+        // remote has to provide the DLSR for the round trip time to be meaningful.
+        long queuingDelay = 0;
+        if (report.lsr != 0 && report.dlsr != 0) {
+            long now = (RtcpPacketUtils.toNtpTimestamp(System.currentTimeMillis()) >>> 16)
+                    & 0xffffffffL;
+            long rtt = (((now - report.lsr - report.dlsr) & 0xffffffffL) * 1000) >>> 16;
+            if (rtt < MAX_RTT) {
+                minRtt = Math.min(minRtt, rtt);
+                queuingDelay = rtt - minRtt;
+            }
+        }
+
+        double bitrate = targetBitrate;
+        if (loss > LOSS_HIGH) {
+            bitrate *= 1 - loss / 2;
+        } else if (queuingDelay > DELAY_HIGH) {
+            bitrate *= DECREASE_FACTOR;
+        } else if (loss < LOSS_LOW && queuingDelay < DELAY_LOW && !jitterHigh) {
+            bitrate *= INCREASE_FACTOR;
+        }
+        setTarget((int) Math.max(minBitrate, Math.min(maxBitrate, bitrate)));
+    }
+
+    /**
+     * Returns the report block about the stream sent in this session
+     * 
+     * @param reports Report blocks
+     * @return Report or null
+     */
+    private RtcpReport findReport(RtcpReport[] reports) {
+        if (reports == null || reports.length == 0) {
+            return null;
+        }
+        for (RtcpReport report : reports) {
+            if (report.ssrc == rtcpSession.SSRC) {
+                return report;
+            }
+        }
+        // Some implementations put their own SSRC in the report block
+        return reports[0];
+    }
+
+    /**
+     * Set the target bitrate and the frame rate derived from it
+     * 
+     * @param bitrate Target bitrate
+     */
+    private void setTarget(int bitrate) {
+        float frameRate = maxFrameRate * Math.min(1f, (2f * bitrate) / maxBitrate);
+        frameRate = Math.min(maxFrameRate, Math.max(MIN_FRAME_RATE, frameRate));
+        if (bitrate == targetBitrate && frameRate == targetFrameRate) {
+            return;
+        }
+        targetBitrate = bitrate;
+        targetFrameRate = frameRate;
+        rtpTransmitter.setPacingRate((int) (bitrate * PACING_FACTOR));
+        if (listener != null) {
+            listener.onTargetBitrateChanged(bitrate, frameRate);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.protocol.rtp.core;
+
+/**
+ * Listener of the target bitrate computed by a bitrate controller
+ */
+public interface BitrateListener {
+    /**
+     * The target bitrate of the sender has changed
+     * 
+     * @param bitrate Target bitrate in bits per second
+     * @param frameRate Target frame rate in frames per second
+     */
+    void onTargetBitrateChanged(int bitrate, float frameRate);
+}
@@ -69,6 +69,11 @@ public abstract class RtcpPacket extends Packet {
      */
     public static final int RTCP_COMPOUND = -1;
 
+    /**
+     * Maximum size of a RTCP compound packet =1500
+     */
+    public static final int MAX_PACKET_SIZE = 1500;
+
     public Packet base;
 
     public int type;
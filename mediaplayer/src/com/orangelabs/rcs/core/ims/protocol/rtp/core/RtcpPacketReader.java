@@ -0,0 +1,474 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.protocol.rtp.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * RTCP compound packet reader. The packets are validated and read in place in the received
+ * buffer, one packet after the other, the fields of the current packet being read on demand.
+ */
+public class RtcpPacketReader {
+
+    /**
+     * Size of the fixed part of a sender report
+     */
+    private static final int SR_HEADER_SIZE = 28;
+
+    /**
+     * Size of the fixed part of a receiver report
+     */
+    private static final int RR_HEADER_SIZE = 8;
+
+    /**
+     * Size of a report block
+     */
+    private static final int REPORT_BLOCK_SIZE = 24;
+
+    /**
+     * Size of the fixed part of an application-defined packet
+     */
+    private static final int APP_HEADER_SIZE = 12;
+
+    private ByteBuffer buffer;
+
+    private int end;
+
+    private int nextPacket;
+
+    private int packetStart;
+
+    /**
+     * Length of the current packet without its padding
+     */
+    private int packetLength;
+
+    private int type;
+
+    private int count;
+
+    /**
+     * Start reading a compound packet
+     * 
+     * @param buffer Buffer from the first to the last byte of the compound packet
+     */
+    public void reset(ByteBuffer buffer) {
+        this.buffer = buffer;
+        nextPacket = buffer.position();
+        end = buffer.limit();
+        packetStart = nextPacket;
+        packetLength = 0;
+    }
+
+    /**
+     * Move to the next packet of the compound packet
+     * 
+     * @return False if there is no more packet
+     * @throws IOException if the packet is malformed
+     */
+    public boolean next() throws IOException {
+        if (nextPacket >= end) {
+            return false;
+        }
+        int offset = nextPacket;
+        if (offset + 4 > end) {
+            throw new IOException("Bad RTCP packet length : " + (end - offset));
+        }
+        int firstbyte = buffer.get(offset) & 0xff;
+        if ((firstbyte & 0xc0) != 128) {
+            throw new IOException("Bad RTCP packet version for firstbyte : " + firstbyte);
+        }
+        int length = (buffer.getShort(offset + 2) & 0xffff) + 1 << 2;
+        if (offset + length > end) {
+            throw new IOException("Bad RTCP packet length : " + (offset + length - nextPacket));
+        }
+        int padlen = 0;
+        if ((firstbyte & 0x20) != 0) {
+            if (offset + length != end) {
+                throw new IOException("Bad RTCP packet format (P != 0)");
+            }
+            padlen = buffer.get(end - 1) & 0xff;
+            if (padlen == 0 || padlen > length - 4) {
+                throw new IOException("Bad RTCP packet format with padding : " + padlen);
+            }
+        }
+        packetStart = offset;
+        packetLength = length - padlen;
+        type = buffer.get(offset + 1) & 0xff;
+        count = firstbyte & 0x1f;
+        nextPacket = offset + length;
+
+        switch (type) {
+            case RtcpPacket.RTCP_SR:
+                if (packetLength != SR_HEADER_SIZE + REPORT_BLOCK_SIZE * count) {
+                    throw new IOException("Bad RTCP SR packet format");
+                }
+                break;
+
+            case RtcpPacket.RTCP_RR:
+                if (packetLength != RR_HEADER_SIZE + REPORT_BLOCK_SIZE * count) {
+                    throw new IOException("Bad RTCP RR packet format");
+                }
+                break;
+
+            case RtcpPacket.RTCP_SDES:
+                checkSdesPacket();
+                break;
+
+            case RtcpPacket.RTCP_BYE:
+                int reasonOffset = 4 + 4 * count;
+                int reasonLength = 0;
+                if (packetLength > reasonOffset) {
+                    reasonLength = (buffer.get(offset + reasonOffset) & 0xff) + 1 + 3 & -4;
+                }
+                if (packetLength != reasonOffset + reasonLength) {
+                    throw new IOException("Bad RTCP BYE packet format");
+                }
+                break;
+
+            case RtcpPacket.RTCP_APP:
+                if (packetLength < APP_HEADER_SIZE) {
+                    throw new IOException("Bad RTCP APP packet format");
+                }
+                break;
+
+            default:
+                // Unknown packets are left to the caller
+                break;
+        }
+        return true;
+    }
+
+    private void checkSdesPacket() throws IOException {
+        int packetEnd = packetStart + packetLength;
+        int pos = packetStart + 4;
+        for (int i = 0; i < count; i++) {
+            // SSRC followed by the list of items
+            pos += 4;
+            boolean gotcname = false;
+            int itemType;
+            do {
+                if (pos >= packetEnd) {
+                    throw new IOException("Bad RTCP SDES packet format");
+                }
+                itemType = buffer.get(pos++) & 0xff;
+                if (itemType > 8) {
+                    throw new IOException("Bad RTCP SDES packet format");
+                }
+                if (itemType != 0) {
+                    if (itemType == 1) {
+                        gotcname = true;
+                    }
+                    if (pos >= packetEnd) {
+                        throw new IOException("Bad RTCP SDES packet format");
+                    }
+                    pos += 1 + (buffer.get(pos) & 0xff);
+                }
+            } while (itemType != 0);
+            if (!gotcname) {
+                throw new IOException("Bad RTCP SDES packet format");
+            }
+            // Chunks are 32 bit aligned
+            pos = packetStart + (pos - packetStart + 3 & -4);
+        }
+        if (pos != packetEnd) {
+            throw new IOException("Bad RTCP SDES packet format");
+        }
+    }
+
+    /**
+     * Returns the type of the current packet
+     * 
+     * @return Type
+     */
+    public int getType() {
+        return type;
+    }
+
+    /**
+     * Returns the count field of the current packet: the number of report blocks of a report,
+     * the number of chunks of a SDES, the number of sources of a BYE or the subtype of an APP
+     * 
+     * @return Count
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the offset of the current packet in the buffer
+     * 
+     * @return Offset
+     */
+    public int getOffset() {
+        return packetStart;
+    }
+
+    /**
+     * Returns the length of the current packet, padding included
+     * 
+     * @return Length
+     */
+    public int getLength() {
+        return nextPacket - packetStart;
+    }
+
+    /**
+     * Returns the first SSRC of the current packet: the sender of a report or APP packet, the
+     * first chunk of a SDES or the first source of a BYE
+     * 
+     * @return SSRC
+     */
+    public int getSsrc() {
+        return buffer.getInt(packetStart + 4);
+    }
+
+    /**
+     * Returns the NTP timestamp of the current sender report
+     * 
+     * @return NTP timestamp
+     */
+    public long getNtpTimestamp() {
+        return buffer.getLong(packetStart + 8);
+    }
+
+    /**
+     * Returns the RTP timestamp of the current sender report
+     * 
+     * @return RTP timestamp
+     */
+    public long getRtpTimestamp() {
+        return buffer.getInt(packetStart + 16) & 0xffffffffL;
+    }
+
+    /**
+     * Returns the packet count of the current sender report
+     * 
+     * @return Packet count
+     */
+    public long getPacketCount() {
+        return buffer.getInt(packetStart + 20) & 0xffffffffL;
+    }
+
+    /**
+     * Returns the octet count of the current sender report
+     * 
+     * @return Octet count
+     */
+    public long getOctetCount() {
+        return buffer.getInt(packetStart + 24) & 0xffffffffL;
+    }
+
+    private int getReportBlock(int index) {
+        return packetStart + (type == RtcpPacket.RTCP_SR ? SR_HEADER_SIZE : RR_HEADER_SIZE)
+                + REPORT_BLOCK_SIZE * index;
+    }
+
+    /**
+     * Returns the SSRC of a report block of the current report
+     * 
+     * @param index Index of the report block
+     * @return SSRC of the source reported
+     */
+    public int getReportSsrc(int index) {
+        return buffer.getInt(getReportBlock(index));
+    }
+
+    /**
+     * Returns the fraction lost of a report block of the current report
+     * 
+     * @param index Index of the report block
+     * @return Fraction lost in 1/256
+     */
+    public int getReportFractionLost(int index) {
+        return buffer.get(getReportBlock(index) + 4) & 0xff;
+    }
+
+    /**
+     * Returns the cumulative number of packets lost of a report block of the current report
+     * 
+     * @param index Index of the report block
+     * @return Number of packets lost
+     */
+    public int getReportPacketsLost(int index) {
+        return buffer.getInt(getReportBlock(index) + 4) & 0xffffff;
+    }
+
+    /**
+     * Returns the extended highest sequence number received of a report block of the current
+     * report
+     * 
+     * @param index Index of the report block
+     * @return Extended sequence number
+     */
+    public long getReportLastSeq(int index) {
+        return buffer.getInt(getReportBlock(index) + 8) & 0xffffffffL;
+    }
+
+    /**
+     * Returns the interarrival jitter of a report block of the current report
+     * 
+     * @param index Index of the report block
+     * @return Jitter in timestamp units
+     */
+    public int getReportJitter(int index) {
+        return buffer.getInt(getReportBlock(index) + 12);
+    }
+
+    /**
+     * Returns the last SR timestamp of a report block of the current report
+     * 
+     * @param index Index of the report block
+     * @return Middle 32 bits of the NTP timestamp of the last sender report
+     */
+    public long getReportLsr(int index) {
+        return buffer.getInt(getReportBlock(index) + 16) & 0xffffffffL;
+    }
+
+    /**
+     * Returns the delay since last SR of a report block of the current report
+     * 
+     * @param index Index of the report block
+     * @return Delay in 1/65536 seconds
+     */
+    public long getReportDlsr(int index) {
+        return buffer.getInt(getReportBlock(index) + 20) & 0xffffffffL;
+    }
+
+    /**
+     * Returns a report block of the current report
+     * 
+     * @param index Index of the report block
+     * @return Report
+     */
+    public RtcpReport getReport(int index) {
+        RtcpReport report = new RtcpReport();
+        report.ssrc = getReportSsrc(index);
+        report.fractionlost = getReportFractionLost(index);
+        report.packetslost = getReportPacketsLost(index);
+        report.lastseq = getReportLastSeq(index);
+        report.jitter = getReportJitter(index);
+        report.lsr = getReportLsr(index);
+        report.dlsr = getReportDlsr(index);
+        return report;
+    }
+
+    /**
+     * Returns the chunks of the current SDES
+     * 
+     * @return Chunks
+     */
+    public RtcpSdesBlock[] getSdesBlocks() {
+        RtcpSdesBlock[] blocks = new RtcpSdesBlock[count];
+        int pos = packetStart + 4;
+        for (int i = 0; i < count; i++) {
+            RtcpSdesBlock block = new RtcpSdesBlock();
+            blocks[i] = block;
+            block.ssrc = buffer.getInt(pos);
+            pos += 4;
+            int itemCount = 0;
+            for (int item = pos; buffer.get(item) != 0; item += 2 + (buffer.get(item + 1)
+                    & 0xff)) {
+                itemCount++;
+            }
+            block.items = new RtcpSdesItem[itemCount];
+            for (int j = 0; j < itemCount; j++) {
+                RtcpSdesItem item = new RtcpSdesItem();
+                item.type = buffer.get(pos) & 0xff;
+                item.data = new byte[buffer.get(pos + 1) & 0xff];
+                copy(pos + 2, item.data);
+                block.items[j] = item;
+                pos += 2 + item.data.length;
+            }
+            pos = packetStart + (pos + 1 - packetStart + 3 & -4);
+        }
+        return blocks;
+    }
+
+    /**
+     * Returns the SSRC of a source of the current BYE
+     * 
+     * @param index Index of the source
+     * @return SSRC
+     */
+    public int getByeSsrc(int index) {
+        return buffer.getInt(packetStart + 4 + 4 * index);
+    }
+
+    /**
+     * Returns the reason for leaving of the current BYE
+     * 
+     * @return Reason, empty if there is none
+     */
+    public byte[] getByeReason() {
+        int reasonOffset = packetStart + 4 + 4 * count;
+        if (packetStart + packetLength <= reasonOffset) {
+            return new byte[0];
+        }
+        byte[] reason = new byte[buffer.get(reasonOffset) & 0xff];
+        copy(reasonOffset + 1, reason);
+        return reason;
+    }
+
+    /**
+     * Returns the name of the current APP packet
+     * 
+     * @return Name made of four ASCII characters
+     */
+    public int getAppName() {
+        return buffer.getInt(packetStart + 8);
+    }
+
+    /**
+     * Returns the offset in the buffer of the application-dependent data of the current APP
+     * packet
+     * 
+     * @return Offset
+     */
+    public int getAppDataOffset() {
+        return packetStart + APP_HEADER_SIZE;
+    }
+
+    /**
+     * Returns the length of the application-dependent data of the current APP packet
+     * 
+     * @return Length
+     */
+    public int getAppDataLength() {
+        return packetLength - APP_HEADER_SIZE;
+    }
+
+    /**
+     * Returns the application-dependent data of the current APP packet
+     * 
+     * @return Data
+     */
+    public byte[] getAppData() {
+        byte[] data = new byte[getAppDataLength()];
+        copy(getAppDataOffset(), data);
+        return data;
+    }
+
+    private void copy(int offset, byte[] dst) {
+        for (int i = 0; i < dst.length; i++) {
+            dst[i] = buffer.get(offset + i);
+        }
+    }
+}
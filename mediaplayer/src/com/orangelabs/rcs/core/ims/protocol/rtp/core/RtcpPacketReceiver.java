@@ -18,10 +18,9 @@
 
 package com.orangelabs.rcs.core.ims.protocol.rtp.core;
 
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
 import java.io.IOException;
 import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
 import java.util.Vector;
 
 import com.orangelabs.rcs.core.ims.protocol.rtp.event.RtcpApplicationEvent;
@@ -61,6 +60,21 @@ public class RtcpPacketReceiver extends Thread {
      */
     private RtcpSession rtcpSession = null;
 
+    /**
+     * Buffer in which the RTCP packets are received
+     */
+    private ByteBuffer buffer = ByteBuffer.allocate(RtcpPacket.MAX_PACKET_SIZE);
+
+    /**
+     * Received packet, wrapping the receive buffer
+     */
+    private Packet packet = new Packet();
+
+    /**
+     * RTCP packet reader
+     */
+    private RtcpPacketReader reader = new RtcpPacketReader();
+
     /**
      * Constructor
      * 
@@ -74,6 +88,8 @@ public class RtcpPacketReceiver extends Thread {
         super();
 
         this.rtcpSession = rtcpSession;
+        packet.data = buffer.array();
+        packet.offset = 0;
 
         // Create the UDP server
         datagramConnection = new AndroidDatagramConnection(socketTimeout);
@@ -117,13 +133,8 @@ public class RtcpPacketReceiver extends Thread {
         try {
             while (datagramConnection != null) {
                 // Wait a packet
-                byte[] data = datagramConnection.receive();
-
-                // Create a packet object
-                Packet packet = new Packet();
-                packet.data = data;
-                packet.length = data.length;
-                packet.offset = 0;
+                datagramConnection.receive(buffer);
+                packet.length = buffer.limit();
                 packet.receivedAt = System.currentTimeMillis();
 
                 // Process the received packet
@@ -139,270 +150,140 @@ public class RtcpPacketReceiver extends Thread {
     /**
      * Handle the received packet
      * 
-     * @param packet Packet
-     * @return RTCP packet
+     * @param p Packet wrapping the receive buffer
      */
-    public RtcpPacket handlePacket(Packet p) {
+    private void handlePacket(Packet p) {
         // Update statistics
         stats.numRtcpPkts++;
         stats.numRtcpBytes += p.length;
 
         // Parse the RTCP packet
-        RtcpPacket result;
-        try {
-            result = parseRtcpPacket(p);
-        } catch (Exception e) {
+        if (!parseRtcpPacket(p)) {
             stats.numBadRtcpPkts++;
-            return null;
         }
-        return result;
     }
 
     /**
-     * Parse the RTCP packet
+     * Parse the received RTCP compound packet in place. The packet objects carried by the events
+     * are only created when there are listeners to notify.
      * 
-     * @param packet RTCP packet not yet parsed
-     * @return RTCP packet
+     * @param p Packet wrapping the receive buffer
+     * @return False if the packet is malformed
      */
-    public RtcpPacket parseRtcpPacket(Packet packet) {
-        RtcpCompoundPacket compoundPacket = new RtcpCompoundPacket(packet);
-        Vector<RtcpPacket> subpackets = new Vector<RtcpPacket>();
-        DataInputStream in = new DataInputStream(
-                new ByteArrayInputStream(compoundPacket.data,
-                        compoundPacket.offset,
-                        compoundPacket.length));
+    private boolean parseRtcpPacket(Packet p) {
+        rtcpSession.updateavgrtcpsize(p.length);
+        reader.reset(buffer);
+        RtcpCompoundPacket compoundPacket = null;
         try {
-            rtcpSession.updateavgrtcpsize(compoundPacket.length);
-            int length = 0;
-            for (int offset = 0; offset < compoundPacket.length; offset += length) {
-                // Read first byte
-                int firstbyte = in.readUnsignedByte();
-                if ((firstbyte & 0xc0) != 128) {
-                    return null;
-                }
-
-                // Read type of subpacket
-                int type = in.readUnsignedByte();
-
-                // Read length of subpacket
-                length = in.readUnsignedShort();
-                length = length + 1 << 2;
-                int padlen = 0;
-                if (offset + length > compoundPacket.length) {
-                    return null;
+            while (reader.next()) {
+                boolean notify = !listeners.isEmpty();
+                if (notify && compoundPacket == null) {
+                    compoundPacket = new RtcpCompoundPacket(p);
                 }
-                if (offset + length == compoundPacket.length) {
-                    if ((firstbyte & 0x20) != 0) {
-                        padlen = compoundPacket.data[compoundPacket.offset + compoundPacket.length
-                                - 1] & 0xff;
-                        if (padlen == 0) {
-                            return null;
-                        }
-                    }
-                } else if ((firstbyte & 0x20) != 0) {
-                    return null;
-                }
-                int inlength = length - padlen;
-                firstbyte &= 0x1f;
-
-                // Parse subpacket
-                RtcpPacket subpacket;
-                switch (type) {
+                RtcpPacket subpacket = null;
+                switch (reader.getType()) {
                 // RTCP SR event
                     case RtcpPacket.RTCP_SR:
                         stats.numSrPkts++;
-                        if (inlength != 28 + 24 * firstbyte) {
-                            stats.numMalformedRtcpPkts++;
-                            return null;
-                        }
-                        RtcpSenderReportPacket srp = new RtcpSenderReportPacket(compoundPacket);
-                        subpacket = srp;
-                        srp.ssrc = in.readInt();
-                        srp.ntptimestampmsw = (long) in.readInt() & 0xffffffffL;
-                        srp.ntptimestamplsw = (long) in.readInt() & 0xffffffffL;
-                        srp.rtptimestamp = (long) in.readInt() & 0xffffffffL;
-                        srp.packetcount = (long) in.readInt() & 0xffffffffL;
-                        srp.octetcount = (long) in.readInt() & 0xffffffffL;
-                        srp.reports = new RtcpReport[firstbyte];
-
                         RtpSource sourceSR = rtcpSession.getMySource();
                         if (sourceSR != null) {
-                            sourceSR.receivedSenderReport(srp);
+                            sourceSR.receivedSenderReport(reader.getNtpTimestamp());
                         }
+                        if (notify) {
+                            RtcpSenderReportPacket srp = new RtcpSenderReportPacket(compoundPacket);
+                            subpacket = srp;
+                            long ntpTimestamp = reader.getNtpTimestamp();
+                            srp.ssrc = reader.getSsrc();
+                            srp.ntptimestampmsw = ntpTimestamp >>> 32;
+                            srp.ntptimestamplsw = ntpTimestamp & 0xffffffffL;
+                            srp.rtptimestamp = reader.getRtpTimestamp();
+                            srp.packetcount = reader.getPacketCount();
+                            srp.octetcount = reader.getOctetCount();
+                            srp.reports = new RtcpReport[reader.getCount()];
+                            for (int i = 0; i < srp.reports.length; i++) {
+                                srp.reports[i] = reader.getReport(i);
+                            }
 
-                        for (int i = 0; i < srp.reports.length; i++) {
-                            RtcpReport report = new RtcpReport();
-                            srp.reports[i] = report;
-                            report.ssrc = in.readInt();
-                            long val = in.readInt();
-                            val &= 0xffffffffL;
-                            report.fractionlost = (int) (val >> 24);
-                            report.packetslost = (int) (val & 0xffffffL);
-                            report.lastseq = (long) in.readInt() & 0xffffffffL;
-                            report.jitter = in.readInt();
-                            report.lsr = (long) in.readInt() & 0xffffffffL;
-                            report.dlsr = (long) in.readInt() & 0xffffffffL;
+                            // Notify event listeners
+                            notifyRtcpListeners(new RtcpSenderReportEvent(srp));
                         }
-
-                        // Notify event listeners
-                        notifyRtcpListeners(new RtcpSenderReportEvent(srp));
                         break;
 
                     // RTCP RR event
                     case RtcpPacket.RTCP_RR:
-                        if (inlength != 8 + 24 * firstbyte) {
-                            stats.numMalformedRtcpPkts++;
-                            return null;
-                        }
-                        RtcpReceiverReportPacket rrp = new RtcpReceiverReportPacket(compoundPacket);
-                        subpacket = rrp;
-                        rrp.ssrc = in.readInt();
-                        rrp.reports = new RtcpReport[firstbyte];
-
-                        for (int i = 0; i < rrp.reports.length; i++) {
-                            RtcpReport report = new RtcpReport();
-                            rrp.reports[i] = report;
-                            report.ssrc = in.readInt();
-                            long val = in.readInt();
-                            val &= 0xffffffffL;
-                            report.fractionlost = (int) (val >> 24);
-                            report.packetslost = (int) (val & 0xffffffL);
-                            report.lastseq = (long) in.readInt() & 0xffffffffL;
-                            report.jitter = in.readInt();
-                            report.lsr = (long) in.readInt() & 0xffffffffL;
-                            report.dlsr = (long) in.readInt() & 0xffffffffL;
-                        }
+                        if (notify) {
+                            RtcpReceiverReportPacket rrp = new RtcpReceiverReportPacket(
+                                    compoundPacket);
+                            subpacket = rrp;
+                            rrp.ssrc = reader.getSsrc();
+                            rrp.reports = new RtcpReport[reader.getCount()];
+                            for (int i = 0; i < rrp.reports.length; i++) {
+                                rrp.reports[i] = reader.getReport(i);
+                            }
 
-                        // Notify event listeners
-                        notifyRtcpListeners(new RtcpReceiverReportEvent(rrp));
+                            // Notify event listeners
+                            notifyRtcpListeners(new RtcpReceiverReportEvent(rrp));
+                        }
                         break;
 
                     // RTCP SDES event
                     case RtcpPacket.RTCP_SDES:
-                        RtcpSdesPacket sdesp = new RtcpSdesPacket(compoundPacket);
-                        subpacket = sdesp;
-                        sdesp.sdes = new RtcpSdesBlock[firstbyte];
-                        int sdesoff = 4;
-                        for (int i = 0; i < sdesp.sdes.length; i++) {
-                            RtcpSdesBlock chunk = new RtcpSdesBlock();
-                            sdesp.sdes[i] = chunk;
-                            chunk.ssrc = in.readInt();
-                            sdesoff += 5;
-                            Vector<RtcpSdesItem> items = new Vector<RtcpSdesItem>();
-                            boolean gotcname = false;
-                            int j;
-                            while ((j = in.readUnsignedByte()) != 0) {
-                                if (j < 1 || j > 8) {
-                                    stats.numMalformedRtcpPkts++;
-                                    return null;
-                                }
-                                if (j == 1) {
-                                    gotcname = true;
-                                }
-                                RtcpSdesItem item = new RtcpSdesItem();
-                                items.addElement(item);
-                                item.type = j;
-                                int sdeslen = in.readUnsignedByte();
-                                item.data = new byte[sdeslen];
-                                in.readFully(item.data);
-                                sdesoff += 2 + sdeslen;
-                            }
-                            if (!gotcname) {
-                                stats.numMalformedRtcpPkts++;
-                                return null;
-                            }
-                            chunk.items = new RtcpSdesItem[items.size()];
-                            items.copyInto(chunk.items);
-                            if ((sdesoff & 3) != 0) {
-                                if (in.skip(4 - (sdesoff & 3)) != 4 - (sdesoff & 3)) {
-                                    return null;
-                                }
-                                sdesoff = sdesoff + 3 & -4;
-                            }
-                        }
+                        if (notify) {
+                            RtcpSdesPacket sdesp = new RtcpSdesPacket(compoundPacket);
+                            subpacket = sdesp;
+                            sdesp.sdes = reader.getSdesBlocks();
 
-                        if (inlength != sdesoff) {
-                            stats.numMalformedRtcpPkts++;
-                            return null;
+                            // Notify event listeners
+                            notifyRtcpListeners(new RtcpSdesEvent(sdesp));
                         }
-
-                        // Notify event listeners
-                        notifyRtcpListeners(new RtcpSdesEvent(sdesp));
                         break;
 
                     // RTCP BYE event
                     case RtcpPacket.RTCP_BYE:
-                        RtcpByePacket byep = new RtcpByePacket(compoundPacket);
-                        subpacket = byep;
-                        byep.ssrc = new int[firstbyte];
-                        for (int i = 0; i < byep.ssrc.length; i++) {
-                            byep.ssrc[i] = in.readInt();
-                        }
+                        if (notify) {
+                            RtcpByePacket byep = new RtcpByePacket(compoundPacket);
+                            subpacket = byep;
+                            byep.ssrc = new int[reader.getCount()];
+                            for (int i = 0; i < byep.ssrc.length; i++) {
+                                byep.ssrc[i] = reader.getByeSsrc(i);
+                            }
+                            byep.reason = reader.getByeReason();
 
-                        int reasonlen;
-                        if (inlength > 4 + 4 * firstbyte) {
-                            reasonlen = in.readUnsignedByte();
-                            byep.reason = new byte[reasonlen];
-                            reasonlen++;
-                        } else {
-                            reasonlen = 0;
-                            byep.reason = new byte[0];
-                        }
-                        reasonlen = reasonlen + 3 & -4;
-                        if (inlength != 4 + 4 * firstbyte + reasonlen) {
-                            stats.numMalformedRtcpPkts++;
-                            return null;
-                        }
-                        in.readFully(byep.reason);
-                        int skipBye = reasonlen - byep.reason.length;
-                        if (in.skip(skipBye) != skipBye) {
-                            return null;
+                            // Notify event listeners
+                            notifyRtcpListeners(new RtcpByeEvent(byep));
                         }
-
-                        // Notify event listeners
-                        notifyRtcpListeners(new RtcpByeEvent(byep));
                         break;
 
                     // RTCP APP event
                     case RtcpPacket.RTCP_APP:
-                        if (inlength < 12) {
-                            return null;
-                        }
-                        RtcpAppPacket appp = new RtcpAppPacket(compoundPacket);
-                        subpacket = appp;
-                        appp.ssrc = in.readInt();
-                        appp.name = in.readInt();
-                        appp.subtype = firstbyte;
-                        appp.data = new byte[inlength - 12];
-                        in.readFully(appp.data);
-                        int skipApp = inlength - 12 - appp.data.length;
-                        if (in.skip(skipApp) != skipApp) {
-                            return null;
+                        if (notify) {
+                            RtcpAppPacket appp = new RtcpAppPacket(compoundPacket);
+                            subpacket = appp;
+                            appp.ssrc = reader.getSsrc();
+                            appp.name = reader.getAppName();
+                            appp.subtype = reader.getCount();
+                            appp.data = reader.getAppData();
+
+                            // Notify event listeners
+                            notifyRtcpListeners(new RtcpApplicationEvent(appp));
                         }
-
-                        // Notify event listeners
-                        notifyRtcpListeners(new RtcpApplicationEvent(appp));
                         break;
 
                     // RTCP unknown event
                     default:
                         stats.numUnknownTypes++;
-                        return null;
+                        return false;
                 }
-                subpacket.offset = offset;
-                subpacket.length = length;
-                subpackets.addElement(subpacket);
-                if (in.skipBytes(padlen) != padlen) {
-                    return null;
+                if (subpacket != null) {
+                    subpacket.offset = reader.getOffset();
+                    subpacket.length = reader.getLength();
                 }
             }
-
-        } catch (Exception e) {
-            return null;
+        } catch (IOException e) {
+            stats.numMalformedRtcpPkts++;
+            return false;
         }
-        compoundPacket.packets = new RtcpPacket[subpackets.size()];
-        subpackets.copyInto(compoundPacket.packets);
-        return compoundPacket;
+        return true;
     }
 
     /**
@@ -19,8 +19,12 @@
 package com.orangelabs.rcs.core.ims.protocol.rtp.core;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Random;
-import java.util.Vector;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import com.orangelabs.rcs.core.ims.protocol.rtp.util.AndroidDatagramConnection;
 import com.orangelabs.rcs.core.ims.protocol.rtp.util.DatagramConnection;
@@ -30,7 +34,7 @@ import com.orangelabs.rcs.core.ims.protocol.rtp.util.DatagramConnection;
  * 
  * @author jexa7410
  */
-public class RtcpPacketTransmitter extends Thread {
+public class RtcpPacketTransmitter {
     /**
      * Remote address
      */
@@ -57,14 +61,43 @@ public class RtcpPacketTransmitter extends Thread {
     private RtcpSession rtcpSession = null;
 
     /**
-     * Flag used to determine when to terminate after sending a BYE
+     * Flag used to properly close
      */
-    private boolean waitingForByeBackoff = false;
+    private volatile boolean closed = false;
 
     /**
-     * Flag used to properly close
+     * Writer of the RTCP compound packets, reused from one report to the next
+     */
+    private RtcpPacketWriter writer = new RtcpPacketWriter();
+
+    /**
+     * Reception report, updated before each report
+     */
+    private ReceptionReport receptionReport;
+
+    /**
+     * CNAME and its encoding
+     */
+    private String cname;
+
+    private byte[] cnameData;
+
+    /**
+     * Next report to be sent
+     */
+    private ScheduledFuture<?> report = null;
+
+    private Runnable reportTask = new Runnable() {
+        public void run() {
+            sendReport();
+        }
+    };
+
+    /**
+     * Scheduler shared by the RTCP transmitters of all the sessions
      */
-    private boolean closed = false;
+    private static ScheduledExecutorService scheduler = Executors
+            .newSingleThreadScheduledExecutor();
 
     /**
      * Random value
@@ -81,11 +114,10 @@ public class RtcpPacketTransmitter extends Thread {
      */
     public RtcpPacketTransmitter(String address, int port, RtcpSession rtcpSession)
             throws IOException {
-        super();
-
         this.remoteAddress = address;
         this.remotePort = port;
         this.rtcpSession = rtcpSession;
+        this.receptionReport = new ReceptionReport(rtcpSession.SSRC);
 
         // Open the connection
         datagramConnection = new AndroidDatagramConnection();
@@ -103,11 +135,10 @@ public class RtcpPacketTransmitter extends Thread {
      */
     public RtcpPacketTransmitter(String address, int port, RtcpSession rtcpSession,
             DatagramConnection connection) throws IOException {
-        super();
-
         this.remoteAddress = address;
         this.remotePort = port;
         this.rtcpSession = rtcpSession;
+        this.receptionReport = new ReceptionReport(rtcpSession.SSRC);
 
         // Open the connection
         if (connection != null) {
@@ -118,316 +149,145 @@ public class RtcpPacketTransmitter extends Thread {
         }
     }
 
+    /**
+     * Start sending the RTCP reports
+     */
+    public void start() {
+        scheduler.execute(new Runnable() {
+            public void run() {
+                // Send a SDES packet
+                sendSdesPacket();
+                scheduleReport();
+            }
+        });
+    }
+
     /**
      * Close the transmitter
      * 
      * @throws IOException
      */
     public void close() throws IOException {
-        if (closed) {
-            return;
-        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
 
-        rtcpSession.isByeRequested = true;
-        closed = true;
+            rtcpSession.isByeRequested = true;
+            closed = true;
+            if (report != null) {
+                report.cancel(false);
+                report = null;
+            }
+        }
 
         // Close the datagram connection
         if (datagramConnection != null) {
             datagramConnection.close();
         }
+    }
 
-        // If the method start() was never invoked this Thread will be on NEW
-        // state and the resources won't be freed. We need to force the start()
-        // to allow it to die gracefully
-        if (this.getState() == State.NEW) {
-            this.start();
+    /**
+     * Schedule the next report after the RTCP report interval
+     */
+    private synchronized void scheduleReport() {
+        if (closed) {
+            return;
         }
-
+        report = scheduler.schedule(reportTask, (long) rtcpSession.getReportInterval(),
+                TimeUnit.MILLISECONDS);
     }
 
     /**
-     * Background processing
+     * Send a report if it is the right time or reschedule it
      */
-    public void run() {
+    private void sendReport() {
         if (closed) {
             return;
         }
 
         try {
-            // Send a SDES packet
-            sendSdesPacket();
-
-            boolean terminate = false;
-            while (!terminate) {
-                try {
-                    // Wait the RTCP report interval.
-                    Thread.sleep((long) rtcpSession.getReportInterval());
-
-                    // Right time to send a RTCP packet or reschedule ?
-                    if ((rtcpSession.timeOfLastRTCPSent + rtcpSession.T) <= rtcpSession
-                            .currentTime()) {
-                        // We know that it is time to send a RTCP packet, is it
-                        // a BYE packet
-                        if ((rtcpSession.isByeRequested && waitingForByeBackoff)) {
-                            // If it is bye then did we ever sent anything
-                            if (rtcpSession.timeOfLastRTCPSent > 0
-                                    && rtcpSession.timeOfLastRTPSent > 0) {
-                                rtcpSession.getMySource().activeSender = false;
-                                rtcpSession.timeOfLastRTCPSent = rtcpSession.currentTime();
-                            } else {
-                                // We never sent anything and we have to quit :(
-                                // do not send BYE
-                                terminate = true;
-                            }
-                        } else {
-                            if (!closed) {
-                                transmit(assembleRtcpPacket());
-                                if (rtcpSession.isByeRequested && !waitingForByeBackoff) {
-                                    // We have sent a BYE packet, so terminate
-                                    terminate = true;
-                                } else {
-                                    rtcpSession.timeOfLastRTCPSent = rtcpSession.currentTime();
-                                }
-                            } else {
-                                terminate = true;
-                            }
-
-                        }
-                    }
-                    waitingForByeBackoff = false;
-
-                } catch (InterruptedException e) {
-                    waitingForByeBackoff = true;
-                    rtcpSession.isByeRequested = true;
+            // Right time to send a RTCP packet or reschedule ?
+            if ((rtcpSession.timeOfLastRTCPSent + rtcpSession.T) <= rtcpSession.currentTime()) {
+                assembleRtcpPacket();
+                transmit();
+                if (rtcpSession.isByeRequested) {
+                    // We have sent a BYE packet, so terminate
+                    return;
                 }
             }
+            scheduleReport();
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
     /**
-     * assemble RTCP packet
+     * Assemble a RTCP compound packet in the writer
      */
-    private byte[] assembleRtcpPacket() {
-        byte data[] = new byte[0];
+    private void assembleRtcpPacket() {
+        writer.reset();
 
         // Sender or receiver packet
         RtpSource s = rtcpSession.getMySource();
+        s.updateReceptionReport(receptionReport);
         if ((s.activeSender) && (rtcpSession.timeOfLastRTCPSent < rtcpSession.timeOfLastRTPSent)) {
-            data = RtcpPacketUtils.append(data, assembleSenderReportPacket());
+            long ntpTimestamp = RtcpPacketUtils.toNtpTimestamp(rtcpSession.currentTime());
+            long randomOffset = rand.nextInt() & 0x000000FF;
+            writer.writeSenderReport(rtcpSession.SSRC, ntpTimestamp, (long) rtcpSession.tc
+                    + randomOffset, rtcpSession.packetCount, rtcpSession.octetCount,
+                    receptionReport);
         } else {
-            data = RtcpPacketUtils.append(data, assembleReceiverReportPacket());
+            writer.writeReceiverReport(rtcpSession.SSRC, receptionReport);
         }
 
-        // SDES packets
-        Vector<RtcpSdesPacket> repvec = makereports();
-        for (int i = 0; i < repvec.size(); i++) {
-            if (repvec.elementAt(i).data != null)
-                data = RtcpPacketUtils.append(data, repvec.elementAt(i).data);
-        }
+        // SDES packet
+        writer.writeSdes(rtcpSession.SSRC, getCname());
 
         // BYE packet
-        RtcpByePacket byepacket = null;
         if (rtcpSession.isByeRequested) {
-            int ssrc[] = {
-                    rtcpSession.SSRC
-            };
-            byepacket = new RtcpByePacket(ssrc, null);
-            data = RtcpPacketUtils.append(data, byepacket.data);
+            writer.writeBye(rtcpSession.SSRC, null);
         }
-
-        return data;
-    }
-
-    /**
-     * assemble RTCP SR packet
-     * 
-     * @return packet data
-     */
-    private byte[] assembleSenderReportPacket() {
-        final int FIXED_HEADER_SIZE = 4;
-        byte V_P_RC = (byte) ((RtcpPacket.VERSION << 6) | (RtcpPacket.PADDING << 5) | (0x00));
-        byte ss[] = RtcpPacketUtils.longToBytes(rtcpSession.SSRC, 4);
-        byte PT[] = RtcpPacketUtils.longToBytes((long) RtcpPacket.RTCP_SR, 1);
-        byte NTP_TimeStamp[] = RtcpPacketUtils.longToBytes(rtcpSession.currentTime(), 8);
-        short randomOffset = (short) Math.abs(rand.nextInt() & 0x000000FF);
-        byte RTP_TimeStamp[] = RtcpPacketUtils.longToBytes((long) rtcpSession.tc
-                + randomOffset, 4);
-        byte SenderPacketCount[] = RtcpPacketUtils.longToBytes(rtcpSession.packetCount, 4);
-        byte SenderOctetCount[] = RtcpPacketUtils.longToBytes(rtcpSession.octetCount, 4);
-
-        // report block
-        byte receptionReportBlocks[] = new byte[0];
-        receptionReportBlocks = RtcpPacketUtils.append(receptionReportBlocks,
-                assembleRTCPReceptionReport());
-        byte receptionReports = (byte) (receptionReportBlocks.length / 24);
-        V_P_RC = (byte) (V_P_RC | (byte) (receptionReports & 0x1F));
-
-        // Length is 32 bit words contained in the packet -1
-        byte length[] = RtcpPacketUtils.longToBytes((FIXED_HEADER_SIZE + ss.length
-                + NTP_TimeStamp.length + RTP_TimeStamp.length + SenderPacketCount.length
-                + SenderOctetCount.length + receptionReportBlocks.length) / 4 - 1, 2);
-
-        // Build RTCP SR Packet
-        byte rtcpSRPacket[] = new byte[1];
-        rtcpSRPacket[0] = V_P_RC;
-        rtcpSRPacket = RtcpPacketUtils.append(rtcpSRPacket, PT);
-        rtcpSRPacket = RtcpPacketUtils.append(rtcpSRPacket, length);
-        rtcpSRPacket = RtcpPacketUtils.append(rtcpSRPacket, ss);
-        rtcpSRPacket = RtcpPacketUtils.append(rtcpSRPacket, NTP_TimeStamp);
-        rtcpSRPacket = RtcpPacketUtils.append(rtcpSRPacket, RTP_TimeStamp);
-        rtcpSRPacket = RtcpPacketUtils.append(rtcpSRPacket, SenderPacketCount);
-        rtcpSRPacket = RtcpPacketUtils.append(rtcpSRPacket, SenderOctetCount);
-        rtcpSRPacket = RtcpPacketUtils.append(rtcpSRPacket, receptionReportBlocks);
-
-        return rtcpSRPacket;
-    }
-
-    /**
-     * assemble RTCP RR packet
-     * 
-     * @return packet data
-     */
-    private byte[] assembleReceiverReportPacket() {
-        final int FIXED_HEADER_SIZE = 4;
-        byte V_P_RC = (byte) ((RtcpPacket.VERSION << 6) | (RtcpPacket.PADDING << 5) | (0x00));
-        byte ss[] = RtcpPacketUtils.longToBytes(rtcpSession.SSRC, 4);
-        byte PT[] = RtcpPacketUtils.longToBytes((long) RtcpPacket.RTCP_RR, 1);
-
-        // report block
-        byte receptionReportBlocks[] = new byte[0];
-        receptionReportBlocks = RtcpPacketUtils.append(receptionReportBlocks,
-                assembleRTCPReceptionReport());
-        byte receptionReports = (byte) (receptionReportBlocks.length / 24);
-        V_P_RC = (byte) (V_P_RC | (byte) (receptionReports & 0x1F));
-
-        byte length[] = RtcpPacketUtils.longToBytes(
-                (FIXED_HEADER_SIZE + ss.length + receptionReportBlocks.length) / 4 - 1, 2);
-
-        // Build RTCP RR Packet
-        byte RRPacket[] = new byte[1];
-        RRPacket[0] = V_P_RC;
-        RRPacket = RtcpPacketUtils.append(RRPacket, PT);
-        RRPacket = RtcpPacketUtils.append(RRPacket, length);
-        RRPacket = RtcpPacketUtils.append(RRPacket, ss);
-        RRPacket = RtcpPacketUtils.append(RRPacket, receptionReportBlocks);
-        return RRPacket;
-    }
-
-    /**
-     * assemble RTCP Reception report block
-     * 
-     * @return report data
-     */
-    private byte[] assembleRTCPReceptionReport() {
-        byte reportBlock[] = new byte[0];
-        RtpSource source = rtcpSession.getMySource();
-
-        ReceptionReport rr = source.generateReceptionReport();
-        byte SSRC[] = RtcpPacketUtils.longToBytes((long) rr.getSsrc(), 4);
-        byte fraction_lost[] = RtcpPacketUtils.longToBytes((long) rr.getFractionLost(), 1);
-        byte pkts_lost[] = RtcpPacketUtils.longToBytes(
-                (long) rr.getCumulativeNumberOfPacketsLost(), 3);
-        byte last_seq[] = RtcpPacketUtils.longToBytes(
-                (long) rr.getExtendedHighestSequenceNumberReceived(), 4);
-        byte jitter[] = RtcpPacketUtils.longToBytes((long) rr.getInterarrivalJitter(), 4);
-        byte lst[] = RtcpPacketUtils.longToBytes((long) rr.getLastSenderReport(), 4);
-        byte dlsr[] = RtcpPacketUtils.longToBytes((long) rr.getDelaySinceLastSenderReport(), 4);
-
-        reportBlock = RtcpPacketUtils.append(reportBlock, SSRC);
-        reportBlock = RtcpPacketUtils.append(reportBlock, fraction_lost);
-        reportBlock = RtcpPacketUtils.append(reportBlock, pkts_lost);
-        reportBlock = RtcpPacketUtils.append(reportBlock, last_seq);
-        reportBlock = RtcpPacketUtils.append(reportBlock, jitter);
-        reportBlock = RtcpPacketUtils.append(reportBlock, lst);
-        reportBlock = RtcpPacketUtils.append(reportBlock, dlsr);
-
-        return reportBlock;
     }
 
     /**
      * Send a BYE packet
      */
     public void sendByePacket() {
-        // Create a report
-        Vector<RtcpSdesPacket> repvec = makereports();
-        RtcpPacket[] packets = new RtcpPacket[repvec.size() + 1];
-        repvec.copyInto(packets);
-
-        // Create a RTCP bye packet
-        int ssrc[] = {
-                rtcpSession.SSRC
-        };
-        RtcpByePacket rtcpbyepacket = new RtcpByePacket(ssrc, null);
-        packets[packets.length - 1] = rtcpbyepacket;
-
-        // Create a RTCP compound packet
-        RtcpCompoundPacket cp = new RtcpCompoundPacket(packets);
+        writer.reset();
+        writer.writeSdes(rtcpSession.SSRC, getCname());
+        writer.writeBye(rtcpSession.SSRC, null);
 
         rtcpSession.getMySource().activeSender = false;
 
         // Send the RTCP packet
-        transmit(cp);
+        transmit();
     }
 
     /**
-     * Generate a RTCP report
+     * Returns the CNAME of the local source, encoded again only when it has changed
      * 
-     * @return Vector
+     * @return CNAME
      */
-    public Vector<RtcpSdesPacket> makereports() {
-        Vector<RtcpSdesPacket> packets = new Vector<RtcpSdesPacket>();
-
-        RtcpSdesPacket rtcpsdespacket = new RtcpSdesPacket(new RtcpSdesBlock[1]);
-        rtcpsdespacket.sdes[0] = new RtcpSdesBlock();
-        rtcpsdespacket.sdes[0].ssrc = rtcpSession.SSRC;
-
-        Vector<RtcpSdesItem> vector = new Vector<RtcpSdesItem>();
-        vector.addElement(new RtcpSdesItem(1, RtpSource.CNAME));
-        rtcpsdespacket.sdes[0].items = new RtcpSdesItem[vector.size()];
-        vector.copyInto(rtcpsdespacket.sdes[0].items);
-
-        packets.addElement(rtcpsdespacket);
-        return packets;
-    }
-
-    /**
-     * Transmit a RTCP compound packet to the remote destination
-     * 
-     * @param packet Compound packet to be sent
-     */
-    private void transmit(RtcpCompoundPacket packet) {
-        // Prepare data to be sent
-        byte[] data = packet.data;
-        if (packet.offset > 0) {
-            System.arraycopy(data, packet.offset,
-                    data = new byte[packet.length], 0, packet.length);
-        }
-
-        // Update statistics
-        stats.numBytes += packet.length;
-        stats.numPackets++;
-        rtcpSession.updateavgrtcpsize(packet.length);
-        rtcpSession.timeOfLastRTCPSent = rtcpSession.currentTime();
-        // Send data over UDP
-        try {
-            datagramConnection.send(remoteAddress, remotePort, data);
-        } catch (IOException e) {
-            e.printStackTrace();
+    private byte[] getCname() {
+        if (!RtpSource.CNAME.equals(cname)) {
+            cname = RtpSource.CNAME;
+            cnameData = cname.getBytes();
         }
+        return cnameData;
     }
 
     /**
-     * Transmit a RTCP compound packet to the remote destination
-     * 
-     * @param packet Compound packet to be sent
+     * Transmit the RTCP compound packet of the writer to the remote destination
      */
-    private void transmit(byte packet[]) {
+    private void transmit() {
+        ByteBuffer packet = writer.getPacket();
+        int length = packet.remaining();
+
         // Update statistics
-        stats.numBytes += packet.length;
+        stats.numBytes += length;
         stats.numPackets++;
-        rtcpSession.updateavgrtcpsize(packet.length);
+        rtcpSession.updateavgrtcpsize(length);
         rtcpSession.timeOfLastRTCPSent = rtcpSession.currentTime();
         // Send data over UDP
         try {
@@ -450,19 +310,8 @@ public class RtcpPacketTransmitter extends Thread {
      * Send a SDES packet
      */
     private void sendSdesPacket() {
-        // Create a report
-        Vector<RtcpSdesPacket> repvec = makereports();
-        RtcpPacket packets[] = new RtcpPacket[repvec.size()];
-        repvec.copyInto(packets);
-
-        // Create a RTCP compound packet
-        RtcpCompoundPacket cp = new RtcpCompoundPacket(packets);
-
-        // Assemble the RTCP packet
-        int i = cp.calcLength();
-        cp.assemble(i, false);
-
-        // Send the RTCP packet
-        transmit(cp);
+        writer.reset();
+        writer.writeSdes(rtcpSession.SSRC, getCname());
+        transmit();
     }
 }
@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.protocol.rtp.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * RTCP compound packet writer. The packets are serialized in one pass in a buffer reused from one
+ * compound packet to the next, the length field of each packet being set once its content has
+ * been written.
+ */
+public class RtcpPacketWriter {
+
+    /**
+     * SDES CNAME item type
+     */
+    private static final int SDES_CNAME = 1;
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Position of the header of the packet being written
+     */
+    private int packetStart;
+
+    /**
+     * Constructor
+     */
+    public RtcpPacketWriter() {
+        buffer = ByteBuffer.allocate(RtcpPacket.MAX_PACKET_SIZE);
+    }
+
+    /**
+     * Start a new compound packet
+     */
+    public void reset() {
+        buffer.clear();
+    }
+
+    /**
+     * Write a sender report
+     * 
+     * @param ssrc SSRC of the sender
+     * @param ntpTimestamp NTP timestamp
+     * @param rtpTimestamp RTP timestamp
+     * @param packetCount Sender packet count
+     * @param octetCount Sender octet count
+     * @param report Reception report block or null
+     */
+    public void writeSenderReport(int ssrc, long ntpTimestamp, long rtpTimestamp,
+            long packetCount, long octetCount, ReceptionReport report) {
+        startPacket(report != null ? 1 : 0, RtcpPacket.RTCP_SR);
+        buffer.putInt(ssrc);
+        buffer.putLong(ntpTimestamp);
+        buffer.putInt((int) rtpTimestamp);
+        buffer.putInt((int) packetCount);
+        buffer.putInt((int) octetCount);
+        if (report != null) {
+            writeReportBlock(report);
+        }
+        endPacket();
+    }
+
+    /**
+     * Write a receiver report
+     * 
+     * @param ssrc SSRC of the sender of the report
+     * @param report Reception report block or null
+     */
+    public void writeReceiverReport(int ssrc, ReceptionReport report) {
+        startPacket(report != null ? 1 : 0, RtcpPacket.RTCP_RR);
+        buffer.putInt(ssrc);
+        if (report != null) {
+            writeReportBlock(report);
+        }
+        endPacket();
+    }
+
+    /**
+     * Write a source description with a CNAME item
+     * 
+     * @param ssrc SSRC of the source
+     * @param cname CNAME
+     */
+    public void writeSdes(int ssrc, byte[] cname) {
+        startPacket(1, RtcpPacket.RTCP_SDES);
+        buffer.putInt(ssrc);
+        buffer.put((byte) SDES_CNAME);
+        buffer.put((byte) cname.length);
+        buffer.put(cname);
+        // The item list ends with at least one null octet up to the next 32 bit boundary
+        do {
+            buffer.put((byte) 0);
+        } while (((buffer.position() - packetStart) & 3) != 0);
+        endPacket();
+    }
+
+    /**
+     * Write a BYE packet
+     * 
+     * @param ssrc SSRC of the source leaving
+     * @param reason Reason for leaving or null
+     */
+    public void writeBye(int ssrc, byte[] reason) {
+        startPacket(1, RtcpPacket.RTCP_BYE);
+        buffer.putInt(ssrc);
+        if (reason != null && reason.length > 0) {
+            buffer.put((byte) reason.length);
+            buffer.put(reason);
+            while (((buffer.position() - packetStart) & 3) != 0) {
+                buffer.put((byte) 0);
+            }
+        }
+        endPacket();
+    }
+
+    /**
+     * Write an application-defined packet
+     * 
+     * @param ssrc SSRC of the source
+     * @param subtype Subtype
+     * @param name Name made of four ASCII characters
+     * @param data Application-dependent data
+     * @param offset Offset of the data
+     * @param length Length of the data, a multiple of 4
+     */
+    public void writeApp(int ssrc, int subtype, int name, byte[] data, int offset, int length) {
+        if ((length & 3) != 0) {
+            throw new IllegalArgumentException("Bad data length");
+        }
+        if (subtype < 0 || subtype > 31) {
+            throw new IllegalArgumentException("Bad subtype");
+        }
+        startPacket(subtype, RtcpPacket.RTCP_APP);
+        buffer.putInt(ssrc);
+        buffer.putInt(name);
+        buffer.put(data, offset, length);
+        endPacket();
+    }
+
+    /**
+     * Returns the compound packet once all its packets have been written. The buffer is owned by
+     * the writer and its content is valid until the next reset.
+     * 
+     * @return Buffer from the first to the last byte of the compound packet
+     */
+    public ByteBuffer getPacket() {
+        buffer.flip();
+        return buffer;
+    }
+
+    private void writeReportBlock(ReceptionReport report) {
+        buffer.putInt((int) report.getSsrc());
+        buffer.putInt(((int) report.getFractionLost() << 24)
+                | (report.getCumulativeNumberOfPacketsLost() & 0xffffff));
+        buffer.putInt((int) report.getExtendedHighestSequenceNumberReceived());
+        buffer.putInt((int) report.getInterarrivalJitter());
+        buffer.putInt((int) report.getLastSenderReport());
+        buffer.putInt((int) report.getDelaySinceLastSenderReport());
+    }
+
+    private void startPacket(int count, int type) {
+        packetStart = buffer.position();
+        buffer.put((byte) ((RtcpPacket.VERSION << 6) | (RtcpPacket.PADDING << 5) | count));
+        buffer.put((byte) type);
+        // Length set once the content is written
+        buffer.putShort((short) 0);
+    }
+
+    private void endPacket() {
+        // Length is 32 bit words contained in the packet -1
+        buffer.putShort(packetStart + 2, (short) ((buffer.position() - packetStart) / 4 - 1));
+    }
+}
@@ -62,6 +62,21 @@ public class RtpPacketTransmitter {
      */
     private RtcpSession rtcpSession = null;
 
+    /**
+     * Maximum burst in nanoseconds allowed after an idle period when pacing
+     */
+    private static final long MAX_PACING_BURST = 20000000L;
+
+    /**
+     * Pacing rate in bits per second, 0 if the packets are not paced
+     */
+    private volatile int pacingRate = 0;
+
+    /**
+     * Time in nanoseconds from which the next packet may be sent
+     */
+    private long nextSendTime = 0;
+
     /**
      * Constructor
      * 
@@ -116,6 +131,16 @@ public class RtpPacketTransmitter {
         }
     }
 
+    /**
+     * Set the rate at which the packets are sent, the packets of a frame being spread instead of
+     * sent in a burst
+     * 
+     * @param bitrate Bits per second or 0 to send the packets as soon as possible
+     */
+    public void setPacingRate(int bitrate) {
+        this.pacingRate = bitrate;
+    }
+
     /**
      * Send a RTP packet
      * 
@@ -134,9 +159,35 @@ public class RtpPacketTransmitter {
         packet.assemble(size);
 
         // Send the RTP packet to the remote destination
+        pace(packet.length);
         transmit(packet);
     }
 
+    /**
+     * Wait until a packet may be sent at the pacing rate
+     * 
+     * @param length Length of the packet
+     */
+    private void pace(int length) {
+        int rate = pacingRate;
+        if (rate <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (nextSendTime < now - MAX_PACING_BURST) {
+            nextSendTime = now - MAX_PACING_BURST;
+        }
+        long wait = nextSendTime - now;
+        if (wait > 0) {
+            try {
+                Thread.sleep(wait / 1000000L, (int) (wait % 1000000L));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        nextSendTime += (length * 8L * 1000000000L) / rate;
+    }
+
     /**
      * Build a RTP packet
      * 
@@ -114,6 +114,11 @@ public class RtpSource {
      */
     private long lastSenderReport;
 
+    /**
+     * Local time at which the last SR Packet was received
+     */
+    private long lastSenderReportTime;
+
     /**
      * Constructor requires an SSRC for it to be a valid source. The constructor initializes all the
      * source class members to a default value
@@ -142,13 +147,14 @@ public class RtpSource {
      * Updates the statistics related to Sender Reports. Should be invoked when a RTCP Sender Report
      * is received.
      * 
-     * @param srp Sender Report
+     * @param ntpTimestamp NTP timestamp of the Sender Report
      */
-    public void receivedSenderReport(RtcpSenderReportPacket srp) {
+    public void receivedSenderReport(long ntpTimestamp) {
         // RFC 3550: last SR timestamp (LSR): 32 bits - The middle 32 bits out
         // of 64 in the NTP timestamp received as part of the most recent RTCP
         // sender report
-        lastSenderReport = (((srp.ntptimestampmsw << 32) | srp.ntptimestamplsw) & 0x0000ffffffff0000L) >>> 16;
+        lastSenderReport = (ntpTimestamp & 0x0000ffffffff0000L) >>> 16;
+        lastSenderReportTime = System.currentTimeMillis();
     }
 
     /**
@@ -188,8 +194,14 @@ public class RtpSource {
         int expected = extendedMax - baseSeq + 1;
         report.setCumulativeNumberOfPacketsLost(expected - received);
 
-        // TODO : Calculate the delay after last sender report received
-        report.setDelaySinceLastSenderReport(0);
+        // RFC 3550: delay since last SR (DLSR) expressed in units of 1/65536 seconds, the sender
+        // of the SR computing the round trip time from it
+        if (lastSenderReport != 0) {
+            long delay = System.currentTimeMillis() - lastSenderReportTime;
+            report.setDelaySinceLastSenderReport((delay << 16) / 1000);
+        } else {
+            report.setDelaySinceLastSenderReport(0);
+        }
         report.setExtendedHighestSequenceNumberReceived(getExtendedSequenceNumber());
 
         // Calculate the fraction lost
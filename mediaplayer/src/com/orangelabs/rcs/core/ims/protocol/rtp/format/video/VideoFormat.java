@@ -24,6 +24,11 @@ import com.orangelabs.rcs.core.ims.protocol.rtp.format.Format;
  * Video format
  */
 public class VideoFormat extends Format {
+    /**
+     * RTP clock rate of the video payloads
+     */
+    public static final int CLOCK_RATE = 90000;
+
     /**
      * Constructor
      * 
@@ -18,6 +18,8 @@
 
 package com.orangelabs.rcs.core.ims.protocol.rtp.stream;
 
+import com.orangelabs.rcs.core.ims.protocol.rtp.core.BitrateController;
+import com.orangelabs.rcs.core.ims.protocol.rtp.core.BitrateListener;
 import com.orangelabs.rcs.core.ims.protocol.rtp.core.RtcpPacketReceiver;
 import com.orangelabs.rcs.core.ims.protocol.rtp.core.RtcpPacketTransmitter;
 import com.orangelabs.rcs.core.ims.protocol.rtp.core.RtcpSession;
@@ -95,6 +97,11 @@ public class RtpOutputStream implements ProcessorOutputStream, RtcpEventListener
      */
     private RtpInputStream rtpInputStream = null;
 
+    /**
+     * Bitrate controller
+     */
+    private BitrateController bitrateController = null;
+
     /**
      * Constructor
      * 
@@ -184,11 +191,56 @@ public class RtpOutputStream implements ProcessorOutputStream, RtcpEventListener
         }
     }
 
+    /**
+     * Adapt the bitrate of the stream to the RTCP reports received from the remote. The stream
+     * must be opened.
+     * 
+     * @param clockRate RTP clock rate of the stream
+     * @param maxBitrate Maximum bitrate in bits per second
+     * @param maxFrameRate Maximum frame rate
+     * @param listener Listener of the target bitrate
+     * @return Bitrate controller
+     */
+    public BitrateController enableBitrateAdaptation(int clockRate, int maxBitrate,
+            float maxFrameRate, BitrateListener listener) {
+        bitrateController = new BitrateController(rtcpSession, rtpTransmitter, clockRate,
+                maxBitrate, maxFrameRate, listener);
+        RtcpPacketReceiver receiver = getRtcpReceiver();
+        if (receiver != null) {
+            receiver.addRtcpListener(bitrateController);
+        }
+        return bitrateController;
+    }
+
+    /**
+     * Returns the RTCP receiver of the reports about the stream
+     * 
+     * @return RTCP receiver or null
+     */
+    private RtcpPacketReceiver getRtcpReceiver() {
+        if (rtcpReceiver != null) {
+            return rtcpReceiver;
+        }
+        if (rtpInputStream != null) {
+            return rtpInputStream.getRtcpReceiver();
+        }
+        return null;
+    }
+
     /**
      * Close the output stream
      */
     public void close() {
         try {
+            // Stop the bitrate adaptation
+            if (bitrateController != null) {
+                RtcpPacketReceiver receiver = getRtcpReceiver();
+                if (receiver != null) {
+                    receiver.removeRtcpListener(bitrateController);
+                }
+                bitrateController = null;
+            }
+
             // Close the RTP transmitter
             if (rtpTransmitter != null)
                 rtpTransmitter.close();
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.nio.ByteBuffer;
 
 /**
  * Android datagram server connection
@@ -39,6 +40,11 @@ public class AndroidDatagramConnection implements DatagramConnection {
      */
     private DatagramPacket packet = null;
 
+    /**
+     * Datagram Packet used to receive directly in the array of a caller buffer
+     */
+    private DatagramPacket bufferPacket = null;
+
     /**
      * Connection timeout
      */
@@ -115,6 +121,38 @@ public class AndroidDatagramConnection implements DatagramConnection {
         }
     }
 
+    /**
+     * Receive data in a buffer. A buffer backed by an array is filled in place, without any
+     * intermediate copy.
+     * 
+     * @param buffer Buffer
+     * @return Length of the received datagram
+     * @throws IOException
+     */
+    public int receive(ByteBuffer buffer) throws IOException {
+        if (connection == null) {
+            throw new IOException("Connection not openned");
+        }
+
+        buffer.clear();
+        if (buffer.hasArray()) {
+            if (bufferPacket == null) {
+                bufferPacket = new DatagramPacket(buffer.array(), buffer.arrayOffset(),
+                        buffer.capacity());
+            } else {
+                bufferPacket.setData(buffer.array(), buffer.arrayOffset(), buffer.capacity());
+            }
+            connection.receive(bufferPacket);
+            buffer.limit(bufferPacket.getLength());
+        } else {
+            packet.setLength(DatagramConnection.DEFAULT_DATAGRAM_SIZE);
+            connection.receive(packet);
+            buffer.put(packet.getData(), 0, Math.min(packet.getLength(), buffer.remaining()));
+            buffer.flip();
+        }
+        return buffer.remaining();
+    }
+
     /**
      * Send data
      * 
@@ -137,6 +175,33 @@ public class AndroidDatagramConnection implements DatagramConnection {
         }
     }
 
+    /**
+     * Send the remaining content of a buffer. A buffer backed by an array is sent in place,
+     * without any intermediate copy.
+     * 
+     * @param remoteAddr Remote address
+     * @param remotePort Remote port
+     * @param buffer Buffer
+     * @throws IOException
+     */
+    public void send(String remoteAddr, int remotePort, ByteBuffer buffer) throws IOException {
+        if (!buffer.hasArray()) {
+            byte[] data = new byte[buffer.remaining()];
+            buffer.duplicate().get(data);
+            send(remoteAddr, remotePort, data);
+            return;
+        }
+
+        if (connection != null) {
+            InetAddress address = InetAddress.getByName(remoteAddr);
+            DatagramPacket packet = new DatagramPacket(buffer.array(), buffer.arrayOffset()
+                    + buffer.position(), buffer.remaining(), address, remotePort);
+            connection.send(packet);
+        } else {
+            throw new IOException("Connection not openned");
+        }
+    }
+
     /**
      * Returns the local address
      * 
@@ -19,6 +19,7 @@
 package com.orangelabs.rcs.core.ims.protocol.rtp.util;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * Datagram connection
@@ -63,6 +64,16 @@ public interface DatagramConnection {
      */
     public void send(String remoteAddr, int remotePort, byte[] data) throws IOException;
 
+    /**
+     * Send the remaining content of a buffer
+     * 
+     * @param remoteAddr Remote address
+     * @param remotePort Remote port
+     * @param buffer Buffer
+     * @throws IOException
+     */
+    public void send(String remoteAddr, int remotePort, ByteBuffer buffer) throws IOException;
+
     /**
      * Receive data
      * 
@@ -71,6 +82,15 @@ public interface DatagramConnection {
      */
     public byte[] receive() throws IOException;
 
+    /**
+     * Receive data in a buffer
+     * 
+     * @param buffer Buffer
+     * @return Length of the received datagram
+     * @throws IOException
+     */
+    public int receive(ByteBuffer buffer) throws IOException;
+
     /**
      * Returns the local address
      * 
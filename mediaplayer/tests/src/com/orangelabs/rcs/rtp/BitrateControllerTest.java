@@ -0,0 +1,170 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010-2016 Orange.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.rtp;
+
+import com.orangelabs.rcs.core.ims.protocol.rtp.core.BitrateController;
+import com.orangelabs.rcs.core.ims.protocol.rtp.core.BitrateListener;
+import com.orangelabs.rcs.core.ims.protocol.rtp.core.RtcpReceiverReportPacket;
+import com.orangelabs.rcs.core.ims.protocol.rtp.core.RtcpReport;
+import com.orangelabs.rcs.core.ims.protocol.rtp.core.RtcpSession;
+import com.orangelabs.rcs.core.ims.protocol.rtp.core.RtpPacketTransmitter;
+import com.orangelabs.rcs.core.ims.protocol.rtp.event.RtcpReceiverReportEvent;
+import com.orangelabs.rcs.core.ims.protocol.rtp.util.AndroidDatagramConnection;
+
+import android.test.AndroidTestCase;
+
+public class BitrateControllerTest extends AndroidTestCase {
+
+    private static final int CLOCK_RATE = 90000;
+
+    private static final int MAX_BITRATE = 256000;
+
+    private static final int MIN_BITRATE = MAX_BITRATE / 8;
+
+    private static final float MAX_FRAME_RATE = 15;
+
+    private static final int PACKETS_PER_REPORT = 100;
+
+    private RtcpSession mSession;
+
+    private BitrateController mController;
+
+    private int mChanges;
+
+    private long mLastSeq = 1000;
+
+    private int mPacketsLost;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mSession = new RtcpSession(true, 16000);
+        /* The connection is not opened: the controller only paces the transmitter */
+        RtpPacketTransmitter transmitter = new RtpPacketTransmitter("127.0.0.1", 9, mSession,
+                new AndroidDatagramConnection());
+        mController = new BitrateController(mSession, transmitter, CLOCK_RATE, MAX_BITRATE,
+                MAX_FRAME_RATE, new BitrateListener() {
+                    @Override
+                    public void onTargetBitrateChanged(int bitrate, float frameRate) {
+                        mChanges++;
+                        assertEquals(bitrate, mController.getTargetBitrate());
+                        assertEquals(frameRate, mController.getTargetFrameRate());
+                    }
+                });
+    }
+
+    /**
+     * Send packets then receive the report of the remote
+     * 
+     * @param lost Number of packets lost since the previous report
+     */
+    private void receiveReport(int lost) {
+        mSession.packetCount += PACKETS_PER_REPORT;
+        mLastSeq += PACKETS_PER_REPORT;
+        mPacketsLost += lost;
+        RtcpReport report = new RtcpReport();
+        report.ssrc = mSession.SSRC;
+        report.lastseq = mLastSeq;
+        report.packetslost = mPacketsLost;
+        report.fractionlost = lost * 256 / PACKETS_PER_REPORT;
+        mController.receiveRtcpEvent(new RtcpReceiverReportEvent(new RtcpReceiverReportPacket(
+                1, new RtcpReport[] {
+                    report
+                })));
+    }
+
+    public void testDecreaseOnLoss() {
+        receiveReport(25);
+        int bitrate = mController.getTargetBitrate();
+        assertTrue(bitrate < MAX_BITRATE);
+        assertEquals(1, mChanges);
+
+        receiveReport(25);
+        assertTrue(mController.getTargetBitrate() < bitrate);
+        assertEquals(2, mChanges);
+    }
+
+    public void testNoChangeOnModerateLoss() {
+        receiveReport(25);
+        int bitrate = mController.getTargetBitrate();
+        receiveReport(5);
+        assertEquals(bitrate, mController.getTargetBitrate());
+        assertEquals(1, mChanges);
+    }
+
+    public void testIncreaseOnceLossIsLow() {
+        receiveReport(50);
+        receiveReport(50);
+        int bitrate = mController.getTargetBitrate();
+        assertTrue(bitrate < MAX_BITRATE);
+
+        receiveReport(1);
+        assertTrue(mController.getTargetBitrate() > bitrate);
+        bitrate = mController.getTargetBitrate();
+        receiveReport(0);
+        assertTrue(mController.getTargetBitrate() > bitrate);
+    }
+
+    public void testStayWithinMaximum() {
+        for (int i = 0; i < 10; i++) {
+            receiveReport(0);
+            assertEquals(MAX_BITRATE, mController.getTargetBitrate());
+            assertEquals(MAX_FRAME_RATE, mController.getTargetFrameRate());
+        }
+        assertEquals(0, mChanges);
+
+        receiveReport(30);
+        for (int i = 0; i < 50; i++) {
+            receiveReport(0);
+            assertTrue(mController.getTargetBitrate() <= MAX_BITRATE);
+        }
+        assertEquals(MAX_BITRATE, mController.getTargetBitrate());
+        assertEquals(MAX_FRAME_RATE, mController.getTargetFrameRate());
+    }
+
+    public void testStayWithinMinimum() {
+        for (int i = 0; i < 20; i++) {
+            receiveReport(PACKETS_PER_REPORT);
+            assertTrue(mController.getTargetBitrate() >= MIN_BITRATE);
+        }
+        assertEquals(MIN_BITRATE, mController.getTargetBitrate());
+        assertTrue(mController.getTargetFrameRate() > 0);
+        assertTrue(mController.getTargetFrameRate() < MAX_FRAME_RATE);
+
+        int changes = mChanges;
+        receiveReport(PACKETS_PER_REPORT);
+        assertEquals(MIN_BITRATE, mController.getTargetBitrate());
+        assertEquals(changes, mChanges);
+    }
+
+    public void testNothingReceivedByRemote() {
+        receiveReport(0);
+        /* Packets sent while the remote reports the same highest sequence number */
+        mSession.packetCount += PACKETS_PER_REPORT;
+        RtcpReport report = new RtcpReport();
+        report.ssrc = mSession.SSRC;
+        report.lastseq = mLastSeq;
+        report.packetslost = mPacketsLost;
+        mController.receiveRtcpEvent(new RtcpReceiverReportEvent(new RtcpReceiverReportPacket(
+                1, new RtcpReport[] {
+                    report
+                })));
+        assertEquals(MAX_BITRATE / 2, mController.getTargetBitrate());
+    }
+}